@@ -32,6 +32,7 @@ import com.socialize.api.SocializeSession;
 import com.socialize.api.action.ShareType;
 import com.socialize.api.action.share.ShareSystem;
 import com.socialize.api.action.user.UserSystem;
+import com.socialize.api.event.EventBatcher;
 import com.socialize.auth.AuthProvider;
 import com.socialize.auth.AuthProviderInfo;
 import com.socialize.auth.AuthProviderInfoBuilder;
@@ -47,6 +48,7 @@ import com.socialize.entity.Comment;
 import com.socialize.error.SocializeException;
 import com.socialize.init.SocializeInitializationAsserter;
 import com.socialize.ioc.SocializeIOC;
+import com.socialize.ioc.StartupTrace;
 import com.socialize.listener.SocializeAuthListener;
 import com.socialize.listener.SocializeInitListener;
 import com.socialize.listener.SocializeListener;
@@ -101,6 +103,8 @@ public class SocializeServiceImpl implements SocializeService {
 	private NotificationChecker notificationChecker;
 	private AppUtils appUtils;
 	private SocializeLocationProvider locationProvider;
+	private EventBatcher eventBatcher;
+	private StartupTrace startupTrace;
 	
 	private SocializeSystem system = SocializeSystem.getInstance();
 	private SocializeConfig config = new SocializeConfig();
@@ -299,6 +303,8 @@ public class SocializeServiceImpl implements SocializeService {
 				}
 
 				if(init) {
+					startupTrace = newStartupTrace();
+					
 					Logger.LOG_KEY = Socialize.LOG_KEY;
 					Logger.logLevel = Log.WARN;
 
@@ -335,7 +341,11 @@ public class SocializeServiceImpl implements SocializeService {
 						}
 					}
 
+					startupTrace.mark("prepare");
+
 					((SocializeIOC) container).init(context, locator, paths);
+					
+					startupTrace.mark("container");
 
 					init(context, container, listener); // initCount incremented here
 				}
@@ -385,6 +395,19 @@ public class SocializeServiceImpl implements SocializeService {
 		return new SocializeIOC();
 	}
 	
+	// So we can mock
+	protected StartupTrace newStartupTrace() {
+		return new StartupTrace();
+	}
+	
+	/**
+	 * Returns the timings recorded during the most recent initialization.
+	 * @return The trace, or null if Socialize has not been initialized.
+	 */
+	public StartupTrace getStartupTrace() {
+		return startupTrace;
+	}
+	
 	// So we can mock
 	protected ResourceLocator newResourceLocator() {
 		return new ResourceLocator();
@@ -425,23 +448,26 @@ public class SocializeServiceImpl implements SocializeService {
 				this.container = container;
 				this.container.setContext(context);
 				
-				this.logger = container.getBean("logger");
-                this.loopyService = container.getBean("loopyService");
+				StartupTrace trace = (startupTrace == null) ? newStartupTrace() : startupTrace;
 				
-				this.shareSystem = container.getBean("shareSystem");
-				this.userSystem = container.getBean("userSystem");
-				this.asserter = container.getBean("initializationAsserter");
+				this.logger = trace.getBean(container, "logger");
+                this.loopyService = trace.getBean(container, "loopyService");
+				
+				this.shareSystem = trace.getBean(container, "shareSystem");
+				this.userSystem = trace.getBean(container, "userSystem");
+				this.asserter = trace.getBean(container, "initializationAsserter");
 
 				if(this.authProviders == null) {
-					this.authProviders = container.getBean("authProviders");
+					this.authProviders = trace.getBean(container, "authProviders");
 				}
 
-				this.authProviderInfoBuilder = container.getBean("authProviderInfoBuilder");
-				this.notificationChecker = container.getBean("notificationChecker");
-				this.appUtils = container.getBean("appUtils");
-				this.locationProvider = container.getBean("locationProvider");
+				this.authProviderInfoBuilder = trace.getBean(container, "authProviderInfoBuilder");
+				this.notificationChecker = trace.getBean(container, "notificationChecker");
+				this.appUtils = trace.getBean(container, "appUtils");
+				this.locationProvider = trace.getBean(container, "locationProvider");
+				this.eventBatcher = trace.getBean(container, "eventBatcher");
 				
-				SocializeConfig mainConfig = container.getBean("config");
+				SocializeConfig mainConfig = trace.getBean(container, "config");
 				
 				mainConfig.merge(config);
 				mainConfig.merge(ConfigUtils.preInitConfig);
@@ -461,6 +487,14 @@ public class SocializeServiceImpl implements SocializeService {
 				
 				initNotifications(context);
 				
+				trace.mark("verify");
+				
+				this.startupTrace = trace;
+				
+				if(logger != null && logger.isDebugEnabled()) {
+					logger.debug(trace.toString());
+				}
+				
 				if(listener != null) {
 					listener.onInit(context, container);
 				}
@@ -590,6 +624,7 @@ public class SocializeServiceImpl implements SocializeService {
 			system.destroy();
 			initCount = 0;
 			initPaths = null;
+			startupTrace = null;
 			entityLoader = null;
 			session = null;
 			authProviders = null;
@@ -1030,6 +1065,11 @@ public class SocializeServiceImpl implements SocializeService {
 		if(locationProvider != null) {
 			locationProvider.pause(context);	
 		}
+		
+		// Send buffered events while the radio is likely still awake.
+		if(eventBatcher != null) {
+			eventBatcher.flush();
+		}
 	}
 
 	@Override
@@ -1110,6 +1150,10 @@ public class SocializeServiceImpl implements SocializeService {
         if(loopyService != null) {
             loopyService.onStop(context);
         }
+
+        if(eventBatcher != null) {
+            eventBatcher.flush();
+        }
     }
 
     protected void setShareSystem(ShareSystem shareSystem) {
@@ -0,0 +1,443 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.api;
+
+import android.content.Context;
+import com.socialize.Socialize;
+import com.socialize.auth.AuthProviderType;
+import com.socialize.auth.DefaultUserProviderCredentials;
+import com.socialize.auth.SocializeAuthProviderInfo;
+import com.socialize.auth.UserProviderCredentialsMap;
+import com.socialize.entity.User;
+import com.socialize.log.SocializeLogger;
+import com.socialize.ui.profile.UserSettings;
+import com.socialize.util.StringUtils;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists session data to a private binary file (see {@link SessionFile}).
+ * <br/>
+ * The decoded file is held in memory so loads after the first do not touch the disk.  Updates 
+ * only re-encode the sections they change, and the file is rewritten on a background thread 
+ * (write-behind), coalescing bursts of updates into a single write.  On first use any session 
+ * held by the older {@link PreferenceSessionPersister} is migrated and the preferences cleared.
+ */
+public class BinarySessionPersister extends PreferenceSessionPersister {
+	
+	public static final String SESSION_FILE = "socialize_session.dat";
+	
+	// Guarded by this
+	private final Map<Integer, String> sections = new TreeMap<Integer, String>();
+	private boolean loaded = false;
+	private boolean writePending = false;
+	
+	private SessionFile sessionFile;
+	private ExecutorService writer;
+	
+	private boolean writeBehind = true;
+	private boolean readOnly = false;
+	
+	private final Runnable writeTask = new Runnable() {
+		@Override
+		public void run() {
+			writeNow();
+		}
+	};
+	
+	@Override
+	public void save(Context context, SocializeSession session) {
+		Map<Integer, String> changes = new TreeMap<Integer, String>();
+		changes.put(SessionFile.CONSUMER_KEY, session.getConsumerKey());
+		changes.put(SessionFile.CONSUMER_SECRET, session.getConsumerSecret());
+		changes.put(SessionFile.CONSUMER_TOKEN, session.getConsumerToken());
+		changes.put(SessionFile.CONSUMER_TOKEN_SECRET, session.getConsumerTokenSecret());
+		changes.put(SessionFile.SOCIALIZE_VERSION, Socialize.VERSION);
+		changes.put(SessionFile.CREDENTIALS, jsonUtils.toJSON(session.getUserProviderCredentials()));
+		
+		putUser(changes, session.getUser(), session.getUserSettings());
+		
+		update(context, changes);
+	}
+
+	@Override
+	public void saveUser(Context context, User user, UserSettings userSettings) {
+		Map<Integer, String> changes = new TreeMap<Integer, String>();
+		if(putUser(changes, user, userSettings)) {
+			update(context, changes);
+		}
+	}
+
+	@Override
+	public void saveUserSettingsAsync(Context context, UserSettings settings) {
+		try {
+			Map<Integer, String> changes = new TreeMap<Integer, String>();
+			changes.put(SessionFile.USER_SETTINGS, userSettingsFactory.toJSON(settings).toString());
+			update(context, changes);
+		}
+		catch (JSONException e) {
+			logError("Failed to serialize user settings object", e);
+		}
+	}
+	
+	@Override
+	public void delete(Context context, AuthProviderType type) {
+		ensureLoaded(context);
+		
+		synchronized (this) {
+			String authData = sections.get(SessionFile.CREDENTIALS);
+			if(!StringUtils.isEmpty(authData)) {
+				UserProviderCredentialsMap map = jsonUtils.fromJSON(authData, UserProviderCredentialsMap.class);
+				map.remove(type);
+				sections.put(SessionFile.CREDENTIALS, jsonUtils.toJSON(map));
+				scheduleWrite();
+			}
+		}
+	}
+
+	@Override
+	public void delete(Context context) {
+		ensureLoaded(context);
+		
+		synchronized (this) {
+			sections.clear();
+			scheduleWrite();
+		}
+	}
+
+	@Override
+	public WritableSession load(Context context) {
+		ensureLoaded(context);
+		
+		Map<Integer, String> snapshot;
+		
+		synchronized (this) {
+			snapshot = new TreeMap<Integer, String>(sections);
+		}
+		
+		String oauth_token = snapshot.get(SessionFile.CONSUMER_TOKEN);
+		String oauth_token_secret = snapshot.get(SessionFile.CONSUMER_TOKEN_SECRET);
+		
+		if(StringUtils.isEmpty(oauth_token) || StringUtils.isEmpty(oauth_token_secret)) {
+			return null;
+		}
+		
+		WritableSession session = sessionFactory.create(snapshot.get(SessionFile.CONSUMER_KEY), snapshot.get(SessionFile.CONSUMER_SECRET), loadUserProviderCredentials(snapshot));
+		
+		session.setRestored(true);
+		session.setConsumerToken(oauth_token);
+		session.setConsumerTokenSecret(oauth_token_secret);
+		
+		User user = null;
+		
+		String userJson = snapshot.get(SessionFile.USER);
+		
+		if(userJson != null) {
+			try {
+				user = userFactory.fromJSON(new JSONObject(userJson));
+				session.setUser(user);
+			}
+			catch (JSONException e) {
+				logError("Failed to deserialize user object", e);
+			}
+		}
+		
+		String userSettingsJson = snapshot.get(SessionFile.USER_SETTINGS);
+		
+		if(userSettingsJson != null) {
+			try {
+				session.setUserSettings(userSettingsFactory.fromJSON(new JSONObject(userSettingsJson)));
+			}
+			catch (JSONException e) {
+				logError("Failed to deserialize user settings object", e);
+			}
+		}
+		else if(user != null) {
+			session.setUserSettings(createSettingsLegacy(user));
+		}
+		
+		return session;
+	}
+	
+	/**
+	 * Blocks until any pending write has reached the disk.
+	 */
+	public void flush() {
+		ExecutorService current;
+		synchronized (this) {
+			current = writer;
+		}
+		if(current != null) {
+			try {
+				Future<?> done = current.submit(new Runnable() {
+					@Override
+					public void run() {}
+				});
+				done.get(10, TimeUnit.SECONDS);
+			}
+			catch (Exception e) {
+				logError("Failed to flush session", e);
+			}
+		}
+	}
+	
+	public void destroy() {
+		ExecutorService current;
+		synchronized (this) {
+			current = writer;
+			writer = null;
+		}
+		if(current != null) {
+			current.shutdown();
+			try {
+				current.awaitTermination(10, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException ignore) {}
+		}
+	}
+	
+	protected boolean putUser(Map<Integer, String> changes, User user, UserSettings userSettings) {
+		if(user == null) {
+			return false;
+		}
+		
+		try {
+			changes.put(SessionFile.USER, userFactory.toJSON(user).toString());
+		}
+		catch (JSONException e) {
+			logError("Failed to serialize user object", e);
+		}
+		
+		if(userSettings == null) {
+			// Legacy
+			userSettings = createSettingsLegacy(user);
+		}
+		
+		try {
+			changes.put(SessionFile.USER_SETTINGS, userSettingsFactory.toJSON(userSettings).toString());
+		}
+		catch (JSONException e) {
+			logError("Failed to serialize user settings object", e);
+		}
+		
+		return true;
+	}
+	
+	protected UserProviderCredentialsMap loadUserProviderCredentials(Map<Integer, String> snapshot) {
+		String authData = snapshot.get(SessionFile.CREDENTIALS);
+		
+		if(!StringUtils.isEmpty(authData)) {
+			return jsonUtils.fromJSON(authData, UserProviderCredentialsMap.class);
+		}
+		
+		// Always add Socialize
+		UserProviderCredentialsMap map = newDefaultUserProviderCredentialsMap();
+		DefaultUserProviderCredentials data = newDefaultUserProviderCredentials();
+		data.setAuthProviderInfo(new SocializeAuthProviderInfo());
+		map.put(AuthProviderType.SOCIALIZE, data);
+		return map;
+	}
+	
+	protected void update(Context context, Map<Integer, String> changes) {
+		ensureLoaded(context);
+		
+		synchronized (this) {
+			for (Map.Entry<Integer, String> change : changes.entrySet()) {
+				if(change.getValue() == null) {
+					sections.remove(change.getKey());
+				}
+				else {
+					sections.put(change.getKey(), change.getValue());
+				}
+			}
+			scheduleWrite();
+		}
+	}
+	
+	protected synchronized void ensureLoaded(Context context) {
+		if(loaded) {
+			return;
+		}
+		
+		sessionFile = newSessionFile(context);
+		
+		try {
+			Map<Integer, String> stored = sessionFile.read();
+			
+			if(stored != null) {
+				sections.putAll(stored);
+			}
+			else if(readOnly) {
+				// Migration and clean up are left to the owning persister.
+			}
+			else if(sessionFile.exists()) {
+				if(logger != null) {
+					logger.warn("Session file [" + sessionFile.getFile() + "] is corrupt and will be discarded");
+				}
+				sessionFile.delete();
+			}
+			else {
+				migrate(context);
+			}
+		}
+		catch (IOException e) {
+			logError("Failed to read session file", e);
+		}
+		
+		loaded = true;
+	}
+	
+	// Must hold lock.  Moves a session saved in preferences by an older SDK into the session file.
+	protected void migrate(Context context) throws IOException {
+		WritableSession legacy = super.load(context);
+		
+		if(legacy != null) {
+			Map<Integer, String> changes = new TreeMap<Integer, String>();
+			changes.put(SessionFile.CONSUMER_KEY, legacy.getConsumerKey());
+			changes.put(SessionFile.CONSUMER_SECRET, legacy.getConsumerSecret());
+			changes.put(SessionFile.CONSUMER_TOKEN, legacy.getConsumerToken());
+			changes.put(SessionFile.CONSUMER_TOKEN_SECRET, legacy.getConsumerTokenSecret());
+			changes.put(SessionFile.SOCIALIZE_VERSION, Socialize.VERSION);
+			changes.put(SessionFile.CREDENTIALS, jsonUtils.toJSON(legacy.getUserProviderCredentials()));
+			
+			putUser(changes, legacy.getUser(), legacy.getUserSettings());
+			
+			for (Map.Entry<Integer, String> change : changes.entrySet()) {
+				if(change.getValue() != null) {
+					sections.put(change.getKey(), change.getValue());
+				}
+			}
+			
+			// Write before clearing the preferences so the session is never lost.
+			sessionFile.write(sections);
+			
+			if(logger != null && logger.isDebugEnabled()) {
+				logger.debug("Migrated session from preferences to [" + sessionFile.getFile() + "]");
+			}
+		}
+		
+		super.delete(context);
+	}
+	
+	// Must hold lock
+	protected void scheduleWrite() {
+		if(readOnly) {
+			return;
+		}
+		
+		if(!writeBehind) {
+			writeNow();
+			return;
+		}
+		
+		if(!writePending) {
+			writePending = true;
+			if(writer == null) {
+				writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "SocializeSessionWriter");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+			}
+			writer.execute(writeTask);
+		}
+	}
+	
+	protected void writeNow() {
+		Map<Integer, String> snapshot;
+		SessionFile file;
+		
+		synchronized (this) {
+			snapshot = new TreeMap<Integer, String>(sections);
+			file = sessionFile;
+			writePending = false;
+		}
+		
+		if(file == null) {
+			return;
+		}
+		
+		// Only one write runs at a time: the writer is single threaded, and synchronous mode holds the lock.
+		try {
+			if(snapshot.isEmpty()) {
+				file.delete();
+			}
+			else {
+				file.write(snapshot);
+			}
+		}
+		catch (IOException e) {
+			logError("Failed to write session file", e);
+		}
+	}
+	
+	protected SessionFile newSessionFile(Context context) {
+		return new SessionFile(new File(context.getFilesDir(), SESSION_FILE));
+	}
+	
+	protected void logError(String msg, Exception e) {
+		if(logger != null) {
+			logger.error(msg, e);
+		}
+		else {
+			SocializeLogger.e(msg, e);
+		}
+	}
+	
+	public boolean isWriteBehind() {
+		return writeBehind;
+	}
+	
+	/**
+	 * When true (the default) the file is written on a background thread.
+	 * @param writeBehind False to write on the calling thread.
+	 */
+	public void setWriteBehind(boolean writeBehind) {
+		this.writeBehind = writeBehind;
+	}
+	
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+	
+	/**
+	 * When true the persister never writes, deletes or migrates anything, so it can safely read a file owned by 
+	 * another persister.  Changes are held in memory only.
+	 * @param readOnly
+	 */
+	public void setReadOnly(boolean readOnly) {
+		this.readOnly = readOnly;
+	}
+}
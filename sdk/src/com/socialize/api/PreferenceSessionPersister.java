@@ -48,12 +48,12 @@ public class PreferenceSessionPersister implements SocializeSessionPersister {
 	private static final String SOCIALIZE_VERSION = "socialize_version";
 	private static final String USER_AUTH_DATA = "user_auth_data";
 	
-	private UserFactory userFactory;
-	private UserSettingsFactory userSettingsFactory;
-	private SocializeSessionFactory sessionFactory;
+	protected UserFactory userFactory;
+	protected UserSettingsFactory userSettingsFactory;
+	protected SocializeSessionFactory sessionFactory;
 	
-	private SocializeLogger logger = null;
-	private JSONUtils jsonUtils;
+	protected SocializeLogger logger = null;
+	protected JSONUtils jsonUtils;
 	
 	public PreferenceSessionPersister() {
 		super();
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes the session file.  The file is a versioned list of sections, each an id 
+ * and a UTF-8 string, followed by a CRC32 of everything before it.  Writes go to a temporary 
+ * file which is synced and then renamed over the original so a crash never leaves a partial file.
+ * <pre>
+ * int magic, short version, short count, (byte id, int length, byte[length] utf8)*, long crc
+ * </pre>
+ */
+public class SessionFile {
+	
+	public static final int MAGIC = 0x535A5353; // SZSS
+	public static final short VERSION = 1;
+	
+	public static final int CONSUMER_KEY = 1;
+	public static final int CONSUMER_SECRET = 2;
+	public static final int CONSUMER_TOKEN = 3;
+	public static final int CONSUMER_TOKEN_SECRET = 4;
+	public static final int SOCIALIZE_VERSION = 5;
+	public static final int CREDENTIALS = 6;
+	public static final int USER = 7;
+	public static final int USER_SETTINGS = 8;
+	
+	private static final int MAX_SECTION_SIZE = 1024 * 1024;
+	
+	private final File file;
+	
+	public SessionFile(File file) {
+		this.file = file;
+	}
+	
+	/**
+	 * Encodes the given sections.
+	 * @param sections Section values keyed by id. Null values are skipped.
+	 * @return The encoded bytes.
+	 */
+	public static byte[] encode(Map<Integer, String> sections) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+		DataOutputStream out = new DataOutputStream(bytes);
+		
+		int count = 0;
+		for (String value : sections.values()) {
+			if(value != null) count++;
+		}
+		
+		out.writeInt(MAGIC);
+		out.writeShort(VERSION);
+		out.writeShort(count);
+		
+		for (Map.Entry<Integer, String> section : sections.entrySet()) {
+			if(section.getValue() != null) {
+				byte[] data = section.getValue().getBytes("UTF-8");
+				out.writeByte(section.getKey());
+				out.writeInt(data.length);
+				out.write(data);
+			}
+		}
+		
+		out.flush();
+		
+		CRC32 crc = new CRC32();
+		crc.update(bytes.toByteArray());
+		out.writeLong(crc.getValue());
+		out.flush();
+		
+		return bytes.toByteArray();
+	}
+	
+	/**
+	 * Decodes sections previously encoded with {@link #encode(Map)}.  Unknown section ids are kept.
+	 * @param data The encoded data.
+	 * @return The sections, or null if the data is not a valid session file.
+	 */
+	public static Map<Integer, String> decode(byte[] data) throws IOException {
+		if(data == null || data.length < 16) {
+			return null;
+		}
+		
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, data.length - 8);
+		
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+		
+		if(in.readInt() != MAGIC) {
+			return null;
+		}
+		
+		int version = in.readShort();
+		if(version > VERSION) {
+			// Written by a newer SDK, don't guess.
+			return null;
+		}
+		
+		int count = in.readShort();
+		
+		Map<Integer, String> sections = new TreeMap<Integer, String>();
+		
+		for (int i = 0; i < count; i++) {
+			int id = in.readByte();
+			int length = in.readInt();
+			if(length < 0 || length > MAX_SECTION_SIZE || length > in.available() - 8) {
+				return null;
+			}
+			byte[] value = new byte[length];
+			in.readFully(value);
+			sections.put(id, new String(value, "UTF-8"));
+		}
+		
+		if(in.readLong() != crc.getValue()) {
+			return null;
+		}
+		
+		return sections;
+	}
+	
+	/**
+	 * Reads the file.
+	 * @return The sections, or null if the file does not exist or is corrupt.
+	 */
+	public Map<Integer, String> read() throws IOException {
+		if(!file.exists()) {
+			return null;
+		}
+		
+		long length = file.length();
+		if(length > MAX_SECTION_SIZE * 8L) {
+			return null;
+		}
+		
+		byte[] data = new byte[(int) length];
+		FileInputStream in = new FileInputStream(file);
+		try {
+			int offset = 0;
+			while(offset < data.length) {
+				int read = in.read(data, offset, data.length - offset);
+				if(read < 0) {
+					break;
+				}
+				offset += read;
+			}
+		}
+		finally {
+			in.close();
+		}
+		
+		return decode(data);
+	}
+	
+	/**
+	 * Atomically replaces the file with the given sections.
+	 * @param sections The sections to write.
+	 */
+	public void write(Map<Integer, String> sections) throws IOException {
+		byte[] data = encode(sections);
+		
+		File tmp = new File(file.getPath() + ".tmp");
+		FileOutputStream out = new FileOutputStream(tmp);
+		try {
+			out.write(data);
+			out.flush();
+			out.getFD().sync();
+		}
+		finally {
+			out.close();
+		}
+		
+		if(!tmp.renameTo(file)) {
+			// Some file systems won't rename over an existing file.
+			file.delete();
+			if(!tmp.renameTo(file)) {
+				throw new IOException("Failed to rename [" + tmp + "] to [" + file + "]");
+			}
+		}
+	}
+	
+	public boolean delete() {
+		new File(file.getPath() + ".tmp").delete();
+		return file.delete() || !file.exists();
+	}
+	
+	public boolean exists() {
+		return file.exists();
+	}
+	
+	public File getFile() {
+		return file;
+	}
+}
@@ -23,12 +23,18 @@ package com.socialize.api;
 
 import android.content.Context;
 import android.location.Location;
+import android.os.Build;
 import com.socialize.Socialize;
 import com.socialize.api.action.ActionOptions;
 import com.socialize.api.action.ActionType;
 import com.socialize.api.action.ShareType;
+import com.socialize.api.queue.WriteQueue;
+import com.socialize.api.queue.WriteSender;
 import com.socialize.auth.*;
 import com.socialize.concurrent.ManagedAsyncTask;
+import com.socialize.concurrent.RequestCoalescer;
+import com.socialize.concurrent.RequestExecutor;
+import com.socialize.concurrent.RequestExecutor.Lane;
 import com.socialize.config.SocializeConfig;
 import com.socialize.entity.*;
 import com.socialize.error.SocializeException;
@@ -45,6 +51,9 @@ import com.socialize.util.AppUtils;
 import com.socialize.util.HttpUtils;
 import com.socialize.util.StringUtils;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -64,8 +73,12 @@ public class SocializeApi<T extends SocializeObject, P extends SocializeProvider
 	private SocializeLocationProvider locationProvider;
 	private NotificationChecker notificationChecker;
 	private AppUtils appUtils;
+	private RequestExecutor requestExecutor;
+	private WriteQueue writeQueue;
 	protected SocializeConfig config;
 	
+	private final RequestCoalescer<Flight, SocializeActionListener> coalescer = new RequestCoalescer<Flight, SocializeActionListener>();
+	
 	public static enum RequestType {AUTH,PUT,POST,PUT_AS_POST,GET,LIST,LIST_AS_GET,LIST_WITHOUT_ENTITY,DELETE};
 	
 	public SocializeApi(P provider) {
@@ -264,7 +277,7 @@ public class SocializeApi<T extends SocializeObject, P extends SocializeProvider
 		request.setIdKey(idKey);
 		request.setStartIndex(startIndex);
 		request.setEndIndex(endIndex);
-		getter.execute(request);
+		executeGet(getter, request);
 	}
 	
 	public void listAsync(SocializeSession session, String endpoint, String key, SocializeActionListener listener, String...ids) {
@@ -278,7 +291,7 @@ public class SocializeApi<T extends SocializeObject, P extends SocializeProvider
 		request.setEndpoint(endpoint);
 		request.setStartIndex(startIndex);
 		request.setEndIndex(endIndex);
-		getter.execute(request);
+		executeGet(getter, request);
 	}
 	
 	public void listAsync(SocializeSession session, String endpoint, SocializeActionListener listener) {
@@ -291,7 +304,7 @@ public class SocializeApi<T extends SocializeObject, P extends SocializeProvider
 		request.setRequestType(RequestType.LIST);
 		request.setEndpoint(endpoint);
 		request.setKey(key);
-		getter.execute(request);
+		executeGet(getter, request);
 	}	
 	
 	
@@ -301,7 +314,7 @@ public class SocializeApi<T extends SocializeObject, P extends SocializeProvider
 		request.setRequestType(RequestType.GET);
 		request.setEndpoint(endpoint);
 		request.setIds(id);
-		getter.execute(request);
+		executeGet(getter, request);
 	}
 	
 	public void deleteAsync(SocializeSession session, String endpoint, String id, SocializeActionListener listener) {
@@ -310,7 +323,7 @@ public class SocializeApi<T extends SocializeObject, P extends SocializeProvider
 		request.setRequestType(RequestType.DELETE);
 		request.setEndpoint(endpoint);
 		request.setIds(id);
-		getter.execute(request);
+		executeGet(getter, request);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -320,7 +333,7 @@ public class SocializeApi<T extends SocializeObject, P extends SocializeProvider
 		request.setRequestType(RequestType.PUT);
 		request.setEndpoint(endpoint);
 		request.setObject(object);
-		poster.execute(request);
+		execute(poster, request);
 	}
 	
 	@SuppressWarnings("unchecked")
@@ -330,7 +343,7 @@ public class SocializeApi<T extends SocializeObject, P extends SocializeProvider
 		request.setRequestType(RequestType.PUT);
 		request.setEndpoint(endpoint);
 		request.setObjects(objects);
-		poster.execute(request);
+		execute(poster, request);
 	}
 	
 	public void postAsync(SocializeSession session, String endpoint, T object, SocializeActionListener listener) {
@@ -345,7 +358,7 @@ public class SocializeApi<T extends SocializeObject, P extends SocializeProvider
 		request.setEndpoint(endpoint);
 		request.setObject(object);
 		request.setJsonResponse(jsonResponse);
-		poster.execute(request);
+		execute(poster, request);
 	}
 
 	public void postAsync(SocializeSession session, String endpoint, List<T> objects, SocializeActionListener listener) {
@@ -360,7 +373,156 @@ public class SocializeApi<T extends SocializeObject, P extends SocializeProvider
 		request.setEndpoint(endpoint);
 		request.setObjects(objects);
 		request.setJsonResponse(jsonResponse);
-		poster.execute(request);
+		execute(poster, request);
+	}
+
+	public void postQueued(SocializeSession session, String endpoint, List<T> objects, SocializeActionListener listener) {
+		postQueued(session, endpoint, objects, true, listener);
+	}
+	
+	/**
+	 * Posts the objects through the write queue.  The objects are journaled before the request is made, if the request 
+	 * fails to reach the server the queue delivers them later and the listener receives the local objects as if the post 
+	 * succeeded (or the error, see {@link #isAnsweredWhenQueued()}).
+	 * Objects that need a response from the server (see {@link #isQueueable(List)}) are posted directly.
+	 * @param session
+	 * @param endpoint
+	 * @param objects
+	 * @param jsonResponse
+	 * @param listener
+	 */
+	public void postQueued(SocializeSession session, final String endpoint, final List<T> objects, final boolean jsonResponse, final SocializeActionListener listener) {
+		
+		List<Long> queued = null;
+		
+		if(writeQueue != null && isQueueable(objects)) {
+			queued = writeQueue.add(endpoint, objects, newWriteSender(jsonResponse));
+		}
+		
+		if(queued == null) {
+			postListAsync(session, endpoint, objects, jsonResponse, listener);
+			return;
+		}
+		
+		final List<Long> ids = queued;
+		
+		postListAsync(session, endpoint, objects, jsonResponse, new SocializeActionListener() {
+			@Override
+			public void onResult(RequestType type, SocializeResponse response) {
+				writeQueue.complete(ids);
+				if(listener != null) {
+					listener.onResult(type, response);
+				}
+			}
+			
+			@Override
+			public void onError(SocializeException error) {
+				if(WriteQueue.isTransient(error)) {
+					writeQueue.release(ids);
+					
+					if(logger != null && logger.isDebugEnabled()) {
+						logger.debug("Queued " + ids.size() + " write(s) to [" + endpoint + "] for retry");
+					}
+					
+					if(listener != null) {
+						if(isAnsweredWhenQueued()) {
+							listener.onResult(RequestType.POST, newQueuedResponse(objects));
+						}
+						else {
+							listener.onError(error);
+						}
+					}
+				}
+				else {
+					writeQueue.complete(ids);
+					if(listener != null) {
+						listener.onError(error);
+					}
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Creates the sender the write queue uses to replay queued objects.
+	 * @param jsonResponse
+	 * @return
+	 */
+	protected WriteSender newWriteSender(final boolean jsonResponse) {
+		return new WriteSender() {
+			@SuppressWarnings("unchecked")
+			@Override
+			public void send(SocializeSession session, String endpoint, List<Serializable> items) throws SocializeException {
+				post(session, endpoint, (List<T>) (List<?>) items, jsonResponse);
+			}
+		};
+	}
+	
+	/**
+	 * The endpoint this system queues writes against, or null if it doesn't queue writes.
+	 * @return
+	 */
+	protected String getQueuedEndpoint() {
+		return null;
+	}
+	
+	/**
+	 * True if a write left in the queue is answered with the local objects.  Systems whose callers rely on data only 
+	 * the server fills in return false, the listener then receives the error while the queue still delivers the write.
+	 * @return
+	 */
+	protected boolean isAnsweredWhenQueued() {
+		return true;
+	}
+	
+	/**
+	 * True if the queued endpoint responds with JSON.
+	 * @return
+	 */
+	protected boolean isQueuedJsonResponse() {
+		return true;
+	}
+	
+	// Goes through the public overload subclasses already intercept for JSON responses.
+	private void postListAsync(SocializeSession session, String endpoint, List<T> objects, boolean jsonResponse, SocializeActionListener listener) {
+		if(jsonResponse) {
+			postAsync(session, endpoint, objects, listener);
+		}
+		else {
+			postAsync(session, endpoint, objects, false, listener);
+		}
+	}
+	
+	/**
+	 * Returns true if the objects can be delivered later.  
+	 * Actions propagated by the device itself need the share links in the server response so they are never queued.
+	 * @param objects
+	 * @return
+	 */
+	protected boolean isQueueable(List<T> objects) {
+		for (T object : objects) {
+			if(object instanceof SocializeAction && ((SocializeAction) object).getPropagationInfoRequest() != null) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	protected SocializeEntityResponse<T> newQueuedResponse(List<T> objects) {
+		SocializeEntityResponse<T> response = null;
+		
+		if(responseFactory != null) {
+			response = responseFactory.newEntityResponse();
+		}
+		else {
+			response = new SocializeEntityResponse<T>();
+		}
+		
+		for (T object : objects) {
+			response.addResult(object);
+		}
+		
+		return response;
 	}
 
 	/**
@@ -377,7 +539,7 @@ public class SocializeApi<T extends SocializeObject, P extends SocializeProvider
 		request.setRequestType(RequestType.PUT_AS_POST);
 		request.setEndpoint(endpoint);
 		request.setObject(object);
-		poster.execute(request);
+		execute(poster, request);
 	}
 
 	public void authenticateAsync(
@@ -505,7 +667,7 @@ public class SocializeApi<T extends SocializeObject, P extends SocializeProvider
 	
 	protected void handleRegularAuth(Context context, SocializeAuthRequest request, SocializeActionListener wrapper, SocializeAuthListener listener, String key, String secret) {
 		AsyncAuthenicator authenicator = new AsyncAuthenicator(context, null, wrapper);
-		authenicator.execute(request);
+		execute(authenicator, request);
 	}
 	
 	protected void handle3rdPartyAuth(
@@ -642,6 +804,132 @@ public class SocializeApi<T extends SocializeObject, P extends SocializeProvider
 	public void setLocationProvider(SocializeLocationProvider locationProvider) {
 		this.locationProvider = locationProvider;
 	}
+	
+	public void setRequestExecutor(RequestExecutor requestExecutor) {
+		this.requestExecutor = requestExecutor;
+	}
+	
+	public void setWriteQueue(WriteQueue writeQueue) {
+		this.writeQueue = writeQueue;
+		
+		String endpoint = getQueuedEndpoint();
+		
+		if(writeQueue != null && endpoint != null) {
+			// Registered when wired so writes left by an earlier process are replayed without waiting for a new one.
+			writeQueue.register(endpoint, newWriteSender(isQueuedJsonResponse()));
+		}
+	}
+	
+	/**
+	 * Determines the queue lane for the request.  Writes the user is waiting on run ahead of reads.
+	 * @param request
+	 * @return
+	 */
+	protected Lane getLane(SocializeRequest request) {
+		switch(request.getRequestType()) {
+			case GET:
+			case LIST:
+			case LIST_AS_GET:
+			case LIST_WITHOUT_ENTITY:
+				return Lane.READ;
+			default:
+				return Lane.WRITE;
+		}
+	}
+	
+	protected <Params extends SocializeRequest> void execute(final AbstractAsyncProcess<Params, ?, ?> task, Params request) {
+		try {
+			// executeOnExecutor is only available from Honeycomb, older devices keep the platform pool.
+			if(requestExecutor != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+				Runnable onReject = new Runnable() {
+					@Override
+					public void run() {
+						// Cancelling the task (not just its future) is what delivers onCancelled on API 16+.
+						task.rejected = true;
+						task.cancel(false);
+					}
+				};
+				task.executeOnExecutor(requestExecutor.forRequest(request.getRequestType(), request.getEndpoint(), getLane(request), onReject), request);
+			}
+			else {
+				task.execute(request);
+			}
+		}
+		catch (RuntimeException e) {
+			// The platform pool throws RejectedExecutionException when its queue is full
+			if(logger != null) {
+				logger.error("Failed to execute request to [" + request.getEndpoint() + "]", e);
+			}
+			task.onExecuteFailed(e);
+		}
+	}
+
+	/**
+	 * Executes a read, sharing the round-trip with an identical read already in flight on the same session.
+	 * @param getter
+	 * @param request
+	 */
+	protected void executeGet(AsyncGetter getter, SocializeGetRequest request) {
+		if(isCoalesced(request.getRequestType())) {
+			Flight flight = new Flight(getter.session, request);
+			if(!coalescer.join(flight, getter.listener)) {
+				if(logger != null && logger.isDebugEnabled()) {
+					logger.debug("Joined in-flight request to [" + request.getEndpoint() + "]");
+				}
+				return;
+			}
+			getter.flight = flight;
+		}
+		execute(getter, request);
+	}
+	
+	protected boolean isCoalesced(RequestType type) {
+		switch (type) {
+			case GET:
+			case LIST:
+			case LIST_AS_GET:
+			case LIST_WITHOUT_ENTITY:
+				return true;
+			default:
+				return false;
+		}
+	}
+	
+	/**
+	 * Copies the response for a follower of a coalesced request so listeners cannot modify each other's result list.
+	 * The entities themselves are shared.
+	 */
+	protected SocializeEntityResponse<T> copy(SocializeEntityResponse<T> source) {
+		if(source == null) {
+			return null;
+		}
+		
+		SocializeEntityResponse<T> response = null;
+		
+		if(responseFactory != null) {
+			response = responseFactory.newEntityResponse();
+		}
+		else {
+			response = new SocializeEntityResponse<T>();
+		}
+		
+		response.setResultsExpected(source.isResultsExpected());
+		
+		ListResult<T> results = source.getResults();
+		
+		if(results != null) {
+			ListResult<T> copy = new ListResult<T>();
+			if(results.getItems() != null) {
+				copy.setItems(new ArrayList<T>(results.getItems()));
+			}
+			copy.setErrors(results.getErrors());
+			copy.setTotalCount(results.getTotalCount());
+			copy.setSingleObject(results.getSingleObject());
+			response.setResults(copy);
+		}
+		
+		return response;
+	}
 
 	abstract class AbstractAsyncProcess<Params extends SocializeRequest, Progress, Result extends SocializeResponse> extends ManagedAsyncTask<Params, Progress, Result> {
 
@@ -650,6 +938,7 @@ public class SocializeApi<T extends SocializeObject, P extends SocializeProvider
 		Exception error = null;
 		SocializeActionListener listener = null;
 		Context context;
+		volatile boolean rejected = false;
 		
 		public AbstractAsyncProcess(Context context, SocializeSession session, SocializeActionListener listener) {
 			this(session, listener);
@@ -680,6 +969,21 @@ public class SocializeApi<T extends SocializeObject, P extends SocializeProvider
 		
 		@Override
 		protected void onPostExecuteManaged(Result result) {
+			if(rejected) {
+				notifyCancelled(listener);
+			}
+			else {
+				notifyResult(listener, result);
+			}
+		}
+
+		@Override
+		protected void onCancelled() {
+			super.onCancelled();
+			notifyCancelled(listener);
+		}
+		
+		protected void notifyResult(SocializeActionListener listener, Result result) {
 			if(listener != null) {
 				if(error != null) {
 					listener.onError(SocializeException.wrap(error));
@@ -689,6 +993,23 @@ public class SocializeApi<T extends SocializeObject, P extends SocializeProvider
 				}
 			}
 		}
+		
+		/**
+		 * Called on the calling thread when the task could not be started.
+		 * @param e
+		 */
+		protected void onExecuteFailed(Exception e) {
+			if(listener != null) {
+				listener.onError(SocializeException.wrap(e));
+			}
+		}
+		
+		protected void notifyCancelled(SocializeActionListener listener) {
+			// Only report requests the executor turned away, not those cancelled on shutdown.
+			if(rejected && listener != null) {
+				listener.onError(new SocializeException("Request rejected, too many requests pending"));
+			}
+		}
 
 		protected abstract Result doInBackground(Params param) throws SocializeException;
 	}
@@ -862,9 +1183,56 @@ public class SocializeApi<T extends SocializeObject, P extends SocializeProvider
 
 	class AsyncGetter extends AbstractAsyncProcess<SocializeGetRequest, Void, SocializeEntityResponse<T>> {
 
+		Flight flight;
+		
 		public AsyncGetter(SocializeSession session, SocializeActionListener listener) {
 			super(session, listener);
 		}
+		
+		@Override
+		protected void onPostExecuteManaged(SocializeEntityResponse<T> result) {
+			// Land before notifying so a listener repeating the request starts a new flight.
+			List<SocializeActionListener> followers = land();
+			super.onPostExecuteManaged(result);
+			for (SocializeActionListener follower : followers) {
+				if(rejected) {
+					notifyCancelled(follower);
+				}
+				else {
+					notifyResult(follower, copy(result));
+				}
+			}
+		}
+		
+		@Override
+		protected void onCancelled() {
+			List<SocializeActionListener> followers = land();
+			super.onCancelled();
+			for (SocializeActionListener follower : followers) {
+				notifyCancelled(follower);
+			}
+		}
+		
+		@Override
+		protected void onExecuteFailed(Exception e) {
+			// The flight was registered before execution, followers would otherwise wait forever.
+			List<SocializeActionListener> followers = land();
+			super.onExecuteFailed(e);
+			for (SocializeActionListener follower : followers) {
+				if(follower != null) {
+					follower.onError(SocializeException.wrap(e));
+				}
+			}
+		}
+		
+		List<SocializeActionListener> land() {
+			if(flight != null) {
+				List<SocializeActionListener> followers = coalescer.land(flight);
+				flight = null;
+				return followers;
+			}
+			return Collections.emptyList();
+		}
 
 		@Override
 		protected SocializeEntityResponse<T> doInBackground(SocializeGetRequest request) throws SocializeException {
@@ -910,4 +1278,34 @@ public class SocializeApi<T extends SocializeObject, P extends SocializeProvider
 			return response;
 		}
 	}
+	
+	/**
+	 * Identity of a coalesced read.  Requests only coalesce within the same session.
+	 */
+	static final class Flight {
+		
+		final SocializeSession session;
+		final SocializeGetRequest request;
+		
+		Flight(SocializeSession session, SocializeGetRequest request) {
+			super();
+			this.session = session;
+			this.request = request;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(session) + request.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Flight))
+				return false;
+			Flight other = (Flight) obj;
+			return session == other.session && request.equals(other.request);
+		}
+	}
 }
@@ -92,6 +92,7 @@ public class SocializeGetRequest extends SocializeRequest {
 		final int prime = 31;
 		int result = super.hashCode();
 		result = prime * result + endIndex;
+		result = prime * result + ((extraParams == null) ? 0 : extraParams.hashCode());
 		result = prime * result + ((idKey == null) ? 0 : idKey.hashCode());
 		result = prime * result + Arrays.hashCode(ids);
 		result = prime * result + ((key == null) ? 0 : key.hashCode());
@@ -110,6 +111,12 @@ public class SocializeGetRequest extends SocializeRequest {
 		SocializeGetRequest other = (SocializeGetRequest) obj;
 		if (endIndex != other.endIndex)
 			return false;
+		if (extraParams == null) {
+			if (other.extraParams != null)
+				return false;
+		}
+		else if (!extraParams.equals(other.extraParams))
+			return false;
 		if (idKey == null) {
 			if (other.idKey != null)
 				return false;
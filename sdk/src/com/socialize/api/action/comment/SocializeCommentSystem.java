@@ -55,7 +55,7 @@ public class SocializeCommentSystem extends SocializeApi<Comment, SocializeProvi
 		List<Comment> list = new ArrayList<Comment>(1);
 		list.add(comment);
 		
-		postAsync(session, ENDPOINT, list, listener);
+		postQueued(session, ENDPOINT, list, listener);
 	}
 	
 	@Override
@@ -139,5 +139,9 @@ public class SocializeCommentSystem extends SocializeApi<Comment, SocializeProvi
 	public void getComment(SocializeSession session, long id, CommentListener listener) {
 		getAsync(session, ENDPOINT, String.valueOf(id), listener);
 	}
-
+	
+	@Override
+	protected String getQueuedEndpoint() {
+		return ENDPOINT;
+	}
 }
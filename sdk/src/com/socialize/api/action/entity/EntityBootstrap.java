@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.api.action.entity;
+
+import com.socialize.entity.Entity;
+import com.socialize.entity.Like;
+
+/**
+ * The combined result of the requests needed to display an entity: its stats and whether the current user likes it.
+ */
+public class EntityBootstrap {
+
+	private Entity entity;
+	private Like like;
+	private long latency;
+	
+	public EntityBootstrap(Entity entity, Like like, long latency) {
+		super();
+		this.entity = entity;
+		this.like = like;
+		this.latency = latency;
+	}
+
+	public Entity getEntity() {
+		return entity;
+	}
+	
+	/**
+	 * @return The current user's like for the entity, or null if the user has not liked it.
+	 */
+	public Like getLike() {
+		return like;
+	}
+	
+	public boolean isLiked() {
+		return like != null;
+	}
+	
+	/**
+	 * @return The wall time in milliseconds from the start of the bootstrap until all requests completed.
+	 */
+	public long getLatency() {
+		return latency;
+	}
+}
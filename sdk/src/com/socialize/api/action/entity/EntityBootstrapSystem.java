@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.api.action.entity;
+
+import com.socialize.api.SocializeSession;
+import com.socialize.entity.Entity;
+import com.socialize.listener.entity.EntityBootstrapListener;
+
+/**
+ * Loads everything needed to display an entity (view, like state and stats) as a single operation.
+ */
+public interface EntityBootstrapSystem {
+	
+	/**
+	 * Issues the requests needed to display the entity concurrently and calls the listener once with the combined result.
+	 * @param session The current session.
+	 * @param entity The entity being displayed.
+	 * @param addView If true a view is recorded for the entity.  The stats are taken from the view response where possible.
+	 * @param getLike If true the current user's like for the entity is retrieved.
+	 * @param listener A listener to handle the result.
+	 */
+	public void bootstrap(SocializeSession session, Entity entity, boolean addView, boolean getLike, EntityBootstrapListener listener);
+	
+	/**
+	 * @return The latency in milliseconds of the most recently completed bootstrap.
+	 */
+	public long getLastLatency();
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.api.action.entity;
+
+import com.socialize.api.SocializeSession;
+import com.socialize.api.action.like.LikeSystem;
+import com.socialize.api.action.view.ViewSystem;
+import com.socialize.entity.Entity;
+import com.socialize.entity.Like;
+import com.socialize.entity.View;
+import com.socialize.error.SocializeApiError;
+import com.socialize.error.SocializeException;
+import com.socialize.listener.entity.EntityBootstrapListener;
+import com.socialize.listener.entity.EntityGetListener;
+import com.socialize.listener.like.LikeGetListener;
+import com.socialize.listener.view.ViewAddListener;
+import com.socialize.log.SocializeLogger;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Issues the view and like requests for an entity together rather than one after the other.  
+ * Both responses carry the entity with its stats, so the separate entity lookup is only made when neither could provide it.
+ */
+public class SocializeEntityBootstrapSystem implements EntityBootstrapSystem {
+	
+	private ViewSystem viewSystem;
+	private LikeSystem likeSystem;
+	private EntitySystem entitySystem;
+	private SocializeLogger logger;
+	
+	private volatile long lastLatency = -1;
+
+	/* (non-Javadoc)
+	 * @see com.socialize.api.action.entity.EntityBootstrapSystem#bootstrap(com.socialize.api.SocializeSession, com.socialize.entity.Entity, boolean, boolean, com.socialize.listener.entity.EntityBootstrapListener)
+	 */
+	@Override
+	public void bootstrap(SocializeSession session, Entity entity, boolean addView, boolean getLike, EntityBootstrapListener listener) {
+		
+		int legs = 0;
+		
+		if(addView) legs++;
+		if(getLike) legs++;
+		
+		final Bootstrap bootstrap = new Bootstrap(session, entity.getKey(), legs, listener);
+		
+		if(addView) {
+			viewSystem.addView(session, entity, null, new ViewAddListener() {
+				@Override
+				public void onCreate(View view) {
+					bootstrap.onView(view);
+				}
+				
+				@Override
+				public void onError(SocializeException error) {
+					if(logger != null) {
+						logger.error("Error recording view", error);
+					}
+					bootstrap.onView(null);
+				}
+			});
+		}
+		
+		if(getLike) {
+			likeSystem.getLike(session, entity.getKey(), new LikeGetListener() {
+				@Override
+				public void onGet(Like like) {
+					bootstrap.onLike(like, null);
+				}
+				
+				@Override
+				public void onError(SocializeException error) {
+					if(error instanceof SocializeApiError && ((SocializeApiError)error).getResultCode() == 404) {
+						// Not liked
+						bootstrap.onLike(null, null);
+					}
+					else {
+						bootstrap.onLike(null, error);
+					}
+				}
+			});
+		}
+		
+		if(legs == 0) {
+			bootstrap.finish();
+		}
+	}
+	
+	@Override
+	public long getLastLatency() {
+		return lastLatency;
+	}
+
+	public void setViewSystem(ViewSystem viewSystem) {
+		this.viewSystem = viewSystem;
+	}
+	
+	public void setLikeSystem(LikeSystem likeSystem) {
+		this.likeSystem = likeSystem;
+	}
+	
+	public void setEntitySystem(EntitySystem entitySystem) {
+		this.entitySystem = entitySystem;
+	}
+	
+	public void setLogger(SocializeLogger logger) {
+		this.logger = logger;
+	}
+	
+	class Bootstrap {
+		
+		final SocializeSession session;
+		final String key;
+		final EntityBootstrapListener listener;
+		final AtomicInteger pending;
+		final long start = System.currentTimeMillis();
+		
+		volatile Entity viewEntity;
+		volatile Like like;
+		volatile SocializeException error;
+		
+		Bootstrap(SocializeSession session, String key, int legs, EntityBootstrapListener listener) {
+			super();
+			this.session = session;
+			this.key = key;
+			this.listener = listener;
+			this.pending = new AtomicInteger(legs);
+		}
+		
+		void onView(View view) {
+			if(view != null) {
+				viewEntity = view.getEntity();
+			}
+			arrive();
+		}
+		
+		void onLike(Like like, SocializeException error) {
+			this.like = like;
+			this.error = error;
+			arrive();
+		}
+		
+		void arrive() {
+			if(pending.decrementAndGet() == 0) {
+				finish();
+			}
+		}
+		
+		void finish() {
+			if(error != null) {
+				// A 404 is reported as "not liked", anything else means the like state is unknown
+				if(listener != null) {
+					listener.onError(error);
+				}
+				return;
+			}
+			
+			Entity entity = (like != null) ? like.getEntity() : viewEntity;
+			
+			if(entity != null) {
+				deliver(entity);
+			}
+			else {
+				entitySystem.getEntity(session, key, new EntityGetListener() {
+					@Override
+					public void onGet(Entity entity) {
+						deliver(entity);
+					}
+					
+					@Override
+					public void onError(SocializeException e) {
+						if(listener != null) {
+							listener.onError(e);
+						}
+					}
+				});
+			}
+		}
+		
+		void deliver(Entity entity) {
+			long latency = System.currentTimeMillis() - start;
+			
+			lastLatency = latency;
+			
+			if(logger != null && logger.isDebugEnabled()) {
+				logger.debug("Entity bootstrap for [" +
+						key +
+						"] completed in " +
+						latency +
+						"ms");
+			}
+			
+			if(listener != null) {
+				listener.onBootstrap(new EntityBootstrap(entity, like, latency));
+			}
+		}
+	}
+}
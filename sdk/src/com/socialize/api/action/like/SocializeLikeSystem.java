@@ -61,7 +61,7 @@ public class SocializeLikeSystem extends SocializeApi<Like, SocializeProvider<Li
 		List<Like> list = new ArrayList<Like>(1);
 		list.add(c);
 		
-		postAsync(session, ENDPOINT, list, listener);
+		postQueued(session, ENDPOINT, list, listener);
 	}	
 	
 	/* (non-Javadoc)
@@ -192,6 +192,11 @@ public class SocializeLikeSystem extends SocializeApi<Like, SocializeProvider<Li
 	public void getLike(SocializeSession session, long id, LikeListener listener) {
 		getAsync(session, ENDPOINT, String.valueOf(id), listener);
 	}
+	
+	@Override
+	protected String getQueuedEndpoint() {
+		return ENDPOINT;
+	}
 }
 	
 	
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.api.action.share;
+
+import android.app.Activity;
+import android.location.Location;
+import com.socialize.api.SocializeSession;
+import com.socialize.api.action.ShareType;
+import com.socialize.api.action.share.ShareResult.Status;
+import com.socialize.entity.Share;
+import com.socialize.log.SocializeLogger;
+import com.socialize.networks.PostData;
+import com.socialize.networks.SocialNetwork;
+import com.socialize.networks.SocialNetworkListener;
+import org.json.JSONObject;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Propagates a share to several social networks at once.  Every network post is dispatched 
+ * without waiting on the others and the outcome of each is collected into a single {@link ShareResult}
+ * which is reported when the last network completes.
+ */
+public class ShareFanout {
+	
+	private ShareSystem shareSystem;
+	private SocializeLogger logger;
+	
+	private final AtomicLongArray posts;
+	private final AtomicLongArray failures;
+	private final AtomicLongArray latencyTotal;
+	private final AtomicLongArray latencyMax;
+	
+	public ShareFanout() {
+		super();
+		int networks = SocialNetwork.values().length;
+		posts = new AtomicLongArray(networks);
+		failures = new AtomicLongArray(networks);
+		latencyTotal = new AtomicLongArray(networks);
+		latencyMax = new AtomicLongArray(networks);
+	}
+
+	/**
+	 * Posts an existing share to each of the given networks.
+	 * @param context The current context.
+	 * @param session The current session.
+	 * @param share The share, as returned from the Socialize API.
+	 * @param text The text of the share.
+	 * @param location Optional location.
+	 * @param listener Receives the callbacks from each network, followed by a single call to onShareComplete.
+	 * @param networks The networks to post to.
+	 * @return The result, which is complete once every network has reported.
+	 */
+	public ShareResult share(Activity context, SocializeSession session, Share share, String text, Location location, SocialNetworkShareListener listener, SocialNetwork...networks) {
+		
+		ShareResult result = new ShareResult(share, now(), (networks == null) ? new SocialNetwork[0] : networks);
+		
+		if(result.isComplete()) {
+			onComplete(result, listener);
+			return result;
+		}
+		
+		List<SocialNetwork> targets = result.getNetworks();
+		
+		for (SocialNetwork network : targets) {
+			NetworkListener networkListener = new NetworkListener(network, result, listener);
+			try {
+				shareSystem.share(context, session, share, text, location, ShareType.valueOf(network), networkListener);
+			}
+			catch (Exception e) {
+				networkListener.onNetworkError(context, network, e);
+			}
+		}
+		
+		return result;
+	}
+	
+	protected void onNetworkComplete(ShareResult result, SocialNetwork network, Status status, JSONObject response, Exception error, SocialNetworkShareListener listener) {
+		int remaining = result.complete(network, status, now(), response, error);
+		
+		if(remaining >= 0) {
+			record(network, status, result.getLatency(network));
+			
+			if(remaining == 0) {
+				onComplete(result, listener);
+			}
+		}
+	}
+	
+	protected void onComplete(ShareResult result, SocialNetworkShareListener listener) {
+		if(logger != null && logger.isDebugEnabled()) {
+			StringBuilder builder = new StringBuilder();
+			builder.append("Share completed in ");
+			builder.append(result.getElapsed());
+			builder.append("ms");
+			
+			for (SocialNetwork network : result.getNetworks()) {
+				builder.append(" [");
+				builder.append(network.name());
+				builder.append(":");
+				builder.append(result.getStatus(network).name());
+				builder.append(":");
+				builder.append(result.getLatency(network));
+				builder.append("ms]");
+			}
+			
+			logger.debug(builder.toString());
+		}
+		
+		if(listener != null) {
+			listener.onShareComplete(result);
+		}
+	}
+	
+	protected void record(SocialNetwork network, Status status, long latency) {
+		int index = network.ordinal();
+		
+		posts.incrementAndGet(index);
+		
+		if(status == Status.FAILED) {
+			failures.incrementAndGet(index);
+		}
+		
+		if(status != Status.CANCELLED) {
+			latencyTotal.addAndGet(index, latency);
+			
+			long max;
+			do {
+				max = latencyMax.get(index);
+			}
+			while(latency > max && !latencyMax.compareAndSet(index, max, latency));
+		}
+	}
+	
+	/**
+	 * @return The number of posts to the network that have completed, including failures and cancellations.
+	 */
+	public long getPostCount(SocialNetwork network) {
+		return posts.get(network.ordinal());
+	}
+	
+	public long getFailureCount(SocialNetwork network) {
+		return failures.get(network.ordinal());
+	}
+	
+	/**
+	 * @return The mean time in milliseconds posts to the network took to succeed or fail.
+	 */
+	public long getAverageLatency(SocialNetwork network) {
+		int index = network.ordinal();
+		long count = posts.get(index);
+		return (count == 0) ? 0 : latencyTotal.get(index) / count;
+	}
+	
+	public long getMaxLatency(SocialNetwork network) {
+		return latencyMax.get(network.ordinal());
+	}
+	
+	// Mockable
+	protected long now() {
+		return System.currentTimeMillis();
+	}
+	
+	public void setShareSystem(ShareSystem shareSystem) {
+		this.shareSystem = shareSystem;
+	}
+	
+	public void setLogger(SocializeLogger logger) {
+		this.logger = logger;
+	}
+	
+	class NetworkListener implements SocialNetworkListener {
+		
+		final SocialNetwork network;
+		final ShareResult result;
+		final SocialNetworkShareListener delegate;
+		
+		NetworkListener(SocialNetwork network, ShareResult result, SocialNetworkShareListener delegate) {
+			super();
+			this.network = network;
+			this.result = result;
+			this.delegate = delegate;
+		}
+
+		@Override
+		public boolean onBeforePost(Activity parent, SocialNetwork socialNetwork, PostData postData) {
+			boolean handled = (delegate != null) && delegate.onBeforePost(parent, socialNetwork, postData);
+			
+			// The listener takes over the post, so no further callback will arrive for this network.
+			if(handled) {
+				onNetworkComplete(result, network, Status.CANCELLED, null, null, delegate);
+			}
+			
+			return handled;
+		}
+
+		@Override
+		public void onCancel() {
+			if(delegate != null) {
+				delegate.onCancel();
+			}
+			onNetworkComplete(result, network, Status.CANCELLED, null, null, delegate);
+		}
+
+		@Override
+		public void onNetworkError(Activity context, SocialNetwork socialNetwork, Exception error) {
+			if(delegate != null) {
+				delegate.onNetworkError(context, socialNetwork, error);
+			}
+			onNetworkComplete(result, network, Status.FAILED, null, error, delegate);
+		}
+
+		@Override
+		public void onAfterPost(Activity parent, SocialNetwork socialNetwork, JSONObject responseObject) {
+			if(delegate != null) {
+				delegate.onAfterPost(parent, socialNetwork, responseObject);
+			}
+			onNetworkComplete(result, network, Status.SUCCESS, responseObject, null, delegate);
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.api.action.share;
+
+import com.socialize.entity.Share;
+import com.socialize.networks.SocialNetwork;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The aggregated outcome of a share sent to one or more social networks.
+ */
+public class ShareResult {
+	
+	public static enum Status {PENDING, SUCCESS, FAILED, CANCELLED};
+	
+	private final Share share;
+	private final long startTime;
+	private final Map<SocialNetwork, Outcome> outcomes = new EnumMap<SocialNetwork, Outcome>(SocialNetwork.class);
+	
+	private int pending;
+	private long endTime;
+	
+	public ShareResult(Share share, long startTime, SocialNetwork...networks) {
+		super();
+		this.share = share;
+		this.startTime = startTime;
+		
+		for (SocialNetwork network : networks) {
+			if(!outcomes.containsKey(network)) {
+				outcomes.put(network, new Outcome());
+				pending++;
+			}
+		}
+		
+		if(pending == 0) {
+			endTime = startTime;
+		}
+	}
+	
+	/**
+	 * Records the outcome for the given network.  Only the first outcome reported for each network is kept.
+	 * @return The number of networks still outstanding, or -1 if the outcome was ignored.
+	 */
+	synchronized int complete(SocialNetwork network, Status status, long time, JSONObject response, Exception error) {
+		Outcome outcome = outcomes.get(network);
+		
+		if(outcome == null || outcome.status != Status.PENDING) {
+			return -1;
+		}
+		
+		outcome.status = status;
+		outcome.latency = time - startTime;
+		outcome.response = response;
+		outcome.error = error;
+		
+		if(--pending == 0) {
+			endTime = time;
+		}
+		
+		return pending;
+	}
+	
+	public Share getShare() {
+		return share;
+	}
+	
+	public synchronized boolean isComplete() {
+		return pending == 0;
+	}
+	
+	/**
+	 * @return The time in milliseconds from dispatch until the last network reported, or -1 if still pending.
+	 */
+	public synchronized long getElapsed() {
+		return (pending == 0) ? endTime - startTime : -1;
+	}
+	
+	public synchronized List<SocialNetwork> getNetworks() {
+		return new ArrayList<SocialNetwork>(outcomes.keySet());
+	}
+	
+	public synchronized List<SocialNetwork> getNetworks(Status status) {
+		List<SocialNetwork> networks = new ArrayList<SocialNetwork>(outcomes.size());
+		for (Map.Entry<SocialNetwork, Outcome> entry : outcomes.entrySet()) {
+			if(entry.getValue().status == status) {
+				networks.add(entry.getKey());
+			}
+		}
+		return networks;
+	}
+	
+	public synchronized boolean isSuccess() {
+		return pending == 0 && getNetworks(Status.SUCCESS).size() == outcomes.size();
+	}
+	
+	public synchronized Status getStatus(SocialNetwork network) {
+		Outcome outcome = outcomes.get(network);
+		return (outcome == null) ? null : outcome.status;
+	}
+	
+	/**
+	 * @return The time in milliseconds from dispatch until the network reported, or -1 if still pending.
+	 */
+	public synchronized long getLatency(SocialNetwork network) {
+		Outcome outcome = outcomes.get(network);
+		return (outcome == null || outcome.status == Status.PENDING) ? -1 : outcome.latency;
+	}
+	
+	public synchronized JSONObject getResponse(SocialNetwork network) {
+		Outcome outcome = outcomes.get(network);
+		return (outcome == null) ? null : outcome.response;
+	}
+	
+	public synchronized Exception getError(SocialNetwork network) {
+		Outcome outcome = outcomes.get(network);
+		return (outcome == null) ? null : outcome.error;
+	}
+	
+	private static class Outcome {
+		Status status = Status.PENDING;
+		long latency;
+		JSONObject response;
+		Exception error;
+	}
+}
@@ -51,5 +51,11 @@ public abstract class SocialNetworkShareListener extends ShareAddListener implem
 	}
 
 	public void onAfterPost(Activity parent, SocialNetwork socialNetwork, JSONObject responseObject) {}
+	
+	/**
+	 * Called once every network the share was sent to has reported its outcome.
+	 * @param result The outcome of each network.
+	 */
+	public void onShareComplete(ShareResult result) {}
 
 }
@@ -183,7 +183,7 @@ public class SocializeShareSystem extends SocializeApi<Share, SocializeProvider<
 		List<Share> list = new ArrayList<Share>(1);
 		list.add(c);
 		
-		postAsync(session, ENDPOINT, list, listener);
+		postQueued(session, ENDPOINT, list, listener);
 	}
 	
 	/* (non-Javadoc)
@@ -303,5 +303,10 @@ public class SocializeShareSystem extends SocializeApi<Share, SocializeProvider<
 
 	public void setLogger(SocializeLogger logger) {
 		this.logger = logger;
-	}	
+	}
+	
+	@Override
+	protected String getQueuedEndpoint() {
+		return ENDPOINT;
+	}
 }
@@ -55,6 +55,7 @@ import org.json.JSONObject;
 public class SocializeShareUtils extends SocializeActionUtilsBase implements ShareUtilsProxy {
 	
 	private ShareSystem shareSystem;
+	private ShareFanout shareFanout;
 	private IShareDialogFactory shareDialogFactory;
 	private IAuthDialogFactory authDialogFactory;
 	
@@ -215,9 +216,14 @@ public class SocializeShareUtils extends SocializeActionUtilsBase implements Sha
 					socialNetworkListener.onCreate(share);
 				}
 				
-				if(share != null && shareSystem != null && networks != null && networks.length > 0) {
-					for (final SocialNetwork network : networks) {
-						shareSystem.share(context, getSocialize().getSession(), share, fText, null, ShareType.valueOf(network), socialNetworkListener);
+				if(share != null && networks != null && networks.length > 0) {
+					if(shareFanout != null) {
+						shareFanout.share(context, getSocialize().getSession(), share, fText, null, socialNetworkListener, networks);
+					}
+					else if(shareSystem != null) {
+						for (final SocialNetwork network : networks) {
+							shareSystem.share(context, getSocialize().getSession(), share, fText, null, ShareType.valueOf(network), socialNetworkListener);
+						}
 					}
 				}
 				
@@ -459,6 +465,10 @@ public class SocializeShareUtils extends SocializeActionUtilsBase implements Sha
 		this.shareSystem = shareSystem;
 	}
 
+	public void setShareFanout(ShareFanout shareFanout) {
+		this.shareFanout = shareFanout;
+	}
+	
 	public void setShareDialogFactory(IShareDialogFactory shareDialogFactory) {
 		this.shareDialogFactory = shareDialogFactory;
 	}
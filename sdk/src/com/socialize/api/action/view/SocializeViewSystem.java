@@ -54,11 +54,22 @@ public class SocializeViewSystem extends SocializeApi<View, SocializeProvider<Vi
 		List<View> list = new ArrayList<View>(1);
 		list.add(c);
 		
-		postAsync(session, ENDPOINT, list, listener);
+		postQueued(session, ENDPOINT, list, listener);
 	}
 
 	@Override
 	public void getView(SocializeSession session, long id, ViewListener listener) {
 		getAsync(session, ENDPOINT, String.valueOf(id), listener);
-	}	
+	}
+	
+	@Override
+	protected String getQueuedEndpoint() {
+		return ENDPOINT;
+	}
+	
+	// The view response carries the entity stats, a locally built view has none.
+	@Override
+	protected boolean isAnsweredWhenQueued() {
+		return false;
+	}
 }
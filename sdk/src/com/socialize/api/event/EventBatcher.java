@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.api.event;
+
+import com.socialize.api.SocializeSession;
+import com.socialize.api.queue.WriteQueue;
+import com.socialize.api.queue.WriteSender;
+import com.socialize.error.SocializeException;
+import com.socialize.log.SocializeLogger;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Buffers SDK events and sends them to the server in batches.  
+ * A batch is sent when maxBatchSize events are waiting, when the oldest event is maxAge old, or when {@link #flush()} is called 
+ * as the app goes to the background.  Each event is also journaled in the {@link WriteQueue} as it is added, so it survives 
+ * process death and is retried from there when a batch fails to send.  Journaling only appends in memory, the queue writes 
+ * the journal to disk from its own thread.
+ */
+public class EventBatcher {
+	
+	public static final int DEFAULT_MAX_BATCH_SIZE = 20;
+	public static final long DEFAULT_MAX_AGE = 60 * 1000;
+	public static final int DEFAULT_MAX_BUFFERED = 200;
+	
+	private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+	private long maxAge = DEFAULT_MAX_AGE;
+	private int maxBuffered = DEFAULT_MAX_BUFFERED;
+	
+	private WriteQueue writeQueue;
+	private SocializeLogger logger;
+	
+	private final Object lock = new Object();
+	private List<Buffered> buffer = new ArrayList<Buffered>();
+	private SocializeSession session;
+	private WriteSender sender;
+	
+	private Timer timer;
+	private boolean scheduled = false;
+	private boolean destroyed = false;
+	
+	private final AtomicInteger bufferedCount = new AtomicInteger(0);
+	private final AtomicInteger flushedCount = new AtomicInteger(0);
+	private final AtomicInteger droppedCount = new AtomicInteger(0);
+	
+	/**
+	 * Buffers an event.
+	 * @param session The session to send the event with.
+	 * @param event The event.
+	 * @param sender Sends a batch of events.
+	 * @return false if the buffer is full and the event was dropped.
+	 */
+	public boolean add(SocializeSession session, SocializeEvent event, WriteSender sender) {
+		synchronized (lock) {
+			if(destroyed || buffer.size() >= maxBuffered) {
+				droppedCount.incrementAndGet();
+				return false;
+			}
+			
+			this.session = session;
+			this.sender = sender;
+			
+			List<Long> ids = null;
+			
+			if(writeQueue != null) {
+				ids = writeQueue.add(EventSystem.ENDPOINT, Collections.singletonList(event), sender);
+			}
+			
+			buffer.add(new Buffered(event, ids));
+			bufferedCount.incrementAndGet();
+			
+			if(buffer.size() >= maxBatchSize) {
+				schedule(0);
+			}
+			else if(buffer.size() == 1) {
+				schedule(maxAge);
+			}
+			
+			return true;
+		}
+	}
+	
+	/**
+	 * Sends any buffered events in the background.
+	 */
+	public void flush() {
+		synchronized (lock) {
+			if(!buffer.isEmpty()) {
+				schedule(0);
+			}
+		}
+	}
+	
+	/**
+	 * Sends the buffered events as a single request on the calling thread.
+	 * @return The number of events sent.
+	 */
+	public int flushNow() {
+		List<Buffered> batch;
+		SocializeSession session;
+		WriteSender sender;
+		
+		synchronized (lock) {
+			if(buffer.isEmpty()) {
+				return 0;
+			}
+			batch = buffer;
+			buffer = new ArrayList<Buffered>();
+			session = this.session;
+			sender = this.sender;
+		}
+		
+		List<Serializable> events = new ArrayList<Serializable>(batch.size());
+		List<Long> ids = new ArrayList<Long>(batch.size());
+		
+		for (Buffered buffered : batch) {
+			events.add(buffered.event);
+			if(buffered.ids != null) {
+				ids.addAll(buffered.ids);
+			}
+		}
+		
+		try {
+			sender.send(session, EventSystem.ENDPOINT, events);
+			
+			if(!ids.isEmpty()) {
+				writeQueue.complete(ids);
+			}
+			
+			flushedCount.addAndGet(events.size());
+			
+			return events.size();
+		}
+		catch (SocializeException e) {
+			if(WriteQueue.isTransient(e)) {
+				if(!ids.isEmpty()) {
+					// Journaled events are retried by the queue.
+					writeQueue.release(ids);
+				}
+				requeue(batch);
+			}
+			else {
+				if(!ids.isEmpty()) {
+					writeQueue.complete(ids);
+				}
+				droppedCount.addAndGet(events.size());
+				handleError("Server rejected " + events.size() + " event(s), discarding", e);
+			}
+			return 0;
+		}
+		catch (RuntimeException e) {
+			if(!ids.isEmpty()) {
+				writeQueue.complete(ids);
+			}
+			droppedCount.addAndGet(events.size());
+			handleError("Unable to send " + events.size() + " event(s), discarding", e);
+			return 0;
+		}
+	}
+	
+	/**
+	 * Total number of events accepted into the buffer.
+	 * @return
+	 */
+	public int getBufferedCount() {
+		return bufferedCount.get();
+	}
+	
+	/**
+	 * Total number of events sent to the server.
+	 * @return
+	 */
+	public int getFlushedCount() {
+		return flushedCount.get();
+	}
+	
+	/**
+	 * Total number of events discarded because the buffer was full or the server rejected them.
+	 * @return
+	 */
+	public int getDroppedCount() {
+		return droppedCount.get();
+	}
+	
+	/**
+	 * Number of events currently waiting to be sent.
+	 * @return
+	 */
+	public int getPendingCount() {
+		synchronized (lock) {
+			return buffer.size();
+		}
+	}
+	
+	public void destroy() {
+		synchronized (lock) {
+			destroyed = true;
+			if(timer != null) {
+				timer.cancel();
+				timer = null;
+			}
+		}
+	}
+	
+	// Events the queue didn't journal have no other copy, keep them for the next batch while there is room.
+	protected void requeue(List<Buffered> batch) {
+		synchronized (lock) {
+			for (Buffered buffered : batch) {
+				if(buffered.ids == null) {
+					if(buffer.size() < maxBuffered) {
+						buffer.add(buffered);
+					}
+					else {
+						droppedCount.incrementAndGet();
+					}
+				}
+			}
+			if(!buffer.isEmpty()) {
+				schedule(maxAge);
+			}
+		}
+	}
+	
+	// Must hold lock
+	protected void schedule(long delay) {
+		if(destroyed || (scheduled && delay > 0)) {
+			return;
+		}
+		
+		if(timer == null) {
+			timer = new Timer("SocializeEventBatcher", true);
+		}
+		
+		scheduled = true;
+		
+		timer.schedule(new TimerTask() {
+			@Override
+			public void run() {
+				synchronized (lock) {
+					scheduled = false;
+				}
+				try {
+					flushNow();
+				}
+				catch (Exception e) {
+					handleError("Error sending events", e);
+				}
+			}
+		}, delay);
+	}
+	
+	protected void handleError(String msg, Exception e) {
+		if(logger != null) {
+			logger.error(msg, e);
+		}
+		else {
+			SocializeLogger.e(msg, e);
+		}
+	}
+	
+	public void setMaxBatchSize(int maxBatchSize) {
+		this.maxBatchSize = maxBatchSize;
+	}
+	
+	public void setMaxAge(long maxAge) {
+		this.maxAge = maxAge;
+	}
+	
+	public void setMaxBuffered(int maxBuffered) {
+		this.maxBuffered = maxBuffered;
+	}
+	
+	public void setWriteQueue(WriteQueue writeQueue) {
+		this.writeQueue = writeQueue;
+	}
+	
+	public void setLogger(SocializeLogger logger) {
+		this.logger = logger;
+	}
+	
+	static final class Buffered {
+		
+		final SocializeEvent event;
+		final List<Long> ids;
+		
+		Buffered(SocializeEvent event, List<Long> ids) {
+			super();
+			this.event = event;
+			this.ids = ids;
+		}
+	}
+}
@@ -22,8 +22,13 @@
 package com.socialize.api.event;
 
 import com.socialize.entity.SocializeObject;
+import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
 
 /**
  * @author Jason Polites
@@ -34,7 +39,7 @@ public class SocializeEvent extends SocializeObject {
 	private static final long serialVersionUID = -8531785910742052280L;
 	
 	private String bucket;
-	private JSONObject data;
+	private transient JSONObject data;
 	
 	public String getBucket() {
 		return bucket;
@@ -51,4 +56,23 @@ public class SocializeEvent extends SocializeObject {
 	public void setData(JSONObject data) {
 		this.data = data;
 	}
+	
+	// JSONObject is not serializable, events are written as their JSON text.
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeObject((data == null) ? null : data.toString());
+	}
+	
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		String json = (String) in.readObject();
+		if(json != null) {
+			try {
+				data = new JSONObject(json);
+			}
+			catch (JSONException e) {
+				throw new IOException(e.getMessage());
+			}
+		}
+	}
 }
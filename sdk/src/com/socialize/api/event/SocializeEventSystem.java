@@ -22,9 +22,16 @@
 package com.socialize.api.event;
 
 import com.socialize.api.SocializeApi;
+import com.socialize.api.SocializeRequest;
 import com.socialize.api.SocializeSession;
+import com.socialize.api.queue.WriteSender;
+import com.socialize.concurrent.RequestExecutor.Lane;
+import com.socialize.error.SocializeException;
 import com.socialize.provider.SocializeProvider;
 
+import java.util.ArrayList;
+import java.util.List;
+
 
 /**
  * @author Jason Polites
@@ -32,6 +39,11 @@ import com.socialize.provider.SocializeProvider;
  */
 public class SocializeEventSystem extends SocializeApi<SocializeEvent, SocializeProvider<SocializeEvent>> implements EventSystem {
 
+	private EventBatcher eventBatcher;
+	
+	// Events are posted as a list, the endpoint doesn't return JSON.
+	private final WriteSender eventSender = newWriteSender(false);
+
 	public SocializeEventSystem(SocializeProvider<SocializeEvent> provider) {
 		super(provider);
 	}
@@ -41,7 +53,39 @@ public class SocializeEventSystem extends SocializeApi<SocializeEvent, Socialize
 	 */
 	@Override
 	public void addEvent(SocializeSession session, SocializeEvent event, EventListener eventListener) {
-		postAsync(session, ENDPOINT, event, false, eventListener);		
+		List<SocializeEvent> list = new ArrayList<SocializeEvent>(1);
+		list.add(event);
+		
+		if(eventBatcher == null) {
+			postQueued(session, ENDPOINT, list, false, eventListener);
+		}
+		else if(eventBatcher.add(session, event, eventSender)) {
+			if(eventListener != null) {
+				eventListener.onResult(RequestType.POST, newQueuedResponse(list));
+			}
+		}
+		else if(eventListener != null) {
+			eventListener.onError(new SocializeException("Event buffer full, event discarded"));
+		}
+	}
+	
+	public void setEventBatcher(EventBatcher eventBatcher) {
+		this.eventBatcher = eventBatcher;
 	}
 
+	// Events are never waited on by the user
+	@Override
+	protected Lane getLane(SocializeRequest request) {
+		return Lane.BACKGROUND;
+	}
+	
+	@Override
+	protected String getQueuedEndpoint() {
+		return ENDPOINT;
+	}
+	
+	@Override
+	protected boolean isQueuedJsonResponse() {
+		return false;
+	}
 }
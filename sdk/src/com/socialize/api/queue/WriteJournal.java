@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.api.queue;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Append-only log of pending write operations.  
+ * Each operation is written as an add record and removed by a later ack record.  Appends and acks only change the 
+ * in-memory state, {@link #flush()} writes them to disk so callers can keep file I/O off the thread that made the write.  
+ * An operation acked before it was flushed never reaches the disk.
+ * The log is rewritten with only the pending operations when it was left with acked or torn records, and whenever acked records dominate the file.
+ * A record torn by process death is discarded along with anything after it.
+ */
+public class WriteJournal {
+	
+	static final byte ADD = 'A';
+	static final byte ACK = 'K';
+	
+	static final int MIN_COMPACT_SIZE = 64;
+	
+	private final File file;
+	
+	// Guarded by this
+	private final LinkedHashMap<Long, Entry> pending = new LinkedHashMap<Long, Entry>();
+	private final LinkedHashMap<Long, Entry> unwritten = new LinkedHashMap<Long, Entry>();
+	private final List<Long> unwrittenAcks = new ArrayList<Long>();
+	private long nextId = 1;
+	
+	// Guarded by io, held while the file is written so appends and acks are never blocked on the disk.
+	private final Object io = new Object();
+	private FileOutputStream fout;
+	private DataOutputStream out;
+	private int records = 0;
+	
+	public WriteJournal(File file) {
+		super();
+		this.file = file;
+	}
+	
+	/**
+	 * Loads the pending operations from disk.  The log is only rewritten if it holds records that are no longer needed.
+	 * @throws IOException
+	 */
+	public void open() throws IOException {
+		synchronized (io) {
+			closeStream();
+			
+			boolean compact;
+			
+			synchronized (this) {
+				pending.clear();
+				unwritten.clear();
+				unwrittenAcks.clear();
+				records = 0;
+				compact = file.exists() && !load();
+			}
+			
+			if(compact) {
+				compact();
+			}
+			else {
+				openStream();
+			}
+		}
+	}
+	
+	/**
+	 * Adds an operation for each item.  The operations are pending immediately but only durable after the next {@link #flush()}.
+	 * @param endpoint The endpoint the items are posted to.
+	 * @param items The serialized items.
+	 * @return The journaled entries, in the same order as the items.
+	 */
+	public synchronized List<Entry> append(String endpoint, List<byte[]> items) {
+		List<Entry> entries = new ArrayList<Entry>(items.size());
+		
+		for (byte[] data : items) {
+			Entry entry = new Entry(nextId++, endpoint, data);
+			pending.put(entry.id, entry);
+			unwritten.put(entry.id, entry);
+			entries.add(entry);
+		}
+		
+		return entries;
+	}
+	
+	/**
+	 * Removes the given operations.  Ids that are not pending are ignored so an operation can only ever be acked once.
+	 * @param ids
+	 */
+	public synchronized void ack(Collection<Long> ids) {
+		for (Long id : ids) {
+			if(pending.remove(id) != null && unwritten.remove(id) == null) {
+				unwrittenAcks.add(id);
+			}
+		}
+	}
+	
+	/**
+	 * Writes the operations appended and acked since the last flush and syncs them to disk.
+	 * @throws IOException
+	 */
+	public void flush() throws IOException {
+		synchronized (io) {
+			List<Entry> adds;
+			List<Long> acks;
+			int remaining;
+			
+			synchronized (this) {
+				if(unwritten.isEmpty() && unwrittenAcks.isEmpty()) {
+					return;
+				}
+				adds = new ArrayList<Entry>(unwritten.values());
+				acks = new ArrayList<Long>(unwrittenAcks);
+				unwritten.clear();
+				unwrittenAcks.clear();
+				remaining = pending.size();
+			}
+			
+			if(out == null) {
+				// An earlier write failed, the log is rebuilt from memory.
+				compact();
+				return;
+			}
+			
+			try {
+				for (Entry entry : adds) {
+					writeAdd(out, entry);
+				}
+				
+				for (Long id : acks) {
+					out.writeByte(ACK);
+					out.writeLong(id);
+				}
+				
+				records += adds.size() + acks.size();
+				
+				if(remaining == 0 || (records > MIN_COMPACT_SIZE && records > remaining * 2)) {
+					compact();
+				}
+				else {
+					sync();
+				}
+			}
+			catch (IOException e) {
+				// Don't leave a partial record in front of later appends.
+				try {
+					compact();
+				}
+				catch (IOException ignore) {}
+				throw e;
+			}
+		}
+	}
+	
+	public synchronized List<Entry> getPending() {
+		return new ArrayList<Entry>(pending.values());
+	}
+	
+	public synchronized boolean isPending(long id) {
+		return pending.containsKey(id);
+	}
+	
+	public synchronized int size() {
+		return pending.size();
+	}
+	
+	public synchronized boolean isDirty() {
+		return !unwritten.isEmpty() || !unwrittenAcks.isEmpty();
+	}
+	
+	/**
+	 * Flushes any outstanding operations and closes the log.
+	 */
+	public void close() {
+		synchronized (io) {
+			try {
+				flush();
+			}
+			catch (IOException ignore) {}
+			closeStream();
+		}
+	}
+	
+	/**
+	 * Reads the log into memory.
+	 * @return true if every record in the log is a pending add, false if the log should be compacted.
+	 * @throws IOException
+	 */
+	// Must hold this and io
+	protected boolean load() throws IOException {
+		long length = file.length();
+		long end = 0;
+		boolean clean = true;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		
+		try {
+			while (true) {
+				byte type = in.readByte();
+				long id = in.readLong();
+				
+				if(type == ADD) {
+					String endpoint = in.readUTF();
+					int size = in.readInt();
+					if(size < 0 || size > length) {
+						clean = false;
+						break;
+					}
+					byte[] data = new byte[size];
+					in.readFully(data);
+					pending.put(id, new Entry(id, endpoint, data));
+				}
+				else if(type == ACK) {
+					pending.remove(id);
+					clean = false;
+				}
+				else {
+					clean = false;
+					break;
+				}
+				
+				records++;
+				nextId = Math.max(nextId, id + 1);
+				end = length - in.available();
+			}
+		}
+		catch (EOFException torn) {
+			// End of log, or a record cut short by process death.
+		}
+		finally {
+			in.close();
+		}
+		
+		// Anything after the last whole record is a torn tail.
+		return clean && end == length;
+	}
+	
+	// Must hold io
+	protected void compact() throws IOException {
+		closeStream();
+		
+		List<Entry> snapshot;
+		
+		synchronized (this) {
+			// The rewrite captures everything pending, including what hasn't been flushed.
+			snapshot = new ArrayList<Entry>(pending.values());
+			unwritten.clear();
+			unwrittenAcks.clear();
+		}
+		
+		File tmp = new File(file.getPath() + ".tmp");
+		FileOutputStream fos = new FileOutputStream(tmp);
+		
+		try {
+			DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos));
+			for (Entry entry : snapshot) {
+				writeAdd(dos, entry);
+			}
+			dos.flush();
+			fos.getFD().sync();
+		}
+		finally {
+			fos.close();
+		}
+		
+		if(!tmp.renameTo(file)) {
+			file.delete();
+			if(!tmp.renameTo(file)) {
+				throw new IOException("Unable to replace journal [" + file + "]");
+			}
+		}
+		
+		records = snapshot.size();
+		
+		openStream();
+	}
+	
+	// Must hold io
+	protected void openStream() throws IOException {
+		fout = new FileOutputStream(file, true);
+		out = new DataOutputStream(new BufferedOutputStream(fout));
+	}
+	
+	// Must hold io
+	protected void closeStream() {
+		if(fout != null) {
+			try {
+				out.flush();
+				fout.close();
+			}
+			catch (IOException ignore) {}
+			fout = null;
+			out = null;
+		}
+	}
+	
+	// Must hold io
+	protected void sync() throws IOException {
+		out.flush();
+		fout.getFD().sync();
+	}
+	
+	protected void writeAdd(DataOutputStream out, Entry entry) throws IOException {
+		out.writeByte(ADD);
+		out.writeLong(entry.id);
+		out.writeUTF(entry.endpoint);
+		out.writeInt(entry.data.length);
+		out.write(entry.data);
+	}
+	
+	public static final class Entry {
+		
+		final long id;
+		final String endpoint;
+		final byte[] data;
+		
+		Entry(long id, String endpoint, byte[] data) {
+			super();
+			this.id = id;
+			this.endpoint = endpoint;
+			this.data = data;
+		}
+		
+		public long getId() {
+			return id;
+		}
+		
+		public String getEndpoint() {
+			return endpoint;
+		}
+		
+		public byte[] getData() {
+			return data;
+		}
+	}
+}
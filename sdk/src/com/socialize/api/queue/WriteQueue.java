@@ -0,0 +1,521 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.api.queue;
+
+import android.content.Context;
+import com.socialize.Socialize;
+import com.socialize.api.SocializeSession;
+import com.socialize.api.queue.WriteJournal.Entry;
+import com.socialize.error.SocializeApiError;
+import com.socialize.error.SocializeException;
+import com.socialize.log.SocializeLogger;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Durable outbound queue for write operations (likes, comments, views, shares and events).  
+ * Writes are journaled as they are added and flushed to disk from a dedicated writer thread, so the thread making the write never waits on the disk.  
+ * The caller makes the first attempt itself and hands the operation back to the queue if the network is unavailable.  A background thread then replays 
+ * pending operations, batched per endpoint into single requests, with exponential backoff between failed attempts.  
+ * Replayed operations are always signed with the session current when they are sent, not the one they were queued under.  
+ * Operations are removed from the journal exactly once, either when delivered or when the server rejects them,
+ * and operations in flight are never sent twice from within the process.
+ */
+public class WriteQueue {
+	
+	public static final String FILE_NAME = "socialize_write_queue";
+	
+	public static final long DEFAULT_MIN_BACKOFF = 5000;
+	public static final long DEFAULT_MAX_BACKOFF = 5 * 60 * 1000;
+	public static final int DEFAULT_MAX_BATCH_SIZE = 20;
+	public static final int DEFAULT_MAX_PENDING = 500;
+	
+	private long minBackoff = DEFAULT_MIN_BACKOFF;
+	private long maxBackoff = DEFAULT_MAX_BACKOFF;
+	private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+	private int maxPending = DEFAULT_MAX_PENDING;
+	
+	private SocializeLogger logger;
+	
+	private final Object lock = new Object();
+	private final Map<String, WriteSender> senders = new HashMap<String, WriteSender>();
+	private final Set<Long> leased = new HashSet<Long>();
+	
+	private WriteJournal journal;
+	private Thread drainer;
+	private ExecutorService writer;
+	
+	private int failures = 0;
+	private long nextAttempt = 0;
+	private boolean destroyed = false;
+	private boolean idle = false;
+	private boolean flushPending = false;
+	
+	private final Runnable flushTask = new Runnable() {
+		@Override
+		public void run() {
+			synchronized (lock) {
+				flushPending = false;
+			}
+			flush();
+		}
+	};
+	
+	/**
+	 * Opens the journal on the writer thread.  Writes made before it is open are posted without being queued.
+	 * @param context
+	 */
+	public void init(final Context context) {
+		synchronized (lock) {
+			getWriter().execute(new Runnable() {
+				@Override
+				public void run() {
+					open(new File(context.getFilesDir(), FILE_NAME));
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Loads the journal and starts replaying anything left by an earlier process.
+	 * @param file
+	 */
+	public void open(File file) {
+		WriteJournal journal = new WriteJournal(file);
+		try {
+			journal.open();
+			synchronized (lock) {
+				if(destroyed) {
+					journal.close();
+					return;
+				}
+				
+				this.journal = journal;
+				
+				if(journal.size() > 0) {
+					idle = false;
+					start();
+					lock.notifyAll();
+				}
+			}
+		}
+		catch (IOException e) {
+			handleError("Unable to open write queue, writes will not be retried", e);
+		}
+	}
+	
+	/**
+	 * Registers the sender for an endpoint so writes left in the journal by an earlier process can be replayed 
+	 * before the system that owns them writes again.
+	 * @param endpoint
+	 * @param sender
+	 */
+	public void register(String endpoint, WriteSender sender) {
+		synchronized (lock) {
+			senders.put(endpoint, sender);
+			idle = false;
+			lock.notifyAll();
+		}
+	}
+	
+	/**
+	 * Journals the items and leases them to the caller for an immediate attempt.  
+	 * The caller must follow with {@link #complete(List)} or {@link #release(List)}.
+	 * @param endpoint The endpoint the items are posted to.
+	 * @param items The items.
+	 * @param sender Delivers the items if they are replayed from the queue.
+	 * @return The ids of the queued items, or null if the items could not be queued.
+	 */
+	public List<Long> add(String endpoint, List<? extends Serializable> items, WriteSender sender) {
+		synchronized (lock) {
+			if(journal == null || destroyed || journal.size() + items.size() > maxPending) {
+				return null;
+			}
+			
+			senders.put(endpoint, sender);
+			
+			try {
+				List<byte[]> data = new ArrayList<byte[]>(items.size());
+				for (Serializable item : items) {
+					data.add(serialize(item));
+				}
+				
+				List<Entry> entries = journal.append(endpoint, data);
+				List<Long> ids = new ArrayList<Long>(entries.size());
+				for (Entry entry : entries) {
+					ids.add(entry.getId());
+				}
+				
+				leased.addAll(ids);
+				
+				scheduleFlush();
+				
+				idle = false;
+				start();
+				
+				return ids;
+			}
+			catch (IOException e) {
+				handleError("Unable to queue write to [" + endpoint + "]", e);
+				return null;
+			}
+		}
+	}
+	
+	/**
+	 * Removes delivered (or permanently rejected) items from the queue.
+	 * @param ids
+	 */
+	public void complete(List<Long> ids) {
+		synchronized (lock) {
+			leased.removeAll(ids);
+			failures = 0;
+			nextAttempt = 0;
+			if(journal != null) {
+				journal.ack(ids);
+				scheduleFlush();
+			}
+			lock.notifyAll();
+		}
+	}
+	
+	/**
+	 * Returns items that could not be delivered to the queue, they are retried after a backoff.
+	 * @param ids
+	 */
+	public void release(List<Long> ids) {
+		synchronized (lock) {
+			leased.removeAll(ids);
+			backoff();
+			idle = false;
+			start();
+			lock.notifyAll();
+		}
+	}
+	
+	/**
+	 * Sends one batch per endpoint of the pending items.
+	 * @return The number of items delivered.
+	 */
+	public int drain() {
+		Map<String, List<Entry>> batches = new LinkedHashMap<String, List<Entry>>();
+		Map<String, WriteSender> batchSenders = new HashMap<String, WriteSender>();
+		// Resolved for every drain so a logout or change of user is picked up.
+		SocializeSession session = getCurrentSession();
+		
+		synchronized (lock) {
+			if(journal == null || session == null) {
+				return 0;
+			}
+			
+			for (Entry entry : journal.getPending()) {
+				WriteSender sender = senders.get(entry.getEndpoint());
+				
+				// Items queued in an earlier process wait until their system sends again.
+				if(sender == null || leased.contains(entry.getId())) {
+					continue;
+				}
+				
+				List<Entry> batch = batches.get(entry.getEndpoint());
+				if(batch == null) {
+					batch = new ArrayList<Entry>();
+					batches.put(entry.getEndpoint(), batch);
+					batchSenders.put(entry.getEndpoint(), sender);
+				}
+				
+				if(batch.size() < maxBatchSize) {
+					batch.add(entry);
+					leased.add(entry.getId());
+				}
+			}
+			
+			if(batches.isEmpty()) {
+				// Nothing we can send until another write arrives.
+				idle = true;
+				return 0;
+			}
+		}
+		
+		int delivered = 0;
+		
+		for (Map.Entry<String, List<Entry>> batch : batches.entrySet()) {
+			String endpoint = batch.getKey();
+			List<Serializable> items = new ArrayList<Serializable>(batch.getValue().size());
+			List<Long> ids = new ArrayList<Long>(batch.getValue().size());
+			List<Long> corrupt = new LinkedList<Long>();
+			
+			for (Entry entry : batch.getValue()) {
+				try {
+					items.add(deserialize(entry.getData()));
+					ids.add(entry.getId());
+				}
+				catch (Exception e) {
+					handleError("Discarding unreadable write to [" + endpoint + "]", e);
+					corrupt.add(entry.getId());
+				}
+			}
+			
+			if(!corrupt.isEmpty()) {
+				complete(corrupt);
+			}
+			
+			if(items.isEmpty()) {
+				continue;
+			}
+			
+			try {
+				batchSenders.get(endpoint).send(session, endpoint, items);
+				complete(ids);
+				delivered += ids.size();
+			}
+			catch (SocializeException e) {
+				if(isTransient(e)) {
+					release(ids);
+				}
+				else {
+					handleError("Server rejected queued write to [" + endpoint + "], discarding", e);
+					complete(ids);
+				}
+			}
+			catch (RuntimeException e) {
+				handleError("Unable to send queued write to [" + endpoint + "], discarding", e);
+				complete(ids);
+			}
+		}
+		
+		return delivered;
+	}
+	
+	/**
+	 * Writes journaled changes to disk on the calling thread.
+	 */
+	public void flush() {
+		WriteJournal journal;
+		
+		synchronized (lock) {
+			journal = this.journal;
+		}
+		
+		if(journal != null) {
+			try {
+				journal.flush();
+			}
+			catch (IOException e) {
+				handleError("Unable to write queued writes to disk", e);
+			}
+		}
+	}
+	
+	public int getPendingCount() {
+		synchronized (lock) {
+			return (journal == null) ? 0 : journal.size();
+		}
+	}
+	
+	public long getNextAttempt() {
+		synchronized (lock) {
+			return nextAttempt;
+		}
+	}
+	
+	public void destroy() {
+		synchronized (lock) {
+			if(destroyed) {
+				return;
+			}
+			
+			destroyed = true;
+			lock.notifyAll();
+			
+			final WriteJournal journal = this.journal;
+			
+			if(journal != null) {
+				// Behind any pending flush, the writer exits once the journal is closed.
+				getWriter().execute(new Runnable() {
+					@Override
+					public void run() {
+						journal.close();
+					}
+				});
+			}
+			
+			if(writer != null) {
+				writer.shutdown();
+			}
+		}
+	}
+	
+	/**
+	 * Returns true if the failed request may succeed later, that is it never reached the server or the server failed.
+	 * @param error
+	 * @return
+	 */
+	public static boolean isTransient(SocializeException error) {
+		if(error instanceof SocializeApiError) {
+			return ((SocializeApiError) error).getResultCode() >= 500;
+		}
+		return true;
+	}
+	
+	// Must hold lock
+	protected void scheduleFlush() {
+		if(!flushPending) {
+			flushPending = true;
+			getWriter().execute(flushTask);
+		}
+	}
+	
+	// Must hold lock
+	protected ExecutorService getWriter() {
+		if(writer == null) {
+			writer = makeWriter();
+		}
+		return writer;
+	}
+	
+	protected ExecutorService makeWriter() {
+		return Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "SocializeWriteJournal");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+	
+	// Writes, including those from an earlier process, are replayed as soon as the user has a session.
+	protected SocializeSession getCurrentSession() {
+		return Socialize.getSocialize().getSession();
+	}
+	
+	protected void backoff() {
+		failures++;
+		long delay = minBackoff << Math.min(failures - 1, 16);
+		nextAttempt = System.currentTimeMillis() + Math.min(delay, maxBackoff);
+	}
+	
+	// Must hold lock
+	protected void start() {
+		if(drainer == null && !destroyed) {
+			drainer = new Thread("SocializeWriteQueue") {
+				@Override
+				public void run() {
+					while (awaitWork()) {
+						drain();
+					}
+				}
+			};
+			drainer.setDaemon(true);
+			drainer.setPriority(Thread.MIN_PRIORITY);
+			drainer.start();
+		}
+	}
+	
+	protected boolean awaitWork() {
+		synchronized (lock) {
+			while (!destroyed) {
+				long delay = nextAttempt - System.currentTimeMillis();
+				
+				if(idle || journal == null || journal.size() <= leased.size()) {
+					try {
+						lock.wait();
+					}
+					catch (InterruptedException e) {
+						return false;
+					}
+				}
+				else if(getCurrentSession() == null) {
+					try {
+						lock.wait(minBackoff);
+					}
+					catch (InterruptedException e) {
+						return false;
+					}
+				}
+				else if(delay > 0) {
+					try {
+						lock.wait(delay);
+					}
+					catch (InterruptedException e) {
+						return false;
+					}
+				}
+				else {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+	
+	protected byte[] serialize(Serializable item) throws IOException {
+		ByteArrayOutputStream bout = new ByteArrayOutputStream(512);
+		ObjectOutputStream out = new ObjectOutputStream(bout);
+		out.writeObject(item);
+		out.close();
+		return bout.toByteArray();
+	}
+	
+	protected Serializable deserialize(byte[] data) throws IOException, ClassNotFoundException {
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data));
+		try {
+			return (Serializable) in.readObject();
+		}
+		finally {
+			in.close();
+		}
+	}
+	
+	protected void handleError(String msg, Exception e) {
+		if(logger != null) {
+			logger.error(msg, e);
+		}
+		else {
+			SocializeLogger.e(msg, e);
+		}
+	}
+	
+	public void setMinBackoff(long minBackoff) {
+		this.minBackoff = minBackoff;
+	}
+	
+	public void setMaxBackoff(long maxBackoff) {
+		this.maxBackoff = maxBackoff;
+	}
+	
+	public void setMaxBatchSize(int maxBatchSize) {
+		this.maxBatchSize = maxBatchSize;
+	}
+	
+	public void setMaxPending(int maxPending) {
+		this.maxPending = maxPending;
+	}
+	
+	public void setLogger(SocializeLogger logger) {
+		this.logger = logger;
+	}
+}
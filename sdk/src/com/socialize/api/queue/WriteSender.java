@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.api.queue;
+
+import com.socialize.api.SocializeSession;
+import com.socialize.error.SocializeException;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Delivers a batch of queued writes to an endpoint.
+ */
+public interface WriteSender {
+
+	/**
+	 * Sends the items in a single request.  Called on the queue's background thread.
+	 * @param session The current session.
+	 * @param endpoint The endpoint the items were queued against.
+	 * @param items The items to post.
+	 * @throws SocializeException If the request failed.  Failures other than server errors are not retried.
+	 */
+	public void send(SocializeSession session, String endpoint, List<Serializable> items) throws SocializeException;
+	
+}
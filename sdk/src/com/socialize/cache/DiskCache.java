@@ -0,0 +1,604 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.cache;
+
+import android.content.Context;
+import com.socialize.log.SocializeLogger;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent, size bounded cache of raw bytes (e.g. encoded images) keyed by url.
+ * <br/>
+ * Each entry is stored in its own file named after a 64 bit hash of the url.  A memory mapped index of 
+ * fixed size records holds the hash, size and last access time of every entry so lookups never touch the 
+ * file system.  Entries are written and synced to a temp file without holding the cache lock, then renamed 
+ * into place while the index record is marked pending, so a crash can only ever lose the entry being written.  
+ * Pending or inconsistent records and orphaned files are rolled back when the cache is opened.
+ * <br/>
+ * Each record carries the generation of the write that produced it, so a reader that loses a race with a 
+ * newer write of the same url never removes the newer entry.
+ */
+public class DiskCache {
+	
+	public static final String DEFAULT_DIRECTORY = "socialize_images";
+	
+	static final int MAGIC = 0x534F4443; // SODC
+	static final int VERSION = 2;
+	static final int HEADER_SIZE = 16;
+	static final int RECORD_SIZE = 32;
+	
+	static final int STATE_EMPTY = 0;
+	static final int STATE_PENDING = 1;
+	static final int STATE_COMMITTED = 2;
+	static final int STATE_DELETED = 3;
+	
+	static final String INDEX_FILE = "index";
+	static final String TEMP_SUFFIX = ".tmp";
+	
+	private SocializeLogger logger;
+	
+	private String directoryName = DEFAULT_DIRECTORY;
+	private long maxBytes = 10 * 1024 * 1024;
+	private int maxEntries = 512;
+	
+	private File directory;
+	private RandomAccessFile indexFile;
+	private MappedByteBuffer index;
+	private int slots;
+	
+	private long currentBytes = 0;
+	private int count = 0;
+	private int deleted = 0;
+	
+	private final AtomicLong generations = new AtomicLong(System.currentTimeMillis());
+	
+	public void init(Context context) {
+		try {
+			open(new File(context.getCacheDir(), directoryName));
+		}
+		catch (IOException e) {
+			handleError("Failed to open disk cache", e);
+		}
+	}
+	
+	/**
+	 * Opens (or creates) the cache in the given directory and recovers from any interrupted writes.
+	 * @param dir
+	 * @throws IOException
+	 */
+	public synchronized void open(File dir) throws IOException {
+		close();
+		
+		if(!dir.exists() && !dir.mkdirs()) {
+			throw new IOException("Unable to create cache directory [" + dir + "]");
+		}
+		
+		directory = dir;
+		slots = slotsFor(maxEntries);
+		
+		long length = HEADER_SIZE + ((long) slots * RECORD_SIZE);
+		
+		indexFile = new RandomAccessFile(new File(dir, INDEX_FILE), "rw");
+		
+		boolean valid = indexFile.length() == length;
+		
+		indexFile.setLength(length);
+		index = indexFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+		
+		if(valid) {
+			valid = index.getInt(0) == MAGIC && index.getInt(4) == VERSION && index.getInt(8) == slots;
+		}
+		
+		if(!valid) {
+			reset();
+		}
+		
+		recover();
+	}
+	
+	/**
+	 * Flushes the index and releases the index file.
+	 */
+	public synchronized void close() {
+		if(index != null) {
+			index.force();
+			index = null;
+		}
+		
+		if(indexFile != null) {
+			try {
+				indexFile.close();
+			}
+			catch (IOException e) {
+				handleError("Failed to close disk cache index", e);
+			}
+			indexFile = null;
+		}
+	}
+	
+	public void destroy() {
+		close();
+	}
+	
+	/**
+	 * Returns the bytes stored for the given url, or null if not cached.
+	 * @param url
+	 * @return
+	 */
+	public byte[] get(String url) {
+		long hash = hash(url);
+		int size;
+		long generation;
+		
+		synchronized (this) {
+			if(index == null) {
+				return null;
+			}
+			
+			int slot = find(hash);
+			
+			if(slot < 0) {
+				return null;
+			}
+			
+			size = getSize(slot);
+			generation = getGeneration(slot);
+			index.putLong(offsetOf(slot) + 8, System.currentTimeMillis());
+		}
+		
+		File file = fileFor(hash);
+		FileInputStream in = null;
+		
+		try {
+			in = new FileInputStream(file);
+			
+			// A different length means the file was replaced or truncated since the index was read
+			if(in.getChannel().size() == size) {
+				byte[] data = new byte[size];
+				int read = 0;
+				
+				while(read < size) {
+					int r = in.read(data, read, size - read);
+					if(r < 0) {
+						break;
+					}
+					read += r;
+				}
+				
+				if(read == size) {
+					return data;
+				}
+			}
+		}
+		catch (IOException e) {
+			// Most likely trimmed while we were reading
+			if(logger != null && logger.isDebugEnabled()) {
+				logger.debug("Failed to read cached file for [" + url + "]: " + e.getMessage());
+			}
+		}
+		finally {
+			closeQuietly(in);
+		}
+		
+		// Only drop the entry we failed to read, not one written since
+		remove(hash, generation);
+		
+		return null;
+	}
+	
+	public synchronized boolean exists(String url) {
+		return index != null && find(hash(url)) >= 0;
+	}
+	
+	/**
+	 * Stores the given bytes, evicting the least recently used entries if the byte or entry budget is exceeded.
+	 * @param url
+	 * @param data
+	 * @return false if the data could not be stored.
+	 */
+	public boolean put(String url, byte[] data) {
+		if(data == null || data.length > maxBytes) {
+			return false;
+		}
+		
+		File dir;
+		
+		synchronized (this) {
+			if(index == null) {
+				return false;
+			}
+			dir = directory;
+		}
+		
+		long hash = hash(url);
+		long generation = generations.incrementAndGet();
+		
+		// Concurrent writes of the same url each get their own temp file
+		File temp = new File(dir, fileName(hash) + "." + generation + TEMP_SUFFIX);
+		FileOutputStream out = null;
+		
+		try {
+			out = new FileOutputStream(temp);
+			out.write(data);
+			out.getFD().sync();
+			out.close();
+			out = null;
+		}
+		catch (IOException e) {
+			closeQuietly(out);
+			temp.delete();
+			handleError("Failed to write disk cache entry for [" + url + "]", e);
+			return false;
+		}
+		
+		synchronized (this) {
+			if(index == null || directory != dir) {
+				temp.delete();
+				return false;
+			}
+			
+			int existing = find(hash);
+			
+			if(existing >= 0) {
+				delete(existing);
+			}
+			
+			makeRoom(data.length);
+			
+			int slot = findFree(hash);
+			
+			if(slot < 0) {
+				temp.delete();
+				return false;
+			}
+			
+			writeRecord(slot, hash, System.currentTimeMillis(), data.length, generation, STATE_PENDING);
+			
+			if(!temp.renameTo(fileFor(hash))) {
+				temp.delete();
+				index.putInt(offsetOf(slot) + 20, STATE_DELETED);
+				deleted++;
+				handleError("Failed to write disk cache entry for [" + url + "]", new IOException("Failed to rename [" + temp + "]"));
+				return false;
+			}
+			
+			index.putInt(offsetOf(slot) + 20, STATE_COMMITTED);
+			
+			currentBytes += data.length;
+			count++;
+			
+			return true;
+		}
+	}
+	
+	public synchronized void remove(String url) {
+		if(index != null) {
+			int slot = find(hash(url));
+			if(slot >= 0) {
+				delete(slot);
+			}
+		}
+	}
+	
+	private synchronized void remove(long hash, long generation) {
+		if(index != null) {
+			int slot = find(hash);
+			if(slot >= 0 && getGeneration(slot) == generation) {
+				delete(slot);
+			}
+		}
+	}
+	
+	/**
+	 * Removes every entry.
+	 */
+	public synchronized void clear() {
+		if(index != null) {
+			for (int i = 0; i < slots; i++) {
+				if(getState(i) == STATE_COMMITTED) {
+					fileFor(getHash(i)).delete();
+				}
+			}
+			reset();
+		}
+	}
+	
+	public synchronized long sizeInBytes() {
+		return currentBytes;
+	}
+	
+	public synchronized int size() {
+		return count;
+	}
+	
+	private void makeRoom(long needed) {
+		while(count > 0 && (count >= maxEntries || currentBytes + needed > maxBytes)) {
+			int oldest = -1;
+			long oldestTime = Long.MAX_VALUE;
+			
+			for (int i = 0; i < slots; i++) {
+				if(getState(i) == STATE_COMMITTED) {
+					long time = index.getLong(offsetOf(i) + 8);
+					if(time < oldestTime) {
+						oldestTime = time;
+						oldest = i;
+					}
+				}
+			}
+			
+			if(oldest < 0) {
+				break;
+			}
+			
+			delete(oldest);
+		}
+		
+		if(deleted > maxEntries) {
+			rebuild();
+		}
+	}
+	
+	private void delete(int slot) {
+		fileFor(getHash(slot)).delete();
+		currentBytes -= getSize(slot);
+		count--;
+		deleted++;
+		index.putInt(offsetOf(slot) + 20, STATE_DELETED);
+	}
+	
+	/**
+	 * Rolls back pending writes, drops records whose file is missing or truncated and deletes orphaned files.
+	 */
+	private void recover() {
+		List<Long> valid = new ArrayList<Long>();
+		
+		currentBytes = 0;
+		count = 0;
+		
+		for (int i = 0; i < slots; i++) {
+			int state = getState(i);
+			
+			if(state == STATE_PENDING || state == STATE_COMMITTED) {
+				long hash = getHash(i);
+				File file = fileFor(hash);
+				
+				if(state == STATE_COMMITTED && file.length() == getSize(i)) {
+					valid.add(hash);
+					currentBytes += getSize(i);
+					count++;
+				}
+				else {
+					if(logger != null && logger.isDebugEnabled()) {
+						logger.debug("Rolling back incomplete disk cache entry [" + fileName(hash) + "]");
+					}
+					file.delete();
+					index.putInt(offsetOf(i) + 20, STATE_DELETED);
+				}
+			}
+		}
+		
+		String[] files = directory.list();
+		
+		if(files != null) {
+			for (String name : files) {
+				if(!name.equals(INDEX_FILE) && !isValidFile(name, valid)) {
+					new File(directory, name).delete();
+				}
+			}
+		}
+		
+		rebuild();
+	}
+	
+	private boolean isValidFile(String name, List<Long> valid) {
+		if(name.endsWith(TEMP_SUFFIX) || name.length() != 16) {
+			return false;
+		}
+		try {
+			// Parse as two halves so hashes with the top bit set don't overflow
+			long hash = (Long.parseLong(name.substring(0, 8), 16) << 32) | Long.parseLong(name.substring(8), 16);
+			return valid.contains(hash);
+		}
+		catch (NumberFormatException e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Re-inserts all live records so deleted markers no longer lengthen probe sequences.
+	 */
+	private void rebuild() {
+		List<long[]> live = new ArrayList<long[]>(count);
+		
+		for (int i = 0; i < slots; i++) {
+			if(getState(i) == STATE_COMMITTED) {
+				live.add(new long[]{getHash(i), index.getLong(offsetOf(i) + 8), getSize(i), getGeneration(i)});
+			}
+		}
+		
+		reset();
+		
+		for (long[] record : live) {
+			writeRecord(findFree(record[0]), record[0], record[1], (int) record[2], record[3], STATE_COMMITTED);
+			currentBytes += record[2];
+			count++;
+		}
+	}
+	
+	private void reset() {
+		for (int i = 0; i < HEADER_SIZE + (slots * RECORD_SIZE); i += 4) {
+			index.putInt(i, 0);
+		}
+		index.putInt(0, MAGIC);
+		index.putInt(4, VERSION);
+		index.putInt(8, slots);
+		currentBytes = 0;
+		count = 0;
+		deleted = 0;
+	}
+	
+	private int find(long hash) {
+		int slot = (int) (hash & (slots - 1));
+		for (int i = 0; i < slots; i++) {
+			int state = getState(slot);
+			if(state == STATE_EMPTY) {
+				return -1;
+			}
+			if(state == STATE_COMMITTED && getHash(slot) == hash) {
+				return slot;
+			}
+			slot = (slot + 1) & (slots - 1);
+		}
+		return -1;
+	}
+	
+	private int findFree(long hash) {
+		int slot = (int) (hash & (slots - 1));
+		for (int i = 0; i < slots; i++) {
+			int state = getState(slot);
+			if(state == STATE_EMPTY || state == STATE_DELETED) {
+				if(state == STATE_DELETED) {
+					deleted--;
+				}
+				return slot;
+			}
+			slot = (slot + 1) & (slots - 1);
+		}
+		return -1;
+	}
+	
+	private void writeRecord(int slot, long hash, long time, int size, long generation, int state) {
+		int offset = offsetOf(slot);
+		index.putLong(offset, hash);
+		index.putLong(offset + 8, time);
+		index.putInt(offset + 16, size);
+		index.putInt(offset + 20, state);
+		index.putLong(offset + 24, generation);
+	}
+	
+	private long getHash(int slot) {
+		return index.getLong(offsetOf(slot));
+	}
+	
+	private int getSize(int slot) {
+		return index.getInt(offsetOf(slot) + 16);
+	}
+	
+	private long getGeneration(int slot) {
+		return index.getLong(offsetOf(slot) + 24);
+	}
+	
+	private int getState(int slot) {
+		return index.getInt(offsetOf(slot) + 20);
+	}
+	
+	private int offsetOf(int slot) {
+		return HEADER_SIZE + (slot * RECORD_SIZE);
+	}
+	
+	private File fileFor(long hash) {
+		return new File(directory, fileName(hash));
+	}
+	
+	private String fileName(long hash) {
+		String hex = Long.toHexString(hash);
+		StringBuilder builder = new StringBuilder(16);
+		for (int i = hex.length(); i < 16; i++) {
+			builder.append('0');
+		}
+		return builder.append(hex).toString();
+	}
+	
+	// Twice the entry count so probe sequences stay short.
+	private int slotsFor(int entries) {
+		int size = 16;
+		while(size < entries * 2) {
+			size <<= 1;
+		}
+		return size;
+	}
+	
+	/**
+	 * 64 bit FNV-1a hash of the url.
+	 */
+	protected long hash(String url) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < url.length(); i++) {
+			hash ^= url.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+	
+	private void closeQuietly(Closeable closeable) {
+		if(closeable != null) {
+			try {
+				closeable.close();
+			}
+			catch (IOException ignore) {}
+		}
+	}
+	
+	private void handleError(String msg, Exception e) {
+		if(logger != null) {
+			logger.error(msg, e);
+		}
+		else {
+			SocializeLogger.e(msg, e);
+		}
+	}
+
+	public void setLogger(SocializeLogger logger) {
+		this.logger = logger;
+	}
+	
+	public void setDirectoryName(String directoryName) {
+		this.directoryName = directoryName;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+	
+	/**
+	 * Sets the max number of entries.  Only takes effect when the cache is next opened.
+	 * @param maxEntries
+	 */
+	public void setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.cache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A count-min sketch with 4-bit counters used to estimate how often a key has been requested.
+ * <br/>
+ * Each long in the table holds 16 counters and each key maps to 4 counters.  Once the number of 
+ * recorded accesses reaches the sample size every counter is halved so old popularity decays.
+ */
+public class FrequencySketch {
+	
+	static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+	static final long RESET_MASK = 0x7777777777777777L;
+	static final int MAX_COUNT = 15;
+	
+	private final AtomicLongArray table;
+	private final AtomicInteger additions = new AtomicInteger(0);
+	private final int tableMask;
+	private final int sampleSize;
+	
+	/**
+	 * @param expectedEntries The number of entries the cache holds when full.
+	 */
+	public FrequencySketch(int expectedEntries) {
+		super();
+		int length = 1;
+		int max = Math.max(16, expectedEntries);
+		while(length < max) {
+			length <<= 1;
+		}
+		table = new AtomicLongArray(length);
+		tableMask = length - 1;
+		sampleSize = 10 * max;
+	}
+	
+	/**
+	 * Increments the popularity of the given key.
+	 * @param key
+	 */
+	public void increment(Object key) {
+		int hash = spread(key.hashCode());
+		boolean added = false;
+		
+		for (int i = 0; i < 4; i++) {
+			added |= incrementAt(indexOf(hash, i), offsetOf(hash, i));
+		}
+		
+		if(added && additions.incrementAndGet() >= sampleSize) {
+			reset();
+		}
+	}
+	
+	/**
+	 * Returns the estimated number of times the key was requested within the sample period (max 15).
+	 * @param key
+	 * @return
+	 */
+	public int frequency(Object key) {
+		int hash = spread(key.hashCode());
+		int frequency = MAX_COUNT;
+		
+		for (int i = 0; i < 4; i++) {
+			long value = table.get(indexOf(hash, i));
+			int count = (int) ((value >>> (offsetOf(hash, i) << 2)) & 0xfL);
+			frequency = Math.min(frequency, count);
+		}
+		
+		return frequency;
+	}
+	
+	/**
+	 * Halves every counter.
+	 */
+	protected synchronized void reset() {
+		if(additions.get() >= sampleSize) {
+			for (int i = 0; i < table.length(); i++) {
+				long value;
+				do {
+					value = table.get(i);
+				}
+				while(!table.compareAndSet(i, value, (value >>> 1) & RESET_MASK));
+			}
+			additions.set(additions.get() >>> 1);
+		}
+	}
+	
+	private boolean incrementAt(int index, int offset) {
+		int shift = offset << 2;
+		long mask = 0xfL << shift;
+		
+		while(true) {
+			long value = table.get(index);
+			if((value & mask) == mask) {
+				return false;
+			}
+			if(table.compareAndSet(index, value, value + (1L << shift))) {
+				return true;
+			}
+		}
+	}
+	
+	private int indexOf(int hash, int depth) {
+		long h = (hash + SEEDS[depth]) * SEEDS[depth];
+		h += (h >>> 32);
+		return ((int) h) & tableMask;
+	}
+	
+	private int offsetOf(int hash, int depth) {
+		// Each row uses a different nibble so one key's counters don't share a slot.
+		return ((hash >>> (depth << 3)) & 3) + (depth << 2);
+	}
+	
+	private int spread(int h) {
+		h = ((h >>> 16) ^ h) * 0x45d9f3b;
+		h = ((h >>> 16) ^ h) * 0x45d9f3b;
+		return (h >>> 16) ^ h;
+	}
+}
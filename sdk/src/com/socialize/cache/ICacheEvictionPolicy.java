@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.cache;
+
+import java.util.List;
+
+/**
+ * Decides which new objects a full cache should accept.
+ * <br/>
+ * The cache proposes the next objects in its eviction order as victims, the policy decides whether 
+ * an object leaving the admission window is worth more than the objects it would displace.
+ */
+public interface ICacheEvictionPolicy<K extends Comparable<K>, E extends ICacheable<K>> {
+
+	/**
+	 * Called each time a key is requested from the cache, whether or not it was found.
+	 * @param key
+	 */
+	public void onAccess(K key);
+	
+	/**
+	 * Called when an object leaving the admission window would only fit into the cache by evicting others.
+	 * @param key The key of the candidate.
+	 * @param candidate The object leaving the window.
+	 * @param victims The objects that would be evicted, in eviction order.
+	 * @return true if the candidate should be kept and the victims evicted.
+	 */
+	public boolean admit(K key, E candidate, List<TTLObject<K, E>> victims);
+	
+}
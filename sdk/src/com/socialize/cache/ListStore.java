@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.cache;
+
+import android.content.Context;
+import com.socialize.api.SocializeApi.RequestType;
+import com.socialize.concurrent.RequestExecutor;
+import com.socialize.concurrent.RequestExecutor.Lane;
+import com.socialize.entity.JSONFactory;
+import com.socialize.entity.SocializeObject;
+import com.socialize.log.SocializeLogger;
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persists the head of a list shown on screen so it can be displayed immediately the next time the 
+ * screen opens, while the list is refreshed from the server.  Lists are stored as JSON in a DiskCache 
+ * which is opened, read and written on the background lane of the RequestExecutor.
+ */
+public class ListStore<T extends SocializeObject> {
+	
+	/**
+	 * Receives a stored list on the background thread that read it.
+	 */
+	public static interface LoadListener<T> {
+		/**
+		 * @param items The stored list, or null if none was stored or it could not be read.
+		 */
+		public void onLoad(List<T> items);
+	}
+	
+	public static final int DEFAULT_MAX_ITEMS = 50;
+	
+	private static final String ENCODING = "UTF-8";
+	
+	private DiskCache diskCache;
+	private JSONFactory<T> objectFactory;
+	private RequestExecutor requestExecutor;
+	private SocializeLogger logger;
+	
+	private int maxItems = DEFAULT_MAX_ITEMS;
+	
+	private Context context;
+	private volatile boolean opened = false;
+	
+	/**
+	 * Opening the disk cache reads and recovers its index, so it is left until the first load or save in the background.
+	 * @param context
+	 */
+	public void init(Context context) {
+		this.context = context;
+	}
+	
+	public synchronized void destroy() {
+		if(opened && diskCache != null) {
+			diskCache.destroy();
+		}
+		opened = false;
+	}
+	
+	/**
+	 * Reads the stored list in the background.
+	 * @param key
+	 * @param listener Called on the background thread, or with null if the read could not be scheduled.
+	 */
+	public void load(final String key, final LoadListener<T> listener) {
+		Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				listener.onLoad(load(key));
+			}
+		};
+		
+		Runnable onReject = new Runnable() {
+			@Override
+			public void run() {
+				listener.onLoad(null);
+			}
+		};
+		
+		execute(task, key, onReject);
+	}
+	
+	/**
+	 * Reads the stored list on the calling thread.
+	 * @return The stored list, or null if none was stored or it could not be read.
+	 */
+	public List<T> load(String key) {
+		if(diskCache == null) {
+			return null;
+		}
+		
+		open();
+		
+		byte[] data = diskCache.get(key);
+		
+		if(data == null) {
+			return null;
+		}
+		
+		try {
+			JSONArray array = new JSONArray(new String(data, ENCODING));
+			List<T> items = new ArrayList<T>(array.length());
+			
+			for (int i = 0; i < array.length(); i++) {
+				items.add(objectFactory.fromJSON(array.getJSONObject(i)));
+			}
+			
+			return items;
+		}
+		catch (Exception e) {
+			handleError("Failed to read stored list [" + key + "]", e);
+			diskCache.remove(key);
+			return null;
+		}
+	}
+	
+	/**
+	 * Stores up to the maximum number of items from the head of the list.  Items which read as null end the list.
+	 */
+	public void save(final String key, List<T> items) {
+		if(diskCache == null || items == null) {
+			return;
+		}
+		
+		final byte[] data;
+		
+		try {
+			JSONArray array = new JSONArray();
+			int count = Math.min(maxItems, items.size());
+			
+			for (int i = 0; i < count; i++) {
+				T item = items.get(i);
+				if(item == null) {
+					break;
+				}
+				array.put(objectFactory.toJSON(item));
+			}
+			
+			data = array.toString().getBytes(ENCODING);
+		}
+		catch (JSONException e) {
+			handleError("Failed to write stored list [" + key + "]", e);
+			return;
+		}
+		catch (UnsupportedEncodingException e) {
+			handleError("Failed to write stored list [" + key + "]", e);
+			return;
+		}
+		
+		Runnable onReject = new Runnable() {
+			@Override
+			public void run() {
+				if(logger != null) {
+					logger.warn("Dropped write of stored list [" + key + "]");
+				}
+			}
+		};
+		
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				open();
+				diskCache.put(key, data);
+			}
+		}, key, onReject);
+	}
+	
+	public void remove(String key) {
+		if(diskCache != null) {
+			open();
+			diskCache.remove(key);
+		}
+	}
+	
+	protected void open() {
+		if(!opened) {
+			synchronized (this) {
+				if(!opened) {
+					if(context != null) {
+						diskCache.init(context);
+					}
+					opened = true;
+				}
+			}
+		}
+	}
+	
+	protected void execute(Runnable task, String key, Runnable onReject) {
+		if(requestExecutor != null) {
+			requestExecutor.execute(task, RequestType.LIST, key, Lane.BACKGROUND, onReject);
+		}
+		else {
+			task.run();
+		}
+	}
+	
+	protected void handleError(String msg, Exception e) {
+		if(logger != null) {
+			logger.warn(msg, e);
+		}
+		else {
+			SocializeLogger.w(msg, e);
+		}
+	}
+	
+	public void setDiskCache(DiskCache diskCache) {
+		this.diskCache = diskCache;
+	}
+	
+	public void setObjectFactory(JSONFactory<T> objectFactory) {
+		this.objectFactory = objectFactory;
+	}
+	
+	public void setRequestExecutor(RequestExecutor requestExecutor) {
+		this.requestExecutor = requestExecutor;
+	}
+	
+	public void setLogger(SocializeLogger logger) {
+		this.logger = logger;
+	}
+	
+	public void setMaxItems(int maxItems) {
+		this.maxItems = maxItems;
+	}
+}
@@ -0,0 +1,586 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.cache;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import com.socialize.api.SocializeApi.RequestType;
+import com.socialize.api.action.ActionType;
+import com.socialize.api.action.comment.CommentSystem;
+import com.socialize.api.action.like.LikeSystem;
+import com.socialize.api.action.share.ShareSystem;
+import com.socialize.api.action.view.ViewSystem;
+import com.socialize.concurrent.RequestExecutor;
+import com.socialize.concurrent.RequestExecutor.Lane;
+import com.socialize.entity.*;
+import com.socialize.log.SocializeLogger;
+import com.socialize.util.StringUtils;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An on-device copy of the entities, actions and users returned by the API.  Providers write through 
+ * to the store as responses arrive, so screens can render what was last seen immediately and reconcile 
+ * once the network responds.  The database is opened on the background lane of the RequestExecutor when the 
+ * store is initialized; once {@link #isWarm()} reads are indexed lookups and are cheap enough for the UI thread.
+ */
+public class LocalStore {
+	
+	private SocializeObjectFactory<Entity> entityFactory;
+	private SocializeObjectFactory<Comment> commentFactory;
+	private SocializeObjectFactory<Like> likeFactory;
+	private SocializeObjectFactory<Share> shareFactory;
+	private SocializeObjectFactory<com.socialize.entity.View> viewFactory;
+	private SocializeObjectFactory<User> userFactory;
+	private SocializeLogger logger;
+	private RequestExecutor requestExecutor;
+	
+	private String databaseName = LocalStoreDatabase.DATABASE_NAME;
+	private LocalStoreDatabase database;
+	private volatile boolean warm = false;
+	
+	public void init(Context context) {
+		database = newDatabase(context);
+		warm();
+	}
+	
+	public void destroy() {
+		warm = false;
+		if(database != null) {
+			database.close();
+			database = null;
+		}
+	}
+	
+	public boolean isOpen() {
+		return database != null;
+	}
+	
+	/**
+	 * @return True once the database has been opened, so a read will not block on creating or upgrading it.
+	 */
+	public boolean isWarm() {
+		return warm;
+	}
+	
+	// The first open may create or upgrade the database, which is too slow for the UI thread.
+	protected void warm() {
+		Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				warm = (getReadable() != null);
+			}
+		};
+		
+		if(requestExecutor != null) {
+			requestExecutor.execute(task, RequestType.GET, databaseName, Lane.BACKGROUND, null);
+		}
+		else {
+			task.run();
+		}
+	}
+	
+	/**
+	 * Stores a single entity, action or user.  Objects of any other type are ignored.
+	 */
+	public void put(SocializeObject object) {
+		SQLiteDatabase db = getWritable();
+		if(db != null && object != null) {
+			try {
+				write(db, object, System.currentTimeMillis());
+			}
+			catch (Exception e) {
+				handleError("Failed to store [" + object + "]", e);
+			}
+		}
+	}
+	
+	/**
+	 * Stores all objects in a single transaction.
+	 */
+	public void putAll(Collection<? extends SocializeObject> objects) {
+		SQLiteDatabase db = getWritable();
+		if(db != null && objects != null && !objects.isEmpty()) {
+			long now = System.currentTimeMillis();
+			db.beginTransaction();
+			try {
+				for (SocializeObject object : objects) {
+					if(object != null) {
+						write(db, object, now);
+					}
+				}
+				db.setTransactionSuccessful();
+			}
+			catch (Exception e) {
+				handleError("Failed to store list", e);
+			}
+			finally {
+				db.endTransaction();
+			}
+		}
+	}
+	
+	/**
+	 * Replaces the stored actions of an entity with the newest page returned by the server.  Stored rows 
+	 * within the range covered by the page that are not in the page were deleted elsewhere and are removed.
+	 * @param endpoint The (unprepared) endpoint the page was listed from.
+	 * @param entityKey The entity the page was listed for.
+	 * @param newest The first page, newest first.
+	 * @param complete True if the page holds every action of the entity.
+	 */
+	public void reconcile(String endpoint, String entityKey, List<? extends SocializeObject> newest, boolean complete) {
+		String table = getTable(endpoint);
+		
+		if(table == null || StringUtils.isEmpty(entityKey)) {
+			putAll(newest);
+			return;
+		}
+		
+		SQLiteDatabase db = getWritable();
+		
+		if(db != null && newest != null) {
+			long now = System.currentTimeMillis();
+			long oldest = Long.MAX_VALUE;
+			StringBuilder ids = new StringBuilder();
+			
+			db.beginTransaction();
+			try {
+				for (SocializeObject object : newest) {
+					if(object != null && object.getId() != null) {
+						write(db, object, now);
+						oldest = Math.min(oldest, object.getId());
+						if(ids.length() > 0) {
+							ids.append(',');
+						}
+						ids.append(object.getId());
+					}
+				}
+				
+				StringBuilder where = new StringBuilder(LocalStoreDatabase.COL_ENTITY_KEY).append("=?");
+				
+				if(!complete) {
+					if(oldest == Long.MAX_VALUE) {
+						// An empty partial page tells us nothing about what is stored.
+						db.setTransactionSuccessful();
+						return;
+					}
+					where.append(" AND ").append(LocalStoreDatabase.COL_ID).append(">=").append(oldest);
+				}
+				
+				if(ids.length() > 0) {
+					where.append(" AND ").append(LocalStoreDatabase.COL_ID).append(" NOT IN (").append(ids).append(')');
+				}
+				
+				db.delete(table, where.toString(), new String[]{entityKey});
+				db.setTransactionSuccessful();
+			}
+			catch (Exception e) {
+				handleError("Failed to reconcile [" + table + "] for entity [" + entityKey + "]", e);
+			}
+			finally {
+				db.endTransaction();
+			}
+		}
+	}
+	
+	/**
+	 * Removes an action deleted through the given (unprepared) endpoint.
+	 */
+	public void remove(String endpoint, String id) {
+		String table = getTable(endpoint);
+		SQLiteDatabase db = getWritable();
+		if(table != null && db != null && !StringUtils.isEmpty(id)) {
+			try {
+				db.delete(table, LocalStoreDatabase.COL_ID + "=?", new String[]{id});
+			}
+			catch (Exception e) {
+				handleError("Failed to remove [" + id + "] from [" + table + "]", e);
+			}
+		}
+	}
+	
+	/**
+	 * @return The stored entity with its last known stats, or null if it has not been seen.
+	 */
+	public Entity getEntity(String key) {
+		SQLiteDatabase db = getReadable();
+		
+		if(db == null || StringUtils.isEmpty(key)) {
+			return null;
+		}
+		
+		Cursor cursor = null;
+		
+		try {
+			cursor = db.rawQuery("SELECT e." + LocalStoreDatabase.COL_JSON + 
+					", s." + LocalStoreDatabase.COL_VIEWS + 
+					", s." + LocalStoreDatabase.COL_LIKES + 
+					", s." + LocalStoreDatabase.COL_SHARES + 
+					", s." + LocalStoreDatabase.COL_COMMENTS + 
+					", s." + LocalStoreDatabase.COL_TOTAL + 
+					" FROM " + LocalStoreDatabase.TABLE_ENTITY + " e LEFT JOIN " + LocalStoreDatabase.TABLE_ENTITY_STATS + 
+					" s ON s." + LocalStoreDatabase.COL_ENTITY_KEY + "=e." + LocalStoreDatabase.COL_KEY + 
+					" WHERE e." + LocalStoreDatabase.COL_KEY + "=?", new String[]{key});
+			
+			if(cursor.moveToFirst()) {
+				JSONObject json = new JSONObject(cursor.getString(0));
+				
+				// The factory reads stats from the same fields the API uses.
+				if(!cursor.isNull(1)) {
+					json.put(LocalStoreDatabase.COL_VIEWS, cursor.getInt(1));
+					json.put(LocalStoreDatabase.COL_LIKES, cursor.getInt(2));
+					json.put(LocalStoreDatabase.COL_SHARES, cursor.getInt(3));
+					json.put(LocalStoreDatabase.COL_COMMENTS, cursor.getInt(4));
+					json.put(LocalStoreDatabase.COL_TOTAL, cursor.getInt(5));
+				}
+				
+				return entityFactory.fromJSON(json);
+			}
+		}
+		catch (Exception e) {
+			handleError("Failed to read entity [" + key + "]", e);
+		}
+		finally {
+			close(cursor);
+		}
+		
+		return null;
+	}
+	
+	public User getUser(long id) {
+		List<User> users = query(userFactory, LocalStoreDatabase.TABLE_USER, LocalStoreDatabase.COL_ID, String.valueOf(id), 0, 1);
+		return (users == null || users.isEmpty()) ? null : users.get(0);
+	}
+	
+	/**
+	 * @return The like placed on the entity by the user, or null if none is stored.
+	 */
+	public Like getLike(String entityKey, long userId) {
+		SQLiteDatabase db = getReadable();
+		
+		if(db == null || StringUtils.isEmpty(entityKey)) {
+			return null;
+		}
+		
+		Cursor cursor = null;
+		
+		try {
+			cursor = db.query(LocalStoreDatabase.TABLE_LIKE, new String[]{LocalStoreDatabase.COL_JSON}, 
+					LocalStoreDatabase.COL_USER_ID + "=? AND " + LocalStoreDatabase.COL_ENTITY_KEY + "=?", 
+					new String[]{String.valueOf(userId), entityKey}, null, null, LocalStoreDatabase.COL_ID + " DESC", "1");
+			
+			if(cursor.moveToFirst()) {
+				return likeFactory.fromJSON(new JSONObject(cursor.getString(0)));
+			}
+		}
+		catch (Exception e) {
+			handleError("Failed to read like for entity [" + entityKey + "]", e);
+		}
+		finally {
+			close(cursor);
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * @return The stored actions of the given type on the entity, newest first, or null if the store is not available.
+	 */
+	public <A extends SocializeAction> List<A> getActionsByEntity(ActionType type, String entityKey, int start, int end) {
+		return query(this.<A>getFactory(type), getTable(type), LocalStoreDatabase.COL_ENTITY_KEY, entityKey, start, end);
+	}
+	
+	/**
+	 * @return The stored actions of the given type by the user, newest first, or null if the store is not available.
+	 */
+	public <A extends SocializeAction> List<A> getActionsByUser(ActionType type, long userId, int start, int end) {
+		return query(this.<A>getFactory(type), getTable(type), LocalStoreDatabase.COL_USER_ID, String.valueOf(userId), start, end);
+	}
+	
+	public List<Comment> getComments(String entityKey, int start, int end) {
+		return getActionsByEntity(ActionType.COMMENT, entityKey, start, end);
+	}
+	
+	public void clear() {
+		SQLiteDatabase db = getWritable();
+		if(db != null) {
+			try {
+				database.drop(db);
+				database.onCreate(db);
+			}
+			catch (Exception e) {
+				handleError("Failed to clear local store", e);
+			}
+		}
+	}
+	
+	protected <X extends SocializeObject> List<X> query(SocializeObjectFactory<X> factory, String table, String column, String value, int start, int end) {
+		SQLiteDatabase db = getReadable();
+		
+		if(db == null || factory == null || table == null || value == null) {
+			return null;
+		}
+		
+		Cursor cursor = null;
+		
+		try {
+			cursor = db.query(table, new String[]{LocalStoreDatabase.COL_JSON}, column + "=?", new String[]{value}, 
+					null, null, LocalStoreDatabase.COL_ID + " DESC", start + "," + Math.max(0, end - start));
+			
+			List<X> items = new ArrayList<X>(cursor.getCount());
+			
+			while(cursor.moveToNext()) {
+				items.add(factory.fromJSON(new JSONObject(cursor.getString(0))));
+			}
+			
+			return items;
+		}
+		catch (Exception e) {
+			handleError("Failed to read [" + table + "] by [" + column + "]", e);
+			return null;
+		}
+		finally {
+			close(cursor);
+		}
+	}
+	
+	protected void write(SQLiteDatabase db, SocializeObject object, long now) throws JSONException {
+		if(object instanceof Entity) {
+			writeEntity(db, (Entity) object, true, now);
+		}
+		else if(object instanceof User) {
+			writeUser(db, (User) object, now);
+		}
+		else if(object instanceof SocializeAction) {
+			writeAction(db, (SocializeAction) object, now);
+		}
+	}
+	
+	protected void writeEntity(SQLiteDatabase db, Entity entity, boolean withStats, long now) throws JSONException {
+		String key = entity.getKey();
+		
+		if(StringUtils.isEmpty(key)) {
+			return;
+		}
+		
+		ContentValues values = new ContentValues();
+		values.put(LocalStoreDatabase.COL_KEY, key);
+		values.put(LocalStoreDatabase.COL_JSON, entityFactory.toJSON(entity).toString());
+		values.put(LocalStoreDatabase.COL_UPDATED, now);
+		db.insertWithOnConflict(LocalStoreDatabase.TABLE_ENTITY, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+		
+		EntityStats stats = entity.getEntityStats();
+		
+		if(withStats && stats != null) {
+			ContentValues statValues = new ContentValues();
+			statValues.put(LocalStoreDatabase.COL_ENTITY_KEY, key);
+			statValues.put(LocalStoreDatabase.COL_VIEWS, stats.getViews());
+			statValues.put(LocalStoreDatabase.COL_LIKES, stats.getLikes());
+			statValues.put(LocalStoreDatabase.COL_SHARES, stats.getShares());
+			statValues.put(LocalStoreDatabase.COL_COMMENTS, stats.getComments());
+			statValues.put(LocalStoreDatabase.COL_TOTAL, stats.getTotalActivityCount());
+			statValues.put(LocalStoreDatabase.COL_UPDATED, now);
+			db.insertWithOnConflict(LocalStoreDatabase.TABLE_ENTITY_STATS, null, statValues, SQLiteDatabase.CONFLICT_REPLACE);
+		}
+	}
+	
+	protected void writeUser(SQLiteDatabase db, User user, long now) throws JSONException {
+		if(user.getId() == null) {
+			return;
+		}
+		
+		ContentValues values = new ContentValues();
+		values.put(LocalStoreDatabase.COL_ID, user.getId());
+		values.put(LocalStoreDatabase.COL_JSON, userFactory.toJSON(user).toString());
+		values.put(LocalStoreDatabase.COL_UPDATED, now);
+		db.insertWithOnConflict(LocalStoreDatabase.TABLE_USER, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+	}
+	
+	protected void writeAction(SQLiteDatabase db, SocializeAction action, long now) throws JSONException {
+		ActionType type = action.getActionType();
+		String table = getTable(type);
+		SocializeObjectFactory<SocializeAction> factory = getFactory(type);
+		
+		if(table == null || factory == null || action.getId() == null) {
+			return;
+		}
+		
+		User user = action.getUser();
+		Entity entity = action.getEntity();
+		
+		ContentValues values = new ContentValues();
+		values.put(LocalStoreDatabase.COL_ID, action.getId());
+		values.put(LocalStoreDatabase.COL_ENTITY_KEY, action.getEntityKey());
+		values.put(LocalStoreDatabase.COL_USER_ID, (user == null) ? null : user.getId());
+		values.put(LocalStoreDatabase.COL_DATE, action.getDate());
+		values.put(LocalStoreDatabase.COL_JSON, factory.toJSON(action).toString());
+		values.put(LocalStoreDatabase.COL_UPDATED, now);
+		db.insertWithOnConflict(table, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+		
+		if(user != null) {
+			writeUser(db, user, now);
+		}
+		
+		if(entity != null) {
+			// Entities nested in actions do not reliably carry stats, so only the entity itself is kept.
+			writeEntity(db, entity, false, now);
+		}
+	}
+	
+	protected String getTable(ActionType type) {
+		if(type != null) {
+			switch(type) {
+				case COMMENT:
+					return LocalStoreDatabase.TABLE_COMMENT;
+				case LIKE:
+					return LocalStoreDatabase.TABLE_LIKE;
+				case SHARE:
+					return LocalStoreDatabase.TABLE_SHARE;
+				case VIEW:
+					return LocalStoreDatabase.TABLE_VIEW;
+				default:
+					break;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * @return The action table written by the given (unprepared) endpoint, or null if the endpoint is not an action endpoint.
+	 */
+	protected String getTable(String endpoint) {
+		if(CommentSystem.ENDPOINT.equals(endpoint)) {
+			return LocalStoreDatabase.TABLE_COMMENT;
+		}
+		else if(LikeSystem.ENDPOINT.equals(endpoint)) {
+			return LocalStoreDatabase.TABLE_LIKE;
+		}
+		else if(ShareSystem.ENDPOINT.equals(endpoint)) {
+			return LocalStoreDatabase.TABLE_SHARE;
+		}
+		else if(ViewSystem.ENDPOINT.equals(endpoint)) {
+			return LocalStoreDatabase.TABLE_VIEW;
+		}
+		return null;
+	}
+	
+	@SuppressWarnings("unchecked")
+	protected <A extends SocializeObject> SocializeObjectFactory<A> getFactory(ActionType type) {
+		if(type != null) {
+			switch(type) {
+				case COMMENT:
+					return (SocializeObjectFactory<A>) commentFactory;
+				case LIKE:
+					return (SocializeObjectFactory<A>) likeFactory;
+				case SHARE:
+					return (SocializeObjectFactory<A>) shareFactory;
+				case VIEW:
+					return (SocializeObjectFactory<A>) viewFactory;
+				default:
+					break;
+			}
+		}
+		return null;
+	}
+	
+	// So we can mock.
+	protected LocalStoreDatabase newDatabase(Context context) {
+		return new LocalStoreDatabase(context, databaseName);
+	}
+	
+	protected SQLiteDatabase getWritable() {
+		try {
+			return (database == null) ? null : database.getWritableDatabase();
+		}
+		catch (Exception e) {
+			handleError("Local store could not be opened for writing", e);
+			return null;
+		}
+	}
+	
+	protected SQLiteDatabase getReadable() {
+		try {
+			return (database == null) ? null : database.getReadableDatabase();
+		}
+		catch (Exception e) {
+			handleError("Local store could not be opened for reading", e);
+			return null;
+		}
+	}
+	
+	protected void close(Cursor cursor) {
+		if(cursor != null) {
+			cursor.close();
+		}
+	}
+	
+	protected void handleError(String msg, Exception e) {
+		if(logger != null) {
+			logger.warn(msg, e);
+		}
+		else {
+			SocializeLogger.w(msg, e);
+		}
+	}
+	
+	public void setEntityFactory(SocializeObjectFactory<Entity> entityFactory) {
+		this.entityFactory = entityFactory;
+	}
+	
+	public void setCommentFactory(SocializeObjectFactory<Comment> commentFactory) {
+		this.commentFactory = commentFactory;
+	}
+	
+	public void setLikeFactory(SocializeObjectFactory<Like> likeFactory) {
+		this.likeFactory = likeFactory;
+	}
+	
+	public void setShareFactory(SocializeObjectFactory<Share> shareFactory) {
+		this.shareFactory = shareFactory;
+	}
+	
+	public void setViewFactory(SocializeObjectFactory<com.socialize.entity.View> viewFactory) {
+		this.viewFactory = viewFactory;
+	}
+	
+	public void setUserFactory(SocializeObjectFactory<User> userFactory) {
+		this.userFactory = userFactory;
+	}
+	
+	public void setLogger(SocializeLogger logger) {
+		this.logger = logger;
+	}
+	
+	public void setRequestExecutor(RequestExecutor requestExecutor) {
+		this.requestExecutor = requestExecutor;
+	}
+	
+	public void setDatabaseName(String databaseName) {
+		this.databaseName = databaseName;
+	}
+}
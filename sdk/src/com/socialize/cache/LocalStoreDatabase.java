@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.cache;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+/**
+ * Schema for the LocalStore.  Entities and users are keyed on their natural keys, actions are keyed 
+ * on their id and indexed by entity key and user id.  Object bodies are held as JSON so the schema 
+ * does not have to track every field the API returns.
+ */
+public class LocalStoreDatabase extends SQLiteOpenHelper {
+	
+	public static final String DATABASE_NAME = "socialize_store.db";
+	public static final int VERSION = 1;
+	
+	public static final String TABLE_ENTITY = "entity";
+	public static final String TABLE_ENTITY_STATS = "entity_stats";
+	public static final String TABLE_COMMENT = "comment";
+	public static final String TABLE_LIKE = "like_action";
+	public static final String TABLE_SHARE = "share";
+	public static final String TABLE_VIEW = "view";
+	public static final String TABLE_USER = "user";
+	
+	public static final String[] ACTION_TABLES = {TABLE_COMMENT, TABLE_LIKE, TABLE_SHARE, TABLE_VIEW};
+	
+	public static final String COL_ID = "id";
+	public static final String COL_KEY = "key";
+	public static final String COL_ENTITY_KEY = "entity_key";
+	public static final String COL_USER_ID = "user_id";
+	public static final String COL_DATE = "date";
+	public static final String COL_JSON = "json";
+	public static final String COL_UPDATED = "updated";
+	
+	public static final String COL_VIEWS = "views";
+	public static final String COL_LIKES = "likes";
+	public static final String COL_SHARES = "shares";
+	public static final String COL_COMMENTS = "comments";
+	public static final String COL_TOTAL = "total_activity";
+
+	public LocalStoreDatabase(Context context, String name) {
+		super(context, name, null, VERSION);
+	}
+
+	@Override
+	public void onCreate(SQLiteDatabase db) {
+		db.execSQL("CREATE TABLE " + TABLE_ENTITY + " (" + 
+				COL_KEY + " TEXT PRIMARY KEY, " + 
+				COL_JSON + " TEXT NOT NULL, " + 
+				COL_UPDATED + " INTEGER)");
+		
+		db.execSQL("CREATE TABLE " + TABLE_ENTITY_STATS + " (" + 
+				COL_ENTITY_KEY + " TEXT PRIMARY KEY, " + 
+				COL_VIEWS + " INTEGER, " + 
+				COL_LIKES + " INTEGER, " + 
+				COL_SHARES + " INTEGER, " + 
+				COL_COMMENTS + " INTEGER, " + 
+				COL_TOTAL + " INTEGER, " + 
+				COL_UPDATED + " INTEGER)");
+		
+		db.execSQL("CREATE TABLE " + TABLE_USER + " (" + 
+				COL_ID + " INTEGER PRIMARY KEY, " + 
+				COL_JSON + " TEXT NOT NULL, " + 
+				COL_UPDATED + " INTEGER)");
+		
+		for (String table : ACTION_TABLES) {
+			db.execSQL("CREATE TABLE " + table + " (" + 
+					COL_ID + " INTEGER PRIMARY KEY, " + 
+					COL_ENTITY_KEY + " TEXT, " + 
+					COL_USER_ID + " INTEGER, " + 
+					COL_DATE + " INTEGER, " + 
+					COL_JSON + " TEXT NOT NULL, " + 
+					COL_UPDATED + " INTEGER)");
+			
+			// Lists are read newest first, so the id rides along in both indexes.
+			db.execSQL("CREATE INDEX " + table + "_entity_key ON " + table + " (" + COL_ENTITY_KEY + ", " + COL_ID + ")");
+			db.execSQL("CREATE INDEX " + table + "_user_id ON " + table + " (" + COL_USER_ID + ", " + COL_ID + ")");
+		}
+	}
+
+	@Override
+	public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+		// The store only holds copies of server data, so it is simply rebuilt.
+		drop(db);
+		onCreate(db);
+	}
+	
+	protected void drop(SQLiteDatabase db) {
+		db.execSQL("DROP TABLE IF EXISTS " + TABLE_ENTITY);
+		db.execSQL("DROP TABLE IF EXISTS " + TABLE_ENTITY_STATS);
+		db.execSQL("DROP TABLE IF EXISTS " + TABLE_USER);
+		for (String table : ACTION_TABLES) {
+			db.execSQL("DROP TABLE IF EXISTS " + table);
+		}
+	}
+}
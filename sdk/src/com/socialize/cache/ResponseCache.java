@@ -0,0 +1,474 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.cache;
+
+import android.content.Context;
+import com.socialize.api.SocializeApi.RequestType;
+import com.socialize.api.SocializeSession;
+import com.socialize.concurrent.RequestExecutor;
+import com.socialize.concurrent.RequestExecutor.Lane;
+import com.socialize.config.SocializeConfig;
+import com.socialize.entity.User;
+import com.socialize.log.SocializeLogger;
+import org.apache.http.client.methods.HttpUriRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stale-while-revalidate cache of GET and list response bodies, backed by a size bounded DiskCache.
+ * <br/>
+ * Responses are keyed on the method, url (with query parameters sorted and any OAuth parameters removed) 
+ * and the consumer key and user of the session, so signing never affects the key.  A response younger than 
+ * its TTL is returned without touching the network.  Once the TTL passes it is still returned for a further 
+ * stale period, while a refresh is made on the background lane of the RequestExecutor.
+ * <br/>
+ * TTLs are configured per resource with cache.ttl.[segment] (in seconds), where the last matching path 
+ * segment of the request wins (e.g. cache.ttl.comment applies to /user/1/comment/), falling back to cache.ttl.
+ * <br/>
+ * Writes made by the SDK invalidate every cached response whose path contains the resource written to, along 
+ * with activity lists.  Invalidation times are persisted so they survive a restart.
+ * <br/>
+ * The disk cache is opened on first use rather than at init, so creating the cache costs nothing at startup.
+ */
+public class ResponseCache {
+	
+	public static interface Fetcher {
+		/**
+		 * @return The UTF-8 response body, or null if no response could be obtained.
+		 */
+		public byte[] fetch() throws Exception;
+	}
+	
+	static final String INVALIDATIONS_KEY = "socialize:invalidations";
+	static final String ACTIVITY = "activity";
+	
+	private DiskCache diskCache;
+	private RequestExecutor requestExecutor;
+	private SocializeConfig config;
+	private SocializeLogger logger;
+	private Context context;
+	
+	private volatile boolean opened = false;
+	
+	private long defaultTtl = 30 * 1000;
+	private long staleTtl = 300 * 1000;
+	
+	private final Map<String, Long> invalidations = new ConcurrentHashMap<String, Long>();
+	private final Set<String> refreshing = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	
+	private final AtomicInteger hits = new AtomicInteger(0);
+	private final AtomicInteger staleHits = new AtomicInteger(0);
+	private final AtomicInteger misses = new AtomicInteger(0);
+	
+	public void init(Context context) {
+		this.context = context;
+		
+		if(config != null) {
+			defaultTtl = config.getIntProperty(SocializeConfig.CACHE_TTL, (int) (defaultTtl / 1000)) * 1000L;
+			staleTtl = config.getIntProperty(SocializeConfig.CACHE_STALE, (int) (staleTtl / 1000)) * 1000L;
+			
+			if(diskCache != null) {
+				diskCache.setMaxBytes(config.getLongProperty(SocializeConfig.CACHE_MAX_BYTES, diskCache.getMaxBytes()));
+			}
+		}
+	}
+	
+	public void destroy() {
+		if(diskCache != null && opened) {
+			diskCache.destroy();
+		}
+	}
+	
+	/**
+	 * Returns the key under which the response to the given request is cached.
+	 * @param session
+	 * @param request
+	 * @return
+	 */
+	public String getKey(SocializeSession session, HttpUriRequest request) {
+		String identity = null;
+		
+		if(session != null) {
+			User user = session.getUser();
+			identity = session.getConsumerKey() + ":" + ((user == null) ? null : user.getId());
+		}
+		
+		return getKey(request.getMethod(), request.getURI().toString(), identity);
+	}
+	
+	static String getKey(String method, String url, String identity) {
+		StringBuilder builder = new StringBuilder(url.length() + 64);
+		builder.append(method).append(' ');
+		
+		int query = url.indexOf('?');
+		
+		if(query < 0) {
+			builder.append(url);
+		}
+		else {
+			builder.append(url, 0, query);
+			
+			String[] params = url.substring(query + 1).split("&");
+			Arrays.sort(params);
+			
+			char separator = '?';
+			
+			for (String param : params) {
+				if(param.length() > 0 && !param.startsWith("oauth_")) {
+					builder.append(separator).append(param);
+					separator = '&';
+				}
+			}
+		}
+		
+		builder.append('#').append(identity);
+		
+		return builder.toString();
+	}
+	
+	/**
+	 * @return True if responses to the given request may be cached.
+	 */
+	public boolean isCacheable(HttpUriRequest request) {
+		return diskCache != null && "GET".equals(request.getMethod()) && getTtl(getPath(request.getURI().toString())) > 0;
+	}
+	
+	/**
+	 * Returns the cached response for the key if it is fresh, or stale but within the stale period (in which case a 
+	 * background refresh is started).  Otherwise the fetcher is called on the current thread and the result cached.
+	 * @param key The key of the request.  See {@link #getKey(SocializeSession, HttpUriRequest)}
+	 * @param url The url of the request.
+	 * @param fetcher Performs the request.  Called at most once, either immediately or from a background refresh.
+	 * @return The UTF-8 response body, or null if there was no response.
+	 * @throws Exception
+	 */
+	public InputStream get(String key, String url, Fetcher fetcher) throws Exception {
+		String path = getPath(url);
+		long ttl = getTtl(path);
+		
+		if(ttl <= 0 || diskCache == null) {
+			return toStream(fetcher.fetch());
+		}
+		
+		open();
+		
+		byte[] data = diskCache.get(key);
+		
+		if(data != null && data.length >= 8) {
+			long storedAt = readTime(data);
+			long age = now() - storedAt;
+			
+			if(age >= 0 && storedAt > getInvalidatedAt(path)) {
+				if(age < ttl) {
+					hits.incrementAndGet();
+					return readBody(data);
+				}
+				else if(age < ttl + staleTtl) {
+					staleHits.incrementAndGet();
+					refresh(key, path, fetcher);
+					return readBody(data);
+				}
+			}
+		}
+		
+		misses.incrementAndGet();
+		
+		return toStream(fetchAndStore(key, fetcher));
+	}
+	
+	/**
+	 * Invalidates cached responses affected by a write to the given endpoint.
+	 * @param url The url written to.
+	 */
+	public void invalidate(String url) {
+		open();
+		
+		String[] segments = getSegments(getPath(url));
+		
+		if(segments.length > 0) {
+			invalidateSegment(segments[segments.length - 1]);
+		}
+		
+		invalidateSegment(ACTIVITY);
+	}
+	
+	public void clear() {
+		open();
+		
+		invalidations.clear();
+		
+		if(diskCache != null) {
+			diskCache.clear();
+		}
+	}
+	
+	/**
+	 * Opens the disk cache and loads the persisted invalidations the first time the cache is used.
+	 */
+	protected void open() {
+		if(!opened) {
+			synchronized (this) {
+				if(!opened) {
+					if(diskCache != null && context != null) {
+						diskCache.init(context);
+						loadInvalidations();
+					}
+					opened = true;
+				}
+			}
+		}
+	}
+	
+	protected byte[] fetchAndStore(String key, Fetcher fetcher) throws Exception {
+		// Stamp with the start time so a write made while the request is in flight still invalidates it.
+		long started = now();
+		byte[] body = fetcher.fetch();
+		
+		if(body != null && diskCache != null) {
+			diskCache.put(key, toBytes(started, body));
+		}
+		
+		return body;
+	}
+	
+	protected void refresh(final String key, String path, final Fetcher fetcher) {
+		if(refreshing.add(key)) {
+			Runnable task = new Runnable() {
+				@Override
+				public void run() {
+					try {
+						fetchAndStore(key, fetcher);
+					}
+					catch (Exception e) {
+						if(logger != null && logger.isDebugEnabled()) {
+							logger.debug("Background refresh of [" + key + "] failed: " + e.getMessage());
+						}
+					}
+					finally {
+						refreshing.remove(key);
+					}
+				}
+			};
+			
+			Runnable onReject = new Runnable() {
+				@Override
+				public void run() {
+					refreshing.remove(key);
+				}
+			};
+			
+			execute(task, path, onReject);
+		}
+	}
+	
+	protected void execute(Runnable task, String path, Runnable onReject) {
+		if(requestExecutor != null) {
+			requestExecutor.execute(task, RequestType.GET, path, Lane.BACKGROUND, onReject);
+		}
+		else {
+			onReject.run();
+		}
+	}
+	
+	protected long getTtl(String path) {
+		if(config != null) {
+			String[] segments = getSegments(path);
+			for (int i = segments.length - 1; i >= 0; i--) {
+				int ttl = config.getIntProperty(SocializeConfig.CACHE_TTL + "." + segments[i], -1);
+				if(ttl >= 0) {
+					return ttl * 1000L;
+				}
+			}
+		}
+		return defaultTtl;
+	}
+	
+	protected long getInvalidatedAt(String path) {
+		long latest = 0L;
+		
+		if(!invalidations.isEmpty()) {
+			for (String segment : getSegments(path)) {
+				Long time = invalidations.get(segment);
+				if(time != null && time > latest) {
+					latest = time;
+				}
+			}
+		}
+		
+		return latest;
+	}
+	
+	protected void invalidateSegment(String segment) {
+		invalidations.put(segment, now());
+		saveInvalidations();
+	}
+	
+	protected void loadInvalidations() {
+		byte[] data = diskCache.get(INVALIDATIONS_KEY);
+		
+		if(data != null) {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+			try {
+				int count = in.readInt();
+				for (int i = 0; i < count; i++) {
+					invalidations.put(in.readUTF(), in.readLong());
+				}
+			}
+			catch (IOException e) {
+				if(logger != null) {
+					logger.warn("Discarding corrupt response cache invalidations");
+				}
+				clear();
+			}
+		}
+	}
+	
+	protected void saveInvalidations() {
+		if(diskCache != null) {
+			List<Entry<String, Long>> entries = new ArrayList<Entry<String, Long>>(invalidations.entrySet());
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			try {
+				out.writeInt(entries.size());
+				for (Entry<String, Long> entry : entries) {
+					out.writeUTF(entry.getKey());
+					out.writeLong(entry.getValue());
+				}
+				out.flush();
+				diskCache.put(INVALIDATIONS_KEY, bytes.toByteArray());
+			}
+			catch (IOException e) {
+				if(logger != null) {
+					logger.error("Failed to save response cache invalidations", e);
+				}
+			}
+		}
+	}
+	
+	protected long now() {
+		return System.currentTimeMillis();
+	}
+	
+	static String getPath(String url) {
+		int start = url.indexOf("://");
+		start = (start < 0) ? 0 : url.indexOf('/', start + 3);
+		
+		if(start < 0) {
+			return "/";
+		}
+		
+		int end = url.indexOf('?', start);
+		
+		return (end < 0) ? url.substring(start) : url.substring(start, end);
+	}
+	
+	static String[] getSegments(String path) {
+		List<String> segments = new ArrayList<String>();
+		for (String segment : path.split("/")) {
+			if(segment.length() > 0) {
+				segments.add(segment);
+			}
+		}
+		return segments.toArray(new String[segments.size()]);
+	}
+	
+	static byte[] toBytes(long time, byte[] utf8) {
+		byte[] data = new byte[utf8.length + 8];
+		for (int i = 0; i < 8; i++) {
+			data[i] = (byte) (time >>> (56 - (i * 8)));
+		}
+		System.arraycopy(utf8, 0, data, 8, utf8.length);
+		return data;
+	}
+	
+	static long readTime(byte[] data) {
+		long time = 0L;
+		for (int i = 0; i < 8; i++) {
+			time = (time << 8) | (data[i] & 0xFF);
+		}
+		return time;
+	}
+	
+	static InputStream readBody(byte[] data) {
+		return new ByteArrayInputStream(data, 8, data.length - 8);
+	}
+	
+	static InputStream toStream(byte[] body) {
+		return (body == null) ? null : new ByteArrayInputStream(body);
+	}
+	
+	public int getHitCount() {
+		return hits.get();
+	}
+	
+	public int getStaleHitCount() {
+		return staleHits.get();
+	}
+	
+	public int getMissCount() {
+		return misses.get();
+	}
+	
+	public void setDiskCache(DiskCache diskCache) {
+		this.diskCache = diskCache;
+	}
+	
+	public void setRequestExecutor(RequestExecutor requestExecutor) {
+		this.requestExecutor = requestExecutor;
+	}
+	
+	public void setConfig(SocializeConfig config) {
+		this.config = config;
+	}
+	
+	public void setLogger(SocializeLogger logger) {
+		this.logger = logger;
+	}
+	
+	/**
+	 * @param defaultTtl Time in milliseconds a response is fresh when no per resource TTL is configured.
+	 */
+	public void setDefaultTtl(long defaultTtl) {
+		this.defaultTtl = defaultTtl;
+	}
+	
+	/**
+	 * @param staleTtl Time in milliseconds after expiry a response may still be served while it is refreshed.
+	 */
+	public void setStaleTtl(long staleTtl) {
+		this.staleTtl = staleTtl;
+	}
+}
@@ -1,680 +1,1045 @@
-package com.socialize.cache;
-
-import com.socialize.log.SocializeLogger;
-
-import java.util.*;
-
-/**
- * Simple cache object backed by a synchronized map which allows a TTL (Time To Live) for objects in cache.
- * @author Jason Polites
- */
-public class TTLCache<K extends Comparable<K>, E extends ICacheable<K>> {
-
-	public static int DEFAULT_CACHE_COUNT = 1000;
-	
-	private TreeMap<Key<K>, TTLObject<K, E>> objects;
-	private Map<K, Key<K>> keys;
-	
-	private SocializeLogger logger;
-
-	private boolean debug = false;
-	private boolean extendOnGet = true;
-	private long reapCycle = 60000L; // 1 minute
-	private long defaultTTL = 60 * 60 * 1000; // 1 hour
-	
-	private int maxCapacity = -1;	
-	private long maxCapacityBytes = -1;
-	
-	private long currentSizeInBytes = 0;
-	
-	/**
-	 * If true the cache will not accept new additions if the max bytes would be exceeded.
-	 * If false, over sized objects are removed during reap.
-	 */
-	private boolean hardByteLimit = false;
-	
-	private ICacheEventListener<K, E> eventListener;
-	protected ICacheableFactory<K, E> objectFactory;
-
-	private static Timer reapTimer;
-	private Reaper reaper;
-	
-	private boolean reaping = false;
-	
-	protected class Reaper extends TimerTask {
-		public void run() {
-			reap();
-		}
-	}
-
-	public TTLCache() {
-		this(10, DEFAULT_CACHE_COUNT);
-	}
-	
-	public TTLCache(int initialCapacity) {
-		this(initialCapacity, DEFAULT_CACHE_COUNT);
-	}
-	
-	public TTLCache(int initialCapacity, int maxCapacity) {
-		super();
-		this.maxCapacity = maxCapacity;	
-		objects = makeMap();
-		keys = new HashMap<K, Key<K>>(initialCapacity);
-		
-		// Start reaper
-		startReaper();
-	}
-	
-	/**
-	 * Empties the cache and destroys all persistent states.
-	 */
-	public void destroy() {
-		stopReaper();
-		clear(true);
-	}
-	
-	/**
-	 * Empties the case and should remove any persistent states.
-	 */
-	public void clear() {
-		clear(false);
-	}
-	
-	public void pause() {
-		stopReaper();
-	}
-	
-	public void resume() {
-		startReaper();
-	}
-	
-	protected synchronized void clear(boolean destroy) {
-		keys.clear();
-		
-		Collection<TTLObject<K, E>> values = objects.values();
-
-		for (TTLObject<K, E> ttlObject : values) {
-			ttlObject.getObject().onRemove(destroy);
-		}
-		
-		objects.clear();
-		currentSizeInBytes = 0;
-	}
-	
-	public void setReapCycle(long milliseconds) {
-		reapCycle = milliseconds;
-		startReaper();
-	}
-	
-	protected synchronized void startReaper() {
-		stopReaper();
-		
-		if(reapCycle > 0) {
-			reaper = new Reaper();
-			
-			if(reapTimer == null) {
-				reapTimer = new Timer("CacheReaper", true); // Daemon so we auto-exit on shutdown
-			}
-			
-			reapTimer.schedule(reaper, reapCycle, reapCycle);	
-		}
-	}
-	
-	protected synchronized void stopReaper() {
-		if(reaper != null) {
-			reaper.cancel();
-			reaper = null;
-		}
-		
-		if(reapTimer != null) {
-			reapTimer.purge();
-		}
-		
-		reaping = false;
-	}
-	
-	/**
-	 * Adds an object to cache with the given time-to-live
-	 * @param strKey
-	 * @param object
-	 * @param ttl
-	 */
-	public boolean put(K strKey, E object, long ttl) {
-		return put(strKey, object, ttl, false);
-	}
-	
-	/**
-	 * Adds an object to cache that optionally lives forever.
-	 * @param strKey
-	 * @param object
-	 * @param eternal
-	 * @return
-	 */
-	public boolean put(K strKey, E object, boolean eternal) {
-		return put(strKey, object, defaultTTL, eternal);
-	}
-	
-	
-	/**
-	 * Adds an eternal object to cache.  Eternal objects will never expire, unless they commit suicide.
-	 * @param strKey
-	 * @param object
-	 */
-	public boolean put(K strKey, E object) {
-		return put(strKey, object, defaultTTL, (defaultTTL <= 0));
-	}
-	
-	/**
-	 * Adds an object to cache with the given Time To Live in milliseconds
-	 * @param k
-	 * @param object
-	 * @param ttl milliseconds
-	 * @param eternal
-	 */
-	protected synchronized boolean put(K k, E object, long ttl, boolean eternal) {
-		
-		// Check the key map first
-		if(exists(k)) {
-			TTLObject<K, E> ttlObject = getTTLObject(k);
-			
-			Key<K> key = keys.get(k);
-			key.setTime(System.currentTimeMillis());
-			
-			ttlObject.setEternal(eternal);
-			ttlObject.extendLife(ttl);
-			ttlObject.setObject(object);
-			
-			if(eventListener != null) {
-				eventListener.onPut(object);
-			}	
-			
-			return true;
-		}
-		else {
-			TTLObject<K, E> t = new TTLObject<K, E>(object, k, ttl);
-			
-			t.setEternal(eternal);
-			
-			long addedSize = object.getSizeInBytes();
-			long newSize = currentSizeInBytes + addedSize;
-			boolean oversize = false;
-			
-			oversize = (hardByteLimit && maxCapacityBytes > 0 && newSize > maxCapacityBytes);
-			
-			if(!oversize) {
-				Key<K> key = new Key<K>(k, System.currentTimeMillis());
-				keys.put(k, key);	
-				objects.put(key, t);
-				
-				t.getObject().onPut(k);
-				
-				// Increment size
-				currentSizeInBytes = newSize;
-				
-				if(eventListener != null) {
-					eventListener.onPut(object);
-				}		
-				
-				return true;
-			}
-		}
-		
-		return false;
-	}
-	
-	protected TTLObject<K, E> getTTLObject(K strKey) {
-		TTLObject<K, E> obj = null;
-		
-		// Look for the key
-		Key<K> key = keys.get(strKey);
-		if(key != null) {
-			obj = objects.get(key);
-		}
-		
-		return obj;
-	}
-	
-	/**
-	 * Ignores proxy and always returns raw object
-	 * @param strKey
-	 * @return
-	 */
-	public synchronized E getRaw(K strKey) {
-		TTLObject<K, E> obj = getTTLObject(strKey);
-		if(obj != null && !isExpired(obj)) {
-			return obj.getObject();
-		}
-		return null;
-	}
-	
-	/**
-	 * Gets an object from cache.  Returns null if the object does not exist, or has expired.
-	 * @param key
-	 * @return
-	 */
-	public synchronized E get(K key) {
-		TTLObject<K, E> obj = getTTLObject(key);
-		if(obj != null && !isExpired(obj)) {
-			
-			if(extendOnGet) {
-				extendTTL(key);
-			}
-
-			if(eventListener != null) {
-				eventListener.onGet(obj.getObject());
-			}			
-			
-			obj.getObject().onGet();
-			
-			return obj.getObject();
-	
-		}
-		else if(obj != null) {
-			// Expired
-			destroy(obj.getKey());
-			obj = null;
-		}
-		
-		if (obj == null) {
-			if(objectFactory != null) {
-				E object = objectFactory.create(key);
-				
-				if(object != null) {
-					if(!put(key, object) && logger != null) {
-						// We couldn't put this record.. just log a warning
-						logger.warn("Failed to put object into cache. Cache size exceeded");
-					}
-				}
-				
-				return object;
-			}
-		}
-		
-		return null;
-	}
-	
-	/**
-	 * Returns the internal values of the cache. 
-	 * <br/>
-	 * Proxy objects are returned if gets are proxied within the cache.
-	 * @return
-	 */
-	public Collection<E> values() {
-		Collection<E> values = null;
-		Collection<TTLObject<K, E>> ttls = objects.values();
-		if(ttls != null) {
-			values = new ArrayList<E>(ttls.size());
-			for (TTLObject<K, E> t : ttls) {
-				if(!isExpired(t)) {
-					values.add(t.getObject());
-				}
-			}
-		}
-		return values;
-	}
-	
-	/**
-	 * Returns true if the object with the given key resides in the cache.
-	 * @param k
-	 * @return true if the object with the given key resides in the cache.
-	 */
-	public boolean exists(K k) {
-		Key<K> key = keys.get(k);
-		if(key != null) {
-			return objects.get(key) != null;
-		}
-		return false;
-	}
-	
-	public boolean keyExists(K k) {
-		return keys.get(k) != null;
-	}
-	
-	/**
-	 * Removes an object from cache.  If the object maintains a persistent state.
-	 * @param key
-	 */
-	public E remove(K key) {
-		return remove(key, false);
-	}
-	
-	/**
-	 * Destroys an object in cache.  This differs from remove() such that any persistent state associated with the object should also be removed.
-	 * @param key
-	 */
-	public E destroy(K key) {
-		return remove(key, true);
-	}
-	
-	public synchronized E remove(K strKey, boolean destroy) {
-		Key<K> key = keys.get(strKey);
-		TTLObject<K, E> removed = null;
-		if(key != null) {
-			removed = objects.remove(key);
-			
-			if(removed != null) {
-				currentSizeInBytes -= removed.getObject().getSizeInBytes();
-				removed.getObject().onRemove(destroy);
-			}
-			
-			keys.remove(strKey);
-		}
-		
-		if(removed != null) {
-			return removed.getObject();
-		}
-		
-		return null;
-	}
-	
-	/**
-	 * Extends the ttl of the object with the given key with the current system time.
-	 * @param strKey
-	 */
-	public synchronized void extendTTL(K strKey) {
-		TTLObject<K, E> object = getTTLObject(strKey);
-		if(object != null) {
-			object.setLifeExpectancy(System.currentTimeMillis() + object.getTtl());
-		}
-	}
-
-	/**
-	 * @return Returns the debug.
-	 */
-	public boolean isDebug() {
-		return debug;
-	}
-
-	/**
-	 * @param debug The debug to set.
-	 */
-	public void setDebug(boolean debug) {
-		this.debug = debug;
-	}
-	
-	public boolean isExpired(TTLObject<K, E> object) {
-		E o = object.getObject();
-		
-		if(o instanceof ISuicidal) {
-			ISuicidal<K> s = (ISuicidal<K>) o;
-			if(s.isDead()) {
-				return true;
-			}
-		}
-		return !object.isEternal() && object.getLifeExpectancy() <= System.currentTimeMillis();
-	}
-	
-	public boolean doReap() {
-		return reap();
-	}
-
-	protected synchronized boolean reap() {
-		
-		if(!reaping) {
-			
-			int reaped = 0;
-			
-			try {
-				reaping = true;
-				
-				if(eventListener != null) {
-					eventListener.onReapStart();
-				}
-				
-				int size = objects.size();		
-				
-				if(size > 0) {
-					
-					Set<Key<K>> localKeys = objects.keySet();
-					
-					TreeMap<Key<K>, TTLObject<K, E>> newMap = makeMap();
-					
-					long time = System.currentTimeMillis();
-					
-					boolean ok = true;
-					
-					TTLObject<K, E> object = null;
-
-					for (Key<K> key : localKeys) {
-						object = objects.get(key);
-						
-						if(object != null) {
-							ok = true;
-							
-							if(object.getObject() instanceof ISuicidal) {
-								ISuicidal<K> s = (ISuicidal<K>) object.getObject();
-								
-								if(s.isDead()) {
-									
-									size--;
-									
-									if(debug && logger != null) {
-										
-										String msg = "Object [" +
-												object.getObject().toString() +
-												"] has comitted suicide and will be purged from cache [" +
-												size +
-												"] objects remain";
-										
-										logger.debug(msg);
-									}	
-									
-									ok = false;
-								}
-							}
-							
-							if(ok) {
-								if(object.isEternal() || object.getLifeExpectancy() >= time) {
-									// Save
-									newMap.put(key, object);
-								}
-								else {
-									
-									ok = false;
-									
-									size--;
-									
-									if(debug && logger != null) {
-										
-										String msg = "Object [" +
-												object.getObject().toString() +
-												"] with ttl of [" +
-												object.getTtl() +
-												"] has expired and will be purged from cache [" +
-												size +
-												"] objects remain";
-										
-										logger.debug(msg);
-									}
-								}
-							}
-							
-							if(!ok) {
-								
-								if(logger != null && logger.isDebugEnabled()) {
-									logger.debug("Removing with key [" +
-											key +
-											"] during reap");
-								}								
-								
-								keys.remove(key.getKey());
-								
-								currentSizeInBytes -= object.getObject().getSizeInBytes();
-								
-								reaped++;
-								
-								object.getObject().onRemove(true);
-							}
-						}
-						else {
-							if(logger != null) {
-								logger.warn("No object found with key [" +
-										key +
-										"]");
-								
-								objects.remove(key);
-							}
-						}
-					}
-					
-					// Now check for over size
-					size = newMap.size();
-					
-					if((maxCapacity > 0 && size > maxCapacity) || (maxCapacityBytes > 0 && currentSizeInBytes > maxCapacityBytes)) {
-						// To many objects.. start trimming
-						if(debug && logger != null) {
-							String msg = "TTLCache has count of [" +
-									size +
-									"], size of [" +
-									currentSizeInBytes +
-									"] bytes  which exceeds maximum of [" +
-									maxCapacity +
-									"], [" +
-									maxCapacityBytes +
-									"] bytes.  Excess items will be trimmed";
-							
-							logger.debug(msg);
-					
-						}
-
-						Key<K> key = null;
-						
-						while((maxCapacity > 0 && size > maxCapacity) || (maxCapacityBytes > 0 && currentSizeInBytes > maxCapacityBytes)) {
-							key = newMap.firstKey();
-							
-							if(debug && logger != null) {
-								String msg = "Removing item with key [" +
-										key +
-										"] from cache";
-								
-								logger.debug( msg);
-							}					
-							
-							
-							TTLObject<K, E> removed = newMap.remove(key);
-							
-							keys.remove(key.getKey());
-							
-							size = newMap.size();
-							
-							currentSizeInBytes -= removed.getObject().getSizeInBytes();
-							
-							removed.getObject().onRemove(true);
-							
-							reaped++;
-							
-							if(debug && logger != null) {
-								String msg = "[" +
-										size +
-										"] objects remain with size of [" +
-										currentSizeInBytes +
-										"]";
-								
-								logger.debug(msg);
-							}					
-						}
-					}
-					
-					// Swap
-					objects = newMap;
-				}
-			}
-			finally {
-				
-				if(eventListener != null) {
-					eventListener.onReapEnd(reaped);
-				}				
-				
-				reaping = false;
-			}
-			
-			return true;
-		}
-		
-		return false;
-	}
-	
-
-	protected TreeMap<Key<K>, TTLObject<K, E>> makeMap() {
-		return new TreeMap<Key<K>, TTLObject<K, E>>();
-	}
-
-	public int size() {
-		return objects.size();
-	}
-	
-	public long sizeInBytes() {
-		return currentSizeInBytes;
-	}
-	
-	public boolean isExtendOnGet() {
-		return extendOnGet;
-	}
-
-	public void setExtendOnGet(boolean extendOnGet) {
-		this.extendOnGet = extendOnGet;
-	}
-
-	public long getMaxCapacityBytes() {
-		return maxCapacityBytes;
-	}
-
-	public void setMaxCapacityBytes(long maxCapacityBytes) {
-		this.maxCapacityBytes = maxCapacityBytes;
-	}
-
-	public ICacheEventListener<K, E> getEventListener() {
-		return eventListener;
-	}
-
-	public void setEventListener(ICacheEventListener<K, E> eventListener) {
-		this.eventListener = eventListener;
-	}
-	
-	/**
-	 * Extends the maximum capacity.
-	 * @param extension
-	 */
-	public void extendMax(int extension) {
-		maxCapacity += extension;
-	}
-	
-	/**
-	 * @return the maxCapacity
-	 */
-	public int getMaxCapacity() {
-		return maxCapacity;
-	}
-
-	public ICacheableFactory<K, E> getObjectFactory() {
-		return objectFactory;
-	}
-
-	public void setObjectFactory(ICacheableFactory<K, E> constructor) {
-		this.objectFactory = constructor;
-	}
-
-	public long getDefaultTTL() {
-		return defaultTTL;
-	}
-
-	public void setDefaultTTL(long defaultTTL) {
-		this.defaultTTL = defaultTTL;
-	}
-
-	public boolean isHardByteLimit() {
-		return hardByteLimit;
-	}
-
-	public void setHardByteLimit(boolean hardByteLimit) {
-		this.hardByteLimit = hardByteLimit;
-	}
-	
-	public SocializeLogger getLogger() {
-		return logger;
-	}
-
-	public void setLogger(SocializeLogger logger) {
-		this.logger = logger;
-	}
-}
+package com.socialize.cache;
+
+import com.socialize.log.SocializeLogger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Simple cache object which allows a TTL (Time To Live) for objects in cache.
+ * <br/>
+ * Entries are spread over a fixed number of segments.  Reads never lock, writes only lock the segment 
+ * which owns the key and the reaper locks one segment at a time so it never stalls the whole cache.
+ * Access order is tracked with a timestamp on each entry (O(1) per access) and is only sorted when the 
+ * cache needs trimming, so eviction is an approximate LRU.
+ * <br/>
+ * With an eviction policy new objects enter a small LRU window, then compete with the victims of a clock 
+ * ordered main queue, so a put never scans or sorts the whole cache.
+ * @author Jason Polites
+ */
+public class TTLCache<K extends Comparable<K>, E extends ICacheable<K>> {
+
+	public static int DEFAULT_CACHE_COUNT = 1000;
+	public static int DEFAULT_CONCURRENCY_LEVEL = 4;
+	
+	private final Segment<K, E>[] segments;
+	private final int segmentMask;
+	
+	private SocializeLogger logger;
+
+	private boolean debug = false;
+	private boolean extendOnGet = true;
+	private long reapCycle = 60000L; // 1 minute
+	private long defaultTTL = 60 * 60 * 1000; // 1 hour
+	
+	private volatile int maxCapacity = -1;	
+	private volatile long maxCapacityBytes = -1;
+	
+	private final AtomicLong currentSizeInBytes = new AtomicLong(0);
+	
+	/**
+	 * If true the cache will not accept new additions if the max bytes would be exceeded.
+	 * If false, over sized objects are removed during reap.
+	 */
+	private volatile boolean hardByteLimit = false;
+	
+	private volatile ICacheEventListener<K, E> eventListener;
+	private volatile ICacheEvictionPolicy<K, E> evictionPolicy;
+	protected volatile ICacheableFactory<K, E> objectFactory;
+
+	private static Timer reapTimer;
+	private Reaper reaper;
+	
+	private final AtomicBoolean reaping = new AtomicBoolean(false);
+	
+	/**
+	 * When an eviction policy is set new objects enter a small LRU window, then compete with the main 
+	 * queue's victims for a place.  Both queues are guarded by the eviction lock.
+	 */
+	private final Object evictionLock = new Object();
+	private final ArrayDeque<TTLObject<K, E>> window = new ArrayDeque<TTLObject<K, E>>();
+	private final ArrayDeque<TTLObject<K, E>> main = new ArrayDeque<TTLObject<K, E>>();
+	private int windowCount = 0;
+	private long windowBytes = 0;
+	private volatile int windowPercent = 1;
+	
+	protected class Reaper extends TimerTask {
+		public void run() {
+			reap();
+		}
+	}
+	
+	/**
+	 * A stripe of the cache.  Reads go straight to the map, mutations hold the segment lock.
+	 */
+	protected static final class Segment<K extends Comparable<K>, E extends ICacheable<K>> extends ReentrantLock {
+		
+		private static final long serialVersionUID = -2397841260871364823L;
+		
+		final ConcurrentHashMap<K, TTLObject<K, E>> objects;
+		
+		Segment(int initialCapacity) {
+			super();
+			objects = new ConcurrentHashMap<K, TTLObject<K, E>>(initialCapacity, 0.75f, 1);
+		}
+	}
+	
+	/**
+	 * Snapshot of an entry taken during reap, ordered by access time (oldest first).
+	 */
+	private static final class Candidate<K extends Comparable<K>, E extends ICacheable<K>> implements Comparable<Candidate<K, E>> {
+		final long time;
+		final TTLObject<K, E> object;
+		
+		Candidate(TTLObject<K, E> object) {
+			this.object = object;
+			this.time = object.getAccessTime();
+		}
+
+		@Override
+		public int compareTo(Candidate<K, E> o) {
+			return (time < o.time) ? -1 : ((time == o.time) ? 0 : 1);
+		}
+	}
+
+	public TTLCache() {
+		this(10, DEFAULT_CACHE_COUNT);
+	}
+	
+	public TTLCache(int initialCapacity) {
+		this(initialCapacity, DEFAULT_CACHE_COUNT);
+	}
+	
+	public TTLCache(int initialCapacity, int maxCapacity) {
+		this(initialCapacity, maxCapacity, DEFAULT_CONCURRENCY_LEVEL);
+	}
+	
+	@SuppressWarnings("unchecked")
+	public TTLCache(int initialCapacity, int maxCapacity, int concurrencyLevel) {
+		super();
+		this.maxCapacity = maxCapacity;	
+		
+		int count = 1;
+		while(count < concurrencyLevel) {
+			count <<= 1;
+		}
+		
+		segmentMask = count - 1;
+		segments = new Segment[count];
+		
+		int segmentCapacity = Math.max(1, initialCapacity / count);
+		
+		for (int i = 0; i < count; i++) {
+			segments[i] = new Segment<K, E>(segmentCapacity);
+		}
+		
+		// Start reaper
+		startReaper();
+	}
+	
+	/**
+	 * Empties the cache and destroys all persistent states.
+	 */
+	public void destroy() {
+		stopReaper();
+		clear(true);
+	}
+	
+	/**
+	 * Empties the case and should remove any persistent states.
+	 */
+	public void clear() {
+		clear(false);
+	}
+	
+	public void pause() {
+		stopReaper();
+	}
+	
+	public void resume() {
+		startReaper();
+	}
+	
+	protected void clear(boolean destroy) {
+		synchronized (evictionLock) {
+			window.clear();
+			main.clear();
+			windowCount = 0;
+			windowBytes = 0;
+		}
+		
+		for (Segment<K, E> segment : segments) {
+			segment.lock();
+			try {
+				for (TTLObject<K, E> ttlObject : segment.objects.values()) {
+					currentSizeInBytes.addAndGet(-ttlObject.getObject().getSizeInBytes());
+					onRemove(ttlObject.getObject(), destroy);
+				}
+				segment.objects.clear();
+			}
+			finally {
+				segment.unlock();
+			}
+		}
+	}
+	
+	public void setReapCycle(long milliseconds) {
+		reapCycle = milliseconds;
+		startReaper();
+	}
+	
+	protected synchronized void startReaper() {
+		stopReaper();
+		
+		if(reapCycle > 0) {
+			reaper = new Reaper();
+			
+			if(reapTimer == null) {
+				reapTimer = new Timer("CacheReaper", true); // Daemon so we auto-exit on shutdown
+			}
+			
+			reapTimer.schedule(reaper, reapCycle, reapCycle);	
+		}
+	}
+	
+	protected synchronized void stopReaper() {
+		if(reaper != null) {
+			reaper.cancel();
+			reaper = null;
+		}
+		
+		if(reapTimer != null) {
+			reapTimer.purge();
+		}
+	}
+	
+	/**
+	 * Adds an object to cache with the given time-to-live
+	 * @param strKey
+	 * @param object
+	 * @param ttl
+	 */
+	public boolean put(K strKey, E object, long ttl) {
+		return put(strKey, object, ttl, false);
+	}
+	
+	/**
+	 * Adds an object to cache that optionally lives forever.
+	 * @param strKey
+	 * @param object
+	 * @param eternal
+	 * @return
+	 */
+	public boolean put(K strKey, E object, boolean eternal) {
+		return put(strKey, object, defaultTTL, eternal);
+	}
+	
+	
+	/**
+	 * Adds an eternal object to cache.  Eternal objects will never expire, unless they commit suicide.
+	 * @param strKey
+	 * @param object
+	 */
+	public boolean put(K strKey, E object) {
+		return put(strKey, object, defaultTTL, (defaultTTL <= 0));
+	}
+	
+	/**
+	 * Adds an object to cache with the given Time To Live in milliseconds
+	 * @param k
+	 * @param object
+	 * @param ttl milliseconds
+	 * @param eternal
+	 */
+	protected boolean put(K k, E object, long ttl, boolean eternal) {
+		
+		if(k == null) {
+			return false;
+		}
+		
+		ICacheEvictionPolicy<K, E> policy = evictionPolicy;
+		
+		if(policy != null && maxCapacityBytes > 0 && object.getSizeInBytes() > maxCapacityBytes) {
+			// Bigger than the whole cache
+			return false;
+		}
+		
+		Segment<K, E> segment = segmentFor(k);
+		TTLObject<K, E> added = null;
+		TTLObject<K, E> replaced = null;
+		
+		segment.lock();
+		
+		try {
+			TTLObject<K, E> ttlObject = segment.objects.get(k);
+			
+			// Check the key map first
+			if(ttlObject != null) {
+				long delta = object.getSizeInBytes() - ttlObject.getObject().getSizeInBytes();
+				
+				if(delta > 0) {
+					// A larger value must fit like a new one, otherwise the current value is kept.
+					if(!reserveBytes(delta)) {
+						return false;
+					}
+				}
+				else {
+					currentSizeInBytes.addAndGet(delta);
+				}
+				
+				ttlObject.setAccessTime(System.currentTimeMillis());
+				ttlObject.setReferenced(true);
+				ttlObject.setEternal(eternal);
+				ttlObject.extendLife(ttl);
+				ttlObject.setObject(object);
+				
+				replaced = ttlObject;
+			}
+			else {
+				if(!reserveBytes(object.getSizeInBytes())) {
+					return false;
+				}
+				
+				TTLObject<K, E> t = new TTLObject<K, E>(object, k, ttl);
+				
+				t.setEternal(eternal);
+				
+				segment.objects.put(k, t);
+				
+				t.getObject().onPut(k);
+				
+				added = t;
+			}
+		}
+		finally {
+			segment.unlock();
+		}
+		
+		if(policy != null && added != null && !evict(policy, added)) {
+			if(debug && logger != null) {
+				logger.debug("Object with key [" +
+						k +
+						"] was not admitted to cache");
+			}
+			return false;
+		}
+		
+		if(policy != null && replaced != null && !resize(policy, replaced)) {
+			if(debug && logger != null) {
+				logger.debug("Object with key [" +
+						k +
+						"] was evicted when replaced");
+			}
+			return false;
+		}
+		
+		ICacheEventListener<K, E> listener = eventListener;
+		
+		if(listener != null) {
+			listener.onPut(object);
+		}		
+		
+		return true;
+	}
+	
+	/**
+	 * Adds the given number of bytes to the current size, unless doing so would breach a hard byte limit.
+	 */
+	private boolean reserveBytes(long addedSize) {
+		while(true) {
+			long currentSize = currentSizeInBytes.get();
+			long newSize = currentSize + addedSize;
+			
+			if(hardByteLimit && maxCapacityBytes > 0 && newSize > maxCapacityBytes) {
+				return false;
+			}
+			
+			if(currentSizeInBytes.compareAndSet(currentSize, newSize)) {
+				return true;
+			}
+		}
+	}
+	
+	/**
+	 * Adds a new object to the admission window, then evicts until the cache is within its limits.  
+	 * Objects that overflow the window are only kept if the policy prefers them to the main queue's victims.
+	 * @return false if the added object was itself evicted.
+	 */
+	private boolean evict(ICacheEvictionPolicy<K, E> policy, TTLObject<K, E> added) {
+		synchronized (evictionLock) {
+			added.setWeight(added.getObject().getSizeInBytes());
+			window.addLast(added);
+			windowCount++;
+			windowBytes += added.getWeight();
+			trim(policy);
+		}
+		
+		return getTTLObject(added.getKey()) == added;
+	}
+	
+	/**
+	 * Re-weighs an object whose value was replaced, then evicts until the cache is within its limits.
+	 * @return false if the replaced object was itself evicted.
+	 */
+	private boolean resize(ICacheEvictionPolicy<K, E> policy, TTLObject<K, E> replaced) {
+		synchronized (evictionLock) {
+			if(replaced.getWeight() >= 0) {
+				long weight = replaced.getObject().getSizeInBytes();
+				windowBytes += weight - replaced.getWeight();
+				replaced.setWeight(weight);
+			}
+			trim(policy);
+		}
+		
+		return getTTLObject(replaced.getKey()) == replaced;
+	}
+	
+	// Must hold evictionLock
+	private void trim(ICacheEvictionPolicy<K, E> policy) {
+		while(isWindowFull()) {
+			TTLObject<K, E> candidate = pollWindow();
+			
+			if(candidate == null) {
+				break;
+			}
+			
+			if(isOverCapacity(size())) {
+				compete(policy, candidate);
+			}
+			else {
+				main.addLast(candidate);
+			}
+		}
+		
+		// Anything still over the limits comes from main first, then the oldest in the window.
+		while(isOverCapacity(size())) {
+			TTLObject<K, E> victim = pollVictim();
+			
+			if(victim == null) {
+				victim = pollWindow();
+			}
+			
+			if(victim == null) {
+				break;
+			}
+			
+			evictObject(victim);
+		}
+	}
+	
+	/**
+	 * Takes the victims needed to make room for the candidate and lets the policy choose between them.
+	 */
+	private void compete(ICacheEvictionPolicy<K, E> policy, TTLObject<K, E> candidate) {
+		int excessCount = (maxCapacity > 0) ? size() - maxCapacity : 0;
+		long excessBytes = (maxCapacityBytes > 0) ? currentSizeInBytes.get() - maxCapacityBytes : 0;
+		
+		List<TTLObject<K, E>> victims = new ArrayList<TTLObject<K, E>>();
+		
+		while(excessCount > 0 || excessBytes > 0) {
+			TTLObject<K, E> victim = pollVictim();
+			
+			if(victim == null) {
+				break;
+			}
+			
+			victims.add(victim);
+			excessCount--;
+			excessBytes -= victim.getObject().getSizeInBytes();
+		}
+		
+		if(policy.admit(candidate.getKey(), candidate.getObject(), victims)) {
+			for (TTLObject<K, E> victim : victims) {
+				evictObject(victim);
+			}
+			main.addLast(candidate);
+		}
+		else {
+			evictObject(candidate);
+			
+			// Victims keep their place at the head of the queue
+			for (int i = victims.size() - 1; i >= 0; i--) {
+				main.addFirst(victims.get(i));
+			}
+		}
+	}
+	
+	private boolean isWindowFull() {
+		int percent = windowPercent;
+		int maxCount = (maxCapacity > 0) ? Math.max(1, (maxCapacity * percent) / 100) : Integer.MAX_VALUE;
+		long maxBytes = (maxCapacityBytes > 0) ? (maxCapacityBytes * percent) / 100 : Long.MAX_VALUE;
+		return windowCount > maxCount || (windowCount > 0 && windowBytes > maxBytes);
+	}
+	
+	/**
+	 * @return The oldest live object in the window, or null if it is empty.
+	 */
+	private TTLObject<K, E> pollWindow() {
+		TTLObject<K, E> object;
+		
+		while((object = window.pollFirst()) != null) {
+			windowCount--;
+			windowBytes -= object.getWeight();
+			object.setWeight(-1);
+			
+			if(isLive(object)) {
+				return object;
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Clock sweep over the main queue.  Objects accessed since they were last passed get a second chance.
+	 * @return The next live, unreferenced object, or null if the queue is empty.
+	 */
+	private TTLObject<K, E> pollVictim() {
+		int chances = main.size();
+		TTLObject<K, E> object;
+		
+		while((object = main.pollFirst()) != null) {
+			if(!isLive(object)) {
+				continue;
+			}
+			
+			if(object.isReferenced() && chances-- > 0) {
+				object.setReferenced(false);
+				main.addLast(object);
+				continue;
+			}
+			
+			return object;
+		}
+		
+		return null;
+	}
+	
+	private boolean isLive(TTLObject<K, E> object) {
+		return getTTLObject(object.getKey()) == object;
+	}
+	
+	private void evictObject(TTLObject<K, E> object) {
+		remove(object.getKey(), object, true);
+	}
+	
+	/**
+	 * Drops queue entries for objects that have already left the cache.
+	 */
+	private void purgeQueues() {
+		synchronized (evictionLock) {
+			if(window.size() + main.size() > 2 * size()) {
+				Iterator<TTLObject<K, E>> iter = window.iterator();
+				
+				while(iter.hasNext()) {
+					TTLObject<K, E> object = iter.next();
+					if(!isLive(object)) {
+						iter.remove();
+						windowCount--;
+						windowBytes -= object.getWeight();
+						object.setWeight(-1);
+					}
+				}
+				
+				iter = main.iterator();
+				
+				while(iter.hasNext()) {
+					if(!isLive(iter.next())) {
+						iter.remove();
+					}
+				}
+			}
+		}
+	}
+	
+	protected Segment<K, E> segmentFor(K key) {
+		// Spread the hash so keys with similar low bits don't land in the same segment.
+		int h = key.hashCode();
+		h ^= (h >>> 20) ^ (h >>> 12);
+		h ^= (h >>> 7) ^ (h >>> 4);
+		return segments[h & segmentMask];
+	}
+	
+	protected TTLObject<K, E> getTTLObject(K strKey) {
+		if(strKey == null) {
+			return null;
+		}
+		return segmentFor(strKey).objects.get(strKey);
+	}
+	
+	/**
+	 * Ignores proxy and always returns raw object
+	 * @param strKey
+	 * @return
+	 */
+	public E getRaw(K strKey) {
+		TTLObject<K, E> obj = getTTLObject(strKey);
+		if(obj != null && !isExpired(obj)) {
+			return obj.getObject();
+		}
+		return null;
+	}
+	
+	/**
+	 * Gets an object from cache.  Returns null if the object does not exist, or has expired.
+	 * @param key
+	 * @return
+	 */
+	public E get(K key) {
+		ICacheEvictionPolicy<K, E> policy = evictionPolicy;
+		
+		if(policy != null) {
+			policy.onAccess(key);
+		}
+		
+		TTLObject<K, E> obj = getTTLObject(key);
+		if(obj != null && !isExpired(obj)) {
+			
+			E object = obj.getObject();
+			
+			obj.setAccessTime(System.currentTimeMillis());
+			
+			if(!obj.isReferenced()) {
+				obj.setReferenced(true);
+			}
+			
+			if(extendOnGet) {
+				obj.setLifeExpectancy(System.currentTimeMillis() + obj.getTtl());
+			}
+			
+			ICacheEventListener<K, E> listener = eventListener;
+
+			if(listener != null) {
+				listener.onGet(object);
+			}			
+			
+			object.onGet();
+			
+			return object;
+	
+		}
+		else if(obj != null) {
+			// Expired
+			remove(key, obj, true);
+			obj = null;
+		}
+		
+		if (obj == null) {
+			ICacheableFactory<K, E> factory = objectFactory;
+			
+			if(factory != null) {
+				E object = factory.create(key);
+				
+				if(object != null) {
+					if(!put(key, object) && logger != null) {
+						// We couldn't put this record.. just log a warning
+						logger.warn("Failed to put object into cache. Cache size exceeded");
+					}
+				}
+				
+				return object;
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Returns the internal values of the cache. 
+	 * <br/>
+	 * Proxy objects are returned if gets are proxied within the cache.
+	 * @return
+	 */
+	public Collection<E> values() {
+		Collection<E> values = new ArrayList<E>(size());
+		for (Segment<K, E> segment : segments) {
+			for (TTLObject<K, E> t : segment.objects.values()) {
+				if(!isExpired(t)) {
+					values.add(t.getObject());
+				}
+			}
+		}
+		return values;
+	}
+	
+	/**
+	 * Returns true if the object with the given key resides in the cache.
+	 * @param k
+	 * @return true if the object with the given key resides in the cache.
+	 */
+	public boolean exists(K k) {
+		return getTTLObject(k) != null;
+	}
+	
+	public boolean keyExists(K k) {
+		return exists(k);
+	}
+	
+	/**
+	 * Removes an object from cache.  If the object maintains a persistent state.
+	 * @param key
+	 */
+	public E remove(K key) {
+		return remove(key, false);
+	}
+	
+	/**
+	 * Destroys an object in cache.  This differs from remove() such that any persistent state associated with the object should also be removed.
+	 * @param key
+	 */
+	public E destroy(K key) {
+		return remove(key, true);
+	}
+	
+	public E remove(K strKey, boolean destroy) {
+		if(strKey == null) {
+			return null;
+		}
+		
+		Segment<K, E> segment = segmentFor(strKey);
+		TTLObject<K, E> removed = null;
+		
+		segment.lock();
+		
+		try {
+			removed = segment.objects.remove(strKey);
+			
+			if(removed != null) {
+				currentSizeInBytes.addAndGet(-removed.getObject().getSizeInBytes());
+				onRemove(removed.getObject(), destroy);
+			}
+		}
+		finally {
+			segment.unlock();
+		}
+		
+		if(removed != null) {
+			return removed.getObject();
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Removes the given entry only if it is still the one mapped to the key and, when accessTime is non-negative, 
+	 * it has not been accessed since the given time.
+	 * @return true if the entry was removed.
+	 */
+	protected boolean remove(K strKey, TTLObject<K, E> expected, boolean destroy) {
+		return remove(strKey, expected, -1L, destroy);
+	}
+	
+	private boolean remove(K strKey, TTLObject<K, E> expected, long accessTime, boolean destroy) {
+		if(strKey == null) {
+			return false;
+		}
+		
+		Segment<K, E> segment = segmentFor(strKey);
+		
+		segment.lock();
+		
+		try {
+			if(segment.objects.get(strKey) == expected && (accessTime < 0 || expected.getAccessTime() == accessTime)) {
+				segment.objects.remove(strKey);
+				currentSizeInBytes.addAndGet(-expected.getObject().getSizeInBytes());
+				onRemove(expected.getObject(), destroy);
+				return true;
+			}
+		}
+		finally {
+			segment.unlock();
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Called when an object leaves the cache.
+	 * @param object
+	 * @param destroy
+	 */
+	protected void onRemove(E object, boolean destroy) {
+		object.onRemove(destroy);
+	}
+	
+	/**
+	 * Extends the ttl of the object with the given key with the current system time.
+	 * @param strKey
+	 */
+	public void extendTTL(K strKey) {
+		TTLObject<K, E> object = getTTLObject(strKey);
+		if(object != null) {
+			object.setLifeExpectancy(System.currentTimeMillis() + object.getTtl());
+		}
+	}
+
+	/**
+	 * @return Returns the debug.
+	 */
+	public boolean isDebug() {
+		return debug;
+	}
+
+	/**
+	 * @param debug The debug to set.
+	 */
+	public void setDebug(boolean debug) {
+		this.debug = debug;
+	}
+	
+	public boolean isExpired(TTLObject<K, E> object) {
+		E o = object.getObject();
+		
+		if(o instanceof ISuicidal) {
+			ISuicidal<K> s = (ISuicidal<K>) o;
+			if(s.isDead()) {
+				return true;
+			}
+		}
+		return !object.isEternal() && object.getLifeExpectancy() <= System.currentTimeMillis();
+	}
+	
+	public boolean doReap() {
+		return reap();
+	}
+
+	/**
+	 * Removes expired objects then trims the oldest objects if the cache is over capacity.
+	 * <br/>
+	 * Segments are scanned without locking and each removal only locks the owning segment, so readers 
+	 * are never blocked and writers only wait for a single removal.
+	 * @return false if a reap was already in progress.
+	 */
+	protected boolean reap() {
+		
+		if(reaping.compareAndSet(false, true)) {
+			
+			int reaped = 0;
+			
+			ICacheEventListener<K, E> listener = eventListener;
+			
+			try {
+				if(listener != null) {
+					listener.onReapStart();
+				}
+				
+				List<Candidate<K, E>> live = new ArrayList<Candidate<K, E>>(size());
+				
+				for (Segment<K, E> segment : segments) {
+					for (TTLObject<K, E> object : segment.objects.values()) {
+						if(isExpired(object)) {
+							if(remove(object.getKey(), object, true)) {
+								reaped++;
+								
+								if(debug && logger != null) {
+									logger.debug("Object [" +
+											object.getObject().toString() +
+											"] with ttl of [" +
+											object.getTtl() +
+											"] has expired or comitted suicide and was purged from cache");
+								}
+							}
+						}
+						else {
+							live.add(new Candidate<K, E>(object));
+						}
+					}
+				}
+				
+				reaped += trim(live);
+				
+				if(evictionPolicy != null) {
+					purgeQueues();
+				}
+			}
+			finally {
+				
+				if(listener != null) {
+					listener.onReapEnd(reaped);
+				}				
+				
+				reaping.set(false);
+			}
+			
+			return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Removes the least recently accessed objects until the cache is within its count and byte limits.
+	 * @param live Snapshot of the live objects in cache.
+	 * @return The number of objects removed.
+	 */
+	private int trim(List<Candidate<K, E>> live) {
+		
+		int reaped = 0;
+		int size = size();
+		
+		if(isOverCapacity(size)) {
+			
+			// To many objects.. start trimming
+			if(debug && logger != null) {
+				logger.debug("TTLCache has count of [" +
+						size +
+						"], size of [" +
+						currentSizeInBytes.get() +
+						"] bytes  which exceeds maximum of [" +
+						maxCapacity +
+						"], [" +
+						maxCapacityBytes +
+						"] bytes.  Excess items will be trimmed");
+			}
+			
+			Collections.sort(live);
+			
+			for (Candidate<K, E> candidate : live) {
+				if(!isOverCapacity(size)) {
+					break;
+				}
+				
+				// Skip anything touched since the snapshot, it's no longer the oldest.
+				if(remove(candidate.object.getKey(), candidate.object, candidate.time, true)) {
+					size--;
+					reaped++;
+					
+					if(debug && logger != null) {
+						logger.debug("Removed item with key [" +
+								candidate.object.getKey() +
+								"] from cache. [" +
+								size +
+								"] objects remain with size of [" +
+								currentSizeInBytes.get() +
+								"]");
+					}
+				}
+			}
+		}
+		
+		return reaped;
+	}
+	
+	private boolean isOverCapacity(int size) {
+		return (maxCapacity > 0 && size > maxCapacity) || (maxCapacityBytes > 0 && currentSizeInBytes.get() > maxCapacityBytes);
+	}
+
+	public int size() {
+		int size = 0;
+		for (Segment<K, E> segment : segments) {
+			size += segment.objects.size();
+		}
+		return size;
+	}
+	
+	public long sizeInBytes() {
+		return currentSizeInBytes.get();
+	}
+	
+	public boolean isExtendOnGet() {
+		return extendOnGet;
+	}
+
+	public void setExtendOnGet(boolean extendOnGet) {
+		this.extendOnGet = extendOnGet;
+	}
+
+	public long getMaxCapacityBytes() {
+		return maxCapacityBytes;
+	}
+
+	public void setMaxCapacityBytes(long maxCapacityBytes) {
+		this.maxCapacityBytes = maxCapacityBytes;
+	}
+
+	public ICacheEventListener<K, E> getEventListener() {
+		return eventListener;
+	}
+
+	public void setEventListener(ICacheEventListener<K, E> eventListener) {
+		this.eventListener = eventListener;
+	}
+	
+	public ICacheEvictionPolicy<K, E> getEvictionPolicy() {
+		return evictionPolicy;
+	}
+
+	/**
+	 * Sets the policy used to decide whether new objects are admitted when the cache is full.
+	 * If not set the cache accepts everything and trims the oldest objects during reap.
+	 * @param evictionPolicy
+	 */
+	public void setEvictionPolicy(ICacheEvictionPolicy<K, E> evictionPolicy) {
+		this.evictionPolicy = evictionPolicy;
+	}
+	
+	public int getWindowPercent() {
+		return windowPercent;
+	}
+	
+	/**
+	 * Sets the share of the cache (by count and bytes) new objects may occupy before they must compete 
+	 * with existing objects for a place.  Only used when an eviction policy is set.
+	 * @param windowPercent
+	 */
+	public void setWindowPercent(int windowPercent) {
+		this.windowPercent = windowPercent;
+	}
+	
+	/**
+	 * Extends the maximum capacity.
+	 * @param extension
+	 */
+	public void extendMax(int extension) {
+		maxCapacity += extension;
+	}
+	
+	/**
+	 * @return the maxCapacity
+	 */
+	public int getMaxCapacity() {
+		return maxCapacity;
+	}
+
+	public ICacheableFactory<K, E> getObjectFactory() {
+		return objectFactory;
+	}
+
+	public void setObjectFactory(ICacheableFactory<K, E> constructor) {
+		this.objectFactory = constructor;
+	}
+
+	public long getDefaultTTL() {
+		return defaultTTL;
+	}
+
+	public void setDefaultTTL(long defaultTTL) {
+		this.defaultTTL = defaultTTL;
+	}
+
+	public boolean isHardByteLimit() {
+		return hardByteLimit;
+	}
+
+	public void setHardByteLimit(boolean hardByteLimit) {
+		this.hardByteLimit = hardByteLimit;
+	}
+	
+	public SocializeLogger getLogger() {
+		return logger;
+	}
+
+	public void setLogger(SocializeLogger logger) {
+		this.logger = logger;
+	}
+}
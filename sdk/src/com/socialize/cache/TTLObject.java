@@ -26,11 +26,20 @@ package com.socialize.cache;
  *
  */
 public class TTLObject<K extends Comparable<K>, E extends ICacheable<K>> {
-	private E object;
+	private volatile E object;
 	private K key;
-	private boolean eternal = false;
-	private long lifeExpectancy;
-	private long ttl;
+	private volatile boolean eternal = false;
+	private volatile long lifeExpectancy;
+	private volatile long ttl;
+	
+	// Last time the object was read or written, used for LRU trimming.
+	private volatile long accessTime;
+	
+	// Set on access and cleared when the eviction queue gives the object a second chance.
+	private volatile boolean referenced;
+	
+	// Size accounted to the admission window while the object is in it, -1 once it has left.
+	private long weight = -1;
 	
 	public TTLObject() {
 		super();
@@ -41,6 +50,7 @@ public class TTLObject<K extends Comparable<K>, E extends ICacheable<K>> {
 		this.object = obj;
 		this.key = key;
 		this.ttl = ttl;
+		this.accessTime = System.currentTimeMillis();
 		extendLife(ttl);
 	}
 	
@@ -114,6 +124,33 @@ public class TTLObject<K extends Comparable<K>, E extends ICacheable<K>> {
 		this.eternal = eternal;
 	}
 
+	/**
+	 * @return the time (in ms) this object was last accessed.
+	 */
+	public long getAccessTime() {
+		return accessTime;
+	}
+	
+	public void setAccessTime(long accessTime) {
+		this.accessTime = accessTime;
+	}
+
+	public boolean isReferenced() {
+		return referenced;
+	}
+	
+	public void setReferenced(boolean referenced) {
+		this.referenced = referenced;
+	}
+	
+	public long getWeight() {
+		return weight;
+	}
+	
+	public void setWeight(long weight) {
+		this.weight = weight;
+	}
+
 	public void setLifeExpectancy(long lifeExpectancy) {
 		this.lifeExpectancy = lifeExpectancy;
 	}
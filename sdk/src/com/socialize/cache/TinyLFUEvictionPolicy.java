@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.cache;
+
+import java.util.List;
+
+/**
+ * Size aware TinyLFU admission.  An object leaving the cache's admission window is only kept if it has been 
+ * requested at least as often as all the objects it would displace combined, so a large object that is only 
+ * seen once cannot flush a set of small, popular objects.
+ */
+public class TinyLFUEvictionPolicy<K extends Comparable<K>, E extends ICacheable<K>> implements ICacheEvictionPolicy<K, E> {
+
+	private final FrequencySketch sketch;
+	
+	/**
+	 * @param expectedEntries The number of entries the cache holds when full.
+	 */
+	public TinyLFUEvictionPolicy(int expectedEntries) {
+		super();
+		this.sketch = new FrequencySketch(expectedEntries);
+	}
+
+	@Override
+	public void onAccess(K key) {
+		if(key != null) {
+			sketch.increment(key);
+		}
+	}
+
+	@Override
+	public boolean admit(K key, E candidate, List<TTLObject<K, E>> victims) {
+		int candidateFrequency = sketch.frequency(key);
+		int victimFrequency = 0;
+		
+		for (TTLObject<K, E> victim : victims) {
+			victimFrequency += sketch.frequency(victim.getKey());
+			
+			if(victimFrequency > candidateFrequency) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	public int frequency(K key) {
+		return sketch.frequency(key);
+	}
+}
@@ -47,6 +47,13 @@ public abstract class ManagedAsyncTask<Params, Progress, Result> extends AsyncTa
 		}
 	}
 	
+	@Override
+	protected void onCancelled() {
+		if(AsyncTaskManager.isManaged()) {
+			AsyncTaskManager.unregister(id);
+		}
+	}
+	
 	protected abstract void onPostExecuteManaged(Result result);
 
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.concurrent;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks requests that are currently in flight so that identical requests can share a single round-trip.  
+ * The first caller for a key leads the flight and executes the request, later callers for the same key 
+ * join as followers and are handed back to the leader when the flight lands.
+ *
+ * @param <K> The request identity.
+ * @param <L> The listener waiting on the request.
+ */
+public class RequestCoalescer<K, L> {
+
+	private final Map<K, List<L>> flights = new HashMap<K, List<L>>();
+	
+	/**
+	 * Joins the flight for the given key.
+	 * @param key The request identity.
+	 * @param listener The listener to be notified when the flight lands.
+	 * @return true if the caller leads a new flight and must execute the request, 
+	 * false if the listener was attached to a flight already in progress.
+	 */
+	public synchronized boolean join(K key, L listener) {
+		List<L> followers = flights.get(key);
+		if(followers == null) {
+			flights.put(key, new LinkedList<L>());
+			return true;
+		}
+		followers.add(listener);
+		return false;
+	}
+	
+	/**
+	 * Ends the flight for the given key.  Requests made after this call will start a new flight.
+	 * @param key The request identity.
+	 * @return The listeners that joined the flight after the leader, never null.
+	 */
+	public synchronized List<L> land(K key) {
+		List<L> followers = flights.remove(key);
+		if(followers == null) {
+			return Collections.emptyList();
+		}
+		return followers;
+	}
+	
+	public synchronized boolean isInFlight(K key) {
+		return flights.containsKey(key);
+	}
+	
+	public synchronized int size() {
+		return flights.size();
+	}
+}
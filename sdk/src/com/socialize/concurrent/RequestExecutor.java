@@ -0,0 +1,365 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.concurrent;
+
+import com.socialize.api.SocializeApi.RequestType;
+import com.socialize.log.SocializeLogger;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Runs API requests on a fixed set of worker threads.  
+ * Requests are queued in priority lanes (writes ahead of reads ahead of background work), 
+ * no more than maxPerEndpoint requests run against the same endpoint at once and the queue is bounded.  
+ * When the queue is full the newest request in a lower lane is evicted to make room, 
+ * otherwise the incoming request is rejected.  A rejected request is handed to its onReject hook, which must cancel 
+ * the work itself (an AsyncTask through AsyncTask.cancel) so its listeners are notified.
+ */
+public class RequestExecutor {
+	
+	public static enum Lane {WRITE, READ, BACKGROUND};
+	
+	public static final int DEFAULT_THREADS = 3;
+	public static final int DEFAULT_MAX_QUEUE_SIZE = 64;
+	public static final int DEFAULT_MAX_PER_ENDPOINT = 2;
+	
+	private int threads = DEFAULT_THREADS;
+	private int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
+	private int maxPerEndpoint = DEFAULT_MAX_PER_ENDPOINT;
+	
+	private SocializeLogger logger;
+	
+	private final Object lock = new Object();
+	private final List<LinkedList<Task>> lanes;
+	private final Map<String, Integer> active = new HashMap<String, Integer>();
+	private final List<Thread> workers = new ArrayList<Thread>();
+	private final AtomicInteger threadIds = new AtomicInteger(0);
+	
+	private int queued = 0;
+	private boolean destroyed = false;
+	
+	private final AtomicLongArray waitTotal;
+	private final AtomicLongArray waitMax;
+	private final AtomicLongArray waitCount;
+	private final AtomicInteger rejected = new AtomicInteger(0);
+	
+	public RequestExecutor() {
+		super();
+		Lane[] values = Lane.values();
+		lanes = new ArrayList<LinkedList<Task>>(values.length);
+		for (int i = 0; i < values.length; i++) {
+			lanes.add(new LinkedList<Task>());
+		}
+		
+		int types = RequestType.values().length;
+		waitTotal = new AtomicLongArray(types);
+		waitMax = new AtomicLongArray(types);
+		waitCount = new AtomicLongArray(types);
+	}
+	
+	/**
+	 * Returns an Executor that submits to this executor with the given request attributes.  
+	 * Suitable for AsyncTask.executeOnExecutor.
+	 * @param onReject Optional callback run if the request is rejected or evicted.  It is responsible for cancelling the request, 
+	 * cancelling the FutureTask an AsyncTask submits does not mark the AsyncTask itself as cancelled.
+	 */
+	public Executor forRequest(final RequestType type, final String endpoint, final Lane lane, final Runnable onReject) {
+		return new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				RequestExecutor.this.execute(command, type, endpoint, lane, onReject);
+			}
+		};
+	}
+
+	public void execute(Runnable command, RequestType type, String endpoint, Lane lane, Runnable onReject) {
+		Task task = new Task(command, type, (endpoint == null) ? "" : endpoint, lane, onReject);
+		Task reject = null;
+		
+		synchronized (lock) {
+			if(destroyed) {
+				reject = task;
+			}
+			else {
+				startWorkers();
+				
+				if(queued >= maxQueueSize) {
+					reject = evictBelow(lane);
+					
+					if(reject == null) {
+						reject = task;
+					}
+					else {
+						enqueue(task);
+					}
+				}
+				else {
+					enqueue(task);
+				}
+			}
+		}
+		
+		if(reject != null) {
+			reject(reject, reject == task);
+		}
+	}
+	
+	/**
+	 * @return The mean time in milliseconds requests of the given type spent in the queue.
+	 */
+	public long getAverageQueueWait(RequestType type) {
+		long count = waitCount.get(type.ordinal());
+		return (count == 0) ? 0 : waitTotal.get(type.ordinal()) / count;
+	}
+	
+	/**
+	 * @return The longest time in milliseconds a request of the given type spent in the queue.
+	 */
+	public long getMaxQueueWait(RequestType type) {
+		return waitMax.get(type.ordinal());
+	}
+	
+	public long getExecutedCount(RequestType type) {
+		return waitCount.get(type.ordinal());
+	}
+	
+	public int getRejectedCount() {
+		return rejected.get();
+	}
+	
+	public int getQueuedCount() {
+		synchronized (lock) {
+			return queued;
+		}
+	}
+	
+	public void destroy() {
+		List<Task> pending = new LinkedList<Task>();
+		
+		synchronized (lock) {
+			destroyed = true;
+			for (LinkedList<Task> lane : lanes) {
+				pending.addAll(lane);
+				lane.clear();
+			}
+			queued = 0;
+			workers.clear();
+			lock.notifyAll();
+		}
+		
+		for (Task task : pending) {
+			reject(task, false);
+		}
+	}
+	
+	// Must hold lock
+	private void enqueue(Task task) {
+		lanes.get(task.lane.ordinal()).add(task);
+		queued++;
+		lock.notifyAll();
+	}
+	
+	// Must hold lock.  Evicts the newest task from the lowest lane below the given lane.
+	private Task evictBelow(Lane lane) {
+		for (int i = lanes.size() - 1; i > lane.ordinal(); i--) {
+			LinkedList<Task> lower = lanes.get(i);
+			if(!lower.isEmpty()) {
+				queued--;
+				return lower.removeLast();
+			}
+		}
+		return null;
+	}
+	
+	// Must hold lock
+	private void startWorkers() {
+		while(workers.size() < threads) {
+			Thread worker = new Thread(new Worker(), "SocializeRequest-" + threadIds.incrementAndGet());
+			worker.setDaemon(true);
+			workers.add(worker);
+			worker.start();
+		}
+	}
+	
+	private Task take() throws InterruptedException {
+		synchronized (lock) {
+			while(!destroyed) {
+				for (LinkedList<Task> lane : lanes) {
+					Iterator<Task> iter = lane.iterator();
+					while(iter.hasNext()) {
+						Task task = iter.next();
+						int running = getActive(task.endpoint);
+						if(running < maxPerEndpoint) {
+							iter.remove();
+							queued--;
+							active.put(task.endpoint, running + 1);
+							return task;
+						}
+					}
+				}
+				lock.wait();
+			}
+			return null;
+		}
+	}
+	
+	private void release(Task task) {
+		synchronized (lock) {
+			int running = getActive(task.endpoint) - 1;
+			if(running <= 0) {
+				active.remove(task.endpoint);
+			}
+			else {
+				active.put(task.endpoint, running);
+			}
+			// Tasks held back by the endpoint limit may now be eligible
+			lock.notifyAll();
+		}
+	}
+	
+	private int getActive(String endpoint) {
+		Integer running = active.get(endpoint);
+		return (running == null) ? 0 : running;
+	}
+	
+	private void record(Task task) {
+		long wait = System.currentTimeMillis() - task.enqueued;
+		int index = task.type.ordinal();
+		waitTotal.addAndGet(index, wait);
+		waitCount.incrementAndGet(index);
+		
+		long max;
+		do {
+			max = waitMax.get(index);
+		}
+		while(wait > max && !waitMax.compareAndSet(index, max, wait));
+		
+		if(logger != null && logger.isDebugEnabled()) {
+			logger.debug(task.type + " request to [" +
+					task.endpoint +
+					"] waited " +
+					wait +
+					"ms in queue");
+		}
+	}
+	
+	private void reject(Task task, boolean incoming) {
+		rejected.incrementAndGet();
+		
+		if(logger != null) {
+			logger.warn("Rejected " +
+					task.type +
+					" request to [" +
+					task.endpoint +
+					"]");
+		}
+		
+		if(task.onReject != null) {
+			task.onReject.run();
+		}
+		else if(!cancel(task) && incoming) {
+			throw new RejectedExecutionException("Request queue full");
+		}
+	}
+	
+	// Only for requests submitted without a hook.  An AsyncTask must be cancelled by its hook instead.
+	private boolean cancel(Task task) {
+		if(task.command instanceof Future) {
+			((Future<?>) task.command).cancel(false);
+			return true;
+		}
+		return false;
+	}
+	
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+	
+	public void setMaxQueueSize(int maxQueueSize) {
+		this.maxQueueSize = maxQueueSize;
+	}
+	
+	public void setMaxPerEndpoint(int maxPerEndpoint) {
+		this.maxPerEndpoint = maxPerEndpoint;
+	}
+	
+	public void setLogger(SocializeLogger logger) {
+		this.logger = logger;
+	}
+	
+	static class Task {
+		final Runnable command;
+		final RequestType type;
+		final String endpoint;
+		final Lane lane;
+		final Runnable onReject;
+		final long enqueued = System.currentTimeMillis();
+		
+		Task(Runnable command, RequestType type, String endpoint, Lane lane, Runnable onReject) {
+			super();
+			this.command = command;
+			this.type = type;
+			this.endpoint = endpoint;
+			this.lane = lane;
+			this.onReject = onReject;
+		}
+	}
+	
+	class Worker implements Runnable {
+		@Override
+		public void run() {
+			while(true) {
+				Task task;
+				
+				try {
+					task = take();
+				}
+				catch (InterruptedException e) {
+					return;
+				}
+				
+				if(task == null) {
+					return;
+				}
+				
+				record(task);
+				
+				try {
+					task.command.run();
+				}
+				catch (Throwable e) {
+					if(logger != null) {
+						logger.error("Error executing request", e);
+					}
+				}
+				finally {
+					release(task);
+				}
+			}
+		}
+	}
+}
@@ -137,6 +137,15 @@ public class SocializeConfig {
 	
 	public static final String HTTP_CONNECTION_TIMEOUT = "http.connection.timeout";
 	public static final String HTTP_SOCKET_TIMEOUT = "http.socket.timeout";
+	public static final String HTTP_MAX_CONNECTIONS = "http.max.connections";
+	public static final String HTTP_MAX_CONNECTIONS_PER_ROUTE = "http.max.connections.per.route";
+	public static final String HTTP_KEEP_ALIVE = "http.keep.alive";
+	public static final String HTTP_GZIP_RESPONSES = "http.gzip.responses";
+	public static final String HTTP_GZIP_REQUEST_SIZE = "http.gzip.request.size";
+	
+	public static final String CACHE_TTL = "cache.ttl";
+	public static final String CACHE_STALE = "cache.stale";
+	public static final String CACHE_MAX_BYTES = "cache.max.bytes";
 	
 	public static final int MAX_LIST_RESULTS = 100;
 	
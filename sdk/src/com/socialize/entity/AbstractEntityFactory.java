@@ -21,10 +21,13 @@
  */
 package com.socialize.entity;
 
+import com.socialize.google.gson.stream.JsonReader;
 import com.socialize.util.StringUtils;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+
 /**
  * @author Jason Polites
  *
@@ -75,6 +78,67 @@ public abstract class AbstractEntityFactory<T extends Entity> extends SocializeO
 		}
 	}
 
+	@Override
+	public T fromJSON(JsonReader reader) throws IOException, JSONException {
+		T entry = super.fromJSON(reader);
+		// The tree path always attaches stats, even when the counts are absent.
+		getOrCreateStats(entry);
+		return entry;
+	}
+
+	@Override
+	protected boolean readField(String name, JsonReader reader, T entry) throws IOException, JSONException {
+		if(name.equals("name")) {
+			entry.setName(nextString(reader));
+		}
+		else if(name.equals("key")) {
+			entry.setKey(nextString(reader));
+		}
+		else if(name.equals("meta")) {
+			entry.setMetaData(nextString(reader));
+		}
+		else if(name.equals("type")) {
+			entry.setType(nextString(reader));
+		}
+		else if(name.equals(LIKES)) {
+			getOrCreateStats(entry).setLikes(nextInt(reader));
+		}
+		else if(name.equals(SHARES)) {
+			getOrCreateStats(entry).setShares(nextInt(reader));
+		}
+		else if(name.equals(COMMENTS)) {
+			getOrCreateStats(entry).setComments(nextInt(reader));
+		}
+		else if(name.equals(VIEWS)) {
+			getOrCreateStats(entry).setViews(nextInt(reader));
+		}
+		else if(name.equals(TOTAL)) {
+			getOrCreateStats(entry).setTotalActivityCount(nextInt(reader));
+		}
+		else if(name.equals(USER_ACTION_SUMMARY)) {
+			JSONObject userStats = readJSONObject(reader);
+			UserEntityStatsImpl userEntityStats = newUserEntityStatsImpl();
+			userEntityStats.setComments(getInt(userStats, COMMENTS));
+			userEntityStats.setShares(getInt(userStats, SHARES));
+			userEntityStats.setLiked(getInt(userStats, LIKES) > 0);
+			entry.setUserEntityStats(userEntityStats);
+		}
+		else {
+			return super.readField(name, reader, entry);
+		}
+		return true;
+	}
+	
+	private EntityStatsImpl getOrCreateStats(T entry) {
+		EntityStats stats = entry.getEntityStats();
+		if(stats instanceof EntityStatsImpl) {
+			return (EntityStatsImpl) stats;
+		}
+		EntityStatsImpl impl = newEntityStatsImpl();
+		entry.setEntityStats(impl);
+		return impl;
+	}
+
 	@Override
 	protected void postToJSON(T entry, JSONObject object) throws JSONException {
 		String name = entry.getName();
@@ -21,9 +21,12 @@
  */
 package com.socialize.entity;
 
+import com.socialize.google.gson.stream.JsonReader;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+
 
 /**
  * @author Jason Polites
@@ -47,6 +50,20 @@ public class ApplicationFactory extends SocializeObjectFactory<Application> {
 		}
 	}
 
+	@Override
+	protected boolean isStreamable() {
+		return true;
+	}
+
+	@Override
+	protected boolean readField(String name, JsonReader reader, Application entry) throws IOException, JSONException {
+		if(name.equals("name")) {
+			entry.setName(nextString(reader));
+			return true;
+		}
+		return super.readField(name, reader, entry);
+	}
+
 	@Override
 	protected void postToJSON(Application entry, JSONObject object) throws JSONException {
 		object.put("name", entry.getName());
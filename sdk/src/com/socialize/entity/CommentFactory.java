@@ -21,10 +21,13 @@
  */
 package com.socialize.entity;
 
+import com.socialize.google.gson.stream.JsonReader;
 import com.socialize.util.StringUtils;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+
 /**
  * @author Jason Polites
  *
@@ -53,6 +56,25 @@ public class CommentFactory extends SocializeActionFactory<Comment> {
 		}
 	}
 
+	@Override
+	protected boolean isStreamable() {
+		return true;
+	}
+
+	@Override
+	protected boolean readField(String name, JsonReader reader, Comment comment) throws IOException, JSONException {
+		if(name.equals("text")) {
+			comment.setText(nextString(reader));
+		}
+		else if(name.equals("subscribe")) {
+			comment.setNotificationsEnabled(nextBoolean(reader));
+		}
+		else {
+			return super.readField(name, reader, comment);
+		}
+		return true;
+	}
+
 	@Override
 	protected void postToJSON(Comment comment, JSONObject object) throws JSONException {
 		String text = comment.getText();
@@ -33,4 +33,9 @@ public class EntityFactory extends AbstractEntityFactory<Entity> {
 	public Object instantiateObject(JSONObject object) {
 		return new Entity();
 	}
+
+	@Override
+	protected boolean isStreamable() {
+		return true;
+	}
 }
@@ -58,6 +58,14 @@ public class GenericActionFactory extends SocializeActionFactory<SocializeAction
 		}
 	}
 
+	/**
+	 * The concrete type comes from activity_type, so the whole object must be read before anything can be created.
+	 */
+	@Override
+	protected boolean isStreamable() {
+		return false;
+	}
+
 	@Override
 	public Object instantiateObject(JSONObject from) {
 		if(from.has("activity_type") && !from.isNull("activity_type")) {
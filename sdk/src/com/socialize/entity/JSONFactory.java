@@ -21,12 +21,16 @@
  */
 package com.socialize.entity;
 
+import com.socialize.google.gson.stream.JsonReader;
+import com.socialize.google.gson.stream.JsonToken;
+import com.socialize.util.ISODateFormat;
+import com.socialize.util.JSONParser;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.Collection;
 
 /**
@@ -36,7 +40,10 @@ import java.util.Collection;
 public abstract class JSONFactory<T extends Object> {
 	public static final String DATE_FORMAT_STRING = "yyyy-MM-dd HH:mm:ssZZ";
 	
-	protected final DateFormat DATE_FORMAT = new SimpleDateFormat(DATE_FORMAT_STRING);
+	// Thread safe, shared by all factories.
+	protected static final DateFormat DATE_FORMAT = new ISODateFormat(DATE_FORMAT_STRING);
+	
+	private static final JSONParser STREAM_PARSER = new JSONParser();
 	
 	public JSONFactory() {
 		super();
@@ -65,6 +72,49 @@ public abstract class JSONFactory<T extends Object> {
 		return object;
 	}
 	
+	/**
+	 * Reads the object at the current position of the reader.  
+	 * By default the object is materialized as a JSONObject first, factories that bind fields 
+	 * directly from the stream override this.
+	 * @param reader
+	 * @return
+	 */
+	public T fromJSON(JsonReader reader) throws IOException, JSONException {
+		return fromJSON(STREAM_PARSER.readObject(reader));
+	}
+	
+	protected JSONObject readJSONObject(JsonReader reader) throws IOException, JSONException {
+		return STREAM_PARSER.readObject(reader);
+	}
+	
+	// Stream reads coerce values the same way the JSONObject getters do.
+	
+	protected String nextString(JsonReader reader) throws IOException {
+		if(reader.peek() == JsonToken.BOOLEAN) {
+			return String.valueOf(reader.nextBoolean());
+		}
+		return reader.nextString();
+	}
+	
+	protected boolean nextBoolean(JsonReader reader) throws IOException {
+		if(reader.peek() == JsonToken.STRING) {
+			return Boolean.parseBoolean(reader.nextString());
+		}
+		return reader.nextBoolean();
+	}
+	
+	protected int nextInt(JsonReader reader) throws IOException {
+		return (int) reader.nextDouble();
+	}
+	
+	protected long nextLong(JsonReader reader) throws IOException {
+		return reader.nextLong();
+	}
+	
+	protected double nextDouble(JsonReader reader) throws IOException {
+		return reader.nextDouble();
+	}
+	
 	public JSONObject instantiateJSON() {
 		return new JSONObject();
 	}
@@ -41,4 +41,9 @@ public class LikeFactory extends SocializeActionFactory<Like> {
 	public Object instantiateObject(JSONObject object) {
 		return new Like();
 	}
+
+	@Override
+	protected boolean isStreamable() {
+		return true;
+	}
 }
@@ -22,10 +22,13 @@
 package com.socialize.entity;
 
 import com.socialize.api.action.ShareType;
+import com.socialize.google.gson.stream.JsonReader;
 import com.socialize.util.StringUtils;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+
 /**
  * @author Jason Polites
  *
@@ -58,6 +61,26 @@ public class ShareFactory extends SocializeActionFactory<Share> {
 		}
 	}
 
+	@Override
+	protected boolean isStreamable() {
+		return true;
+	}
+
+	@Override
+	protected boolean readField(String name, JsonReader reader, Share share) throws IOException, JSONException {
+		if(name.equals("text")) {
+			share.setText(nextString(reader));
+		}
+		else if(name.equals("medium")) {
+			JSONObject mediumObject = readJSONObject(reader);
+			share.setShareType(ShareType.valueOf(getInt(mediumObject, "id")));
+		}
+		else {
+			return super.readField(name, reader, share);
+		}
+		return true;
+	}
+
 	@Override
 	protected void postToJSON(Share share, JSONObject object) throws JSONException {
 		String text = share.getText();
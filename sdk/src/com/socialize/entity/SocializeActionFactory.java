@@ -21,12 +21,14 @@
  */
 package com.socialize.entity;
 
+import com.socialize.google.gson.stream.JsonReader;
 import com.socialize.log.SocializeLogger;
 import com.socialize.util.StringUtils;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.text.ParseException;
 
 /**
@@ -171,6 +173,53 @@ public abstract class SocializeActionFactory<T extends SocializeAction> extends
 		}
 	}
 	
+	@Override
+	protected boolean readField(String name, JsonReader reader, T to) throws IOException, JSONException {
+		if(name.equals("application") && applicationFactory != null) {
+			to.setApplication(applicationFactory.fromJSON(reader));
+		}
+		else if(name.equals("user") && userFactory != null) {
+			to.setUser(userFactory.fromJSON(reader));
+		}
+		else if(name.equals("entity") && entityFactory != null) {
+			to.setEntity(entityFactory.fromJSON(reader));
+		}
+		else if(name.equals("propagation_info_response") && propagationInfoResponseFactory != null) {
+			to.setPropagationInfoResponse(propagationInfoResponseFactory.fromJSON(reader));
+		}
+		else if(name.equals("entity_key")) {
+			to.setEntityKey(nextString(reader));
+		}
+		else if(name.equals("lat")) {
+			to.setLat(nextDouble(reader));
+		}
+		else if(name.equals("lng")) {
+			to.setLon(nextDouble(reader));
+		}
+		else if(name.equals("share_location")) {
+			to.setLocationShared(nextBoolean(reader));
+		}
+		else if(name.equals("date")) {
+			String date = nextString(reader);
+			try {
+				to.setDate(DATE_FORMAT.parse(date).getTime());
+			}
+			catch (ParseException e) {
+				if(logger != null && logger.isWarnEnabled()) {
+					logger.warn("Could not parse date [" +
+							date +
+							"] using format [" +
+							DATE_FORMAT_STRING +
+							"]");
+				}
+			}
+		}
+		else {
+			return super.readField(name, reader, to);
+		}
+		return true;
+	}
+	
 	public SocializeLogger getLogger() {
 		return logger;
 	}
@@ -21,9 +21,13 @@
  */
 package com.socialize.entity;
 
+import com.socialize.google.gson.stream.JsonReader;
+import com.socialize.google.gson.stream.JsonToken;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+
 
 /**
  * @author Jason Polites
@@ -40,6 +44,56 @@ public abstract class SocializeObjectFactory<T extends SocializeObject> extends
 		postFromJSON(from, to);
 	}
 
+	/**
+	 * Binds fields straight from the stream when the factory supports it, skipping the intermediate JSONObject.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public T fromJSON(JsonReader reader) throws IOException, JSONException {
+		if(!isStreamable()) {
+			return super.fromJSON(reader);
+		}
+		
+		T to = (T) instantiateObject(null);
+		
+		reader.beginObject();
+		
+		while(reader.hasNext()) {
+			String name = reader.nextName();
+			
+			if(reader.peek() == JsonToken.NULL) {
+				reader.nextNull();
+			}
+			else if(!readField(name, reader, to)) {
+				reader.skipValue();
+			}
+		}
+		
+		reader.endObject();
+		
+		return to;
+	}
+	
+	/**
+	 * Returns true if every field this factory reads is handled by readField, and instantiateObject does not inspect the JSON.
+	 * @return
+	 */
+	protected boolean isStreamable() {
+		return false;
+	}
+	
+	/**
+	 * Reads the (non null) value for the given field name.
+	 * @return false if the field is not recognized and should be skipped.
+	 */
+	protected boolean readField(String name, JsonReader reader, T to) throws IOException, JSONException {
+		if(name.equals("id")) {
+			to.setId(nextLong(reader));
+			return true;
+		}
+		return false;
+	}
+
 	@Override
 	protected void toJSON(T from, JSONObject to) throws JSONException {
 		Long id = from.getId();
@@ -21,11 +21,13 @@
  */
 package com.socialize.entity;
 
+import com.socialize.google.gson.stream.JsonReader;
 import com.socialize.util.StringUtils;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.util.List;
 
 
@@ -102,6 +104,59 @@ public class UserFactory extends SocializeObjectFactory<User> {
 		}
 	}
 
+	@Override
+	protected boolean isStreamable() {
+		return true;
+	}
+
+	@Override
+	protected boolean readField(String name, JsonReader reader, User user) throws IOException, JSONException {
+		if(name.equals(META)) {
+			user.setMetaData(nextString(reader));
+		}
+		else if(name.equals(FIRST_NAME)) {
+			user.setFirstName(nextString(reader));
+		}
+		else if(name.equals(LAST_NAME)) {
+			user.setLastName(nextString(reader));
+		}
+		else if(name.equals(USERNAME)) {
+			user.setUsername(nextString(reader));
+		}
+		else if(name.equals(DESCRIPTION)) {
+			user.setDescription(nextString(reader));
+		}
+		else if(name.equals(LOCATION)) {
+			user.setLocation(nextString(reader));
+		}
+		else if(name.equals(SMALL_IMAGE_URI)) {
+			user.setSmallImageUri(nextString(reader));
+		}
+		else if(name.equals(MEDIUM_IMAGE_URI)) {
+			user.setMediumImageUri(nextString(reader));
+		}
+		else if(name.equals(LARGE_IMAGE_URI)) {
+			user.setLargeImageUri(nextString(reader));
+		}
+		else if(name.equals(IMAGE_DATA)) {
+			user.setProfilePicData(nextString(reader));
+		}
+		else if(name.equals(STATS) && statsFactory != null) {
+			user.setStats(statsFactory.fromJSON(reader));
+		}
+		else if(name.equals(THIRD_PARTY_AUTH) && userAuthDataFactory != null) {
+			reader.beginArray();
+			while(reader.hasNext()) {
+				user.addUserAuthData(userAuthDataFactory.fromJSON(reader));
+			}
+			reader.endArray();
+		}
+		else {
+			return super.readField(name, reader, user);
+		}
+		return true;
+	}
+
 	@Override
 	protected void postToJSON(User user, JSONObject object) throws JSONException {
 		
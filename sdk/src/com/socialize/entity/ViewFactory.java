@@ -41,4 +41,9 @@ public class ViewFactory extends SocializeActionFactory<View> {
 	public Object instantiateObject(JSONObject object) {
 		return new View();
 	}
+
+	@Override
+	protected boolean isStreamable() {
+		return true;
+	}
 }
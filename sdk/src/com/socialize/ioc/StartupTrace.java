@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.ioc;
+
+import com.socialize.android.ioc.IOCContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records how long each step of SDK initialization takes, including the creation 
+ * cost of each bean requested during init (lazy beans are built on first request).
+ */
+public class StartupTrace {
+	
+	/**
+	 * Name given to time spent between beans that no mark covered.
+	 */
+	public static final String UNTRACED = "untraced";
+	
+	private final List<String> names = new ArrayList<String>();
+	private final List<Long> times = new ArrayList<Long>();
+	
+	private final long start;
+	private long last;
+	private long end;
+	
+	public StartupTrace() {
+		start = now();
+		last = start;
+		end = start;
+	}
+	
+	/**
+	 * Records the time elapsed since the previous mark (or since creation) against the given step.
+	 * @param name The name of the step that just completed.
+	 * @return The elapsed time in milliseconds.
+	 */
+	public synchronized long mark(String name) {
+		long time = now();
+		long elapsed = time - last;
+		names.add(name);
+		times.add(elapsed);
+		last = time;
+		end = time;
+		return elapsed;
+	}
+	
+	/**
+	 * Gets a bean from the container and records how long it took.  
+	 * Any time since the previous mark is recorded first as an {@link #UNTRACED} step so the steps always add up to the total.
+	 * @param container The container.
+	 * @param name The bean name.
+	 * @return The bean.
+	 */
+	public <T> T getBean(IOCContainer container, String name) {
+		synchronized (this) {
+			long time = now();
+			if(time > last) {
+				names.add(UNTRACED);
+				times.add(time - last);
+			}
+			last = time;
+		}
+		T bean = container.getBean(name);
+		mark(name);
+		return bean;
+	}
+	
+	public synchronized int size() {
+		return names.size();
+	}
+	
+	public synchronized String getName(int index) {
+		return names.get(index);
+	}
+	
+	public synchronized long getTime(int index) {
+		return times.get(index);
+	}
+	
+	public synchronized long getTotalTime() {
+		return end - start;
+	}
+	
+	/**
+	 * Returns the slowest recorded step, or null if nothing was recorded.
+	 * @return The name of the slowest step.
+	 */
+	public synchronized String getSlowest() {
+		String slowest = null;
+		long max = -1;
+		for (int i = 0; i < times.size(); i++) {
+			if(times.get(i) > max) {
+				max = times.get(i);
+				slowest = names.get(i);
+			}
+		}
+		return slowest;
+	}
+
+	@Override
+	public synchronized String toString() {
+		StringBuilder builder = new StringBuilder("Socialize init took ");
+		builder.append(getTotalTime());
+		builder.append("ms");
+		for (int i = 0; i < names.size(); i++) {
+			builder.append("\n\t");
+			builder.append(names.get(i));
+			builder.append(": ");
+			builder.append(times.get(i));
+			builder.append("ms");
+		}
+		return builder.toString();
+	}
+	
+	// So we can mock
+	protected long now() {
+		return System.currentTimeMillis();
+	}
+}
@@ -0,0 +1,459 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.log;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Environment;
+import android.util.Log;
+import com.socialize.log.SocializeLogger.LogLevel;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * External logger backed by a preallocated ring buffer.  Producers claim a slot with a single CAS and 
+ * never block; if the buffer is full the message is dropped and counted.  A single consumer thread 
+ * drains the buffer and writes each batch through a FileChannel in one call.  When the log file 
+ * exceeds the maximum size it is rolled to a gzipped file and a fresh log is started.
+ */
+public class RingBufferExternalLogger implements ExternalLogger, Runnable {
+	
+	private static final String TAG = RingBufferExternalLogger.class.getSimpleName();
+	
+	public static final String LOG_FILE_NAME = "socialize.log";
+	
+	private int capacity = 1024;
+	private long maxFileSize = 1024 * 1024;
+	private int maxRolledFiles = 3;
+	private long idleWait = 1000;
+	
+	private volatile Ring ring;
+	
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong written = new AtomicLong();
+	private final AtomicLong rotations = new AtomicLong();
+	
+	private final AtomicBoolean sleeping = new AtomicBoolean(false);
+	
+	private volatile boolean running = false;
+	private volatile Thread consumer;
+	
+	private boolean canWrite = true;
+	
+	private File dir;
+	private File file;
+	private FileChannel channel;
+	private long fileSize;
+	
+	private final StringBuilder batch = new StringBuilder(4096);
+	private ByteBuffer buffer = ByteBuffer.allocate(8192);
+	
+	@Override
+	public boolean canWrite() {
+		return canWrite;
+	}
+
+	@Override
+	public void init(Context context) {
+		canWrite = context.getPackageManager().checkPermission("android.permission.WRITE_EXTERNAL_STORAGE", context.getPackageName()) == PackageManager.PERMISSION_GRANTED;
+		
+		if(canWrite) {
+			String state = Environment.getExternalStorageState();
+			if (state.equals(Environment.MEDIA_MOUNTED)) {
+				open(SDCardExternalLogger.getLogFilePath(context));
+			}
+			else {
+				canWrite = false;
+				Log.w(TAG, "Could not create log file because external storage state was " + state);
+			}
+		}
+	}
+	
+	/**
+	 * Starts logging to the given directory.
+	 * @param dir The log directory.
+	 */
+	public synchronized void open(File dir) {
+		destroy();
+		
+		int size = 1;
+		while(size < capacity) {
+			size <<= 1;
+		}
+		
+		this.dir = dir;
+		
+		if(!dir.exists() && !dir.mkdirs()) {
+			Log.w(TAG, "Could not create log directory: " + dir.getAbsolutePath());
+		}
+		
+		file = new File(dir, LOG_FILE_NAME);
+		
+		if(file.exists()) {
+			file.delete();
+		}
+		
+		ring = new Ring(size);
+		running = true;
+		
+		Thread thread = new Thread(this, "RingBufferExternalLogger");
+		thread.setDaemon(true);
+		consumer = thread;
+		thread.start();
+	}
+
+	@Override
+	public void destroy() {
+		Thread thread = consumer;
+		
+		running = false;
+		
+		if(thread != null) {
+			LockSupport.unpark(thread);
+			try {
+				thread.join(5000);
+			}
+			catch (InterruptedException ignore) {}
+			consumer = null;
+		}
+	}
+
+	@Override
+	public void log(LogLevel level, long time, String tag, String message) {
+		Ring ring = this.ring;
+		
+		if(ring == null || !running) {
+			return;
+		}
+		
+		long pos;
+		int index;
+		
+		while(true) {
+			pos = ring.tail.get();
+			index = (int) (pos & ring.mask);
+			long diff = ring.sequence.get(index) - pos;
+			
+			if(diff == 0) {
+				if(ring.tail.compareAndSet(pos, pos + 1)) {
+					break;
+				}
+			}
+			else if(diff < 0) {
+				// Full
+				dropped.incrementAndGet();
+				return;
+			}
+			// Otherwise another producer claimed this position, retry.
+		}
+		
+		ring.levels[index] = level;
+		ring.times[index] = time;
+		ring.tags[index] = tag;
+		ring.threads[index] = Thread.currentThread().getName();
+		ring.messages[index] = message;
+		
+		// Publish
+		ring.sequence.lazySet(index, pos + 1);
+		
+		if(sleeping.get() && sleeping.compareAndSet(true, false)) {
+			Thread thread = consumer;
+			if(thread != null) {
+				LockSupport.unpark(thread);
+			}
+		}
+	}
+
+	@Override
+	public void log(LogLevel level, long time, String tag, String message, Throwable error) {
+		if(error != null) {
+			StringBuilder builder = new StringBuilder();
+			builder.append(message).append(": ").append(SDCardExternalLogger.stackTraceToString(error));
+			message = builder.toString();
+		}
+		log(level, time, tag, message);
+	}
+	
+	@Override
+	public void run() {
+		Ring ring = this.ring;
+		try {
+			while(running) {
+				if(drain(ring) == 0) {
+					sleeping.set(true);
+					
+					// Re-check after advertising we are asleep so a concurrent publish is not missed.
+					if(ring.isEmpty() && running) {
+						LockSupport.parkNanos(idleWait * 1000000L);
+					}
+					
+					sleeping.set(false);
+				}
+			}
+			
+			// Write anything left
+			drain(ring);
+		}
+		finally {
+			close();
+		}
+	}
+	
+	/**
+	 * Writes everything currently in the buffer as one batch.  Consumer thread only.
+	 * @return The number of messages written.
+	 */
+	protected int drain(Ring ring) {
+		int count = 0;
+		
+		batch.setLength(0);
+		
+		while(true) {
+			long head = ring.head;
+			int index = (int) (head & ring.mask);
+			
+			if(ring.sequence.get(index) != head + 1) {
+				break;
+			}
+			
+			batch.append(ring.times[index]);
+			batch.append(' ');
+			batch.append(ring.levels[index]);
+			batch.append(' ');
+			batch.append(ring.tags[index]);
+			batch.append(' ');
+			batch.append(ring.threads[index]);
+			batch.append(" - ");
+			batch.append(ring.messages[index]);
+			batch.append('\n');
+			
+			ring.levels[index] = null;
+			ring.tags[index] = null;
+			ring.threads[index] = null;
+			ring.messages[index] = null;
+			
+			// Free the slot for the next lap
+			ring.sequence.lazySet(index, head + ring.mask + 1);
+			
+			ring.head = head + 1;
+			count++;
+		}
+		
+		if(count > 0) {
+			write(batch);
+			written.addAndGet(count);
+		}
+		
+		return count;
+	}
+	
+	protected void write(CharSequence text) {
+		try {
+			if(channel == null) {
+				openChannel();
+			}
+			
+			byte[] data = text.toString().getBytes("UTF-8");
+			
+			if(buffer.capacity() < data.length) {
+				buffer = ByteBuffer.allocate(Math.max(data.length, buffer.capacity() * 2));
+			}
+			
+			buffer.clear();
+			buffer.put(data);
+			buffer.flip();
+			
+			while(buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			
+			fileSize += data.length;
+			
+			if(fileSize >= maxFileSize) {
+				rotate();
+			}
+		}
+		catch (IOException e) {
+			Log.e(TAG, "Failed to write log file", e);
+			close();
+		}
+	}
+	
+	protected void openChannel() throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		channel = raf.getChannel();
+		fileSize = channel.size();
+		channel.position(fileSize);
+	}
+	
+	protected void rotate() throws IOException {
+		close();
+		
+		// socialize.1.log.gz is the newest
+		for (int i = maxRolledFiles; i >= 1; i--) {
+			File rolled = getRolledFile(i);
+			if(rolled.exists()) {
+				if(i == maxRolledFiles) {
+					rolled.delete();
+				}
+				else {
+					rolled.renameTo(getRolledFile(i + 1));
+				}
+			}
+		}
+		
+		if(maxRolledFiles > 0) {
+			compress(file, getRolledFile(1));
+		}
+		
+		file.delete();
+		
+		rotations.incrementAndGet();
+	}
+	
+	protected File getRolledFile(int index) {
+		return new File(dir, "socialize." + index + ".log.gz");
+	}
+	
+	protected void compress(File from, File to) throws IOException {
+		InputStream in = new FileInputStream(from);
+		try {
+			OutputStream out = new GZIPOutputStream(new FileOutputStream(to));
+			try {
+				byte[] data = new byte[8192];
+				int read;
+				while((read = in.read(data)) >= 0) {
+					out.write(data, 0, read);
+				}
+			}
+			finally {
+				out.close();
+			}
+		}
+		finally {
+			in.close();
+		}
+	}
+	
+	protected void close() {
+		if(channel != null) {
+			try {
+				channel.close();
+			}
+			catch (IOException ignore) {}
+			channel = null;
+		}
+	}
+	
+	/**
+	 * @return The number of messages discarded because the buffer was full.
+	 */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+	
+	/**
+	 * @return The number of messages written to the log file.
+	 */
+	public long getWrittenCount() {
+		return written.get();
+	}
+	
+	/**
+	 * @return The number of times the log file has been rolled.
+	 */
+	public long getRotationCount() {
+		return rotations.get();
+	}
+	
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Sets the number of messages the buffer can hold, rounded up to a power of two.  Takes effect on the next open.
+	 * @param capacity The capacity.
+	 */
+	public void setCapacity(int capacity) {
+		this.capacity = capacity;
+	}
+
+	public void setMaxFileSize(long maxFileSize) {
+		this.maxFileSize = maxFileSize;
+	}
+
+	public void setMaxRolledFiles(int maxRolledFiles) {
+		this.maxRolledFiles = maxRolledFiles;
+	}
+	
+	public void setIdleWait(long idleWait) {
+		this.idleWait = idleWait;
+	}
+	
+	/**
+	 * Preallocated slots.  The slot at index i is free for position p when sequence[i] == p, 
+	 * and holds a published message when sequence[i] == p + 1.
+	 */
+	static final class Ring {
+		
+		final AtomicLongArray sequence;
+		final LogLevel[] levels;
+		final long[] times;
+		final String[] tags;
+		final String[] threads;
+		final String[] messages;
+		final int mask;
+		
+		final AtomicLong tail = new AtomicLong();
+		long head = 0; // Consumer only
+		
+		Ring(int size) {
+			sequence = new AtomicLongArray(size);
+			for (int i = 0; i < size; i++) {
+				sequence.set(i, i);
+			}
+			levels = new LogLevel[size];
+			times = new long[size];
+			tags = new String[size];
+			threads = new String[size];
+			messages = new String[size];
+			mask = size - 1;
+		}
+		
+		boolean isEmpty() {
+			return sequence.get((int) (head & mask)) != head + 1;
+		}
+	}
+}
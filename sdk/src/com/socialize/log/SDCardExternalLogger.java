@@ -102,7 +102,7 @@ public class SDCardExternalLogger implements ExternalLogger {
 			File[] list = dir.listFiles(new FilenameFilter() {
 				@Override
 				public boolean accept(File dir, String filename) {
-					return filename.endsWith(".log");
+					return filename.endsWith(".log") || filename.endsWith(".log.gz");
 				}
 			});
 
@@ -122,7 +122,7 @@ public class SDCardExternalLogger implements ExternalLogger {
 			File[] list = dir.listFiles(new FilenameFilter() {
 				@Override
 				public boolean accept(File dir, String filename) {
-					return filename.endsWith(".log");
+					return filename.endsWith(".log") || filename.endsWith(".log.gz");
 				}
 			});
 			
@@ -136,7 +136,7 @@ public class SDCardExternalLogger implements ExternalLogger {
 		}
 	}
 
-	private static File getLogFilePath(Context context) {
+	static File getLogFilePath(Context context) {
 		return new File(Environment.getExternalStorageDirectory(), "socialize-" + context.getPackageName());
 	}
 
@@ -169,7 +169,7 @@ public class SDCardExternalLogger implements ExternalLogger {
 		return null;
 	}
 
-	String stackTraceToString(Throwable error) {
+	static String stackTraceToString(Throwable error) {
 		ByteArrayOutputStream out = new ByteArrayOutputStream();
 		PrintWriter pw = new PrintWriter(out);
 		error.printStackTrace(pw);
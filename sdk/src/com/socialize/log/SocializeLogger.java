@@ -85,7 +85,7 @@ public class SocializeLogger {
 	
 	// Mockable
 	protected ExternalLogger newExternalLogger() {
-		return new AsyncSDCardExternalLogger();
+		return new RingBufferExternalLogger();
 	}
 	
 	public void destroy() {
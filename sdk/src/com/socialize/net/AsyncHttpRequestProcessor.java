@@ -36,6 +36,7 @@ import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
 
 import java.io.IOException;
+import java.util.concurrent.Executor;
 
 
 /**
@@ -49,6 +50,17 @@ public class AsyncHttpRequestProcessor extends ManagedAsyncTask<AsyncHttpRequest
 	private IOUtils ioUtils;
 	private SocializeLogger logger;
 	
+	private AsyncHttpRequest pending;
+	
+	/**
+	 * Executes the request on the given executor.  If the executor rejects or cancels the request 
+	 * before it runs the listener is notified with an error.
+	 */
+	public void execute(Executor executor, AsyncHttpRequest request) {
+		pending = request;
+		executeOnExecutor(executor, request);
+	}
+	
 	@Override
 	protected AsyncHttpResponse doInBackground(AsyncHttpRequest... params) {
 		
@@ -111,7 +123,7 @@ public class AsyncHttpRequestProcessor extends ManagedAsyncTask<AsyncHttpRequest
 						throw new SocializeApiError(httpUtils, httpResponse.getStatusLine().getStatusCode(), msg);
 					}
 					else {
-						String responseData = ioUtils.readSafe(entity.getContent());
+						String responseData = ioUtils.readSafe(entity.getContent(), entity.getContentLength());
 						
 						if(logger != null && logger.isDebugEnabled()) {
 							logger.debug("RESPONSE: " + responseData);
@@ -138,6 +150,12 @@ public class AsyncHttpRequestProcessor extends ManagedAsyncTask<AsyncHttpRequest
 	
 	@Override
 	protected void onPostExecuteManaged(AsyncHttpResponse result) {
+		// A request cancelled before it ran may still be posted here with no result.
+		if(result == null) {
+			notifyCancelled();
+			return;
+		}
+		
 		AsyncHttpRequest request = result.getRequest();
 		HttpRequestListener listener = request.getListener();
 
@@ -162,6 +180,20 @@ public class AsyncHttpRequestProcessor extends ManagedAsyncTask<AsyncHttpRequest
 		}
 	}
 
+	@Override
+	protected void onCancelled() {
+		super.onCancelled();
+		notifyCancelled();
+	}
+	
+	protected void notifyCancelled() {
+		HttpRequestListener listener = (pending == null) ? null : pending.getListener();
+		
+		if(listener != null) {
+			listener.onError(new SocializeException("Request was cancelled before it was sent"), null, -1, null);
+		}
+	}
+
 	private final void closeEntity(HttpEntity entity) {
 		if(entity != null) {
 			try {
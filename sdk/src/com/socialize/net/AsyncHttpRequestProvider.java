@@ -21,7 +21,11 @@
  */
 package com.socialize.net;
 
+import android.os.Build;
 import com.socialize.android.ioc.IBeanFactory;
+import com.socialize.api.SocializeApi.RequestType;
+import com.socialize.concurrent.RequestExecutor;
+import com.socialize.concurrent.RequestExecutor.Lane;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
@@ -34,6 +38,7 @@ import org.apache.http.client.methods.HttpUriRequest;
 public class AsyncHttpRequestProvider implements HttpRequestProvider {
 
 	private IBeanFactory<AsyncHttpRequestProcessor> requestProcessorFactory;
+	private RequestExecutor requestExecutor;
 	
 	/* (non-Javadoc)
 	 * @see com.socialize.net.HttpRequestProvider#post(org.apache.http.client.methods.HttpPost, com.socialize.net.HttpRequestListener)
@@ -52,15 +57,38 @@ public class AsyncHttpRequestProvider implements HttpRequestProvider {
 	}
 
 	protected void doRequest(HttpUriRequest request, HttpRequestListener listener) {
-		AsyncHttpRequestProcessor processor = requestProcessorFactory.getBean();
+		final AsyncHttpRequestProcessor processor = requestProcessorFactory.getBean();
 		AsyncHttpRequest arequest = new AsyncHttpRequest();
 		arequest.setListener(listener);
 		arequest.setRequest(request);
-		processor.execute(arequest);
+		
+		// Requests to third party networks share the request executor rather than the serial platform executor, 
+		// so posts to several networks are not queued behind each other.
+		if(requestExecutor != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+			boolean read = request.getMethod().equals(HttpGet.METHOD_NAME);
+			String endpoint = request.getURI().getHost() + request.getURI().getPath();
+			
+			// Cancelling the task itself is what reports the rejection to the listener.
+			Runnable onReject = new Runnable() {
+				@Override
+				public void run() {
+					processor.cancel(false);
+				}
+			};
+			
+			processor.execute(requestExecutor.forRequest((read) ? RequestType.GET : RequestType.POST, endpoint, (read) ? Lane.READ : Lane.WRITE, onReject), arequest);
+		}
+		else {
+			processor.execute(arequest);
+		}
 	}
 	
 	public void setRequestProcessorFactory(IBeanFactory<AsyncHttpRequestProcessor> requestProcessorFactory) {
 		this.requestProcessorFactory = requestProcessorFactory;
 	}
 	
+	public void setRequestExecutor(RequestExecutor requestExecutor) {
+		this.requestExecutor = requestExecutor;
+	}
+	
 }
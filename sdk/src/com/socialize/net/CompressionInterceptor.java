@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.net;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Negotiates gzip/deflate response encoding and optionally gzips large request bodies.
+ * Byte counts on both sides of the codec are kept so the effective ratio can be reported.
+ */
+public class CompressionInterceptor implements HttpRequestInterceptor, HttpResponseInterceptor {
+	
+	public static final String ACCEPT_ENCODING = "Accept-Encoding";
+	public static final String GZIP = "gzip";
+	public static final String DEFLATE = "deflate";
+	
+	private boolean compressResponses = true;
+	private int minRequestSize = 0;
+	
+	private final AtomicLong encodedBytes = new AtomicLong();
+	private final AtomicLong decodedBytes = new AtomicLong();
+	
+	/* (non-Javadoc)
+	 * @see org.apache.http.HttpRequestInterceptor#process(org.apache.http.HttpRequest, org.apache.http.protocol.HttpContext)
+	 */
+	@Override
+	public void process(HttpRequest request, HttpContext context) throws HttpException, IOException {
+		if(compressResponses && !request.containsHeader(ACCEPT_ENCODING)) {
+			request.addHeader(ACCEPT_ENCODING, GZIP + ", " + DEFLATE);
+		}
+		
+		if(minRequestSize > 0 && request instanceof HttpEntityEnclosingRequest) {
+			HttpEntityEnclosingRequest enclosing = (HttpEntityEnclosingRequest) request;
+			HttpEntity entity = enclosing.getEntity();
+			
+			// Leave alone anything already encoded (e.g. by the request factory) or streamed.
+			if(entity != null && entity.getContentEncoding() == null && entity.isRepeatable()) {
+				long length = entity.getContentLength();
+				if(length >= minRequestSize) {
+					enclosing.setEntity(compress(entity, (int) length));
+				}
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.http.HttpResponseInterceptor#process(org.apache.http.HttpResponse, org.apache.http.protocol.HttpContext)
+	 */
+	@Override
+	public void process(HttpResponse response, HttpContext context) throws HttpException, IOException {
+		HttpEntity entity = response.getEntity();
+		if(entity != null) {
+			Header encoding = entity.getContentEncoding();
+			if(encoding != null) {
+				for (HeaderElement element : encoding.getElements()) {
+					String name = element.getName();
+					if(GZIP.equalsIgnoreCase(name) || "x-gzip".equalsIgnoreCase(name)) {
+						response.setEntity(new InflatingEntity(entity, true));
+						return;
+					}
+					else if(DEFLATE.equalsIgnoreCase(name)) {
+						response.setEntity(new InflatingEntity(entity, false));
+						return;
+					}
+				}
+			}
+		}
+	}
+	
+	protected HttpEntity compress(HttpEntity entity, int length) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(64, length / 4));
+		GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+		try {
+			entity.writeTo(gzip);
+		}
+		finally {
+			gzip.close();
+		}
+		
+		ByteArrayEntity compressed = new ByteArrayEntity(bytes.toByteArray());
+		compressed.setContentType(entity.getContentType());
+		compressed.setContentEncoding(GZIP);
+		
+		decodedBytes.addAndGet(length);
+		encodedBytes.addAndGet(compressed.getContentLength());
+		
+		return compressed;
+	}
+	
+	/**
+	 * Returns the ratio of bytes on the wire to bytes before encoding, across both 
+	 * compressed requests and responses.  Lower is better; 1.0 if nothing has been measured yet.
+	 * @return The effective compression ratio.
+	 */
+	public float getCompressionRatio() {
+		long decoded = decodedBytes.get();
+		if(decoded <= 0) {
+			return 1.0f;
+		}
+		return (float) encodedBytes.get() / (float) decoded;
+	}
+	
+	public long getEncodedBytes() {
+		return encodedBytes.get();
+	}
+	
+	public long getDecodedBytes() {
+		return decodedBytes.get();
+	}
+	
+	public boolean isCompressResponses() {
+		return compressResponses;
+	}
+
+	public void setCompressResponses(boolean compressResponses) {
+		this.compressResponses = compressResponses;
+	}
+
+	public int getMinRequestSize() {
+		return minRequestSize;
+	}
+
+	/**
+	 * Request bodies at least this many bytes long are gzipped.  Zero disables request compression.
+	 * @param minRequestSize The threshold in bytes.
+	 */
+	public void setMinRequestSize(int minRequestSize) {
+		this.minRequestSize = minRequestSize;
+	}
+
+	class InflatingEntity extends HttpEntityWrapper {
+		
+		private final boolean gzip;
+		
+		InflatingEntity(HttpEntity wrapped, boolean gzip) {
+			super(wrapped);
+			this.gzip = gzip;
+		}
+
+		@Override
+		public InputStream getContent() throws IOException {
+			InputStream wire = new CountingInputStream(wrappedEntity.getContent(), encodedBytes);
+			InputStream inflated;
+			if(gzip) {
+				inflated = new GZIPInputStream(wire);
+			}
+			else {
+				// Some servers send raw deflate data without the zlib header.
+				PushbackInputStream in = new PushbackInputStream(wire, 2);
+				int cmf = in.read();
+				int flg = in.read();
+				if(flg >= 0) in.unread(flg);
+				if(cmf >= 0) in.unread(cmf);
+				boolean zlib = (cmf & 0x0F) == 8 && flg >= 0 && ((cmf << 8) | flg) % 31 == 0;
+				inflated = new InflaterInputStream(in, new Inflater(!zlib));
+			}
+			return new CountingInputStream(inflated, decodedBytes);
+		}
+
+		@Override
+		public Header getContentEncoding() {
+			return null;
+		}
+
+		@Override
+		public long getContentLength() {
+			return -1;
+		}
+
+		@Override
+		public void writeTo(OutputStream out) throws IOException {
+			InputStream in = getContent();
+			try {
+				byte[] buffer = new byte[4096];
+				int read;
+				while((read = in.read(buffer)) >= 0) {
+					out.write(buffer, 0, read);
+				}
+			}
+			finally {
+				in.close();
+			}
+		}
+	}
+	
+	static class CountingInputStream extends FilterInputStream {
+		
+		private final AtomicLong counter;
+		
+		CountingInputStream(InputStream in, AtomicLong counter) {
+			super(in);
+			this.counter = counter;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if(b >= 0) {
+				counter.incrementAndGet();
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			if(read > 0) {
+				counter.addAndGet(read);
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			if(skipped > 0) {
+				counter.addAndGet(skipped);
+			}
+			return skipped;
+		}
+	}
+}
@@ -25,20 +25,28 @@ import com.socialize.android.ioc.IBeanFactory;
 import com.socialize.config.SocializeConfig;
 import com.socialize.error.SocializeException;
 import com.socialize.log.SocializeLogger;
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpResponse;
 import org.apache.http.HttpVersion;
 import org.apache.http.client.HttpClient;
 import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
 import org.apache.http.conn.scheme.PlainSocketFactory;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.message.BasicHeaderElementIterator;
 import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
 import org.apache.http.params.HttpProtocolParams;
 import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
 
 import java.security.KeyStore;
 
@@ -61,8 +69,16 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
 	
 	private IdleConnectionMonitorThread monitor;
 	
+	private CompressionInterceptor compressionInterceptor;
+	
+	private long keepAlive = DEFAULT_KEEP_ALIVE;
+	
 	private boolean destroyed = false;
 	
+	public static final int DEFAULT_MAX_CONNECTIONS = 20;
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 4;
+	public static final long DEFAULT_KEEP_ALIVE = 30000;
+	
 	/* (non-Javadoc)
 	 * @see com.socialize.net.HttpClientFactory#init()
 	 */
@@ -81,13 +97,29 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
 	        HttpConnectionParams.setConnectionTimeout(params, config.getIntProperty(SocializeConfig.HTTP_CONNECTION_TIMEOUT, 10000));
 	        HttpConnectionParams.setSoTimeout(params, config.getIntProperty(SocializeConfig.HTTP_SOCKET_TIMEOUT, 10000));
 	        
+	        int maxConnections = config.getIntProperty(SocializeConfig.HTTP_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS);
+	        int maxPerRoute = config.getIntProperty(SocializeConfig.HTTP_MAX_CONNECTIONS_PER_ROUTE, DEFAULT_MAX_CONNECTIONS_PER_ROUTE);
+	        
+	        ConnManagerParams.setMaxTotalConnections(params, (maxConnections > 0) ? maxConnections : DEFAULT_MAX_CONNECTIONS);
+	        ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRouteBean((maxPerRoute > 0) ? maxPerRoute : DEFAULT_MAX_CONNECTIONS_PER_ROUTE));
+	        
+	        keepAlive = config.getLongProperty(SocializeConfig.HTTP_KEEP_ALIVE, DEFAULT_KEEP_ALIVE);
+	        if(keepAlive <= 0) {
+	        	keepAlive = DEFAULT_KEEP_ALIVE;
+	        }
+	        
+	        compressionInterceptor = new CompressionInterceptor();
+	        compressionInterceptor.setCompressResponses(config.getBooleanProperty(SocializeConfig.HTTP_GZIP_RESPONSES, true));
+	        compressionInterceptor.setMinRequestSize(config.getIntProperty(SocializeConfig.HTTP_GZIP_REQUEST_SIZE, 0));
+	        
 	        SchemeRegistry registry = new SchemeRegistry();
 	        registry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
 	        registry.register(new Scheme("https", SSLSocketFactory.getSocketFactory(), 443));
 
 	        connectionManager = new ThreadSafeClientConnManager(params, registry);
 	        
-	        monitor = new IdleConnectionMonitorThread(connectionManager);
+	        // Pooled connections are reaped once they have been idle longer than the keep-alive.
+	        monitor = new IdleConnectionMonitorThread(connectionManager, keepAlive);
 	        monitor.setDaemon(true);
 	        monitor.start();
 	        
@@ -137,6 +169,13 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
 			else {
 				client = new DefaultHttpClient(connectionManager, params);
 			}
+			
+			if(client != null) {
+				// Compress ahead of the standard interceptors so Content-Length reflects the encoded body.
+				client.addRequestInterceptor(compressionInterceptor, 0);
+				client.addResponseInterceptor(compressionInterceptor);
+				client.setKeepAliveStrategy(new KeepAliveStrategy(keepAlive));
+			}
 		}
 		else {
 			monitor.trigger();
@@ -144,6 +183,18 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
 		return client;
 	}
 
+	/**
+	 * Returns the ratio of compressed to uncompressed bytes for all traffic encoded so far.
+	 * @return The ratio, or 1.0 if nothing has been compressed.
+	 */
+	public float getCompressionRatio() {
+		return (compressionInterceptor == null) ? 1.0f : compressionInterceptor.getCompressionRatio();
+	}
+	
+	public CompressionInterceptor getCompressionInterceptor() {
+		return compressionInterceptor;
+	}
+
 	public void setLogger(SocializeLogger logger) {
 		this.logger = logger;
 	}
@@ -157,4 +208,31 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
 		this.apacheHttpClientFactory = apacheHttpClientFactory;
 	}
 	
+	/**
+	 * Honors the server's Keep-Alive timeout, capped at our own idle limit.
+	 */
+	static class KeepAliveStrategy implements ConnectionKeepAliveStrategy {
+		
+		private final long max;
+		
+		KeepAliveStrategy(long max) {
+			this.max = max;
+		}
+
+		@Override
+		public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+			HeaderElementIterator it = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+			while (it.hasNext()) {
+				HeaderElement element = it.nextElement();
+				String value = element.getValue();
+				if(value != null && "timeout".equalsIgnoreCase(element.getName())) {
+					try {
+						return Math.min(max, Long.parseLong(value) * 1000L);
+					}
+					catch (NumberFormatException ignore) {}
+				}
+			}
+			return max;
+		}
+	}
 }
@@ -32,11 +32,16 @@ public class IdleConnectionMonitorThread extends Thread {
 	
     private final ClientConnectionManager connMgr;
     private volatile boolean shutdown;
-    private final long timeout = 30000; // milliseconds
+    private final long timeout; // milliseconds
     
     public IdleConnectionMonitorThread(ClientConnectionManager connMgr) {
+        this(connMgr, 30000);
+    }
+    
+    public IdleConnectionMonitorThread(ClientConnectionManager connMgr, long timeout) {
         super("IdleConnectionMonitorThread");
         this.connMgr = connMgr;
+        this.timeout = timeout;
     }
 
     @Override
@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.notifications;
+
+import android.content.Context;
+import android.os.Bundle;
+import com.socialize.Socialize;
+import com.socialize.api.BinarySessionPersister;
+import com.socialize.api.DefaultSocializeSessionFactory;
+import com.socialize.api.SocializeSession;
+import com.socialize.api.SocializeSessionPersister;
+import com.socialize.config.SocializeConfig;
+import com.socialize.entity.JSONFactory;
+import com.socialize.entity.StatsFactory;
+import com.socialize.entity.UserAuthDataFactory;
+import com.socialize.entity.UserFactory;
+import com.socialize.ioc.StartupTrace;
+import com.socialize.log.SocializeLogger;
+import com.socialize.ui.ActivityIOCProvider;
+import com.socialize.ui.profile.UserSettingsFactory;
+import com.socialize.util.Base64Utils;
+import com.socialize.util.BitmapBuilder;
+import com.socialize.util.BitmapUtils;
+import com.socialize.util.ClassLoaderProvider;
+import com.socialize.util.DefaultAppUtils;
+import com.socialize.util.GSONUtils;
+import com.socialize.util.ResourceLocator;
+import com.socialize.util.StringUtils;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimal runtime used to display push notifications without starting the notification IOC container.
+ * <br/>
+ * Only what {@link SocializeC2DMCallback#handleNotification(Context, Bundle, SocializeSession)} needs is wired 
+ * (by hand, mirroring socialize_notification_beans.xml): config, logger, app utils, the message factories and 
+ * builders, the notification manager facade and a read only view of the stored session.  One runtime is kept 
+ * per process so every push after the first is handled warm.  When Socialize is already up in the process the 
+ * session is read through its persister, so there is only ever one writer of the session file.
+ * <br/>
+ * Messages that cannot be handled here (no stored session, or one stored for a different consumer key) are 
+ * declined so the caller can fall back to the full container, which authenticates over the network.
+ */
+public class NotificationRuntime {
+	
+	private static NotificationRuntime instance;
+	
+	private SocializeConfig config;
+	private SocializeLogger logger;
+	private SocializeC2DMCallback callback;
+	private StartupTrace startupTrace;
+	
+	private boolean initialized = false;
+	
+	private SocializeSession session;
+	private long sessionModified = -1L;
+	private long sessionLength = -1L;
+	
+	private int handled = 0;
+	private long lastLatency = 0L;
+	private long maxLatency = 0L;
+	private long totalLatency = 0L;
+	
+	public static synchronized NotificationRuntime getInstance() {
+		if(instance == null) {
+			instance = new NotificationRuntime();
+		}
+		return instance;
+	}
+	
+	/**
+	 * Builds the notification for the given message using the stored session.
+	 * @param context
+	 * @param data The extras of the push intent.
+	 * @return false if the message was not handled and should be passed to the full container.
+	 */
+	public synchronized boolean onMessage(Context context, Bundle data) {
+		long start = now();
+		
+		try {
+			init(context);
+			
+			SocializeSession current = loadSession(context);
+			
+			if(current == null || current.getUser() == null) {
+				if(logger != null && logger.isDebugEnabled()) {
+					logger.debug("No usable stored session for notification, deferring to notification container");
+				}
+				return false;
+			}
+			
+			handleNotification(context, data, current);
+		}
+		catch (Exception e) {
+			if(logger != null) {
+				logger.error("Error handling notification, deferring to notification container", e);
+			}
+			else {
+				SocializeLogger.e("Error handling notification, deferring to notification container", e);
+			}
+			return false;
+		}
+		
+		record(now() - start);
+		
+		return true;
+	}
+	
+	protected void init(Context context) {
+		if(!initialized) {
+			StartupTrace trace = newStartupTrace();
+			wire(context, trace);
+			startupTrace = trace;
+			initialized = true;
+			
+			if(logger != null && logger.isDebugEnabled()) {
+				logger.debug("Notification runtime started " + trace);
+			}
+		}
+	}
+	
+	protected void wire(Context context, StartupTrace trace) {
+		logger = new SocializeLogger();
+		
+		ResourceLocator locator = new ResourceLocator();
+		locator.setLogger(logger);
+		locator.setClassLoaderProvider(new ClassLoaderProvider());
+		
+		config = new SocializeConfig();
+		config.setLogger(logger);
+		config.setResourceLocator(locator);
+		config.init(context);
+		logger.init(context, config);
+		trace.mark("config");
+		
+		DefaultAppUtils appUtils = new DefaultAppUtils();
+		appUtils.setLogger(logger);
+		appUtils.setConfig(config);
+		appUtils.init(context);
+		trace.mark("appUtils");
+		
+		ActionNotificationMessageFactory actionFactory = new ActionNotificationMessageFactory();
+		actionFactory.setLogger(logger);
+		
+		DeveloperNotificationMessageFactory developerFactory = new DeveloperNotificationMessageFactory();
+		developerFactory.setLogger(logger);
+		
+		DeveloperNotificationMessageTranslator developerTranslator = new DeveloperNotificationMessageTranslator();
+		developerTranslator.setAppUtils(appUtils);
+		
+		SocializeActionNotificationMessageBuilder actionBuilder = new SocializeActionNotificationMessageBuilder();
+		actionBuilder.setMessageTranslator(new SimpleNotificationMessageTranslator());
+		
+		SimpleNotificationMessageBuilder developerBuilder = new SimpleNotificationMessageBuilder();
+		developerBuilder.setMessageTranslator(developerTranslator);
+		
+		SimpleNotificationMessageBuilder directEntityBuilder = new SimpleNotificationMessageBuilder();
+		directEntityBuilder.setMessageTranslator(new DirectEntityMessageTranslator());
+		
+		SimpleNotificationMessageBuilder directUrlBuilder = new SimpleNotificationMessageBuilder();
+		directUrlBuilder.setMessageTranslator(new DirectUrlMessageTranslator());
+		
+		for (BaseNotificationMessageBuilder<?> builder : new BaseNotificationMessageBuilder<?>[]{actionBuilder, developerBuilder, directEntityBuilder, directUrlBuilder}) {
+			builder.setAppUtils(appUtils);
+			builder.setLogger(logger);
+		}
+		
+		Map<String, JSONFactory<NotificationMessage>> messageFactories = new HashMap<String, JSONFactory<NotificationMessage>>();
+		messageFactories.put(NotificationType.NEW_COMMENTS.name(), actionFactory);
+		messageFactories.put(NotificationType.ENTITY_NOTIFICATION.name(), developerFactory);
+		messageFactories.put(NotificationType.DEVELOPER_NOTIFICATION.name(), developerFactory);
+		messageFactories.put(NotificationType.DEVELOPER_DIRECT_ENTITY.name(), developerFactory);
+		messageFactories.put(NotificationType.DEVELOPER_DIRECT_URL.name(), developerFactory);
+		
+		Map<String, NotificationMessageBuilder> messageBuilders = new HashMap<String, NotificationMessageBuilder>();
+		messageBuilders.put(NotificationType.NEW_COMMENTS.name(), actionBuilder);
+		messageBuilders.put(NotificationType.ENTITY_NOTIFICATION.name(), directEntityBuilder);
+		messageBuilders.put(NotificationType.DEVELOPER_NOTIFICATION.name(), developerBuilder);
+		messageBuilders.put(NotificationType.DEVELOPER_DIRECT_ENTITY.name(), directEntityBuilder);
+		messageBuilders.put(NotificationType.DEVELOPER_DIRECT_URL.name(), directUrlBuilder);
+		
+		callback = new SocializeC2DMCallback();
+		callback.setLogger(logger);
+		callback.setConfig(config);
+		callback.setAppUtils(appUtils);
+		callback.setMessageFactories(messageFactories);
+		callback.setMessageBuilders(messageBuilders);
+		callback.setNotificationManagerFacade(new AndroidNotificationManagerFacade());
+		trace.mark("callback");
+	}
+	
+	/**
+	 * Returns the stored session.  Without a running container the file is re-read only when it has changed since the last read.
+	 * @param context
+	 * @return The session, or null if there is no stored session usable with the configured consumer key.
+	 */
+	protected SocializeSession loadSession(Context context) {
+		SocializeSessionPersister shared = getContainerSessionPersister();
+		
+		if(shared != null) {
+			// Held in memory by the container, including any write still pending.
+			session = shared.load(context);
+			sessionModified = -1L;
+			sessionLength = -1L;
+		}
+		else {
+			File file = new File(context.getFilesDir(), BinarySessionPersister.SESSION_FILE);
+			
+			// The modified time may only have a one second resolution, the length catches most rewrites within the same second.
+			long modified = file.lastModified();
+			long length = file.length();
+			
+			if(session == null || modified != sessionModified || length != sessionLength) {
+				session = newSessionPersister().load(context);
+				sessionModified = modified;
+				sessionLength = length;
+			}
+		}
+		
+		if(session != null && config != null) {
+			String consumerKey = config.getProperty(SocializeConfig.SOCIALIZE_CONSUMER_KEY);
+			
+			if(!StringUtils.isEmpty(consumerKey) && !consumerKey.equals(session.getConsumerKey())) {
+				return null;
+			}
+		}
+		
+		return session;
+	}
+	
+	/**
+	 * @return The persister of the Socialize container if it is running in this process, otherwise null.
+	 */
+	protected SocializeSessionPersister getContainerSessionPersister() {
+		if(Socialize.getSocialize().isAuthenticated()) {
+			return ActivityIOCProvider.getInstance().getBean("sessionPersister");
+		}
+		return null;
+	}
+	
+	protected BinarySessionPersister newSessionPersister() {
+		UserFactory userFactory = new UserFactory();
+		userFactory.setStatsFactory(new StatsFactory());
+		userFactory.setUserAuthDataFactory(new UserAuthDataFactory());
+		
+		BitmapUtils bitmapUtils = new BitmapUtils();
+		bitmapUtils.setBitmapBuilder(new BitmapBuilder());
+		bitmapUtils.setBase64Utils(new Base64Utils());
+		
+		UserSettingsFactory userSettingsFactory = new UserSettingsFactory();
+		userSettingsFactory.setBitmapUtils(bitmapUtils);
+		
+		GSONUtils jsonUtils = new GSONUtils();
+		jsonUtils.init();
+		
+		BinarySessionPersister persister = new BinarySessionPersister();
+		persister.setLogger(logger);
+		persister.setJsonUtils(jsonUtils);
+		persister.setUserFactory(userFactory);
+		persister.setUserSettingsFactory(userSettingsFactory);
+		persister.setSessionFactory(new DefaultSocializeSessionFactory(config));
+		
+		// The file belongs to the container, which migrates and rewrites it.  A session still held in 
+		// preferences is declined here and picked up by the container.
+		persister.setReadOnly(true);
+		
+		return persister;
+	}
+	
+	protected void handleNotification(Context context, Bundle data, SocializeSession session) {
+		callback.handleNotification(context, data, session);
+	}
+	
+	protected void record(long latency) {
+		handled++;
+		lastLatency = latency;
+		totalLatency += latency;
+		
+		if(latency > maxLatency) {
+			maxLatency = latency;
+		}
+		
+		if(logger != null && logger.isDebugEnabled()) {
+			logger.debug("Notification handled in " + latency + "ms (" + handled + " handled, mean " + getAverageLatency() + "ms)");
+		}
+	}
+	
+	protected StartupTrace newStartupTrace() {
+		return new StartupTrace();
+	}
+	
+	protected long now() {
+		return System.currentTimeMillis();
+	}
+	
+	/**
+	 * @return The time taken to wire the runtime, or null if it has not been started.
+	 */
+	public synchronized StartupTrace getStartupTrace() {
+		return startupTrace;
+	}
+	
+	/**
+	 * @return The number of messages handled by this runtime.
+	 */
+	public synchronized int getHandledCount() {
+		return handled;
+	}
+	
+	/**
+	 * @return The receive to notify time in milliseconds of the most recent message.
+	 */
+	public synchronized long getLastLatency() {
+		return lastLatency;
+	}
+	
+	public synchronized long getMaxLatency() {
+		return maxLatency;
+	}
+	
+	public synchronized long getAverageLatency() {
+		return (handled == 0) ? 0 : totalLatency / handled;
+	}
+	
+	protected void setLogger(SocializeLogger logger) {
+		this.logger = logger;
+	}
+	
+	protected void setConfig(SocializeConfig config) {
+		this.config = config;
+	}
+}
@@ -11,11 +11,15 @@ public class SocializeC2DMReceiverHandler implements C2DMReceiverHandler {
 	private SocializeLogger logger;
 	private NotificationContainer container;
 	private C2DMCallback notificationCallback;
+	private NotificationRuntime runtime;
+	private Context context;
+	private boolean containerCreated = false;
 	
 	// Must be parameterless constructor
 	public SocializeC2DMReceiverHandler() {
 		this.logger = newSocializeLogger();
 		this.container = newNotificationContainer();
+		this.runtime = newNotificationRuntime();
 	}
 	
 	protected void initBeans() {
@@ -32,16 +36,24 @@ public class SocializeC2DMReceiverHandler implements C2DMReceiverHandler {
 	@Override
 	public void onMessage(Context context, Intent intent) {
 		try {
+			Bundle data = intent.getExtras();
+			
+			// Most pushes only need to build a notification, which the lightweight runtime can do without 
+			// the container.  Once the container is up (e.g. bean overrides in tests) it is used instead.
+			if(data != null && runtime != null && !containerCreated && runtime.onMessage(context, data)) {
+				return;
+			}
+			
+			ensureContainer(context);
+			
 			if(notificationCallback != null) {
 				
 				if(logger != null && logger.isDebugEnabled()) {
 					logger.debug("SocializeC2DMReceiver received message");
 				}
 
-				Bundle extras = intent.getExtras();
-
-				if(extras != null) {
-					notificationCallback.onMessage(context, extras);
+				if(data != null) {
+					notificationCallback.onMessage(context, data);
 				}
 				else {
 					logWarn("No extras bundle found in notification intent.  Notification cannot be processed");
@@ -61,6 +73,8 @@ public class SocializeC2DMReceiverHandler implements C2DMReceiverHandler {
 	 */
 	@Override
 	public void onError(Context context, String errorId) {
+		ensureContainer(context);
+		
 		if(logger != null) {
 			logger.error("GCM registration failed with error: " + errorId);
 		}
@@ -79,6 +93,8 @@ public class SocializeC2DMReceiverHandler implements C2DMReceiverHandler {
 	@Override
 	public void onRegistered(Context context, String registrationId)  {
 		try {
+			ensureContainer(context);
+			
 			if(notificationCallback != null) {
 				notificationCallback.onRegister(context, registrationId);
 			}
@@ -96,6 +112,8 @@ public class SocializeC2DMReceiverHandler implements C2DMReceiverHandler {
 	 */
 	@Override
 	public void onUnregistered(Context context) {
+		ensureContainer(context);
+		
 		if(notificationCallback != null) {
 			notificationCallback.onUnregister(context);
 			
@@ -117,12 +135,21 @@ public class SocializeC2DMReceiverHandler implements C2DMReceiverHandler {
 			logger.debug("SocializeC2DMReceiver creating..");
 		}
 		
-		try {
-			container.onCreate(context);
-			initBeans();
-		}
-		catch (Exception e) {
-			logError("Error initializing GCM receiver!", e);
+		// The container is only started when a request needs more than the lightweight notification runtime.
+		this.context = context;
+	}
+	
+	protected synchronized void ensureContainer(Context context) {
+		if(!containerCreated) {
+			containerCreated = true;
+			
+			try {
+				container.onCreate(context);
+				initBeans();
+			}
+			catch (Exception e) {
+				logError("Error initializing GCM receiver!", e);
+			}
 		}
 	}
 	
@@ -149,6 +176,11 @@ public class SocializeC2DMReceiverHandler implements C2DMReceiverHandler {
 		return new NotificationContainer();
 	}
 	
+	// So we can mock.	
+	protected NotificationRuntime newNotificationRuntime() {
+		return NotificationRuntime.getInstance();
+	}
+	
 	// So we can mock.	
 	protected SocializeLogger newSocializeLogger() {
 		return new SocializeLogger();
@@ -173,6 +205,9 @@ public class SocializeC2DMReceiverHandler implements C2DMReceiverHandler {
 	 * @return
 	 */
 	NotificationContainer getNotificationContainer() {
+		if(context != null) {
+			ensureContainer(context);
+		}
 		return container;
 	}
 }
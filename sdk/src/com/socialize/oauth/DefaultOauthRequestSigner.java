@@ -26,6 +26,7 @@ import com.socialize.api.SocializeSession;
 import com.socialize.error.SocializeException;
 import com.socialize.oauth.signpost.OAuthConsumer;
 import com.socialize.oauth.signpost.signature.SigningStrategy;
+import com.socialize.util.StringUtils;
 import org.apache.http.client.methods.HttpUriRequest;
 
 public class DefaultOauthRequestSigner implements OAuthRequestSigner {
@@ -33,6 +34,9 @@ public class DefaultOauthRequestSigner implements OAuthRequestSigner {
 	private OAuthConsumerFactory consumerFactory;
 	private SigningStrategy strategy;
 	
+	// Consumers hold per-request state, so each thread re-uses its own until the consumer key changes.
+	private final ThreadLocal<OAuthConsumer> consumers = new ThreadLocal<OAuthConsumer>();
+	
 	public DefaultOauthRequestSigner(OAuthConsumerFactory consumerFactory, SigningStrategy strategy) {
 		super();
 		this.strategy = strategy;
@@ -47,7 +51,7 @@ public class DefaultOauthRequestSigner implements OAuthRequestSigner {
 	@Override
 	public <R extends HttpUriRequest> R sign(SocializeSession session, R request, OAuthSignListener listener) throws SocializeException {
 		try {
-			OAuthConsumer consumer = consumerFactory.createConsumer(session.getConsumerKey(), session.getConsumerSecret());
+			OAuthConsumer consumer = getConsumer(session.getConsumerKey(), session.getConsumerSecret());
 			return sign(consumer, session, request, listener);
 		}
 		catch (Exception e) {
@@ -70,7 +74,7 @@ public class DefaultOauthRequestSigner implements OAuthRequestSigner {
 	@Override
 	public <R extends HttpUriRequest> R sign(String consumerKey, String consumerSecret, String accessToken, String accessTokenSecret, R request, OAuthSignListener listener) throws SocializeException {
 		try {
-			OAuthConsumer consumer = consumerFactory.createConsumer(consumerKey, consumerSecret);
+			OAuthConsumer consumer = getConsumer(consumerKey, consumerSecret);
 			consumer.setSigningStrategy(strategy);
 			consumer.setTokenWithSecret(accessToken, accessTokenSecret);
 			consumer.sign(request, listener);
@@ -81,5 +85,12 @@ public class DefaultOauthRequestSigner implements OAuthRequestSigner {
 		}		
 	}
 	
-	
+	protected OAuthConsumer getConsumer(String consumerKey, String consumerSecret) {
+		OAuthConsumer consumer = consumers.get();
+		if(consumer == null || !StringUtils.equals(consumerKey, consumer.getConsumerKey()) || !StringUtils.equals(consumerSecret, consumer.getConsumerSecret())) {
+			consumer = consumerFactory.createConsumer(consumerKey, consumerSecret);
+			consumers.set(consumer);
+		}
+		return consumer;
+	}
 }
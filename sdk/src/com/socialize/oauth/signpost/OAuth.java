@@ -15,7 +15,6 @@
 package com.socialize.oauth.signpost;
 
 import android.util.Log;
-import com.socialize.google.gdata.util.common.base.PercentEscaper;
 import com.socialize.oauth.signpost.http.HttpParameters;
 
 import java.io.*;
@@ -71,14 +70,94 @@ public class OAuth {
      */
     public static final String OUT_OF_BAND = "oob";
 
-    private static final PercentEscaper percentEncoder = new PercentEscaper(
-            "-._~", false);
+    private static final char[] UPPER_HEX_DIGITS = "0123456789ABCDEF".toCharArray();
 
+    /**
+     * Percent encodes the given string as per OAuth spec section 5.1.  Only the
+     * unreserved characters (ALPHA, DIGIT, '-', '.', '_' and '~') are left
+     * unescaped. Strings that need no escaping are returned as is.
+     */
     public static String percentEncode(String s) {
         if (s == null) {
             return "";
         }
-        return percentEncoder.escape(s);
+        int len = s.length();
+        for (int i = 0; i < len; i++) {
+            if (!isUnreserved(s.charAt(i))) {
+                StringBuilder sb = new StringBuilder(len + 16);
+                sb.append(s, 0, i);
+                return percentEncode(s, i, sb, 1).toString();
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Appends the percent encoding of the given string to a buffer without
+     * creating intermediate strings.
+     * 
+     * @param s
+     *        the string to encode, null is treated as empty
+     * @param into
+     *        the buffer to append to
+     * @param passes
+     *        the number of times the encoding is applied, 2 gives the same
+     *        result as percentEncode(percentEncode(s))
+     * @return the buffer
+     */
+    public static StringBuilder percentEncode(String s, StringBuilder into, int passes) {
+        if (s == null) {
+            return into;
+        }
+        return percentEncode(s, 0, into, passes);
+    }
+
+    private static StringBuilder percentEncode(String s, int start, StringBuilder into, int passes) {
+        int len = s.length();
+        for (int i = start; i < len; i++) {
+            char c = s.charAt(i);
+            if (isUnreserved(c)) {
+                into.append(c);
+            }
+            else if (c < 0x80) {
+                appendEscaped(into, c, passes);
+            }
+            else if (c < 0x800) {
+                appendEscaped(into, 0xC0 | (c >> 6), passes);
+                appendEscaped(into, 0x80 | (c & 0x3F), passes);
+            }
+            else if (c < 0xD800 || c > 0xDFFF) {
+                appendEscaped(into, 0xE0 | (c >> 12), passes);
+                appendEscaped(into, 0x80 | ((c >> 6) & 0x3F), passes);
+                appendEscaped(into, 0x80 | (c & 0x3F), passes);
+            }
+            else {
+                if (!Character.isHighSurrogate(c) || i + 1 >= len || !Character.isLowSurrogate(s.charAt(i + 1))) {
+                    throw new IllegalArgumentException("Invalid unicode character at index " + i + " in '" + s + "'");
+                }
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                appendEscaped(into, 0xF0 | (cp >> 18), passes);
+                appendEscaped(into, 0x80 | ((cp >> 12) & 0x3F), passes);
+                appendEscaped(into, 0x80 | ((cp >> 6) & 0x3F), passes);
+                appendEscaped(into, 0x80 | (cp & 0x3F), passes);
+            }
+        }
+        return into;
+    }
+
+    private static void appendEscaped(StringBuilder into, int b, int passes) {
+        into.append('%');
+        // Each further pass only escapes the '%' itself.
+        for (int i = 1; i < passes; i++) {
+            into.append("25");
+        }
+        into.append(UPPER_HEX_DIGITS[(b >> 4) & 0xF]);
+        into.append(UPPER_HEX_DIGITS[b & 0xF]);
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') 
+                || c == '-' || c == '.' || c == '_' || c == '~';
     }
 
     public static String percentDecode(String s) {
@@ -297,8 +376,12 @@ public class OAuth {
         return OAuth.percentEncode(name) + "=\"" + OAuth.percentEncode(value) + "\"";
     }
 
+    public static boolean isDebug() {
+        return System.getProperty("debug") != null;
+    }
+
     public static void debugOut(String key, String value) {
-        if (System.getProperty("debug") != null) {
+        if (isDebug()) {
         	Log.i("[SIGNPOST]", key + ": " + value);
         }
     }
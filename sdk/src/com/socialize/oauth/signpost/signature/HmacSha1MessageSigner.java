@@ -31,6 +31,17 @@ import java.security.GeneralSecurityException;
 public class HmacSha1MessageSigner extends OAuthMessageSigner {
 
 	private static final String MAC_NAME = "HmacSHA1";
+	
+	private static final int MAX_CACHED_KEYS = 4;
+	private static final int MAX_BUFFER_SIZE = 8192;
+	
+	// Mac instances are not thread safe, so each thread keeps its own initialized instances.
+	private static final ThreadLocal<SigningState> signingState = new ThreadLocal<SigningState>() {
+		@Override
+		protected SigningState initialValue() {
+			return new SigningState();
+		}
+	};
 
 	@Override
 	public String getSignatureMethod() {
@@ -45,27 +56,105 @@ public class HmacSha1MessageSigner extends OAuthMessageSigner {
 	@Override
 	public String sign(HttpRequest request, HttpParameters requestParams, OAuthSignListener listener) throws OAuthMessageSignerException {
 		try {
-			String keyString = OAuth.percentEncode(getConsumerSecret()) + '&' + OAuth.percentEncode(getTokenSecret());
-			byte[] keyBytes = keyString.getBytes(OAuth.ENCODING);
-
-			SecretKey key = new SecretKeySpec(keyBytes, MAC_NAME);
-			Mac mac = Mac.getInstance(MAC_NAME);
-			mac.init(key);
+			SigningState state = signingState.get();
+			
+			Mac mac = state.getMac(getConsumerSecret(), getTokenSecret());
 
-			String sbs = new SignatureBaseString(request, requestParams).generate();
-			OAuth.debugOut("SBS", sbs);
+			StringBuilder sbs = state.buffer;
+			sbs.setLength(0);
+			new SignatureBaseString(request, requestParams).generate(sbs);
+			
+			if(listener != null || OAuth.isDebug()) {
+				String text = sbs.toString();
+				OAuth.debugOut("SBS", text);
+				if(listener != null) {
+					listener.onSignature(text);
+				}
+			}
+			
+			int length = sbs.length();
+			byte[] text = state.toBytes(sbs);
 			
-			if(listener != null) {
-				listener.onSignature(sbs);
+			if(text != null) {
+				mac.update(text, 0, length);
+			}
+			else {
+				mac.update(sbs.toString().getBytes(OAuth.ENCODING));
 			}
 			
-			byte[] text = sbs.getBytes(OAuth.ENCODING);
+			state.trim();
 
-			return base64Encode(mac.doFinal(text)).trim();
+			return base64Encode(mac.doFinal()).trim();
 		} catch (GeneralSecurityException e) {
 			throw new OAuthMessageSignerException(e);
 		} catch (UnsupportedEncodingException e) {
 			throw new OAuthMessageSignerException(e);
 		}
 	}
+	
+	static final class SigningState {
+		
+		StringBuilder buffer = new StringBuilder(512);
+		byte[] bytes = new byte[512];
+		
+		final String[] consumerSecrets = new String[MAX_CACHED_KEYS];
+		final String[] tokenSecrets = new String[MAX_CACHED_KEYS];
+		final Mac[] macs = new Mac[MAX_CACHED_KEYS];
+		int next = 0;
+		
+		Mac getMac(String consumerSecret, String tokenSecret) throws GeneralSecurityException, UnsupportedEncodingException {
+			for (int i = 0; i < MAX_CACHED_KEYS; i++) {
+				if(macs[i] != null && equals(consumerSecrets[i], consumerSecret) && equals(tokenSecrets[i], tokenSecret)) {
+					return macs[i];
+				}
+			}
+			
+			String keyString = OAuth.percentEncode(consumerSecret) + '&' + OAuth.percentEncode(tokenSecret);
+			byte[] keyBytes = keyString.getBytes(OAuth.ENCODING);
+
+			SecretKey key = new SecretKeySpec(keyBytes, MAC_NAME);
+			Mac mac = Mac.getInstance(MAC_NAME);
+			mac.init(key);
+			
+			consumerSecrets[next] = consumerSecret;
+			tokenSecrets[next] = tokenSecret;
+			macs[next] = mac;
+			next = (next + 1) % MAX_CACHED_KEYS;
+			
+			return mac;
+		}
+		
+		/**
+		 * Copies the base string into the reusable byte buffer.  
+		 * The base string is fully percent encoded so it is ASCII, anything else returns null.
+		 */
+		byte[] toBytes(StringBuilder text) {
+			int length = text.length();
+			if(bytes.length < length) {
+				bytes = new byte[Math.max(length, bytes.length * 2)];
+			}
+			for (int i = 0; i < length; i++) {
+				char c = text.charAt(i);
+				if(c > 0x7F) {
+					return null;
+				}
+				bytes[i] = (byte) c;
+			}
+			return bytes;
+		}
+		
+		// Don't hold on to the buffers of the odd oversized request.
+		void trim() {
+			if(buffer.capacity() > MAX_BUFFER_SIZE) {
+				buffer = new StringBuilder(512);
+			}
+			if(bytes.length > MAX_BUFFER_SIZE) {
+				bytes = new byte[512];
+			}
+		}
+		
+		static boolean equals(String a, String b) {
+			return (a == null) ? b == null : a.equals(b);
+		}
+	}
 }
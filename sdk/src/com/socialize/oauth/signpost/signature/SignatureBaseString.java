@@ -19,10 +19,29 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
 
 public class SignatureBaseString {
 
+    private static final int MAX_CACHED_URLS = 32;
+
+    private static final ThreadLocal<Map<String, String>> normalizedUrls = new ThreadLocal<Map<String, String>>() {
+        @Override
+        protected Map<String, String> initialValue() {
+            return new LinkedHashMap<String, String>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                    return size() > MAX_CACHED_URLS;
+                }
+            };
+        }
+    };
+
     private HttpRequest request;
 
     private HttpParameters requestParameters;
@@ -50,18 +69,55 @@ public class SignatureBaseString {
      * @throws OAuthMessageSignerException
      */
     public String generate() throws OAuthMessageSignerException {
+        return generate(new StringBuilder(256)).toString();
+    }
 
+    /**
+     * Writes the signature base string into the given buffer. The URL and
+     * parameters are percent encoded straight into the buffer so no
+     * intermediate strings are built.
+     * 
+     * @param into
+     *        the buffer to append to
+     * @return the buffer
+     * @throws OAuthMessageSignerException
+     */
+    public StringBuilder generate(StringBuilder into) throws OAuthMessageSignerException {
         try {
-            String normalizedUrl = normalizeRequestUrl();
-            String normalizedParams = normalizeRequestParameters();
-
-            return request.getMethod() + '&' + OAuth.percentEncode(normalizedUrl) + '&'
-                    + OAuth.percentEncode(normalizedParams);
+            into.append(request.getMethod()).append('&');
+            OAuth.percentEncode(getNormalizedRequestUrl(), into, 1);
+            into.append('&');
+            writeRequestParameters(into);
+            return into;
         } catch (Exception e) {
             throw new OAuthMessageSignerException(e);
         }
     }
 
+    /**
+     * Returns the normalized request URL, re-using the result for URLs that
+     * share the same scheme, authority and path.
+     */
+    protected String getNormalizedRequestUrl() throws URISyntaxException {
+        String url = request.getRequestUrl();
+        int end = url.length();
+        for (int i = 0; i < end; i++) {
+            char c = url.charAt(i);
+            if (c == '?' || c == '#') {
+                end = i;
+                break;
+            }
+        }
+        String base = (end == url.length()) ? url : url.substring(0, end);
+        Map<String, String> cache = normalizedUrls.get();
+        String normalized = cache.get(base);
+        if (normalized == null) {
+            normalized = normalizeRequestUrl();
+            cache.put(base, normalized);
+        }
+        return normalized;
+    }
+
     public String normalizeRequestUrl() throws URISyntaxException {
         URI uri = new URI(request.getRequestUrl());
         String scheme = uri.getScheme().toLowerCase();
@@ -115,4 +171,46 @@ public class SignatureBaseString {
         }
         return sb.toString();
     }
+
+    /**
+     * Appends the normalized parameters, percent encoded once more, as
+     * {@link #normalizeRequestParameters()} followed by
+     * {@link OAuth#percentEncode(String)} would produce them.
+     */
+    private void writeRequestParameters(StringBuilder into) {
+        if (requestParameters == null) {
+            return;
+        }
+
+        Iterator<String> iter = requestParameters.keySet().iterator();
+
+        for (int i = 0; iter.hasNext(); i++) {
+            String param = iter.next();
+
+            if (OAuth.OAUTH_SIGNATURE.equals(param) || "realm".equals(param)) {
+                continue;
+            }
+
+            if (i > 0) {
+                into.append("%26");
+            }
+
+            // values are held against the encoded key, see HttpParameters.getAsQueryString
+            Set<String> values = requestParameters.get(OAuth.percentEncode(param));
+
+            if (values == null) {
+                OAuth.percentEncode(param, into, 2).append("%3D");
+                continue;
+            }
+
+            Iterator<String> valueIter = values.iterator();
+            while (valueIter.hasNext()) {
+                OAuth.percentEncode(param, into, 2).append("%3D");
+                OAuth.percentEncode(valueIter.next(), into, 1);
+                if (valueIter.hasNext()) {
+                    into.append("%26");
+                }
+            }
+        }
+    }
 }
@@ -26,10 +26,15 @@ import com.socialize.android.ioc.IBeanFactory;
 import com.socialize.api.*;
 import com.socialize.api.action.ActionType;
 import com.socialize.auth.*;
+import com.socialize.cache.LocalStore;
+import com.socialize.cache.ResponseCache;
 import com.socialize.config.SocializeConfig;
 import com.socialize.entity.*;
 import com.socialize.error.SocializeApiError;
 import com.socialize.error.SocializeException;
+import com.socialize.google.gson.stream.JsonReader;
+import com.socialize.google.gson.stream.JsonToken;
+import com.socialize.google.gson.stream.MalformedJsonException;
 import com.socialize.log.SocializeLogger;
 import com.socialize.net.HttpClientFactory;
 import com.socialize.util.HttpUtils;
@@ -43,11 +48,10 @@ import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.IOException;
+import java.io.*;
 import java.lang.ref.WeakReference;
 import java.util.*;
 import java.util.Map.Entry;
@@ -75,6 +79,8 @@ public abstract class BaseSocializeProvider<T extends SocializeObject> implement
 	private HttpUtils httpUtils;
 	private IOUtils ioUtils;
 	private SocializeSessionPersister sessionPersister;
+	private ResponseCache responseCache;
+	private LocalStore localStore;
 	private SocializeConfig config;
 	private WeakReference<Context> context;
 
@@ -225,6 +231,11 @@ public abstract class BaseSocializeProvider<T extends SocializeObject> implement
 		if(sessionPersister != null) {
 			sessionPersister.delete(context.get());
 		}
+		
+		// Cached responses may be specific to the user
+		if(responseCache != null) {
+			responseCache.clear();
+		}
 	}
 
 	public void saveSession(SocializeSession session) {
@@ -291,13 +302,7 @@ public abstract class BaseSocializeProvider<T extends SocializeObject> implement
 					}
 					else {
 						
-						String responseData = ioUtils.readSafe(entity.getContent());
-						
-						if(logger != null && logger.isDebugEnabled()) {
-							logger.debug("RESPONSE: " + responseData);
-						}						
-						
-						JSONObject json = jsonParser.parseObject(responseData);
+						JSONObject json = readJSONResponse(entity);
 						
 						User user = userFactory.fromJSON(json.getJSONObject("user"));
 						
@@ -414,7 +419,19 @@ public abstract class BaseSocializeProvider<T extends SocializeObject> implement
 	public T get(SocializeSession session, String endpoint, String id, ActionType type) throws SocializeException {
 		endpoint = prepareEndpoint(session, endpoint);
 		HttpUriRequest get = requestFactory.getGetRequest(session, endpoint, id);
-		return doGetTypeRequest(get, type);
+		
+		T result;
+		
+		if(isCached(get)) {
+			result = doCachedGetTypeRequest(session, get, type);
+		}
+		else {
+			result = doGetTypeRequest(get, type);
+		}
+		
+		store(result);
+		
+		return result;
 	}
 	
 	@Override
@@ -427,6 +444,7 @@ public abstract class BaseSocializeProvider<T extends SocializeObject> implement
 		HttpEntity entity = null;
 		
 		if(!clientFactory.isDestroyed()) {	
+			String rawEndpoint = endpoint;
 			try {
 				endpoint = prepareEndpoint(session, endpoint);
 				
@@ -447,6 +465,12 @@ public abstract class BaseSocializeProvider<T extends SocializeObject> implement
 					String msg = ioUtils.readSafe(entity.getContent());
 					throw new SocializeApiError(httpUtils, response.getStatusLine().getStatusCode(), msg);
 				}
+				
+				invalidate(endpoint);
+				
+				if(localStore != null) {
+					localStore.remove(rawEndpoint, id);
+				}
 			}
 			catch (Exception e) {
 				throw SocializeException.wrap(e);
@@ -466,49 +490,99 @@ public abstract class BaseSocializeProvider<T extends SocializeObject> implement
 	public ListResult<T> list(SocializeSession session, String endpoint, int startIndex, int endIndex) throws SocializeException {
 		endpoint = prepareEndpoint(session, endpoint);
 		HttpUriRequest request = requestFactory.getListRequest(session, endpoint, startIndex, endIndex);
-		return doListTypeRequest(request, ActionType.UNKNOWN);
+		
+		ListResult<T> result;
+		
+		if(isCached(request)) {
+			result = doCachedListTypeRequest(session, request, ActionType.UNKNOWN);
+		}
+		else {
+			result = doListTypeRequest(request, ActionType.UNKNOWN);
+		}
+		
+		store(result);
+		
+		return result;
 	}
 
 	@Override
 	public ListResult<T> list(SocializeSession session, String endpoint, String key, String[] ids, String idKey, Map<String, String> extraParams, int startIndex, int endIndex) throws SocializeException {
+		String rawEndpoint = endpoint;
 		endpoint = prepareEndpoint(session, endpoint);
 		HttpUriRequest request = requestFactory.getListRequest(session, endpoint, key, ids, idKey, extraParams, startIndex, endIndex);
-		return doListTypeRequest(request, ActionType.UNKNOWN);
+		
+		ListResult<T> result;
+		
+		if(isCached(request)) {
+			result = doCachedListTypeRequest(session, request, ActionType.UNKNOWN);
+		}
+		else {
+			result = doListTypeRequest(request, ActionType.UNKNOWN);
+		}
+		
+		store(rawEndpoint, key, startIndex, endIndex, result);
+		
+		return result;
 	}
 
 	@Override
 	public ListResult<T> list(SocializeSession session, String endpoint, String key, String[] ids, int startIndex, int endIndex) throws SocializeException {
+		String rawEndpoint = endpoint;
 		endpoint = prepareEndpoint(session, endpoint);
 		HttpUriRequest request = requestFactory.getListRequest(session, endpoint, key, ids, startIndex, endIndex);
-		return doListTypeRequest(request, ActionType.UNKNOWN);
+		
+		ListResult<T> result;
+		
+		if(isCached(request)) {
+			result = doCachedListTypeRequest(session, request, ActionType.UNKNOWN);
+		}
+		else {
+			result = doListTypeRequest(request, ActionType.UNKNOWN);
+		}
+		
+		store(rawEndpoint, key, startIndex, endIndex, result);
+		
+		return result;
 	}
 
 	@Override
 	public ListResult<T> put(SocializeSession session, String endpoint, T object) throws SocializeException {
 		endpoint = prepareEndpoint(session, endpoint);
 		HttpUriRequest request = requestFactory.getPutRequest(session, endpoint, object);
-		return doListTypeRequest(request, ActionType.UNKNOWN);
+		ListResult<T> result = doListTypeRequest(request, ActionType.UNKNOWN);
+		invalidate(endpoint);
+		store(result);
+		return result;
 	}
 
 	@Override
 	public ListResult<T> put(SocializeSession session, String endpoint, Collection<T> objects) throws SocializeException {
 		endpoint = prepareEndpoint(session, endpoint);
 		HttpUriRequest request = requestFactory.getPutRequest(session, endpoint, objects);
-		return doListTypeRequest(request, ActionType.UNKNOWN);
+		ListResult<T> result = doListTypeRequest(request, ActionType.UNKNOWN);
+		invalidate(endpoint);
+		store(result);
+		return result;
 	}
 	
 	@Override
 	public ListResult<T> post(SocializeSession session, String endpoint, T object, boolean jsonResponse) throws SocializeException {
 		endpoint = prepareEndpoint(session, endpoint);
 		HttpUriRequest request = requestFactory.getPostRequest(session, endpoint, object);
-		return doListTypeRequest(request, ActionType.UNKNOWN, jsonResponse);
+		ListResult<T> result = doListTypeRequest(request, ActionType.UNKNOWN, jsonResponse);
+		invalidate(endpoint);
+		store(result);
+		return result;
 	}
 
 	@Override
 	public T putAsPost(SocializeSession session, String endpoint, T object) throws SocializeException {
 		endpoint = prepareEndpoint(session, endpoint);
 		HttpUriRequest request = requestFactory.getPostRequest(session, endpoint, object);
-		return doGetTypeRequest(request, ActionType.UNKNOWN);
+		T result = doGetTypeRequest(request, ActionType.UNKNOWN);
+		invalidate(endpoint);
+		store(result);
+		return result;
 	}
 
 	
@@ -516,7 +590,10 @@ public abstract class BaseSocializeProvider<T extends SocializeObject> implement
 	public ListResult<T> post(SocializeSession session, String endpoint, Collection<T> objects, boolean isJSONResponse) throws SocializeException {
 		endpoint = prepareEndpoint(session, endpoint);
 		HttpUriRequest request = requestFactory.getPostRequest(session, endpoint, objects);
-		return doListTypeRequest(request, ActionType.UNKNOWN);
+		ListResult<T> result = doListTypeRequest(request, ActionType.UNKNOWN);
+		invalidate(endpoint);
+		store(result);
+		return result;
 	}
 
 	private T doGetTypeRequest(HttpUriRequest request, ActionType actionType) throws SocializeException {
@@ -546,15 +623,146 @@ public abstract class BaseSocializeProvider<T extends SocializeObject> implement
 					throw new SocializeApiError(httpUtils, response.getStatusLine().getStatusCode(), msg);
 				}
 				else {
-					String responseData = ioUtils.readSafe(entity.getContent());
+					JSONObject json = readJSONResponse(entity);
 					
-					if(logger != null && logger.isDebugEnabled()) {
-						logger.debug("RESPONSE: " + responseData);
-					}						
+					return fromJSON(json, actionType);
+				}
+			}
+			catch (Exception e) {
+				throw SocializeException.wrap(e);
+			}
+			finally {
+				closeEntity(entity);
+			}
+		}
+		else {
+			if(logger != null) {
+				logger.warn("Attempt to access HttpClientFactory that was already destroyed");
+			}
+			
+			return null;
+		}
+	}
+	
+	private boolean isCached(HttpUriRequest request) {
+		return responseCache != null && responseCache.isCacheable(request);
+	}
+	
+	private void invalidate(String endpoint) {
+		if(responseCache != null) {
+			responseCache.invalidate(endpoint);
+		}
+	}
+	
+	private void store(T result) {
+		if(localStore != null && result != null) {
+			localStore.put(result);
+		}
+	}
+	
+	private void store(ListResult<T> result) {
+		if(localStore != null && result != null) {
+			localStore.putAll(result.getItems());
+		}
+	}
+	
+	/**
+	 * The first page of an entity's actions is authoritative for the range it covers, so stored actions 
+	 * missing from it are dropped.  Other pages are simply added.
+	 */
+	private void store(String endpoint, String key, int startIndex, int endIndex, ListResult<T> result) {
+		if(localStore != null && result != null) {
+			List<T> items = result.getItems();
+			if(startIndex == 0 && !StringUtils.isEmpty(key) && items != null) {
+				localStore.reconcile(endpoint, key, items, items.size() < (endIndex - startIndex));
+			}
+			else {
+				localStore.putAll(items);
+			}
+		}
+	}
+	
+	private T doCachedGetTypeRequest(SocializeSession session, HttpUriRequest request, ActionType actionType) throws SocializeException {
+		try {
+			InputStream in = readCachedResponse(session, request);
+			
+			if(in == null) {
+				return null;
+			}
+			
+			return fromJSON(jsonParser.parseObject(ioUtils.reader(in)), actionType);
+		}
+		catch (Exception e) {
+			throw SocializeException.wrap(e);
+		}
+	}
+	
+	private ListResult<T> doCachedListTypeRequest(SocializeSession session, HttpUriRequest request, ActionType type) throws SocializeException {
+		try {
+			InputStream in = readCachedResponse(session, request);
+			
+			if(in == null) {
+				return null;
+			}
+			
+			// Parsed straight from the cached bytes, the body is never decoded into a String.
+			ListResult<T> result = new ListResult<T>();
+			readListResult(ioUtils.reader(in), result, type);
+			return result;
+		}
+		catch (Throwable e) {
+			throw SocializeException.wrap(e);
+		}
+	}
+	
+	private InputStream readCachedResponse(SocializeSession session, final HttpUriRequest request) throws Exception {
+		String url = request.getURI().toString();
+		
+		// The request is only ever executed once, either now on a miss or later as the background refresh of a stale hit.
+		return responseCache.get(responseCache.getKey(session, request), url, new ResponseCache.Fetcher() {
+			@Override
+			public byte[] fetch() throws Exception {
+				return fetchResponse(request);
+			}
+		});
+	}
+	
+	/**
+	 * Executes the request and returns the body of a successful response, or null if the client has been destroyed.
+	 */
+	private byte[] fetchResponse(HttpUriRequest request) throws SocializeException {
+		HttpEntity entity = null;
+		
+		if(!clientFactory.isDestroyed()) {	
+			
+			try {
+				HttpClient client = clientFactory.getClient();
+				
+				HttpResponse response = executeRequest(client, request);
+				
+				if(logger != null && logger.isDebugEnabled()) {
+					logger.debug("RESPONSE CODE: " + response.getStatusLine().getStatusCode());
+				}
+				
+				entity = response.getEntity();
+				
+				if(httpUtils.isHttpError(response)) {
+					
+					if(sessionPersister != null && httpUtils.isAuthError(response)) {
+						sessionPersister.delete(context.get());
+					}
+					
+					String msg = ioUtils.readSafe(entity.getContent());
+					throw new SocializeApiError(httpUtils, response.getStatusLine().getStatusCode(), msg);
+				}
+				else {
+					byte[] responseData = ioUtils.readBytes(entity.getContent(), entity.getContentLength());
 					
-					JSONObject json = jsonParser.parseObject(responseData);
+					if(logger != null && logger.isDebugEnabled()) {
+						logger.debug("RESPONSE: " + new String(responseData, "UTF-8"));
+					}
 					
-					return fromJSON(json, actionType);
+					return responseData;
 				}
 			}
 			catch (Exception e) {
@@ -616,8 +824,6 @@ public abstract class BaseSocializeProvider<T extends SocializeObject> implement
 	}
 
 	private ListResult<T> doListTypeRequest(HttpUriRequest request, ActionType type, boolean isJSONResponse) throws SocializeException {
-		List<T> results = null;
-		List<ActionError> errors = null;
 		HttpEntity entity = null;
 		
 		ListResult<T> result = null;
@@ -653,61 +859,19 @@ public abstract class BaseSocializeProvider<T extends SocializeObject> implement
 					result = new ListResult<T>();
 					
 					if(isJSONResponse) {
-						// Read the json just for logging
-						String json = ioUtils.readSafe(entity.getContent());
+						Reader in;
 						
 						if(logger != null && logger.isDebugEnabled()) {
+							// Only buffer the whole response when we need to log it
+							String json = ioUtils.read(entity.getContent(), entity.getContentLength());
 							logger.debug("RESPONSE: " + json);
-						}						
-						
-						if(!StringUtils.isEmpty(json)) {
-
-							JSONObject object;
-
-							try {
-								object = jsonParser.parseObject(json);
-							}
-							catch (JSONException je) {
-								throw new SocializeException("Failed to parse response as JSON [" +
-										json +
-										"]", je);
-							}
-
-							if(object.has(JSON_ATTR_ERRORS) && !object.isNull(JSON_ATTR_ERRORS)) {
-								
-								JSONArray errorList = object.getJSONArray(JSON_ATTR_ERRORS);
-								
-								int length = errorList.length();
-								
-								errors = new ArrayList<ActionError>(length);
-								
-								for (int i = 0; i < length; i++) {
-									JSONObject jsonObject = errorList.getJSONObject(i);
-									ActionError error = errorFactory.fromJSON(jsonObject);
-									errors.add(error);
-								}
-								
-								result.setErrors(errors);
-							}
-							
-							if(object.has(JSON_ATTR_ITEMS) && !object.isNull(JSON_ATTR_ITEMS)) {
-								JSONArray list = object.getJSONArray(JSON_ATTR_ITEMS);
-								
-								int length = list.length();
-								
-								results = new ArrayList<T>(length);
-								
-								for (int i = 0; i < length; i++) {
-									results.add(fromJSON(list.getJSONObject(i), type));
-								}
-								
-								result.setItems(results);
-							}
-							
-							if(object.has(JSON_ATTR_COUNT) && !object.isNull(JSON_ATTR_COUNT)) {
-								result.setTotalCount(object.getInt(JSON_ATTR_COUNT));
-							}
+							in = new StringReader(json);
+						}
+						else {
+							in = ioUtils.reader(entity.getContent());
 						}
+						
+						readListResult(in, result, type);
 					}
 				}
 			}
@@ -729,11 +893,101 @@ public abstract class BaseSocializeProvider<T extends SocializeObject> implement
 		}		
 	}	
 	
+	/**
+	 * Parses a single object response straight from the entity stream.  
+	 * The body is only materialized as a String when debug logging needs to print it.
+	 */
+	protected JSONObject readJSONResponse(HttpEntity entity) throws IOException, JSONException {
+		if(logger != null && logger.isDebugEnabled()) {
+			String responseData = ioUtils.read(entity.getContent(), entity.getContentLength());
+			logger.debug("RESPONSE: " + responseData);
+			return jsonParser.parseObject(responseData);
+		}
+		
+		return jsonParser.parseObject(ioUtils.reader(entity.getContent()));
+	}
+
+
+	/**
+	 * Streams the errors, items and total count of a list response into the result.  
+	 * Only one element is held as a JSONObject at a time.
+	 */
+	protected void readListResult(Reader in, ListResult<T> result, ActionType type) throws SocializeException, IOException {
+		JsonReader reader = new JsonReader(in);
+		
+		try {
+			try {
+				if(reader.peek() != JsonToken.BEGIN_OBJECT) {
+					// Not a list response (e.g. a bare array), nothing to extract
+					return;
+				}
+			}
+			catch (EOFException empty) {
+				return;
+			}
+			
+			reader.beginObject();
+			
+			while(reader.hasNext()) {
+				String name = reader.nextName();
+				
+				if(reader.peek() == JsonToken.NULL) {
+					reader.nextNull();
+				}
+				else if(JSON_ATTR_ERRORS.equals(name)) {
+					List<ActionError> errors = new ArrayList<ActionError>();
+					reader.beginArray();
+					while(reader.hasNext()) {
+						errors.add(errorFactory.fromJSON(reader));
+					}
+					reader.endArray();
+					result.setErrors(errors);
+				}
+				else if(JSON_ATTR_ITEMS.equals(name)) {
+					List<T> items = new ArrayList<T>();
+					reader.beginArray();
+					while(reader.hasNext()) {
+						items.add(fromJSON(reader, type));
+					}
+					reader.endArray();
+					result.setItems(items);
+				}
+				else if(JSON_ATTR_COUNT.equals(name)) {
+					result.setTotalCount(reader.nextInt());
+				}
+				else {
+					reader.skipValue();
+				}
+			}
+			
+			reader.endObject();
+		}
+		catch (JSONException e) {
+			throw new SocializeException("Failed to parse response as JSON", e);
+		}
+		catch (IllegalStateException e) {
+			throw new SocializeException("Failed to parse response as JSON", e);
+		}
+		catch (MalformedJsonException e) {
+			throw new SocializeException("Failed to parse response as JSON", e);
+		}
+		finally {
+			reader.close();
+		}
+	}
 
 	public void setLogger(SocializeLogger logger) {
 		this.logger = logger;
 	}
 	
+	public void setResponseCache(ResponseCache responseCache) {
+		this.responseCache = responseCache;
+	}
+
+	public void setLocalStore(LocalStore localStore) {
+		this.localStore = localStore;
+	}
+
 	public void setSessionPersister(SocializeSessionPersister sessionPersister) {
 		this.sessionPersister = sessionPersister;
 	}
@@ -815,4 +1069,8 @@ public abstract class BaseSocializeProvider<T extends SocializeObject> implement
 	
 	
 	public abstract T fromJSON(JSONObject json, ActionType type) throws JSONException;
+	
+	public T fromJSON(JsonReader reader, ActionType type) throws IOException, JSONException {
+		return fromJSON(jsonParser.readObject(reader), type);
+	}
 }
@@ -24,9 +24,12 @@ package com.socialize.provider;
 import com.socialize.api.action.ActionType;
 import com.socialize.entity.SocializeObject;
 import com.socialize.entity.SocializeObjectFactory;
+import com.socialize.google.gson.stream.JsonReader;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+
 /**
  * @author Jason Polites
  * 
@@ -48,4 +51,9 @@ public class DefaultSocializeProvider<T extends SocializeObject> extends BaseSoc
 	public T fromJSON(JSONObject json, ActionType type) throws JSONException {
 		return objectFactory.fromJSON(json);
 	}
+
+	@Override
+	public T fromJSON(JsonReader reader, ActionType type) throws IOException, JSONException {
+		return objectFactory.fromJSON(reader);
+	}
 }
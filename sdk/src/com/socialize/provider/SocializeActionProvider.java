@@ -2,9 +2,12 @@ package com.socialize.provider;
 
 import com.socialize.api.action.ActionType;
 import com.socialize.entity.*;
+import com.socialize.google.gson.stream.JsonReader;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+
 public class SocializeActionProvider extends DefaultSocializeProvider<SocializeAction> {
 
 	private SocializeObjectFactory<Comment> commentFactory;
@@ -23,6 +26,17 @@ public class SocializeActionProvider extends DefaultSocializeProvider<SocializeA
 		return super.fromJSON(json, type);
 	}
 
+	@Override
+	public SocializeAction fromJSON(JsonReader reader, ActionType type) throws IOException, JSONException {
+		switch(type) {
+			case COMMENT: return commentFactory.fromJSON(reader);
+			case SHARE: return shareFactory.fromJSON(reader);
+			case VIEW: return viewFactory.fromJSON(reader);
+			case LIKE:return likeFactory.fromJSON(reader);
+		}
+		return super.fromJSON(reader, type);
+	}
+
 	public void setCommentFactory(SocializeObjectFactory<Comment> commentFactory) {
 		this.commentFactory = commentFactory;
 	}
@@ -37,8 +37,14 @@ public class ActivityIOCProvider {
 		return instance;
 	}
 
+	/**
+	 * @return The bean from the Socialize container, or null if Socialize has not been initialized.
+	 */
 	@SuppressWarnings("unchecked")
-	protected <E extends Object> E getBean(String name) {
+	public <E extends Object> E getBean(String name) {
+		if(container == null) {
+			return null;
+		}
 		return (E) container.getBean(name);
 	}
 	
@@ -28,27 +28,26 @@ import android.graphics.drawable.Drawable;
 import android.view.Gravity;
 import android.widget.Toast;
 import com.socialize.CommentUtils;
-import com.socialize.EntityUtils;
 import com.socialize.LikeUtils;
 import com.socialize.ShareUtils;
-import com.socialize.ViewUtils;
+import com.socialize.Socialize;
 import com.socialize.android.ioc.IBeanFactory;
 import com.socialize.api.action.comment.CommentUtilsProxy;
+import com.socialize.api.action.entity.EntityBootstrap;
+import com.socialize.api.action.entity.EntityBootstrapSystem;
 import com.socialize.api.action.share.ShareUtilsProxy;
 import com.socialize.api.action.share.SocialNetworkDialogListener;
+import com.socialize.cache.LocalStore;
 import com.socialize.entity.Entity;
 import com.socialize.entity.EntityStats;
 import com.socialize.entity.Like;
-import com.socialize.entity.View;
-import com.socialize.error.SocializeApiError;
+import com.socialize.entity.User;
 import com.socialize.error.SocializeException;
 import com.socialize.i18n.I18NConstants;
 import com.socialize.i18n.LocalizationService;
-import com.socialize.listener.entity.EntityGetListener;
+import com.socialize.listener.entity.EntityBootstrapListener;
 import com.socialize.listener.like.LikeAddListener;
 import com.socialize.listener.like.LikeDeleteListener;
-import com.socialize.listener.like.LikeGetListener;
-import com.socialize.listener.view.ViewAddListener;
 import com.socialize.log.SocializeLogger;
 import com.socialize.networks.SocialNetwork;
 import com.socialize.ui.actionbar.OnActionBarEventListener.ActionBarEvent;
@@ -86,6 +85,8 @@ public class ActionBarLayoutView extends BaseView {
 	
 	private Drawables drawables;
 	private EntityCache entityCache;
+	private LocalStore localStore;
+	private EntityBootstrapSystem entityBootstrapSystem;
 	private SocializeLogger logger;
 	
 	private Drawable likeIcon;
@@ -115,6 +116,10 @@ public class ActionBarLayoutView extends BaseView {
 	private OnActionBarEventListener onActionBarEventListener;
 	private OnCommentViewActionListener onCommentViewActionListener;
 	
+	private long loadStart;
+	private long readyTime = -1;
+	private boolean readyFromStore;
+	
 	public ActionBarLayoutView(Activity context, ActionBarView actionBarView) {
 		this(context, actionBarView, new ActionBarOptions());
 	}
@@ -398,6 +403,10 @@ public class ActionBarLayoutView extends BaseView {
 		final Entity userProvidedEntity = actionBarView.getEntity();
 		if(ticker != null) ticker.resetTicker();
 		if(userProvidedEntity != null) {
+			loadStart = now();
+			readyTime = -1;
+			readyFromStore = false;
+			
 			if(reload) {
 				if(viewsItem != null) viewsItem.setText(loadingText);
 				if(commentsItem != null) commentsItem.setText(loadingText);
@@ -439,28 +448,17 @@ public class ActionBarLayoutView extends BaseView {
 		CacheableEntity localEntity = getLocalEntity();
 		
 		if(localEntity == null) {
-			ViewUtils.view(getActivity(), entity, new ViewAddListener() {
-				@Override
-				public void onError(SocializeException error) {
-					SocializeLogger.e(error.getMessage(), error);
-					getLike(entity.getKey(), listener);
-				}
-				
-				@Override
-				public void onCreate(View view) {
-					// Entity will be set in like
-					getLike(view.getEntity().getKey(), listener);
-				}
-			});
+			// Show what was last seen on this device while the first load runs
+			if(!reload) {
+				showStoredEntity(entity);
+			}
+			
+			// First load, record the view and check the like together
+			bootstrapEntity(entity, true, true, listener);
 		}
 		else {
 			if(reload) {
-				if(localEntity.isLiked()) {
-					getLike(entity.getKey(), listener);
-				}
-				else {
-					getEntity(entity.getKey(), listener);
-				}
+				bootstrapEntity(entity, false, localEntity.isLiked(), listener);
 			}
 			else {
 				// Just set everything from the cached version
@@ -551,6 +549,73 @@ public class ActionBarLayoutView extends BaseView {
 		});
 	}
 
+	/**
+	 * Renders the stats and like state last stored for the entity.  The bootstrap replaces them when it completes.
+	 * Skipped until the store has been opened in the background, so the UI thread never waits on opening it.
+	 * @return true if the entity was found in the local store.
+	 */
+	protected boolean showStoredEntity(Entity entity) {
+		if(localStore == null || entity == null || !localStore.isWarm()) {
+			return false;
+		}
+		
+		Entity stored = localStore.getEntity(entity.getKey());
+		
+		if(stored == null) {
+			return false;
+		}
+		
+		CacheableEntity ce = new CacheableEntity(stored);
+		
+		User user = getCurrentUser();
+		
+		if(user != null && user.getId() != null) {
+			Like like = localStore.getLike(entity.getKey(), user.getId());
+			if(like != null) {
+				ce.setLiked(true);
+				ce.setLikeId(like.getId());
+			}
+		}
+		
+		renderEntityData(ce);
+		markReady(true);
+		
+		return true;
+	}
+	
+	protected User getCurrentUser() {
+		return Socialize.getSocialize().getSession() == null ? null : Socialize.getSocialize().getSession().getUser();
+	}
+	
+	protected void markReady(boolean fromStore) {
+		if(readyTime < 0 && loadStart > 0) {
+			readyTime = now() - loadStart;
+			readyFromStore = fromStore;
+			
+			if(logger != null && logger.isDebugEnabled()) {
+				logger.debug("Action bar ready in [" + readyTime + "ms] from " + (fromStore ? "local store" : "network"));
+			}
+		}
+	}
+	
+	/**
+	 * @return The time in milliseconds from the start of the last load until counts were first shown, or -1 if not yet shown.
+	 */
+	public long getReadyTime() {
+		return readyTime;
+	}
+	
+	/**
+	 * @return True if the counts were first shown from the local store during the last load.
+	 */
+	public boolean isReadyFromStore() {
+		return readyFromStore;
+	}
+	
+	protected long now() {
+		return System.currentTimeMillis();
+	}
+	
 	protected CacheableEntity getLocalEntity() {
 		if(entityCache != null && actionBarView != null && actionBarView.getEntity() != null) {
 			return entityCache.get(actionBarView.getEntity().getKey());
@@ -571,62 +636,28 @@ public class ActionBarLayoutView extends BaseView {
 		return entityCache.putEntity(entity);
 	}
 	
-	protected void getLike(final String entityKey, final OnActionBarReloadListener listener) {
-		
-		// Get the like
-		LikeUtils.getLike(getActivity(), entityKey, new LikeGetListener() {
+	protected void bootstrapEntity(Entity entity, boolean addView, boolean getLike, final OnActionBarReloadListener listener) {
+		entityBootstrapSystem.bootstrap(Socialize.getSocialize().getSession(), entity, addView, getLike, new EntityBootstrapListener() {
 			
 			@Override
-			public void onGet(Like like) {
+			public void onBootstrap(EntityBootstrap bootstrap) {
+				Like like = bootstrap.getLike();
+				
+				CacheableEntity putEntity = setLocalEntity(bootstrap.getEntity());
+				putEntity.setLiked(like != null);
+				
 				if(like != null) {
-					CacheableEntity putEntity = setLocalEntity(like.getEntity());
-					putEntity.setLiked(true);
 					putEntity.setLikeId(like.getId());
-					setEntityData(putEntity, listener);
-					
-					if(onActionBarEventListener != null) {
-						onActionBarEventListener.onGetLike(actionBarView, like);
-					}
-					
-					if(onActionBarEventListener != null) {
-						onActionBarEventListener.onGetEntity(actionBarView, like.getEntity());
-					}	
-				}
-				else {
-					getEntity(entityKey, listener);
-				}
-			}
-			
-			@Override
-			public void onError(SocializeException error) {
-				if(error instanceof SocializeApiError) {
-					if(((SocializeApiError)error).getResultCode() == 404) {
-						// no like
-						getEntity(entityKey, listener);
-						// Don't log error
-						return;
-					}
-				}
-
-				if(onActionBarEventListener != null) {
-					onActionBarEventListener.onLoadFail(error);
 				}
 				
-				logError("Error retrieving entity data", error);
-			}
-		});
-	}
-	
-	protected void getEntity(String entityKey, final OnActionBarReloadListener listener) {
-		EntityUtils.getEntity(getActivity(), entityKey, new EntityGetListener() {
-			@Override
-			public void onGet(Entity entity) {
-				CacheableEntity putEntity = setLocalEntity(entity);
 				setEntityData(putEntity, listener);
 				
 				if(onActionBarEventListener != null) {
-					onActionBarEventListener.onGetEntity(actionBarView, entity);
-				}	
+					if(like != null) {
+						onActionBarEventListener.onGetLike(actionBarView, like);
+					}
+					onActionBarEventListener.onGetEntity(actionBarView, bootstrap.getEntity());
+				}
 			}
 			
 			@Override
@@ -647,7 +678,16 @@ public class ActionBarLayoutView extends BaseView {
 		
 		actionBarView.setEntity(entity);
 		
-		EntityStats stats = entity.getEntityStats();
+		renderEntityData(ce);
+		markReady(false);
+		
+		if(listener != null) {
+			listener.onReload(entity);
+		}
+	}
+	
+	protected void renderEntityData(CacheableEntity ce) {
+		EntityStats stats = ce.getEntity().getEntityStats();
 		
 		if(stats != null) {
 			if(viewsItem != null) viewsItem.setText(getCountText(stats.getViews()));
@@ -666,10 +706,6 @@ public class ActionBarLayoutView extends BaseView {
 				likeButton.setIcon(likeIcon);
 			}
 		}
-		
-		if(listener != null) {
-			listener.onReload(entity);
-		}
 	}
 	
 	protected String getCountText(Integer value) {
@@ -722,6 +758,10 @@ public class ActionBarLayoutView extends BaseView {
 		this.buttonFactory = buttonFactory;
 	}
 
+	public void setLocalStore(LocalStore localStore) {
+		this.localStore = localStore;
+	}
+
 	public void setEntityCache(EntityCache entityCache) {
 		this.entityCache = entityCache;
 	}
@@ -746,6 +786,10 @@ public class ActionBarLayoutView extends BaseView {
 		this.itemFactory = itemFactory;
 	}
 	
+	public void setEntityBootstrapSystem(EntityBootstrapSystem entityBootstrapSystem) {
+		this.entityBootstrapSystem = entityBootstrapSystem;
+	}
+
 	public void setShareUtils(ShareUtilsProxy shareUtils) {
 		this.shareUtils = shareUtils;
 	}
@@ -124,6 +124,14 @@ public class CommentAdapter extends BaseAdapter {
 		}
 		return null;
 	}
+	
+	// Rows being displayed move the pager's window and reload released pages; other reads do not.
+	protected Comment showItem(int position) {
+		if(comments instanceof CommentPager && position < comments.size()) {
+			return ((CommentPager) comments).show(position);
+		}
+		return (Comment) getItem(position);
+	}
 
 	@Override
 	public long getItemId(int position) {
@@ -162,7 +170,7 @@ public class CommentAdapter extends BaseAdapter {
 		
 		User tmpUser = null;
 
-		final Comment item = (Comment) getItem(position);
+		final Comment item = showItem(position);
 
 		if(item != null) {
 			tmpUser = item.getUser();
@@ -295,6 +303,18 @@ public class CommentAdapter extends BaseAdapter {
 					}
 
 					if (userIcon != null && drawables != null) {
+						
+						String previousImage = userIcon.getExpectedImageName();
+						String nextImage = imageUrl;
+						
+						if(StringUtils.isEmpty(nextImage) && user != null) {
+							nextImage = "user_" + user.getId();
+						}
+						
+						// This row was recycled, it no longer needs the image it was waiting on
+						if(previousImage != null && !previousImage.equals(nextImage) && imageLoader != null) {
+							imageLoader.cancel(previousImage, userIcon);
+						}
 
 						if(user != null) {
                             // NPE on some devices (?)
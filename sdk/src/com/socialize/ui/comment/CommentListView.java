@@ -13,6 +13,7 @@ import com.socialize.api.action.comment.CommentOptions;
 import com.socialize.api.action.comment.CommentUtilsProxy;
 import com.socialize.api.action.comment.SubscriptionUtilsProxy;
 import com.socialize.api.action.user.UserUtilsProxy;
+import com.socialize.cache.ListStore;
 import com.socialize.config.SocializeConfig;
 import com.socialize.entity.*;
 import com.socialize.error.SocializeException;
@@ -46,6 +47,13 @@ public class CommentListView extends BaseView {
 	private IBeanFactory<CommentAdapter> commentAdapterFactory;
 	private CommentAdapter commentAdapter;
 	private boolean loading = true; // Default to true
+	private boolean restored = false;
+	
+	private CommentPager pager;
+	private int pageWindow = CommentPager.DEFAULT_MAX_PAGES;
+	private int prefetchThreshold = 0;
+	private ListStore<Comment> commentStore;
+	private boolean incrementalSync = true;
 	
 	private boolean headerDisplayed = true;
 
@@ -196,6 +204,12 @@ public class CommentListView extends BaseView {
 			sliderAnchor.addView(notifyBox);
 		}		
 		
+		SocializeConfig socializeConfig = ConfigUtils.getConfig(getContext());
+		
+		setDefaultGrabLength(socializeConfig.getIntProperty("comment.page.size", 20));
+		setPageWindow(socializeConfig.getIntProperty("comment.page.window", CommentPager.DEFAULT_MAX_PAGES));
+		setPrefetchThreshold(socializeConfig.getIntProperty("comment.page.prefetch", defaultGrabLength / 2));
+		
 		content.setListAdapter(commentAdapter);
 		content.setScrollListener(getCommentScrollListener());
 
@@ -212,8 +226,6 @@ public class CommentListView extends BaseView {
 		layoutAnchor.addView(sliderAnchor);
 		
 		addView(layoutAnchor);
-		
-		setDefaultGrabLength(ConfigUtils.getConfig(getContext()).getIntProperty("comment.page.size", 20));
 	}
 	
 	protected CommentScrollListener getCommentScrollListener() {
@@ -232,7 +244,44 @@ public class CommentListView extends BaseView {
 			public boolean hasMoreItems() {
 				return !commentAdapter.isLast();
 			}
+		}, prefetchThreshold);
+	}
+	
+	protected CommentPager getPager() {
+		if(pager == null) {
+			pager = newCommentPager();
+		}
+		return pager;
+	}
+	
+	// Pages released from the window are read back by id through the comment utils, which are served from the response cache when fresh.
+	protected CommentPager newCommentPager() {
+		CommentPager pager = new CommentPager();
+		pager.setMaxPages(pageWindow);
+		pager.setPageLoader(new CommentPager.PageLoader() {
+			@Override
+			public void loadPage(long[] ids, CommentListListener listener) {
+				commentUtils.getComments(getActivity(), listener, ids);
+			}
 		});
+		pager.setOnPageListener(new CommentPager.OnPageListener() {
+			@Override
+			public void onPageLoaded(int start, List<Comment> comments) {
+				preLoadImages(comments);
+				commentAdapter.notifyDataSetChanged();
+			}
+			
+			@Override
+			public void onPageError(int start, SocializeException error) {
+				if(logger != null) {
+					logger.error("Error reloading comments from [" + start + "]", error);
+				}
+				else {
+					SocializeLogger.e(error.getMessage(), error);
+				}
+			}
+		});
+		return pager;
 	}
 	
 	protected CommentAddButtonListener getCommentAddButtonListener() {
@@ -314,6 +363,7 @@ public class CommentListView extends BaseView {
 				
 				commentAdapter.setTotalCount(commentAdapter.getTotalCount() + 1);
 				commentAdapter.notifyDataSetChanged();
+				saveComments();
 				
 				setHeaderText();
 				
@@ -350,6 +400,15 @@ public class CommentListView extends BaseView {
 	}
 	
 	public void reload() {
+		if(isSyncable()) {
+			if(onCommentViewActionListener != null) {
+				onCommentViewActionListener.onReload(this);
+			}
+			
+			doSyncComments();
+			return;
+		}
+		
 		content.showLoading();
 		commentAdapter.reset();
 		
@@ -367,6 +426,156 @@ public class CommentListView extends BaseView {
 	public CommentAdapter getCommentAdapter() {
 		return commentAdapter;
 	}
+	
+	// The comments on display can be brought up to date in place if the top of the list is still in memory.
+	protected boolean isSyncable() {
+		return incrementalSync && pager != null && commentAdapter.getComments() == pager && pager.isLoaded(0);
+	}
+	
+	/**
+	 * Fetches the newest comments and merges them into those already on display.
+	 */
+	protected void doSyncComments() {
+		loading = true;
+		
+		commentUtils.getCommentsByEntity(getActivity(), entity.getKey(), 0, defaultGrabLength, new CommentListListener() {
+
+			@Override
+			public void onError(SocializeException error) {
+				if(logger != null) {
+					logger.error("Error refreshing comments", error);
+				}
+				else {
+					SocializeLogger.e(error.getMessage(), error);
+				}
+				
+				loading = false;
+				
+				if(onCommentViewActionListener != null) {
+					onCommentViewActionListener.onError(error);
+				}
+			}
+
+			@Override
+			public void onList(ListResult<Comment> entities) {
+				mergeComments(entities);
+				
+				loading = false;
+				
+				if(onCommentViewActionListener != null && entities != null) {
+					onCommentViewActionListener.onCommentList(CommentListView.this, entities.getItems(), startIndex, endIndex);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Merges the newest comments into the list on display.  The adapter is only notified if rows were 
+	 * added or removed, and rows already on screen are kept in place when new comments arrive above them.
+	 */
+	protected ListMerger.Result mergeComments(ListResult<Comment> entities) {
+		List<Comment> items = (entities == null) ? null : entities.getItems();
+		
+		if(items == null) {
+			return new ListMerger.Result();
+		}
+		
+		CommentPager pager = getPager();
+		ListMerger.Result result = ListMerger.merge(pager, items);
+		
+		int totalCount = entities.getTotalCount();
+		commentAdapter.setTotalCount(totalCount);
+		
+		if(result.isReplaced()) {
+			startIndex = 0;
+			endIndex = defaultGrabLength;
+			commentAdapter.setLast(totalCount <= endIndex);
+		}
+		else {
+			int delta = result.getInserted() - result.getRemoved();
+			startIndex += delta;
+			endIndex += delta;
+		}
+		
+		setHeaderText();
+		
+		if(result.isChanged()) {
+			if(result.getInserted() > 0 || result.isReplaced()) {
+				preLoadImages(items);
+			}
+			
+			commentAdapter.notifyDataSetChanged();
+			
+			if(result.getInsertedAbove() > 0 && !result.isReplaced()) {
+				content.keepPosition(result.getInsertedAbove());
+			}
+			
+			saveComments();
+		}
+		
+		content.showList();
+		
+		return result;
+	}
+	
+	/**
+	 * Reads the comments stored when the view was last open in the background and shows them, 
+	 * unless comments from the server are already on display.
+	 */
+	protected void restoreComments() {
+		if(commentStore == null || entity == null) {
+			return;
+		}
+		
+		commentStore.load(getStoreKey(), new ListStore.LoadListener<Comment>() {
+			@Override
+			public void onLoad(final List<Comment> stored) {
+				if(stored != null && !stored.isEmpty()) {
+					post(new Runnable() {
+						@Override
+						public void run() {
+							showStoredComments(stored);
+						}
+					});
+				}
+			}
+		});
+	}
+	
+	/**
+	 * @return True if the stored comments are now on display.
+	 */
+	protected boolean showStoredComments(List<Comment> stored) {
+		List<Comment> current = commentAdapter.getComments();
+		
+		if(current != null && current.size() > 0) {
+			return false;
+		}
+		
+		CommentPager pager = getPager();
+		pager.clear();
+		pager.addPage(stored);
+		
+		endIndex = stored.size();
+		restored = true;
+		
+		commentAdapter.setComments(pager);
+		commentAdapter.setTotalCount(stored.size());
+		commentAdapter.notifyDataSetChanged();
+		content.showList();
+		
+		return true;
+	}
+	
+	protected void saveComments() {
+		if(commentStore != null && entity != null && pager != null) {
+			commentStore.save(getStoreKey(), pager);
+		}
+	}
+	
+	protected String getStoreKey() {
+		return "comments:" + entity.getKey();
+	}
 
 	public void doListComments(final boolean update) {
 
@@ -376,6 +585,12 @@ public class CommentListView extends BaseView {
 		loading = true;
 		
 		final List<Comment> comments = commentAdapter.getComments();
+		
+		restored = false;
+		
+		if(!update && (comments == null || comments.size() == 0)) {
+			restoreComments();
+		}
 
 		if(update || comments == null || comments.size() == 0) {
 			
@@ -402,11 +617,21 @@ public class CommentListView extends BaseView {
 				@Override
 				public void onList(ListResult<Comment> entities) {
 					
-					if(entities != null) {
+					if(restored) {
+						mergeComments(entities);
+					}
+					else if(entities != null) {
 						int totalCount = entities.getTotalCount();
 						
 						List<Comment> items = entities.getItems();
-						commentAdapter.setComments(items);
+						CommentPager pager = getPager();
+						pager.clear();
+						
+						if(items != null) {
+							pager.addPage(items);
+						}
+						
+						commentAdapter.setComments(pager);
 						commentAdapter.setTotalCount(totalCount);
 						
 						setHeaderText();
@@ -420,6 +645,7 @@ public class CommentListView extends BaseView {
 						}
 						
 						commentAdapter.notifyDataSetChanged();
+						saveComments();
 					}
 					
 					content.showList();
@@ -617,19 +843,25 @@ public class CommentListView extends BaseView {
 
 			@Override
 			public void onList(ListResult<Comment> entities) {
-				List<Comment> comments = commentAdapter.getComments();
+				CommentPager pager = getPager();
+				List<Comment> items = null;
 
 				if(entities != null) {
-					comments.addAll(entities.getItems());
-					preLoadImages(comments);
+					items = entities.getItems();
+					
+					if(items != null) {
+						// Only the new page needs its avatars loaded ahead of display.
+						pager.addPage(items);
+						preLoadImages(items);
+					}
 				}
 
-				commentAdapter.setComments(comments);
+				commentAdapter.setComments(pager);
 				commentAdapter.notifyDataSetChanged();
 				loading = false;
 
-				if(onCommentViewActionListener != null && entities != null) {
-					onCommentViewActionListener.onCommentList(CommentListView.this, comments, startIndex, endIndex);
+				if(onCommentViewActionListener != null && items != null) {
+					onCommentViewActionListener.onCommentList(CommentListView.this, items, startIndex, endIndex);
 				}
 			}
 		});
@@ -728,9 +960,37 @@ public class CommentListView extends BaseView {
 		this.drawables = drawables;
 	}
 
+	public void setCommentStore(ListStore<Comment> commentStore) {
+		this.commentStore = commentStore;
+	}
+	
+	/**
+	 * If true (the default) a reload merges the newest comments into those on display rather than starting over.
+	 */
+	public void setIncrementalSync(boolean incrementalSync) {
+		this.incrementalSync = incrementalSync;
+	}
+
 	public void setDefaultGrabLength(int defaultGrabLength) {
 		this.defaultGrabLength = defaultGrabLength;
 	}
+	
+	/**
+	 * Sets the number of pages of comments kept in memory.
+	 */
+	public void setPageWindow(int pageWindow) {
+		this.pageWindow = pageWindow;
+		if(pager != null) {
+			pager.setMaxPages(pageWindow);
+		}
+	}
+	
+	/**
+	 * Sets the number of rows from the end of the list at which the next page is fetched.
+	 */
+	public void setPrefetchThreshold(int prefetchThreshold) {
+		this.prefetchThreshold = prefetchThreshold;
+	}
 
 	public void setCommentHeaderFactory(IBeanFactory<SocializeHeader> commentHeaderFactory) {
 		this.commentHeaderFactory = commentHeaderFactory;
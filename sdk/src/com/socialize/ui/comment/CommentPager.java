@@ -0,0 +1,421 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.ui.comment;
+
+import com.socialize.entity.Comment;
+import com.socialize.entity.ListResult;
+import com.socialize.error.SocializeException;
+import com.socialize.listener.comment.CommentListListener;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A list of comments held as a series of pages, of which only a bounded window is kept in memory.  
+ * Pages far from the last position shown are released and reloaded through the {@link PageLoader} 
+ * when they are next shown.  A released page keeps the ids of its comments and is reloaded by id, so 
+ * comments posted or deleted elsewhere since the first read don't shift it.  Pages that are not in 
+ * memory read as null until they have been reloaded.
+ * Only {@link #show(int)} moves the position or starts a reload; {@link #get(int)} and {@link #peek(int)} 
+ * have no side effects so traversals of the list do not disturb the window.
+ */
+public class CommentPager extends AbstractList<Comment> {
+	
+	public static final int DEFAULT_MAX_PAGES = 5;
+	
+	/**
+	 * Loads the comments with the given ids.  The result may be in any order.
+	 */
+	public static interface PageLoader {
+		public void loadPage(long[] ids, CommentListListener listener);
+	}
+	
+	public static interface OnPageListener {
+		public void onPageLoaded(int start, List<Comment> comments);
+		public void onPageError(int start, SocializeException error);
+	}
+	
+	private final List<Page> pages = new ArrayList<Page>();
+	
+	private PageLoader pageLoader;
+	private OnPageListener onPageListener;
+	private int maxPages = DEFAULT_MAX_PAGES;
+	
+	private int count = 0;
+	private int position = 0;
+	private int resident = 0;
+	
+	@Override
+	public Comment get(int index) {
+		return peek(index);
+	}
+	
+	/**
+	 * Returns the comment at the given index without moving the position or reloading its page.
+	 * @return The comment, or null if its page is not in memory.
+	 */
+	public Comment peek(int index) {
+		if(index < 0 || index >= count) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+		}
+		
+		Page page = pages.get(indexOf(index));
+		
+		if(page.comments == null) {
+			return null;
+		}
+		
+		return page.comments.get(index - page.start);
+	}
+	
+	/**
+	 * Returns the comment at the given index for display.  Moves the position which anchors the window 
+	 * and starts a reload if the page holding the comment has been released.
+	 * @return The comment, or null if its page is not in memory.
+	 */
+	public Comment show(int index) {
+		if(index < 0 || index >= count) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+		}
+		
+		position = index;
+		
+		Page page = pages.get(indexOf(index));
+		
+		if(page.comments == null) {
+			reload(page);
+			return null;
+		}
+		
+		return page.comments.get(index - page.start);
+	}
+
+	@Override
+	public int size() {
+		return count;
+	}
+	
+	/**
+	 * Inserts a comment.  Typically used to show a newly posted comment at the top of the list.
+	 */
+	@Override
+	public void add(int index, Comment comment) {
+		if(index < 0 || index > count) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+		}
+		
+		if(pages.isEmpty()) {
+			addPage(comment);
+			return;
+		}
+		
+		int pageIndex = (index == count) ? pages.size() - 1 : indexOf(index);
+		Page page = pages.get(pageIndex);
+		
+		// A page that is not in memory will include the comment when it is reloaded.
+		if(page.comments != null) {
+			page.comments.add(index - page.start, comment);
+		}
+		else {
+			page.ids.add(index - page.start, comment.getId());
+		}
+		
+		page.size++;
+		count++;
+		shift(pageIndex + 1, 1);
+		modCount++;
+	}
+
+	/**
+	 * Removes a comment.  Returns null if the page holding the comment is not in memory.
+	 */
+	@Override
+	public Comment remove(int index) {
+		if(index < 0 || index >= count) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+		}
+		
+		int pageIndex = indexOf(index);
+		Page page = pages.get(pageIndex);
+		Comment removed = null;
+		
+		if(page.comments != null) {
+			removed = page.comments.remove(index - page.start);
+		}
+		else {
+			page.ids.remove(index - page.start);
+		}
+		
+		page.size--;
+		count--;
+		shift(pageIndex + 1, -1);
+		
+		if(page.size == 0) {
+			pages.remove(pageIndex);
+			if(page.comments != null) {
+				resident--;
+			}
+		}
+		
+		modCount++;
+		return removed;
+	}
+
+	@Override
+	public void clear() {
+		pages.clear();
+		count = 0;
+		position = 0;
+		resident = 0;
+		modCount++;
+	}
+	
+	/**
+	 * Appends a page of comments to the end of the list.  Pages beyond the window are released.
+	 */
+	public void addPage(List<Comment> comments) {
+		Page page = new Page();
+		page.start = count;
+		page.comments = new ArrayList<Comment>(comments);
+		page.size = page.comments.size();
+		
+		if(page.size > 0) {
+			pages.add(page);
+			count += page.size;
+			resident++;
+			modCount++;
+			trim(page);
+		}
+	}
+	
+	protected void addPage(Comment comment) {
+		List<Comment> comments = new ArrayList<Comment>(1);
+		comments.add(comment);
+		addPage(comments);
+	}
+	
+	/**
+	 * @return True if the comment at the given index is held in memory.
+	 */
+	public boolean isLoaded(int index) {
+		return index >= 0 && index < count && pages.get(indexOf(index)).comments != null;
+	}
+	
+	public int getPageCount() {
+		return pages.size();
+	}
+	
+	public int getLoadedPageCount() {
+		return resident;
+	}
+	
+	protected void reload(final Page page) {
+		if(page.loading || pageLoader == null) {
+			return;
+		}
+		
+		page.loading = true;
+		
+		CommentListListener listener = new CommentListListener() {
+			@Override
+			public void onList(ListResult<Comment> result) {
+				page.loading = false;
+				onReload(page, (result == null) ? null : result.getItems());
+			}
+			
+			@Override
+			public void onError(SocializeException error) {
+				page.loading = false;
+				
+				if(onPageListener != null) {
+					onPageListener.onPageError(page.start, error);
+				}
+			}
+		};
+		
+		long[] ids = idsOf(page);
+		
+		if(ids.length == 0) {
+			listener.onList(null);
+		}
+		else {
+			pageLoader.loadPage(ids, listener);
+		}
+	}
+	
+	protected void onReload(Page page, List<Comment> items) {
+		int pageIndex = pages.indexOf(page);
+		
+		// Cleared while loading, or already reloaded
+		if(pageIndex < 0 || page.comments != null) {
+			return;
+		}
+		
+		Map<Long, Comment> loaded = new HashMap<Long, Comment>();
+		
+		if(items != null) {
+			for (Comment comment : items) {
+				loaded.put(comment.getId(), comment);
+			}
+		}
+		
+		// Rebuild the page in its original order.  Comments deleted on the server since the first read are dropped.
+		page.comments = new ArrayList<Comment>(page.ids.size());
+		
+		for (Long id : page.ids) {
+			Comment comment = (id == null) ? null : loaded.get(id);
+			if(comment != null) {
+				page.comments.add(comment);
+			}
+		}
+		
+		page.ids = null;
+		resident++;
+		
+		int delta = page.comments.size() - page.size;
+		
+		if(delta != 0) {
+			page.size += delta;
+			count += delta;
+			shift(pageIndex + 1, delta);
+		}
+		
+		if(page.size == 0) {
+			pages.remove(pageIndex);
+			resident--;
+		}
+		
+		modCount++;
+		trim(page);
+		
+		if(onPageListener != null) {
+			onPageListener.onPageLoaded(page.start, page.comments);
+		}
+	}
+	
+	// The ids the page held when it was released, less any comments that were never given one.
+	private long[] idsOf(Page page) {
+		int known = 0;
+		
+		for (Long id : page.ids) {
+			if(id != null) {
+				known++;
+			}
+		}
+		
+		long[] ids = new long[known];
+		int i = 0;
+		
+		for (Long id : page.ids) {
+			if(id != null) {
+				ids[i++] = id;
+			}
+		}
+		
+		return ids;
+	}
+	
+	// Releases the loaded pages furthest from the current position until the window fits, keeping the page just loaded.
+	protected void trim(Page keep) {
+		while(resident > maxPages) {
+			int current = indexOf(Math.min(position, count - 1));
+			int furthest = -1;
+			int distance = 0;
+			
+			for (int i = 0; i < pages.size(); i++) {
+				Page page = pages.get(i);
+				if(page != keep && page.comments != null && Math.abs(i - current) >= distance) {
+					furthest = i;
+					distance = Math.abs(i - current);
+				}
+			}
+			
+			if(furthest < 0) {
+				break;
+			}
+			
+			release(pages.get(furthest));
+			resident--;
+		}
+	}
+	
+	private void release(Page page) {
+		page.ids = new ArrayList<Long>(page.comments.size());
+		
+		for (Comment comment : page.comments) {
+			page.ids.add(comment.getId());
+		}
+		
+		page.comments = null;
+	}
+	
+	// Returns the index of the page containing the given comment index.
+	protected int indexOf(int index) {
+		int low = 0;
+		int high = pages.size() - 1;
+		
+		while(low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if(pages.get(mid).start <= index) {
+				low = mid;
+			}
+			else {
+				high = mid - 1;
+			}
+		}
+		
+		return low;
+	}
+	
+	private void shift(int fromPage, int delta) {
+		for (int i = fromPage; i < pages.size(); i++) {
+			pages.get(i).start += delta;
+		}
+	}
+	
+	public void setPageLoader(PageLoader pageLoader) {
+		this.pageLoader = pageLoader;
+	}
+	
+	public void setOnPageListener(OnPageListener onPageListener) {
+		this.onPageListener = onPageListener;
+	}
+	
+	public void setMaxPages(int maxPages) {
+		this.maxPages = Math.max(1, maxPages);
+	}
+	
+	public int getMaxPages() {
+		return maxPages;
+	}
+	
+	static class Page {
+		int start;
+		int size;
+		List<Comment> comments;
+		List<Long> ids;
+		boolean loading;
+	}
+}
@@ -30,11 +30,21 @@ import android.widget.AbsListView.OnScrollListener;
 public class CommentScrollListener implements OnScrollListener {
 
 	private CommentScrollCallback callback;
+	private int prefetchThreshold = 0;
 	
 	public CommentScrollListener(CommentScrollCallback callback) {
 		super();
 		this.callback = callback;
 	}
+	
+	/**
+	 * @param callback
+	 * @param prefetchThreshold The number of rows before the end of the list at which the next set is requested.
+	 */
+	public CommentScrollListener(CommentScrollCallback callback, int prefetchThreshold) {
+		this(callback);
+		this.prefetchThreshold = Math.max(0, prefetchThreshold);
+	}
 
 	/* (non-Javadoc)
 	 * @see android.widget.AbsListView.OnScrollListener#onScroll(android.widget.AbsListView, int, int, int)
@@ -44,7 +54,7 @@ public class CommentScrollListener implements OnScrollListener {
 		// what is the bottom item that is visible
 		int lastInScreen = firstVisibleItem + visibleItemCount;
 
-		boolean last = (lastInScreen == totalItemCount);
+		boolean last = (lastInScreen >= totalItemCount - prefetchThreshold);
 
 		if(last && callback.hasMoreItems() && !callback.isLoading()) {
 			// Get next set...
@@ -61,4 +71,8 @@ public class CommentScrollListener implements OnScrollListener {
 	public CommentScrollCallback getCallback() {
 		return callback;
 	}
+	
+	public int getPrefetchThreshold() {
+		return prefetchThreshold;
+	}
 }
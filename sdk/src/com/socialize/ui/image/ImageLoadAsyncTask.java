@@ -21,131 +21,390 @@
  */
 package com.socialize.ui.image;
 
+import com.socialize.cache.DiskCache;
+import com.socialize.error.SocializeException;
 import com.socialize.log.SocializeLogger;
 import com.socialize.util.*;
 
-import java.util.Map;
-import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * Loads images in two stages, each with its own bounded pool of threads.
+ * <br/>
+ * The fetch stage reads the encoded bytes (disk cache, network or Base64 data) and the decode stage turns 
+ * them into a scaled drawable, so a slow host only ties up one fetch thread and never blocks decoding.  
+ * Queued requests are ordered by {@link ImageLoadPriority}, then newest first so rows that were just 
+ * bound (and are therefore on screen) load before rows that have already scrolled away.  Downloaded bytes 
+ * are written to the disk cache by a single low priority writer so neither stage waits on an fsync.
  * @author Jason Polites
  *
  */
-public class ImageLoadAsyncTask extends Thread {
+public class ImageLoadAsyncTask {
+	
+	public static final int DEFAULT_FETCH_THREADS = 3;
+	public static final int DEFAULT_DECODE_THREADS = 2;
+	public static final int DEFAULT_MAX_PENDING_WRITES = 16;
 
-	private Queue<ImageLoadRequest> requests;
-	private Map<String, ImageLoadRequest> requestsInProcess;
-	private boolean running = false;
+	private ConcurrentMap<String, ImageLoadRequest> requestsInProcess;
+	private volatile boolean running = false;
+	
+	private int fetchThreads = DEFAULT_FETCH_THREADS;
+	private int decodeThreads = DEFAULT_DECODE_THREADS;
+	
+	private ThreadPoolExecutor fetchStage;
+	private ThreadPoolExecutor decodeStage;
+	private ThreadPoolExecutor diskWriter;
+	
+	private int maxPendingWrites = DEFAULT_MAX_PENDING_WRITES;
+	
+	private final AtomicLong sequence = new AtomicLong(0);
+	private final StageStats fetchStats = new StageStats("fetch");
+	private final StageStats decodeStats = new StageStats("decode");
 
 	private SocializeLogger logger;
 	private ImageUrlLoader imageUrlLoader;
 	private DrawableCache cache;
+	private DiskCache diskCache;
 	private Drawables drawables;
 	private Base64Utils base64Utils;
-
-	public ImageLoadAsyncTask() {
-		super("ImageLoadAsyncTask");
+	
+	/**
+	 * Queue depth and latency of a single pipeline stage.
+	 */
+	public static class StageStats {
+		
+		private final String name;
+		private final AtomicLong processed = new AtomicLong(0);
+		private final AtomicLong totalWaitTime = new AtomicLong(0);
+		private final AtomicLong totalRunTime = new AtomicLong(0);
+		private final AtomicInteger maxQueueDepth = new AtomicInteger(0);
+		private volatile int queueDepth;
+		
+		StageStats(String name) {
+			this.name = name;
+		}
+		
+		void onQueued(int depth) {
+			queueDepth = depth;
+			int max;
+			do {
+				max = maxQueueDepth.get();
+			}
+			while(depth > max && !maxQueueDepth.compareAndSet(max, depth));
+		}
+		
+		void onProcessed(long waitTime, long runTime, int depth) {
+			processed.incrementAndGet();
+			totalWaitTime.addAndGet(waitTime);
+			totalRunTime.addAndGet(runTime);
+			queueDepth = depth;
+		}
+		
+		public String getName() {
+			return name;
+		}
+		
+		public long getProcessed() {
+			return processed.get();
+		}
+		
+		public int getQueueDepth() {
+			return queueDepth;
+		}
+		
+		public int getMaxQueueDepth() {
+			return maxQueueDepth.get();
+		}
+		
+		/**
+		 * @return Average time (ms) requests waited in the queue for this stage.
+		 */
+		public long getAverageWaitTime() {
+			long count = processed.get();
+			return (count > 0) ? totalWaitTime.get() / count : 0;
+		}
+		
+		/**
+		 * @return Average time (ms) this stage took to process a request.
+		 */
+		public long getAverageRunTime() {
+			long count = processed.get();
+			return (count > 0) ? totalRunTime.get() / count : 0;
+		}
+		
+		@Override
+		public String toString() {
+			return name +
+					" [processed=" + getProcessed() +
+					", queue=" + getQueueDepth() +
+					", maxQueue=" + getMaxQueueDepth() +
+					", avgWait=" + getAverageWaitTime() +
+					"ms, avgRun=" + getAverageRunTime() +
+					"ms]";
+		}
 	}
+	
+	/**
+	 * A unit of work in one stage, ordered by request priority then newest first.
+	 */
+	protected abstract class StageTask implements Runnable, Comparable<StageTask> {
+		
+		protected final ImageLoadRequest request;
+		protected final long queuedTime = System.currentTimeMillis();
+		
+		StageTask(ImageLoadRequest request) {
+			this.request = request;
+		}
+		
+		@Override
+		public int compareTo(StageTask other) {
+			int result = request.getPriority().compareTo(other.request.getPriority());
+			if(result == 0) {
+				long a = request.getSequence();
+				long b = other.request.getSequence();
+				result = (a > b) ? -1 : ((a == b) ? 0 : 1);
+			}
+			return result;
+		}
+		
+		@Override
+		public void run() {
+			long start = System.currentTimeMillis();
+			try {
+				if(request.isCanceled() || !running) {
+					onCanceled(request);
+				}
+				else {
+					process();
+				}
+			}
+			catch (Throwable e) {
+				onError(request, e);
+			}
+			finally {
+				ThreadPoolExecutor stage = getStage();
+				getStats().onProcessed(start - queuedTime, System.currentTimeMillis() - start, (stage == null) ? 0 : stage.getQueue().size());
+			}
+		}
+		
+		protected abstract void process() throws Exception;
+		
+		protected abstract ThreadPoolExecutor getStage();
+		
+		protected abstract StageStats getStats();
 
-	@Override
-	public void run() {
-		if(requests != null) {
+		@Override
+		public boolean equals(Object o) {
+			return o != null && o.getClass() == getClass() && ((StageTask) o).request == request;
+		}
 
-			while(running) {
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(request);
+		}
+	}
+	
+	protected class FetchTask extends StageTask {
+		
+		FetchTask(ImageLoadRequest request) {
+			super(request);
+		}
 
-				while (!requests.isEmpty() && running) {
+		@Override
+		protected void process() throws Exception {
+			String url = request.getUrl();
+			
+			SafeBitmapDrawable drawable = null;
 
+			if(cache != null) {
+				drawable = cache.get(url);
+			}
+			
+			if(drawable != null && !drawable.isRecycled()) {
+				onLoaded(request, drawable);
+				return;
+			}
+			
+			byte[] data = null;
+			boolean fromDisk = false;
+			
+			switch (request.getType()) {
+				case ENCODED:
+					
 					if(logger != null && logger.isDebugEnabled()) {
-						logger.debug("ImageLoadAsyncTask has [" +
-								requests.size() +
-						"] images to load");
+						logger.debug("ImageLoadAsyncTask image loading from encoded data for: " + url);
 					}
+					
+					data = base64Utils.decode(request.getEncodedImageData());
+					break;
 
-					ImageLoadRequest request = requests.poll();
-					String url = request.getUrl();
-
-					if(!request.isCanceled()) {
-				
+				default:
+					
+					if(diskCache != null) {
+						data = diskCache.get(url);
+						fromDisk = (data != null);
+					}
+					
+					if(data == null) {
 						if(logger != null && logger.isDebugEnabled()) {
-							logger.debug("ImageLoadAsyncTask found image to load at: " + url);
+							logger.debug("ImageLoadAsyncTask image loading from remote url for: " + url);
 						}
+						data = imageUrlLoader.downloadImage(url);
+					}
+					else if(logger != null && logger.isDebugEnabled()) {
+						logger.debug("ImageLoadAsyncTask image loading from disk cache for: " + url);
+					}
+					
+					break;
+			}
+			
+			submit(decodeStage, decodeStats, new DecodeTask(request, data, fromDisk));
+		}
 
-						try {
-							SafeBitmapDrawable drawable = null;
-
-							if(cache != null) {
-								drawable = cache.get(url);
-							}
+		@Override
+		protected ThreadPoolExecutor getStage() {
+			return fetchStage;
+		}
 
-							if(drawable == null || drawable.isRecycled()) {
-								
-								switch (request.getType()) {
-									case ENCODED:
-										
-										if(logger != null && logger.isDebugEnabled()) {
-											logger.debug("ImageLoadAsyncTask image loading from encoded data for: " + url);
-										}
-										
-										drawable = (SafeBitmapDrawable) drawables.getDrawableFromUrl(url, base64Utils.decode(request.getEncodedImageData()), request.getScaleWidth(), request.getScaleHeight());
-										break;
+		@Override
+		protected StageStats getStats() {
+			return fetchStats;
+		}
+	}
 	
-									default:
-										if(logger != null && logger.isDebugEnabled()) {
-											logger.debug("ImageLoadAsyncTask image loading from remote url for: " + url);
-										}
-										
-										drawable = loadImageFromUrl(url, request.getScaleWidth(), request.getScaleHeight());
-										break;
-								}
-								
-								if(drawable != null) {
-									cache.put(url, (CacheableDrawable) drawable, false);
-								}
-							}
-							
-							
-							int notified = request.notifyListeners(drawable);
-							
-							if(logger != null && logger.isDebugEnabled()) {
-								logger.debug("Notified [" +
-										notified +
-										"] listeners for image load of url [" +
-										url +
-										"]");
-							}	
-							
-						}
-						catch (Exception e) {
-							request.notifyListeners(e);
-						}
-						finally {
-							requestsInProcess.remove(url);
-						}
+	protected class DecodeTask extends StageTask {
+		
+		private final byte[] data;
+		private final boolean fromDisk;
+		
+		DecodeTask(ImageLoadRequest request, byte[] data, boolean fromDisk) {
+			super(request);
+			this.data = data;
+			this.fromDisk = fromDisk;
+		}
+
+		@Override
+		protected void process() throws Exception {
+			String url = request.getUrl();
+			SafeBitmapDrawable drawable = null;
+			
+			switch (request.getType()) {
+				case ENCODED:
+					drawable = (SafeBitmapDrawable) drawables.getDrawableFromUrl(url, data, request.getScaleWidth(), request.getScaleHeight());
+					break;
+
+				default:
+					drawable = imageUrlLoader.loadImageFromBytes(url, data, request.getScaleWidth(), request.getScaleHeight());
+					
+					if(drawable == null && fromDisk) {
+						// Corrupt on disk, fetch it again
+						diskCache.remove(url);
+						submit(fetchStage, fetchStats, new FetchTask(request));
+						return;
+					}
+					
+					if(drawable == null) {
+						throw new SocializeException("Unable to decode image at [" + url + "]");
 					}
 					else {
-						requestsInProcess.remove(url);
-						if(logger != null && logger.isDebugEnabled()) {
-							logger.debug("ImageLoadAsyncTask request canceled for " + request.getUrl());
+						if(cache != null) {
+							cache.put(url, (CacheableDrawable) drawable, false);
 						}
-					}
-				}
-
-				synchronized(this) {
-					if(running) {
-						try {
-							doWait();
+						
+						if(!fromDisk) {
+							persist(url, data);
 						}
-						catch (InterruptedException ignore) {}
 					}
-				}
+					break;
 			}
+			
+			onLoaded(request, drawable);
+		}
+
+		@Override
+		protected ThreadPoolExecutor getStage() {
+			return decodeStage;
+		}
+
+		@Override
+		protected StageStats getStats() {
+			return decodeStats;
 		}
 	}
 	
-	protected CacheableDrawable loadImageFromUrl(String url, int width, int height) throws Exception {
-		return imageUrlLoader.loadImageFromUrl(url, width, height);
+	/**
+	 * Hands bytes that decoded successfully to the disk writer.  Writes are best effort and are dropped 
+	 * if the writer falls behind.
+	 */
+	protected void persist(final String url, final byte[] data) {
+		ThreadPoolExecutor writer = diskWriter;
+		
+		if(diskCache != null && writer != null && running) {
+			writer.execute(new Runnable() {
+				@Override
+				public void run() {
+					diskCache.put(url, data);
+				}
+			});
+		}
+	}
+	
+	protected void onLoaded(ImageLoadRequest request, SafeBitmapDrawable drawable) {
+		String url = request.getUrl();
+		
+		try {
+			int notified = request.notifyListeners(drawable);
+			
+			if(logger != null && logger.isDebugEnabled()) {
+				logger.debug("Notified [" +
+						notified +
+						"] listeners for image load of url [" +
+						url +
+						"] " +
+						fetchStats +
+						" " +
+						decodeStats);
+			}	
+		}
+		finally {
+			requestsInProcess.remove(url, request);
+		}
+	}
+	
+	protected void onError(ImageLoadRequest request, Throwable error) {
+		try {
+			request.notifyListeners((error instanceof Exception) ? (Exception) error : new Exception(error));
+		}
+		finally {
+			requestsInProcess.remove(request.getUrl(), request);
+		}
+	}
+	
+	// A newer request for the same url may have replaced this one, only its own mapping is removed.
+	protected void onCanceled(ImageLoadRequest request) {
+		requestsInProcess.remove(request.getUrl(), request);
+		
+		if(logger != null && logger.isDebugEnabled()) {
+			logger.debug("ImageLoadAsyncTask request canceled for " + request.getUrl());
+		}
+	}
+	
+	protected void submit(ThreadPoolExecutor stage, StageStats stats, StageTask task) {
+		if(stage != null && running) {
+			stage.execute(task);
+			stats.onQueued(stage.getQueue().size());
+		}
+		else {
+			onCanceled(task.request);
+		}
 	}
 
 	public void cancel(String url) {
@@ -156,6 +415,21 @@ public class ImageLoadAsyncTask extends Thread {
 			}
 		}
 	}
+	
+	/**
+	 * Removes the listener from the pending load of the url, canceling the load if nobody else is waiting on it.  
+	 * Loads started by a prefetch are never canceled.
+	 * @param url
+	 * @param listener
+	 */
+	public synchronized void cancel(String url, ImageLoadListener listener) {
+		if(requestsInProcess != null) {
+			ImageLoadRequest request = requestsInProcess.get(url);
+			if(request != null && !request.isListenersNotified() && request.removeListener(listener) && !request.isPrefetch()) {
+				request.setCanceled(true);
+			}
+		}
+	}
 
 	public synchronized void enqueue(ImageLoadRequest request) {
 		if(isRunning()) {
@@ -174,12 +448,18 @@ public class ImageLoadAsyncTask extends Thread {
 				}
 				
 				current.merge(request);
-				notifyAll();
+				
+				if(request.isPrefetch()) {
+					current.setPrefetch(true);
+				}
+				
+				promote(current, request.getPriority());
 			}
 			else {
-				requests.add(request);
+				request.setSequence(sequence.incrementAndGet());
+				request.setEnqueueTime(System.currentTimeMillis());
 				requestsInProcess.put(url, request);
-				notifyAll();		
+				submit(fetchStage, fetchStats, new FetchTask(request));
 			}
 		}
 		else {
@@ -188,48 +468,96 @@ public class ImageLoadAsyncTask extends Thread {
 			}
 		}
 	}
+	
+	/**
+	 * Moves a request that is still waiting to be fetched to the front of its priority band.
+	 */
+	protected void promote(ImageLoadRequest request, ImageLoadPriority priority) {
+		FetchTask task = new FetchTask(request);
+		
+		// Priority and sequence are sort keys so the task must be out of the queue while they change.
+		if(fetchStage.getQueue().remove(task)) {
+			if(priority.compareTo(request.getPriority()) < 0) {
+				request.setPriority(priority);
+			}
+			request.setSequence(sequence.incrementAndGet());
+			fetchStage.getQueue().offer(task);
+		}
+	}
 
 	public void init() {
-		requests = makeRequests();
 		requestsInProcess = makePendingRequests();
+		fetchStage = makeStage("fetch", fetchThreads);
+		decodeStage = makeStage("decode", decodeThreads);
+		diskWriter = makeDiskWriter();
 	}
 	
 	protected void onStart() {
 		init();
 		running = true;
-		setDaemon(true);
 	}
 	
 	public void start() {
 		onStart();
-		super.start();
 	}
 	
 	// So we can mock
-	protected Queue<ImageLoadRequest> makeRequests() {
-		return new ConcurrentLinkedQueue<ImageLoadRequest>();
+	protected ThreadPoolExecutor makeStage(final String name, int threads) {
+		ThreadPoolExecutor stage = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger(0);
+			
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "ImageLoadAsyncTask-" + name + "-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				thread.setPriority(Thread.NORM_PRIORITY - 1);
+				return thread;
+			}
+		});
+		
+		// Threads must exist before tasks are re-queued directly on the queue by promote()
+		stage.prestartAllCoreThreads();
+		
+		return stage;
 	}
 	
 	// So we can mock
-	protected Map<String, ImageLoadRequest> makePendingRequests() {
-		return new ConcurrentHashMap<String, ImageLoadRequest>();
+	protected ThreadPoolExecutor makeDiskWriter() {
+		return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(maxPendingWrites), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "ImageLoadAsyncTask-write");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			}
+		}, new ThreadPoolExecutor.DiscardPolicy());
 	}
 	
 	// So we can mock
-	protected void doWait() throws InterruptedException {
-		wait();
+	protected ConcurrentMap<String, ImageLoadRequest> makePendingRequests() {
+		return new ConcurrentHashMap<String, ImageLoadRequest>();
 	}
 
 	public synchronized void finish() {
 		running = false;
-		if(requests != null) {
-			requests.clear();
+		
+		if(fetchStage != null) {
+			fetchStage.shutdownNow();
 		}
-		if(requests != null) {
-			requestsInProcess.clear();
+		
+		if(decodeStage != null) {
+			decodeStage.shutdownNow();
 		}
 		
-		notifyAll();
+		// Let queued writes complete, they are already off the hot path
+		if(diskWriter != null) {
+			diskWriter.shutdown();
+		}
+		
+		if(requestsInProcess != null) {
+			requestsInProcess.clear();
+		}
 	}
 	
 	public boolean isRunning() {
@@ -248,6 +576,14 @@ public class ImageLoadAsyncTask extends Thread {
 		this.cache = cache;
 	}
 	
+	public void setDiskCache(DiskCache diskCache) {
+		this.diskCache = diskCache;
+	}
+	
+	public void setMaxPendingWrites(int maxPendingWrites) {
+		this.maxPendingWrites = maxPendingWrites;
+	}
+	
 	public void setDrawables(Drawables drawables) {
 		this.drawables = drawables;
 	}
@@ -255,6 +591,30 @@ public class ImageLoadAsyncTask extends Thread {
 	public void setBase64Utils(Base64Utils base64Utils) {
 		this.base64Utils = base64Utils;
 	}
+	
+	/**
+	 * Sets the number of threads fetching image bytes.  Only takes effect on the next start.
+	 * @param fetchThreads
+	 */
+	public void setFetchThreads(int fetchThreads) {
+		this.fetchThreads = fetchThreads;
+	}
+	
+	/**
+	 * Sets the number of threads decoding and scaling images.  Only takes effect on the next start.
+	 * @param decodeThreads
+	 */
+	public void setDecodeThreads(int decodeThreads) {
+		this.decodeThreads = decodeThreads;
+	}
+	
+	public StageStats getFetchStats() {
+		return fetchStats;
+	}
+	
+	public StageStats getDecodeStats() {
+		return decodeStats;
+	}
 
 	public boolean isEmpty() {
 		return requestsInProcess.isEmpty();
@@ -38,9 +38,13 @@ public class ImageLoadRequest {
 	private String encodedImageData;
 	private String url;
 	private ConcurrentLinkedQueue<ImageLoadListener> listeners;
-	private boolean canceled;
-	private boolean listenersNotified = false;
+	private volatile boolean canceled;
+	private volatile boolean prefetch = false;
+	private volatile boolean listenersNotified = false;
 	private ImageLoadType type = ImageLoadType.URL;
+	private volatile ImageLoadPriority priority = ImageLoadPriority.VISIBLE;
+	private volatile long sequence;
+	private volatile long enqueueTime;
 	
 	private int scaleWidth = -1;
 	private int scaleHeight = -1;
@@ -57,6 +61,17 @@ public class ImageLoadRequest {
 		return canceled;
 	}
 
+	/**
+	 * @return True if the image was requested to warm the cache, in which case it is loaded even if every listener goes away.
+	 */
+	public boolean isPrefetch() {
+		return prefetch;
+	}
+	
+	public void setPrefetch(boolean prefetch) {
+		this.prefetch = prefetch;
+	}
+	
 	public boolean isListenersNotified() {
 		return listenersNotified;
 	}
@@ -110,6 +125,19 @@ public class ImageLoadRequest {
 		}
 	}
 	
+	/**
+	 * Removes a listener that is no longer interested in this image.
+	 * @param listener
+	 * @return true if no listeners remain.
+	 */
+	public synchronized boolean removeListener(ImageLoadListener listener) {
+		if(listeners != null) {
+			listeners.remove(listener);
+			return listeners.isEmpty();
+		}
+		return true;
+	}
+	
 	public synchronized void addListener(ImageLoadListener listener) {
 		if(listeners == null) {
 			listeners = new ConcurrentLinkedQueue<ImageLoadListener>();
@@ -134,6 +162,33 @@ public class ImageLoadRequest {
 		this.type = type;
 	}
 	
+	public ImageLoadPriority getPriority() {
+		return priority;
+	}
+	
+	public void setPriority(ImageLoadPriority priority) {
+		this.priority = priority;
+	}
+	
+	/**
+	 * @return The order in which this request was (re)queued.  Later requests are loaded first.
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+	
+	public void setSequence(long sequence) {
+		this.sequence = sequence;
+	}
+	
+	public long getEnqueueTime() {
+		return enqueueTime;
+	}
+	
+	public void setEnqueueTime(long enqueueTime) {
+		this.enqueueTime = enqueueTime;
+	}
+	
 	public int getScaleWidth() {
 		return scaleWidth;
 	}
@@ -63,6 +63,16 @@ public class ImageLoader {
 		imageLoadAsyncTask.cancel(url);
 	}
 	
+	/**
+	 * Cancels the load of a previous request for the given listener only (e.g. a list row that was recycled).
+	 * The load continues if other listeners are still waiting on the same url, or if it was started by a prefetch.
+	 * @param url
+	 * @param listener
+	 */
+	public void cancel(String url, ImageLoadListener listener) {
+		imageLoadAsyncTask.cancel(url, listener);
+	}
+	
 	/**
 	 * Loads an image based on Base64 encoded bytes.
 	 * @param id The id to give the request
@@ -128,6 +138,11 @@ public class ImageLoader {
 			if(listener != null) {
 				request.addListener(listener);
 			}
+			else {
+				// Nobody is waiting to display it, so let on screen images go first.
+				request.setPriority(ImageLoadPriority.PREFETCH);
+				request.setPrefetch(true);
+			}
 			
 			imageLoadAsyncTask.enqueue(request);
 		}
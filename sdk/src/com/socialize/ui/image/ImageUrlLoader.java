@@ -23,7 +23,9 @@ package com.socialize.ui.image;
 
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import com.socialize.util.BitmapUtils;
 import com.socialize.util.CacheableDrawable;
+import com.socialize.util.IOUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -35,25 +37,28 @@ import java.net.URLConnection;
  * 
  */
 public class ImageUrlLoader {
+	
+	private IOUtils ioUtils;
+	private BitmapUtils bitmapUtils;
 
 	public CacheableDrawable loadImageFromUrl(String url, int width, int height) throws IOException {
+		return loadImageFromBytes(url, downloadImage(url), width, height);
+	}
+	
+	/**
+	 * Downloads the raw (encoded) image bytes at the given url.
+	 * @param url
+	 * @return
+	 * @throws IOException
+	 */
+	public byte[] downloadImage(String url) throws IOException {
 		URL imageUrl = 	new URL(url);
-		URLConnection conn = null;
 		InputStream is = null;
 		
 		try {
-			conn = imageUrl.openConnection();
-			is = conn.getInputStream();
-			Bitmap bitmap = newBitmapDrawable(is);
-			
-			if(width > 0 && height > 0) {
-				Bitmap scaled = Bitmap.createScaledBitmap(bitmap, width, height, true);
-				bitmap.recycle();
-				return newCacheableDrawable(scaled, url);
-			}
-			else {
-				return newCacheableDrawable(bitmap, url);
-			}
+			URLConnection connection = imageUrl.openConnection();
+			is = connection.getInputStream();
+			return ioUtils.readBytes(is, connection.getContentLength());
 		}
 		finally {
 			if (is != null) {
@@ -62,11 +67,59 @@ public class ImageUrlLoader {
 		}
 	}
 	
+	/**
+	 * Decodes previously downloaded image bytes.
+	 * @param url
+	 * @param data
+	 * @param width
+	 * @param height
+	 * @return The drawable, or null if the bytes could not be decoded.
+	 */
+	public CacheableDrawable loadImageFromBytes(String url, byte[] data, int width, int height) {
+		Bitmap bitmap = newBitmapDrawable(data, width, height);
+		
+		if(bitmap == null) {
+			return null;
+		}
+		
+		if(width > 0 && height > 0) {
+			Bitmap scaled = Bitmap.createScaledBitmap(bitmap, width, height, true);
+			if(scaled != bitmap) {
+				// The sampled decode is only an intermediate, let the next decode reuse it.
+				releaseBitmap(bitmap);
+			}
+			return newCacheableDrawable(scaled, url);
+		}
+		
+		return newCacheableDrawable(bitmap, url);
+	}
+	
 	protected CacheableDrawable newCacheableDrawable(Bitmap bitmap,String url) {
 		return new CacheableDrawable(bitmap, url); 
 	}
-	protected Bitmap newBitmapDrawable (InputStream is) {
-		return BitmapFactory.decodeStream(is);
+	
+	protected Bitmap newBitmapDrawable (byte[] data, int width, int height) {
+		if(bitmapUtils != null) {
+			return bitmapUtils.decode(data, width, height);
+		}
+		return BitmapFactory.decodeByteArray(data, 0, data.length);
+	}
+	
+	protected void releaseBitmap(Bitmap bitmap) {
+		if(bitmapUtils != null) {
+			bitmapUtils.release(bitmap);
+		}
+		else {
+			bitmap.recycle();
+		}
+	}
+	
+	public void setIoUtils(IOUtils ioUtils) {
+		this.ioUtils = ioUtils;
+	}
+	
+	public void setBitmapUtils(BitmapUtils bitmapUtils) {
+		this.bitmapUtils = bitmapUtils;
 	}
 
 }
@@ -177,15 +177,7 @@ public class UserActivityListItem extends TableLayout {
 		actionText.setContentFontSize(contentFontSize);
 		actionText.setAction(context, action);
 		
-		Long actionDate = action.getDate();
-		
-		if(actionDate != null && actionDate.longValue() > 0) {
-			long diff = (now.getTime() - actionDate.longValue());
-			date.setText(dateUtils.getTimeString(diff) + " ");
-		}
-		else {
-			date.setText("");
-		}	
+		setDate(action, now);
 		
 		if(!action.isLocationShared()) {
 			locationIcon.setVisibility(GONE);
@@ -215,6 +207,21 @@ public class UserActivityListItem extends TableLayout {
 		}
 	}
 
+	/**
+	 * Updates the time shown relative to now, without rebinding the rest of the item.
+	 */
+	public void setDate(SocializeAction action, Date now) {
+		Long actionDate = action.getDate();
+		
+		if(actionDate != null && actionDate.longValue() > 0) {
+			long diff = (now.getTime() - actionDate.longValue());
+			date.setText(dateUtils.getTimeString(diff) + " ");
+		}
+		else {
+			date.setText("");
+		}	
+	}
+
 	public void setDisplayUtils(DisplayUtils deviceUtils) {
 		this.displayUtils = deviceUtils;
 	}
@@ -33,7 +33,9 @@ import com.socialize.view.BaseView;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Renders a list of recent user activity.
@@ -45,6 +47,11 @@ public class UserActivityView extends BaseView {
 	// Local
 	private LoadingItemView<UserActivityListItem> itemView;
 	
+	// Items on display, by action id.  Reused when the same actions are loaded again.
+	private Map<Long, UserActivityListItem> shown = new HashMap<Long, UserActivityListItem>();
+	private List<Long> shownIds = new ArrayList<Long>();
+	private long shownUserId = -1;
+	
 	// Injected
 	private int numItems = 10;
 	private IBeanFactory<UserActivityListItem> userActivityListItemFactory;
@@ -62,12 +69,26 @@ public class UserActivityView extends BaseView {
 	}
 	
 	public void clearUserActivity() {
+		clearShown();
 		itemView.clear();
 		itemView.showEmptyText();
 	}
 	
-	public void loadUserActivity(long userId, final SocializeAction current) {
-		itemView.showLoading();
+	protected void clearShown() {
+		shown.clear();
+		shownIds.clear();
+	}
+	
+	public void loadUserActivity(final long userId, final SocializeAction current) {
+		if(userId != shownUserId) {
+			clearShown();
+		}
+		
+		// Keep showing what is there while it is refreshed
+		if(shownIds.isEmpty()) {
+			itemView.showLoading();
+		}
+		
 		
 		ActionUtils.getActionsByUser(getActivity(), userId, 0, numItems, new ActionListListener() {
 			@Override
@@ -86,32 +107,59 @@ public class UserActivityView extends BaseView {
 					
 					if(items != null && items.size() > 0) {
 						ArrayList<UserActivityListItem> views = new ArrayList<UserActivityListItem>(items.size());
+						List<Long> ids = new ArrayList<Long>(items.size());
+						Map<Long, UserActivityListItem> byId = new HashMap<Long, UserActivityListItem>();
 						
 						LayoutParams params = new LayoutParams(LayoutParams.FILL_PARENT, LayoutParams.WRAP_CONTENT);
 						params.setMargins(0, 8, 0, 0);
 						
 						for (SocializeAction item : items) {
-							UserActivityListItem view = userActivityListItemFactory.getBean();
-							view.setAction(getContext(), item, now);
-							view.setLayoutParams(params);
+							UserActivityListItem view = (item.getId() == null) ? null : shown.get(item.getId());
+							
+							if(view == null) {
+								view = userActivityListItemFactory.getBean();
+								view.setAction(getContext(), item, now);
+								view.setLayoutParams(params);
+							}
+							else {
+								// Unchanged, only the relative time moves on.
+								view.setDate(item, now);
+							}
+							
 							views.add(view);
+							ids.add(item.getId());
+							
+							if(item.getId() != null) {
+								byId.put(item.getId(), view);
+							}
+						}
+						
+						// Only lay out again if the actions shown have changed
+						if(!ids.equals(shownIds) || ids.contains(null)) {
+							itemView.setItems(views);
 						}
 						
-						itemView.setItems(views);
+						shown = byId;
+						shownIds = ids;
+						shownUserId = userId;
+						
 						itemView.showList();
 					}
 					else {
+						clearShown();
 						itemView.clear();
 						itemView.showEmptyText();
 					}
 				}
 				else {
+					clearShown();
 					itemView.clear();
 					itemView.showEmptyText();
 				}
 			}
 			@Override
 			public void onError(SocializeException error) {
+				clearShown();
 				itemView.clear();
 				itemView.showEmptyText();
 			}
@@ -190,6 +190,10 @@ public class CachedImageView extends View implements ImageLoadListener {
 		this.changeListener = changeListener;
 	}
 
+	public String getExpectedImageName() {
+		return expectedImageName;
+	}
+
 	public void setExpectedImageName(String expectedImageName) {
 		this.expectedImageName = expectedImageName;
 		
@@ -23,6 +23,7 @@ package com.socialize.ui.view;
 
 import android.content.Context;
 import android.graphics.Color;
+import android.view.View;
 import android.widget.AbsListView.OnScrollListener;
 import android.widget.LinearLayout;
 import android.widget.ListAdapter;
@@ -55,6 +56,21 @@ public class LoadingListView extends BaseLoadingView<ListView> {
 		getMainView().requestFocusFromTouch();
 		getMainView().setSelection(0); // scroll to top
 	}
+	
+	/**
+	 * Keeps the rows on screen in place after the given number of rows were inserted above them.  
+	 * If the list is scrolled to the top the new rows are shown instead.
+	 * @param insertedAbove
+	 */
+	public void keepPosition(int insertedAbove) {
+		ListView listView = getMainView();
+		int first = listView.getFirstVisiblePosition();
+		
+		if(first > 0) {
+			View top = listView.getChildAt(0);
+			listView.setSelectionFromTop(first + insertedAbove, (top == null) ? 0 : top.getTop());
+		}
+	}
 
 	@Override
 	protected ListView createMainView() {
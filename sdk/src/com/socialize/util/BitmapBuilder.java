@@ -41,6 +41,10 @@ public class BitmapBuilder {
 		return BitmapFactory.decodeByteArray(data, 0, data.length);
 	}
 	
+	public Bitmap decode(byte[] data, BitmapFactory.Options options) {
+		return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+	}
+	
 	public Bitmap crop(Bitmap source, int x, int y, int width, int height) {
 		return Bitmap.createBitmap(source, x, y, width, height);
 	}
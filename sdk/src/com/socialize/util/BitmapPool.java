@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.util;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * Holds discarded mutable bitmaps so the decoder can reuse their memory (via inBitmap) instead of 
+ * allocating a new bitmap for every image.  Only bitmaps that were never handed to a view belong here 
+ * (e.g. scaling intermediates), as a pooled bitmap may be overwritten by the next decode.
+ * <br/>
+ * Bitmaps are bucketed by size (rounded up to a power of two) and trimmed oldest first once the pool 
+ * exceeds its byte budget.
+ */
+public class BitmapPool {
+	
+	private final Map<Integer, LinkedList<Bitmap>> buckets = new HashMap<Integer, LinkedList<Bitmap>>();
+	private final LinkedList<Bitmap> order = new LinkedList<Bitmap>();
+	
+	private long maxBytes = 2 * 1024 * 1024;
+	private long currentBytes = 0;
+	
+	private int hits = 0;
+	private int misses = 0;
+	
+	/**
+	 * Returns true if the platform supports decoding into an existing bitmap.
+	 * @return
+	 */
+	public static boolean isReuseSupported() {
+		return Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB;
+	}
+	
+	/**
+	 * Adds a bitmap to the pool.  Bitmaps that can't be reused are recycled.
+	 * @param bitmap
+	 */
+	public synchronized void put(Bitmap bitmap) {
+		if(bitmap == null || bitmap.isRecycled()) {
+			return;
+		}
+		
+		long size = sizeOf(bitmap);
+		
+		if(!isReuseSupported() || !bitmap.isMutable() || size > maxBytes) {
+			bitmap.recycle();
+			return;
+		}
+		
+		Integer bucket = bucketOf(size);
+		LinkedList<Bitmap> list = buckets.get(bucket);
+		
+		if(list == null) {
+			list = new LinkedList<Bitmap>();
+			buckets.put(bucket, list);
+		}
+		
+		list.add(bitmap);
+		order.add(bitmap);
+		currentBytes += size;
+		
+		trim();
+	}
+	
+	/**
+	 * Removes and returns a bitmap that can be decoded into for an image of the given (sampled) size, or null.
+	 * <br/>
+	 * Before KitKat the decoder can only reuse a bitmap of exactly the same dimensions, after that any bitmap 
+	 * with enough memory will do.
+	 * @param width
+	 * @param height
+	 * @param config
+	 * @return
+	 */
+	public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+		if(config == null) {
+			config = Bitmap.Config.ARGB_8888;
+		}
+		
+		long required = (long) width * height * bytesPerPixel(config);
+		boolean exact = Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT;
+		int bucket = bucketOf(required);
+		
+		// A larger bitmap may be in the next bucket up
+		for (int i = 0; i < (exact ? 1 : 2); i++) {
+			LinkedList<Bitmap> list = buckets.get(bucket << i);
+			
+			if(list != null) {
+				Iterator<Bitmap> iter = list.iterator();
+				
+				while(iter.hasNext()) {
+					Bitmap bitmap = iter.next();
+					
+					boolean fits = exact ? 
+							(bitmap.getWidth() == width && bitmap.getHeight() == height && bitmap.getConfig() == config) : 
+							(sizeOf(bitmap) >= required);
+					
+					if(fits) {
+						iter.remove();
+						order.remove(bitmap);
+						currentBytes -= sizeOf(bitmap);
+						hits++;
+						return bitmap;
+					}
+				}
+			}
+		}
+		
+		misses++;
+		
+		return null;
+	}
+	
+	/**
+	 * Recycles all pooled bitmaps.
+	 */
+	public synchronized void clear() {
+		for (Bitmap bitmap : order) {
+			bitmap.recycle();
+		}
+		order.clear();
+		buckets.clear();
+		currentBytes = 0;
+	}
+	
+	public void destroy() {
+		clear();
+	}
+	
+	private void trim() {
+		while(currentBytes > maxBytes && !order.isEmpty()) {
+			Bitmap oldest = order.removeFirst();
+			long size = sizeOf(oldest);
+			LinkedList<Bitmap> list = buckets.get(bucketOf(size));
+			if(list != null) {
+				list.remove(oldest);
+			}
+			currentBytes -= size;
+			oldest.recycle();
+		}
+	}
+	
+	protected long sizeOf(Bitmap bitmap) {
+		if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+			return bitmap.getAllocationByteCount();
+		}
+		return (long) bitmap.getRowBytes() * bitmap.getHeight();
+	}
+	
+	private int bucketOf(long size) {
+		int bucket = 1;
+		while(bucket < size && bucket > 0) {
+			bucket <<= 1;
+		}
+		return bucket;
+	}
+	
+	private int bytesPerPixel(Bitmap.Config config) {
+		switch (config) {
+			case ALPHA_8:
+				return 1;
+			case RGB_565:
+			case ARGB_4444:
+				return 2;
+			default:
+				return 4;
+		}
+	}
+	
+	public synchronized long sizeInBytes() {
+		return currentBytes;
+	}
+	
+	public synchronized int getHits() {
+		return hits;
+	}
+	
+	public synchronized int getMisses() {
+		return misses;
+	}
+
+	public void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+}
@@ -22,6 +22,8 @@
 package com.socialize.util;
 
 import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
 import android.util.DisplayMetrics;
 
 import java.io.ByteArrayOutputStream;
@@ -34,6 +36,7 @@ public class BitmapUtils {
 	
 	private BitmapBuilder bitmapBuilder;
 	private Base64Utils base64Utils;
+	private BitmapPool bitmapPool;
 	private int defaultDensity = DisplayMetrics.DENSITY_DEFAULT;
 	
 	public BitmapUtils(BitmapBuilder bitmapBuilder) {
@@ -46,7 +49,7 @@ public class BitmapUtils {
 	}
 	
 	public Bitmap getScaledBitmap(byte[] data, int scaleToWidth, int scaleToHeight) {
-		return getScaledBitmap(bitmapBuilder.decode(data), scaleToWidth, scaleToHeight, defaultDensity);
+		return getScaledBitmap(decode(data, scaleToWidth, scaleToHeight), scaleToWidth, scaleToHeight, defaultDensity);
 	}
 	
 	public Bitmap getScaledBitmap(InputStream in, int scaleToWidth, int scaleToHeight) {
@@ -58,7 +61,107 @@ public class BitmapUtils {
 	}	
 
 	public Bitmap getScaledBitmap(byte[] data, int scaleToWidth, int scaleToHeight, int density) {
-		return getScaledBitmap(bitmapBuilder.decode(data), scaleToWidth, scaleToHeight, density);
+		return getScaledBitmap(decode(data, scaleToWidth, scaleToHeight), scaleToWidth, scaleToHeight, density);
+	}
+	
+	/**
+	 * Decodes the image at the smallest power of two sample size that still covers the requested dimensions, 
+	 * reusing a pooled bitmap if one fits.
+	 * @param data The encoded image.
+	 * @param reqWidth The width the image will be scaled to (or <= 0 to decode at full size).
+	 * @param reqHeight The height the image will be scaled to (or <= 0 to decode at full size).
+	 * @return The decoded bitmap, or null if the data could not be decoded.
+	 */
+	public Bitmap decode(byte[] data, int reqWidth, int reqHeight) {
+		if(reqWidth <= 0 && reqHeight <= 0) {
+			return bitmapBuilder.decode(data);
+		}
+		
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inJustDecodeBounds = true;
+		bitmapBuilder.decode(data, options);
+		
+		if(options.outWidth <= 0 || options.outHeight <= 0) {
+			return null;
+		}
+		
+		options.inSampleSize = calculateSampleSize(options.outWidth, options.outHeight, reqWidth, reqHeight);
+		options.inJustDecodeBounds = false;
+		
+		if(bitmapPool != null && BitmapPool.isReuseSupported()) {
+			return decodeReusing(data, options);
+		}
+		
+		return bitmapBuilder.decode(data, options);
+	}
+	
+	protected Bitmap decodeReusing(byte[] data, BitmapFactory.Options options) {
+		int sample = options.inSampleSize;
+		
+		options.inMutable = true;
+		
+		// Before KitKat bitmaps can only be reused when decoding at full size.
+		if(sample == 1 || Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+			int width = (options.outWidth + sample - 1) / sample;
+			int height = (options.outHeight + sample - 1) / sample;
+			options.inBitmap = bitmapPool.get(width, height, options.inPreferredConfig);
+		}
+		
+		if(options.inBitmap != null) {
+			try {
+				return bitmapBuilder.decode(data, options);
+			}
+			catch (IllegalArgumentException e) {
+				// Pooled bitmap was not compatible, fall through to a fresh allocation.
+				bitmapPool.put(options.inBitmap);
+				options.inBitmap = null;
+			}
+		}
+		
+		return bitmapBuilder.decode(data, options);
+	}
+	
+	/**
+	 * Returns the largest power of two sample size that keeps both dimensions at or above the requested size.
+	 * @param width
+	 * @param height
+	 * @param reqWidth
+	 * @param reqHeight
+	 * @return
+	 */
+	public static int calculateSampleSize(int width, int height, int reqWidth, int reqHeight) {
+		int sample = 1;
+		
+		if(reqWidth > 0 && reqHeight > 0) {
+			while((width / (sample * 2)) >= reqWidth && (height / (sample * 2)) >= reqHeight) {
+				sample *= 2;
+			}
+		}
+		else if(reqWidth > 0) {
+			while((width / (sample * 2)) >= reqWidth) {
+				sample *= 2;
+			}
+		}
+		else if(reqHeight > 0) {
+			while((height / (sample * 2)) >= reqHeight) {
+				sample *= 2;
+			}
+		}
+		
+		return sample;
+	}
+	
+	/**
+	 * Hands a bitmap that is no longer needed to the pool, or recycles it if there is no pool.
+	 * @param bitmap
+	 */
+	public void release(Bitmap bitmap) {
+		if(bitmapPool != null) {
+			bitmapPool.put(bitmap);
+		}
+		else {
+			bitmap.recycle();
+		}
 	}
 	
 	public Bitmap getScaledBitmap(InputStream in, int scaleToWidth, int scaleToHeight, int density) {
@@ -140,8 +243,8 @@ public class BitmapUtils {
 				}
 
 				
-				if(recycleOriginal) {
-					original.recycle();
+				if(recycleOriginal && original != bitmap) {
+					release(original);
 				}
 			}
 		}
@@ -153,6 +256,10 @@ public class BitmapUtils {
 		this.bitmapBuilder = bitmapBuilder;
 	}
 
+	public void setBitmapPool(BitmapPool bitmapPool) {
+		this.bitmapPool = bitmapPool;
+	}
+
 	public void setBase64Utils(Base64Utils base64Utils) {
 		this.base64Utils = base64Utils;
 	}
@@ -32,6 +32,7 @@ import com.socialize.cache.ICacheable;
 public class CacheableDrawable extends SafeBitmapDrawable implements ICacheable<String> {
 
 	private String key;
+	private long sizeInBytes;
 	
 	// So we can easily mock
 	protected CacheableDrawable() {
@@ -41,11 +42,21 @@ public class CacheableDrawable extends SafeBitmapDrawable implements ICacheable<
 	public CacheableDrawable(Bitmap bitmap, String key) {
 		super(bitmap);
 		this.key = key;
+		this.sizeInBytes = sizeOf(bitmap);
 	}
 
 	public CacheableDrawable(Resources res, Bitmap bitmap, String key) {
 		super(res, bitmap);
 		this.key = key;
+		this.sizeInBytes = sizeOf(bitmap);
+	}
+	
+	// Computed once so the cache sees the same size on put and remove, even after recycle.
+	protected static long sizeOf(Bitmap bitmap) {
+		if(bitmap != null) {
+			return (long) bitmap.getRowBytes() * bitmap.getHeight();
+		}
+		return 0;
 	}
 
 	/* (non-Javadoc)
@@ -53,8 +64,7 @@ public class CacheableDrawable extends SafeBitmapDrawable implements ICacheable<
 	 */
 	@Override
 	public long getSizeInBytes() {
-		// No size restrictions??
-		return 0;
+		return sizeInBytes;
 	}
 
 	/* (non-Javadoc)
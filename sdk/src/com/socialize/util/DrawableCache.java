@@ -27,16 +27,22 @@ import com.socialize.cache.TTLCache;
  * @author Jason Polites
  */
 public class DrawableCache extends TTLCache<String, CacheableDrawable> {
+	
+	// Fraction of the VM heap bitmaps in cache may occupy.
+	public static int DEFAULT_HEAP_DIVISOR = 8;
 
 	public DrawableCache() {
 		super();
+		setMaxCapacityBytes(Runtime.getRuntime().maxMemory() / DEFAULT_HEAP_DIVISOR);
 	}
 
 	public DrawableCache(int initialCapacity, int maxCapacity) {
 		super(initialCapacity, maxCapacity);
+		setMaxCapacityBytes(Runtime.getRuntime().maxMemory() / DEFAULT_HEAP_DIVISOR);
 	}
 
 	public DrawableCache(int initialCapacity) {
 		super(initialCapacity);
+		setMaxCapacityBytes(Runtime.getRuntime().maxMemory() / DEFAULT_HEAP_DIVISOR);
 	}
 }
@@ -27,12 +27,30 @@ import com.socialize.auth.UserProviderCredentials;
 import com.socialize.auth.UserProviderCredentialsMap;
 import com.socialize.google.gson.Gson;
 import com.socialize.google.gson.GsonBuilder;
+import com.socialize.google.gson.JsonIOException;
+import com.socialize.google.gson.JsonSyntaxException;
+import com.socialize.google.gson.TypeAdapter;
+import com.socialize.google.gson.internal.Primitives;
+import com.socialize.google.gson.stream.JsonReader;
+import com.socialize.google.gson.stream.JsonToken;
+import com.socialize.google.gson.stream.JsonWriter;
+import com.socialize.google.gson.stream.MalformedJsonException;
 import com.socialize.gson.AuthProviderInfoSerializer;
 import com.socialize.gson.AuthProviderTypeSerializer;
 import com.socialize.gson.UserProviderCredentialsMapSerializer;
 import com.socialize.gson.UserProviderCredentialsSerializer;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
+ * Gson backed JSON utility.  Gson is thread safe so calls are not serialized; type adapters 
+ * are resolved once per class and cached here to avoid the lock on Gson's own adapter cache.
  * @author Jason Polites
  *
  */
@@ -40,8 +58,11 @@ public class GSONUtils implements JSONUtils {
 	
 	private Gson gson;
 	
+	private final ConcurrentHashMap<Class<?>, TypeAdapter<?>> adapters = new ConcurrentHashMap<Class<?>, TypeAdapter<?>>();
+	
 	public void init() {
 		 gson = newGson();
+		 adapters.clear();
 	}
 	
 	protected Gson newGson() {
@@ -53,20 +74,111 @@ public class GSONUtils implements JSONUtils {
 		builder.enableComplexMapKeySerialization();
 		return builder.create();
 	}
+	
+	/**
+	 * Creates the writer used for serialization.  Settings must match those given to the builder in newGson().
+	 * @param writer The underlying writer.
+	 * @return A JsonWriter.
+	 */
+	protected JsonWriter newJsonWriter(Writer writer) {
+		JsonWriter out = new JsonWriter(writer);
+		out.setLenient(true);
+		out.setHtmlSafe(true);
+		out.setSerializeNulls(false);
+		return out;
+	}
+	
+	@SuppressWarnings("unchecked")
+	protected <T> TypeAdapter<T> getAdapter(Class<T> cls) {
+		TypeAdapter<?> adapter = adapters.get(cls);
+		if(adapter == null) {
+			adapter = gson.getAdapter(cls);
+			TypeAdapter<?> existing = adapters.putIfAbsent(cls, adapter);
+			if(existing != null) {
+				adapter = existing;
+			}
+		}
+		return (TypeAdapter<T>) adapter;
+	}
 
 	/* (non-Javadoc)
 	 * @see com.socialize.util.JSONUtils#toJSON(java.lang.Object)
 	 */
 	@Override
-	public synchronized String toJSON(Object object) {
-		return gson.toJson(object);
+	public String toJSON(Object object) {
+		StringWriter writer = new StringWriter();
+		toJSON(object, writer);
+		return writer.toString();
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.socialize.util.JSONUtils#toJSON(java.lang.Object, java.io.Writer)
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public void toJSON(Object object, Writer writer) {
+		try {
+			JsonWriter out = newJsonWriter(writer);
+			if(object == null) {
+				out.nullValue();
+			}
+			else {
+				((TypeAdapter<Object>) getAdapter(object.getClass())).write(out, object);
+			}
+			out.flush();
+		}
+		catch (IOException e) {
+			throw new JsonIOException(e);
+		}
 	}
 
 	/* (non-Javadoc)
 	 * @see com.socialize.util.JSONUtils#fromJSON(java.lang.String)
 	 */
 	@Override
-	public synchronized <T> T fromJSON(String json, Class<T> cls) {
-		return gson.fromJson(json, cls);
+	public <T> T fromJSON(String json, Class<T> cls) {
+		if(json == null) {
+			return null;
+		}
+		return fromJSON(new StringReader(json), cls);
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.socialize.util.JSONUtils#fromJSON(java.io.Reader, java.lang.Class)
+	 */
+	@Override
+	public <T> T fromJSON(Reader json, Class<T> cls) {
+		JsonReader in = new JsonReader(json);
+		in.setLenient(true);
+		
+		T result;
+		try {
+			in.peek();
+		}
+		catch (EOFException e) {
+			// Empty document
+			return null;
+		}
+		catch (IOException e) {
+			throw new JsonSyntaxException(e);
+		}
+		
+		try {
+			result = getAdapter(cls).read(in);
+			if(result != null && in.peek() != JsonToken.END_DOCUMENT) {
+				throw new JsonIOException("JSON document was not fully consumed.");
+			}
+		}
+		catch (MalformedJsonException e) {
+			throw new JsonSyntaxException(e);
+		}
+		catch (IllegalStateException e) {
+			throw new JsonSyntaxException(e);
+		}
+		catch (IOException e) {
+			throw new JsonSyntaxException(e);
+		}
+		
+		return Primitives.wrap(cls).cast(result);
 	}
 }
@@ -24,10 +24,14 @@ package com.socialize.util;
 
 import com.socialize.log.SocializeLogger;
 
+import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.Reader;
+import java.util.Arrays;
 
 /**
  * @author Jason Polites
@@ -37,11 +41,28 @@ public class IOUtils {
 	
 	private static final int IO_BUFFER_SIZE = 4 * 1024; 
 	
+	// Pooled buffers that grew beyond this are dropped rather than held by the thread indefinitely.
+	private static final int MAX_POOLED_SIZE = 64 * 1024;
+	
+	// Each slot is taken (and cleared) for the duration of a call so re-entrant use on the same thread simply allocates.
+	private static final ThreadLocal<byte[]> pipeBuffers = new ThreadLocal<byte[]>();
+	private static final ThreadLocal<PooledOutputStream> outputBuffers = new ThreadLocal<PooledOutputStream>();
+	
 	private SocializeLogger logger;
 
 	public String readSafe(InputStream in) {
+		return readSafe(in, -1L);
+	}
+	
+	/**
+	 * Reads the stream as a UTF-8 string, logging and returning an empty string on failure.
+	 * @param in
+	 * @param contentLength The expected length in bytes, or a negative value if unknown.
+	 * @return
+	 */
+	public String readSafe(InputStream in, long contentLength) {
 		try {
-			return read(in);
+			return read(in, contentLength);
 		}
 		catch (IOException e) {
 			if(logger != null) {
@@ -55,27 +76,149 @@ public class IOUtils {
 	}
 	
 	public byte[] readBytes(InputStream in) throws IOException {
-		ByteArrayOutputStream out = new ByteArrayOutputStream();
-		pipe(in, out, IO_BUFFER_SIZE);
-		return out.toByteArray();
+		return readBytes(in, -1L);
+	}
+	
+	/**
+	 * Reads the whole stream.  When the content length is known the result is read directly into 
+	 * an array of exactly that size, otherwise a pooled buffer is used and copied once at the end.
+	 * @param in
+	 * @param contentLength The expected length in bytes, or a negative value if unknown.
+	 * @return
+	 * @throws IOException
+	 */
+	public byte[] readBytes(InputStream in, long contentLength) throws IOException {
+		if(contentLength > 0 && contentLength < Integer.MAX_VALUE) {
+			return readSized(in, (int) contentLength);
+		}
+		
+		PooledOutputStream out = takeOutputBuffer();
+		try {
+			pipe(in, out, IO_BUFFER_SIZE);
+			return out.toByteArray();
+		}
+		finally {
+			releaseOutputBuffer(out);
+		}
 	}
 	
 	public String read(InputStream in) throws IOException {
-		return new String(readBytes(in), "UTF-8");
+		return read(in, -1L);
+	}
+	
+	/**
+	 * Reads the stream as a UTF-8 string.  The string is decoded straight out of the read buffer so 
+	 * the response bytes are not copied into an intermediate array.
+	 * @param in
+	 * @param contentLength The expected length in bytes, or a negative value if unknown.
+	 * @return
+	 * @throws IOException
+	 */
+	public String read(InputStream in, long contentLength) throws IOException {
+		if(contentLength > 0 && contentLength < Integer.MAX_VALUE) {
+			return new String(readSized(in, (int) contentLength), "UTF-8");
+		}
+		
+		PooledOutputStream out = takeOutputBuffer();
+		try {
+			pipe(in, out, IO_BUFFER_SIZE);
+			return new String(out.getBuffer(), 0, out.size(), "UTF-8");
+		}
+		finally {
+			releaseOutputBuffer(out);
+		}
+	}
+	
+	/**
+	 * Returns a buffered UTF-8 character view of the stream so callers can parse without first building a String.
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	public Reader reader(InputStream in) throws IOException {
+		return new BufferedReader(new InputStreamReader(in, "UTF-8"), IO_BUFFER_SIZE);
 	}
 	
 	public long pipe(InputStream in, OutputStream out, int bufferSize) throws IOException {
 		int read = 0;
 		long total = 0L;
-		byte[] buffer = new byte[bufferSize];
+		byte[] buffer = takePipeBuffer(bufferSize);
 		
-		while((read = in.read(buffer)) >= 0) {
-			total+=read;
-			out.write(buffer, 0, read);
+		try {
+			while((read = in.read(buffer)) >= 0) {
+				total+=read;
+				out.write(buffer, 0, read);
+			}
+			out.flush();
 		}
-		out.flush();
+		finally {
+			releasePipeBuffer(buffer);
+		}
+		
 		return total;
 	}
+	
+	protected byte[] readSized(InputStream in, int length) throws IOException {
+		byte[] data = new byte[length];
+		int offset = 0;
+		int read = 0;
+		
+		while(offset < length && (read = in.read(data, offset, length - offset)) >= 0) {
+			offset+=read;
+		}
+		
+		if(offset < length) {
+			// Stream ended early
+			return Arrays.copyOf(data, offset);
+		}
+		
+		int next = in.read();
+		
+		if(next < 0) {
+			return data;
+		}
+		
+		// Content length was understated, fall back to growing the buffer for the remainder.
+		ByteArrayOutputStream out = new ByteArrayOutputStream(length * 2);
+		out.write(data, 0, length);
+		out.write(next);
+		pipe(in, out, IO_BUFFER_SIZE);
+		return out.toByteArray();
+	}
+	
+	private byte[] takePipeBuffer(int bufferSize) {
+		if(bufferSize != IO_BUFFER_SIZE) {
+			return new byte[bufferSize];
+		}
+		byte[] buffer = pipeBuffers.get();
+		if(buffer == null) {
+			return new byte[IO_BUFFER_SIZE];
+		}
+		pipeBuffers.set(null);
+		return buffer;
+	}
+	
+	private void releasePipeBuffer(byte[] buffer) {
+		if(buffer.length == IO_BUFFER_SIZE) {
+			pipeBuffers.set(buffer);
+		}
+	}
+	
+	private PooledOutputStream takeOutputBuffer() {
+		PooledOutputStream out = outputBuffers.get();
+		if(out == null) {
+			return new PooledOutputStream(IO_BUFFER_SIZE);
+		}
+		outputBuffers.set(null);
+		out.reset();
+		return out;
+	}
+	
+	private void releaseOutputBuffer(PooledOutputStream out) {
+		if(out.getBuffer().length <= MAX_POOLED_SIZE) {
+			outputBuffers.set(out);
+		}
+	}
 
 	public SocializeLogger getLogger() {
 		return logger;
@@ -84,4 +227,18 @@ public class IOUtils {
 	public void setLogger(SocializeLogger logger) {
 		this.logger = logger;
 	}
+	
+	/**
+	 * Exposes the backing array so content can be decoded without the copy made by toByteArray.
+	 */
+	static class PooledOutputStream extends ByteArrayOutputStream {
+		
+		PooledOutputStream(int size) {
+			super(size);
+		}
+		
+		byte[] getBuffer() {
+			return buf;
+		}
+	}
 }
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.util;
+
+import java.text.DateFormat;
+import java.text.FieldPosition;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * A thread safe DateFormat for the "yyyy-MM-dd HH:mm:ssZZ" timestamps used by the API.  
+ * A single instance can be shared by every factory.  Timestamps in the expected layout are parsed 
+ * by hand, anything else falls back to a per-thread SimpleDateFormat using the given pattern.
+ * Dates are always formatted in UTC.
+ */
+public class ISODateFormat extends DateFormat {
+
+	private static final long serialVersionUID = -1526513421880614624L;
+	
+	private static final long MILLIS_PER_DAY = 24L * 60L * 60L * 1000L;
+	
+	private static final long NOT_PARSED = Long.MIN_VALUE;
+	
+	private final String fallbackPattern;
+	
+	private final transient ThreadLocal<SimpleDateFormat> fallback = new ThreadLocal<SimpleDateFormat>() {
+		@Override
+		protected SimpleDateFormat initialValue() {
+			return new SimpleDateFormat(fallbackPattern);
+		}
+	};
+	
+	public ISODateFormat(String fallbackPattern) {
+		super();
+		this.fallbackPattern = fallbackPattern;
+	}
+
+	@Override
+	public StringBuffer format(Date date, StringBuffer buffer, FieldPosition field) {
+		long time = date.getTime();
+		long days = time / MILLIS_PER_DAY;
+		long millisOfDay = time % MILLIS_PER_DAY;
+		
+		if(millisOfDay < 0) {
+			days--;
+			millisOfDay += MILLIS_PER_DAY;
+		}
+		
+		// Civil date from days since epoch (proleptic Gregorian)
+		long z = days + 719468;
+		long era = (z >= 0 ? z : z - 146096) / 146097;
+		long doe = z - era * 146097;
+		long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+		long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+		long mp = (5 * doy + 2) / 153;
+		int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+		int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+		int year = (int) (yoe + era * 400 + (month <= 2 ? 1 : 0));
+		
+		int seconds = (int) (millisOfDay / 1000);
+		
+		pad(buffer, year, 4).append('-');
+		pad(buffer, month, 2).append('-');
+		pad(buffer, day, 2).append(' ');
+		pad(buffer, seconds / 3600, 2).append(':');
+		pad(buffer, (seconds / 60) % 60, 2).append(':');
+		pad(buffer, seconds % 60, 2).append("+0000");
+		
+		return buffer;
+	}
+
+	@Override
+	public Date parse(String text, ParsePosition position) {
+		long time = parseFast(text, position);
+		
+		if(time == NOT_PARSED) {
+			return fallback.get().parse(text, position);
+		}
+		
+		return new Date(time);
+	}
+	
+	private long parseFast(String text, ParsePosition position) {
+		int i = position.getIndex();
+		int length = text.length();
+		
+		if(length - i < 19) {
+			return NOT_PARSED;
+		}
+		
+		int year = digits(text, i, 4);
+		int month = digits(text, i + 5, 2);
+		int day = digits(text, i + 8, 2);
+		int hour = digits(text, i + 11, 2);
+		int minute = digits(text, i + 14, 2);
+		int second = digits(text, i + 17, 2);
+		
+		if(year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+			return NOT_PARSED;
+		}
+		
+		char sep = text.charAt(i + 10);
+		
+		if(text.charAt(i + 4) != '-' || text.charAt(i + 7) != '-' || (sep != ' ' && sep != 'T') || text.charAt(i + 13) != ':' || text.charAt(i + 16) != ':') {
+			return NOT_PARSED;
+		}
+		
+		int end = i + 19;
+		int offsetMinutes;
+		
+		if(end >= length) {
+			return NOT_PARSED;
+		}
+		
+		char sign = text.charAt(end);
+		
+		if(sign == 'Z') {
+			offsetMinutes = 0;
+			end++;
+		}
+		else if(sign == '+' || sign == '-') {
+			int offsetHours = digits(text, end + 1, 2);
+			int minuteStart = end + 3;
+			
+			if(minuteStart < length && text.charAt(minuteStart) == ':') {
+				minuteStart++;
+			}
+			
+			int offsetMins = digits(text, minuteStart, 2);
+			
+			if(offsetHours < 0 || offsetMins < 0) {
+				return NOT_PARSED;
+			}
+			
+			offsetMinutes = offsetHours * 60 + offsetMins;
+			
+			if(sign == '-') {
+				offsetMinutes = -offsetMinutes;
+			}
+			
+			end = minuteStart + 2;
+		}
+		else {
+			return NOT_PARSED;
+		}
+		
+		// Days since epoch from the civil date (proleptic Gregorian)
+		long y = (month <= 2) ? year - 1 : year;
+		long era = (y >= 0 ? y : y - 399) / 400;
+		long yoe = y - era * 400;
+		long doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+		long days = era * 146097 + doe - 719468;
+		
+		long seconds = days * 86400L + hour * 3600L + minute * 60L + second - offsetMinutes * 60L;
+		
+		position.setIndex(end);
+		
+		return seconds * 1000L;
+	}
+	
+	private int digits(String text, int start, int count) {
+		if(start + count > text.length()) {
+			return -1;
+		}
+		
+		int value = 0;
+		
+		for (int i = start; i < start + count; i++) {
+			char c = text.charAt(i);
+			if(c < '0' || c > '9') {
+				return -1;
+			}
+			value = value * 10 + (c - '0');
+		}
+		
+		return value;
+	}
+	
+	private StringBuffer pad(StringBuffer buffer, int value, int width) {
+		String str = String.valueOf(value);
+		for (int i = str.length(); i < width; i++) {
+			buffer.append('0');
+		}
+		return buffer.append(str);
+	}
+
+	// The instance holds no mutable state so it can stand in for its own clone.
+	@Override
+	public Object clone() {
+		return this;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof ISODateFormat && ((ISODateFormat) obj).fallbackPattern.equals(fallbackPattern);
+	}
+
+	@Override
+	public int hashCode() {
+		return fallbackPattern.hashCode();
+	}
+}
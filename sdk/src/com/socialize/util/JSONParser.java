@@ -21,12 +21,15 @@
  */
 package com.socialize.util;
 
+import com.socialize.google.gson.stream.JsonReader;
+import com.socialize.google.gson.stream.JsonToken;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
 
 /**
  * @author Jason Polites
@@ -59,6 +62,25 @@ public class JSONParser {
 		}
 	}
 	
+	/**
+	 * Parses directly from a character stream without first reading the document into a String.
+	 * As with parseObject(String) a top level array is wrapped in an object with a single field called "data"
+	 * @param in
+	 * @return
+	 */
+	public JSONObject parseObject(Reader in) throws IOException, JSONException {
+		JsonReader reader = new JsonReader(in);
+		reader.setLenient(true);
+		
+		if(reader.peek() == JsonToken.BEGIN_ARRAY) {
+			JSONObject obj = new JSONObject();
+			obj.put("data", readArray(reader));
+			return obj;
+		}
+		
+		return readObject(reader);
+	}
+	
 	public JSONArray parseArray(InputStream in) throws IOException, JSONException {
 		String json = ioUtils.read(in);
 		return parseArray(json);
@@ -68,6 +90,69 @@ public class JSONParser {
 		return new JSONArray(json);
 	}
 
+	/**
+	 * Reads the object at the current position of the reader into a JSONObject.  
+	 * Used by streaming decoders to materialize one element at a time rather than the whole document.
+	 * @param reader
+	 * @return
+	 */
+	public JSONObject readObject(JsonReader reader) throws IOException, JSONException {
+		JSONObject object = new JSONObject();
+		reader.beginObject();
+		while(reader.hasNext()) {
+			String name = reader.nextName();
+			object.put(name, readValue(reader));
+		}
+		reader.endObject();
+		return object;
+	}
+	
+	public JSONArray readArray(JsonReader reader) throws IOException, JSONException {
+		JSONArray array = new JSONArray();
+		reader.beginArray();
+		while(reader.hasNext()) {
+			array.put(readValue(reader));
+		}
+		reader.endArray();
+		return array;
+	}
+	
+	public Object readValue(JsonReader reader) throws IOException, JSONException {
+		JsonToken token = reader.peek();
+		switch (token) {
+			case BEGIN_OBJECT:
+				return readObject(reader);
+			case BEGIN_ARRAY:
+				return readArray(reader);
+			case BOOLEAN:
+				return reader.nextBoolean();
+			case NUMBER:
+				return toNumber(reader.nextString());
+			case NULL:
+				reader.nextNull();
+				return JSONObject.NULL;
+			default:
+				return reader.nextString();
+		}
+	}
+	
+	// Mirror the types org.json would have produced so factories see the same values either way.
+	protected Number toNumber(String value) {
+		if(value.indexOf('.') < 0 && value.indexOf('e') < 0 && value.indexOf('E') < 0) {
+			try {
+				long longValue = Long.parseLong(value);
+				if(longValue <= Integer.MAX_VALUE && longValue >= Integer.MIN_VALUE) {
+					return Integer.valueOf((int) longValue);
+				}
+				return Long.valueOf(longValue);
+			}
+			catch (NumberFormatException ignore) {
+				// Fall through to double
+			}
+		}
+		return Double.valueOf(value);
+	}
+
 	public IOUtils getIoUtils() {
 		return ioUtils;
 	}
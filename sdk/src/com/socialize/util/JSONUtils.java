@@ -23,6 +23,9 @@ package com.socialize.util;
 
 import org.json.JSONObject;
 
+import java.io.Reader;
+import java.io.Writer;
+
 /**
  * @author Jason Polites
  *
@@ -32,4 +35,8 @@ public interface JSONUtils {
 	public String toJSON(Object object);
 	
 	public <T> T fromJSON(String json, Class<T> cls);
+	
+	public void toJSON(Object object, Writer writer);
+	
+	public <T> T fromJSON(Reader json, Class<T> cls);
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.util;
+
+import com.socialize.entity.SocializeObject;
+
+import java.util.List;
+
+/**
+ * Merges a freshly fetched first page of items into a list already on display, so that only rows 
+ * which actually changed are touched.  Both lists are expected newest first, with ids that increase over time.
+ */
+public class ListMerger {
+	
+	public static class Result {
+		
+		private int inserted = 0;
+		private int insertedAbove = 0;
+		private int removed = 0;
+		private boolean replaced = false;
+		
+		/**
+		 * @return The number of items added, including those added at the top of the list.
+		 */
+		public int getInserted() {
+			return inserted;
+		}
+		
+		/**
+		 * @return The number of items added at the top of the list, ahead of any the list already held.
+		 */
+		public int getInsertedAbove() {
+			return insertedAbove;
+		}
+		
+		public int getRemoved() {
+			return removed;
+		}
+		
+		/**
+		 * @return True if the fresh items did not overlap the list, so the list was replaced.
+		 */
+		public boolean isReplaced() {
+			return replaced;
+		}
+		
+		public boolean isChanged() {
+			return replaced || inserted > 0 || removed > 0;
+		}
+	}
+	
+	/**
+	 * Merges the fresh items into the current list.  Items already in the list are matched by id and kept as is.  
+	 * Newer items are inserted in place and items missing from the range covered by the fresh items are removed.
+	 * Items beyond that range, or which read as null, are left untouched.  Items at the top of the list 
+	 * without an id (such as a comment queued locally but not yet posted) are kept at the top.
+	 * @param current The list on display.  Modified in place.
+	 * @param fresh The newest items, as just returned from the server.
+	 * @return A description of what changed.
+	 */
+	public static <T extends SocializeObject> Result merge(List<T> current, List<? extends T> fresh) {
+		Result result = new Result();
+		
+		if(fresh == null) {
+			return result;
+		}
+		
+		// Anchor on the newest item the server knows about, skipping any local items above it.
+		int local = 0;
+		
+		while(local < current.size() && current.get(local) != null && current.get(local).getId() == null) {
+			local++;
+		}
+		
+		T newest = (local < current.size()) ? current.get(local) : null;
+		int anchor = (newest == null) ? -1 : indexOf(fresh, newest.getId());
+		
+		if(anchor < 0) {
+			// No common item, there may be a gap between the fresh items and the list.
+			if(current.size() > local || !fresh.isEmpty()) {
+				current.subList(local, current.size()).clear();
+				current.addAll(fresh);
+				result.replaced = true;
+			}
+			return result;
+		}
+		
+		for (int i = 0; i < anchor; i++) {
+			current.add(local + i, fresh.get(i));
+		}
+		
+		result.inserted = anchor;
+		result.insertedAbove = anchor;
+		
+		int i = local + anchor;
+		int j = anchor;
+		
+		while(j < fresh.size() && i < current.size()) {
+			T existing = current.get(i);
+			
+			if(existing == null || existing.getId() == null || fresh.get(j).getId() == null) {
+				break;
+			}
+			
+			long existingId = existing.getId();
+			long freshId = fresh.get(j).getId();
+			
+			if(existingId == freshId) {
+				i++;
+				j++;
+			}
+			else if(existingId > freshId) {
+				// Within the fresh range but not in it, so deleted on the server.
+				current.remove(i);
+				result.removed++;
+			}
+			else {
+				current.add(i, fresh.get(j));
+				result.inserted++;
+				i++;
+				j++;
+			}
+		}
+		
+		return result;
+	}
+	
+	protected static int indexOf(List<? extends SocializeObject> items, Long id) {
+		for (int i = 0; i < items.size(); i++) {
+			SocializeObject item = items.get(i);
+			if(item != null && id.equals(item.getId())) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
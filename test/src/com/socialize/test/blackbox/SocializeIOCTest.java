@@ -25,7 +25,7 @@ import com.socialize.android.ioc.AndroidIOC;
 import com.socialize.api.DefaultSocializeRequestFactory;
 import com.socialize.api.DefaultSocializeResponseFactory;
 import com.socialize.api.DefaultSocializeSessionFactory;
-import com.socialize.api.PreferenceSessionPersister;
+import com.socialize.api.BinarySessionPersister;
 import com.socialize.api.action.activity.SocializeActivitySystem;
 import com.socialize.api.action.comment.SocializeCommentSystem;
 import com.socialize.api.action.entity.SocializeEntitySystem;
@@ -91,7 +91,7 @@ public class SocializeIOCTest extends SocializeActivityTest {
 		checkBeanType(ioc, "activitySystem", SocializeActivitySystem.class);
 		checkBeanType(ioc, "commentSystem", SocializeCommentSystem.class);
 		checkBeanType(ioc, "responseFactory", DefaultSocializeResponseFactory.class);
-		checkBeanType(ioc, "sessionPersister",PreferenceSessionPersister.class);
+		checkBeanType(ioc, "sessionPersister",BinarySessionPersister.class);
 		
 		// Check each bean
 		assertConfig((SocializeConfig) ioc.getBean("config"));
@@ -21,12 +21,14 @@ import com.socialize.ui.comment.CommentAdapter;
 import com.socialize.ui.comment.CommentAddButtonListener;
 import com.socialize.ui.comment.CommentEditField;
 import com.socialize.ui.comment.CommentListView;
+import com.socialize.ui.comment.CommentPager;
 import com.socialize.ui.comment.CommentScrollListener;
 import com.socialize.ui.dialog.SimpleDialogFactory;
 import com.socialize.ui.header.SocializeHeader;
 import com.socialize.ui.view.LoadingListView;
 import org.mockito.Mockito;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -262,14 +264,12 @@ public class CommentListViewTest extends SocializeActivityTest {
 		final int endIndex = 70;
 		
 		final CommentAdapter commentAdapter = Mockito.mock(CommentAdapter.class);
-		final List<Comment> comments = Mockito.mock(List.class);
-		final List<Comment> listResultComments = Mockito.mock(List.class);
+		final List<Comment> listResultComments = new ArrayList<Comment>();
+		listResultComments.add(new Comment());
 		
 		final ListResult<Comment> entities = Mockito.mock(ListResult.class);
 
-		Mockito.when(commentAdapter.getComments()).thenReturn(comments);
 		Mockito.when(entities.getItems()).thenReturn(listResultComments);
-		Mockito.when(comments.addAll(listResultComments)).thenReturn(true);
 		Mockito.when(commentAdapter.getTotalCount()).thenReturn(79);
 		
 		final CommentUtilsProxy mockCommentUtilsProxy = new SocializeCommentUtils() {
@@ -293,9 +293,10 @@ public class CommentListViewTest extends SocializeActivityTest {
 		view.setCommentUtils(mockCommentUtilsProxy);
 		view.getNextSet();
 
-        Mockito.verify(commentAdapter).setComments(comments);
+        Mockito.verify(commentAdapter).setComments(view.getPager());
         Mockito.verify(commentAdapter).notifyDataSetChanged();
 		
+		assertEquals(1, view.getPager().size());
 		assertFalse(view.isLoading());
 	}
 	
@@ -308,7 +309,8 @@ public class CommentListViewTest extends SocializeActivityTest {
 		
 		final CommentAdapter commentAdapter = Mockito.mock(CommentAdapter.class);
 		final List<Comment> comments = Mockito.mock(List.class);
-		final List<Comment> listResultComments = Mockito.mock(List.class);
+		final List<Comment> listResultComments = new ArrayList<Comment>();
+		listResultComments.add(new Comment());
 		
 		final SocializeHeader header = Mockito.mock(SocializeHeader.class);
 		final LoadingListView content = Mockito.mock(LoadingListView.class);
@@ -347,7 +349,8 @@ public class CommentListViewTest extends SocializeActivityTest {
 
 
         Mockito.verify(content).scrollToTop();
-        Mockito.verify(commentAdapter).setComments(listResultComments);
+        Mockito.verify(commentAdapter).setComments(view.getPager());
+		assertEquals(1, view.getPager().size());
         Mockito.verify(commentAdapter).setLast(true);
         Mockito.verify(commentAdapter).setTotalCount(totalCount);
         Mockito.verify(commentAdapter).notifyDataSetChanged();
@@ -532,6 +535,11 @@ public class CommentListViewTest extends SocializeActivityTest {
 			super.getNextSet();
 		}
 
+		@Override
+		public CommentPager getPager() {
+			return super.getPager();
+		}
+
 		@Override
 		public void onAttachedToWindow() {
 			super.onAttachedToWindow();
@@ -0,0 +1,254 @@
+package com.socialize.test.comment.unit;
+
+import com.socialize.entity.Comment;
+import com.socialize.entity.ListResult;
+import com.socialize.error.SocializeException;
+import com.socialize.listener.comment.CommentListListener;
+import com.socialize.test.SocializeUnitTest;
+import com.socialize.ui.comment.CommentPager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class CommentPagerTest extends SocializeUnitTest {
+	
+	private CommentPager pager;
+	private RecordingLoader loader;
+	private RecordingPageListener pageListener;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		loader = new RecordingLoader();
+		pageListener = new RecordingPageListener();
+		pager = new CommentPager();
+		pager.setMaxPages(2);
+		pager.setPageLoader(loader);
+		pager.setOnPageListener(pageListener);
+	}
+	
+	public void testPagesAppended() {
+		pager.addPage(newComments(0, 10));
+		pager.addPage(newComments(10, 10));
+		
+		assertEquals(20, pager.size());
+		assertEquals(2, pager.getPageCount());
+		assertEquals(0, pager.get(0).getId().intValue());
+		assertEquals(15, pager.get(15).getId().intValue());
+		assertEquals(19, pager.get(19).getId().intValue());
+	}
+	
+	public void testWindowReleasesFurthestPage() {
+		pager.addPage(newComments(0, 10));
+		pager.addPage(newComments(10, 10));
+		
+		// Showing rows near the end, as when scrolling down.
+		pager.show(15);
+		
+		pager.addPage(newComments(20, 10));
+		
+		assertEquals(30, pager.size());
+		assertEquals(3, pager.getPageCount());
+		assertEquals(2, pager.getLoadedPageCount());
+		assertFalse(pager.isLoaded(0));
+		assertTrue(pager.isLoaded(15));
+		assertTrue(pager.isLoaded(25));
+	}
+	
+	public void testReleasedPageReloaded() {
+		pager.addPage(newComments(0, 10));
+		pager.addPage(newComments(10, 10));
+		pager.show(15);
+		pager.addPage(newComments(20, 10));
+		
+		// Scroll back to the top
+		assertNull(pager.show(3));
+		assertNull(pager.show(4));
+		
+		// Only one load for the page, by the ids it held
+		assertEquals(1, loader.listeners.size());
+		assertEquals(10, loader.ids.get(0).length);
+		assertEquals(0, loader.ids.get(0)[0]);
+		assertEquals(9, loader.ids.get(0)[9]);
+		
+		loader.complete(0, newComments(0, 10));
+		
+		assertEquals(3, pager.show(3).getId().intValue());
+		assertEquals(1, pageListener.loaded.size());
+		
+		// The page furthest from the top is released in its place.
+		assertEquals(2, pager.getLoadedPageCount());
+		assertFalse(pager.isLoaded(25));
+	}
+	
+	public void testReloadedPageSizeChange() {
+		pager.setMaxPages(1);
+		pager.addPage(newComments(0, 10));
+		pager.addPage(newComments(10, 10));
+		
+		assertNull(pager.show(5));
+		
+		// A comment was deleted on the server
+		List<Comment> comments = newComments(0, 10);
+		comments.remove(4);
+		loader.complete(0, comments);
+		
+		assertEquals(19, pager.size());
+		assertEquals(5, pager.show(4).getId().intValue());
+		assertEquals(9, pager.show(8).getId().intValue());
+		assertNull(pager.show(9));
+		assertEquals(10, loader.ids.get(1)[0]);
+	}
+	
+	public void testReloadAnchoredOnIds() {
+		pager.setMaxPages(1);
+		pager.addPage(newComments(0, 10));
+		pager.addPage(newComments(10, 10));
+		
+		assertNull(pager.show(5));
+		
+		// Results arrive in any order and may include comments the page never held.
+		List<Comment> comments = newComments(0, 10);
+		Collections.reverse(comments);
+		comments.addAll(newComments(10, 2));
+		loader.complete(0, comments);
+		
+		assertEquals(20, pager.size());
+		
+		for (int i = 0; i < 10; i++) {
+			assertEquals(i, pager.show(i).getId().intValue());
+		}
+	}
+	
+	public void testReloadAllDeleted() {
+		pager.setMaxPages(1);
+		pager.addPage(newComments(0, 10));
+		pager.addPage(newComments(10, 10));
+		
+		assertNull(pager.show(5));
+		loader.complete(0, new ArrayList<Comment>(0));
+		
+		assertEquals(10, pager.size());
+		assertEquals(1, pager.getPageCount());
+		assertEquals(10, pager.show(0).getId().intValue());
+	}
+	
+	public void testReloadError() {
+		pager.setMaxPages(1);
+		pager.addPage(newComments(0, 10));
+		pager.addPage(newComments(10, 10));
+		
+		assertNull(pager.show(5));
+		loader.listeners.get(0).onError(new SocializeException("fail"));
+		
+		assertEquals(1, pageListener.errors);
+		
+		// Showing the row again tries again
+		assertNull(pager.show(5));
+		assertEquals(2, loader.listeners.size());
+	}
+	
+	public void testAddAtTop() {
+		pager.setMaxPages(1);
+		pager.addPage(newComments(0, 10));
+		pager.addPage(newComments(10, 10));
+		
+		Comment comment = new Comment();
+		comment.setId(-1L);
+		
+		pager.add(0, comment);
+		
+		assertEquals(21, pager.size());
+		
+		// The first page was released, so the reload covers the new comment.
+		assertNull(pager.show(0));
+		assertEquals(11, loader.ids.get(0).length);
+		assertEquals(-1, loader.ids.get(0)[0]);
+		
+		// The loaded page shifted down by one
+		assertEquals(10, pager.show(11).getId().intValue());
+	}
+	
+	public void testClear() {
+		pager.addPage(newComments(0, 10));
+		pager.clear();
+		
+		assertEquals(0, pager.size());
+		assertEquals(0, pager.getPageCount());
+		assertEquals(0, pager.getLoadedPageCount());
+		
+		pager.add(0, new Comment());
+		assertEquals(1, pager.size());
+	}
+	
+	public void testReadsHaveNoSideEffects() {
+		pager.addPage(newComments(0, 10));
+		pager.addPage(newComments(10, 10));
+		pager.show(15);
+		pager.addPage(newComments(20, 10));
+		
+		// Traversals read through get, peek and the iterator.
+		assertNull(pager.peek(3));
+		assertNull(pager.get(3));
+		
+		int read = 0;
+		for (Comment comment : pager) {
+			if(comment != null) {
+				read++;
+			}
+		}
+		
+		assertEquals(20, read);
+		assertTrue(pager.equals(new ArrayList<Comment>(pager)));
+		assertEquals(0, loader.listeners.size());
+		
+		// The window is still anchored on the row shown, so the page near it is kept.
+		pager.addPage(newComments(30, 10));
+		assertTrue(pager.isLoaded(15));
+		assertFalse(pager.isLoaded(25));
+		assertTrue(pager.isLoaded(35));
+	}
+	
+	private List<Comment> newComments(int start, int count) {
+		List<Comment> comments = new ArrayList<Comment>(count);
+		for (int i = start; i < start + count; i++) {
+			Comment comment = new Comment();
+			comment.setId((long) i);
+			comments.add(comment);
+		}
+		return comments;
+	}
+	
+	class RecordingLoader implements CommentPager.PageLoader {
+		
+		final List<long[]> ids = new ArrayList<long[]>();
+		final List<CommentListListener> listeners = new ArrayList<CommentListListener>();
+		
+		@Override
+		public void loadPage(long[] ids, CommentListListener listener) {
+			this.ids.add(ids);
+			listeners.add(listener);
+		}
+		
+		void complete(int index, List<Comment> comments) {
+			listeners.get(index).onList(new ListResult<Comment>(comments));
+		}
+	}
+	
+	class RecordingPageListener implements CommentPager.OnPageListener {
+		
+		final List<Integer> loaded = new ArrayList<Integer>();
+		int errors = 0;
+
+		@Override
+		public void onPageLoaded(int start, List<Comment> comments) {
+			loaded.add(start);
+		}
+
+		@Override
+		public void onPageError(int start, SocializeException error) {
+			errors++;
+		}
+	}
+}
@@ -25,8 +25,11 @@ import android.graphics.Bitmap;
 import android.graphics.Color;
 import com.socialize.test.SocializeUnitTest;
 import com.socialize.util.BitmapBuilder;
+import com.socialize.util.BitmapPool;
 import com.socialize.util.BitmapUtils;
 
+import java.io.ByteArrayOutputStream;
+
 /**
  * @author Jason Polites
  * 
@@ -129,4 +132,65 @@ public class BitmapUtilsTest extends SocializeUnitTest {
 		scaled.recycle();
 	}
 
+	public void testCalculateSampleSize() {
+		assertEquals(1, BitmapUtils.calculateSampleSize(100, 100, 64, 64));
+		assertEquals(2, BitmapUtils.calculateSampleSize(128, 128, 64, 64));
+		assertEquals(32, BitmapUtils.calculateSampleSize(2048, 2048, 64, 64));
+		
+		// Both dimensions must still cover the requested size so the crop is not upscaled
+		assertEquals(4, BitmapUtils.calculateSampleSize(400, 200, 50, 50));
+		assertEquals(1, BitmapUtils.calculateSampleSize(400, 200, -1, -1));
+	}
+	
+	public void testDecodeUsesSampleSize() {
+		Bitmap bitmap = Bitmap.createBitmap(400, 200, Bitmap.Config.ARGB_8888);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+		bitmap.recycle();
+		
+		BitmapUtils utils = new BitmapUtils();
+		utils.setBitmapBuilder(new BitmapBuilder());
+		
+		Bitmap decoded = utils.decode(out.toByteArray(), 50, 50);
+		
+		assertEquals(100, decoded.getWidth());
+		assertEquals(50, decoded.getHeight());
+		
+		decoded.recycle();
+	}
+	
+	public void testPoolReusesReleasedBitmap() {
+		BitmapPool pool = new BitmapPool();
+		Bitmap bitmap = Bitmap.createBitmap(64, 64, Bitmap.Config.ARGB_8888);
+		
+		pool.put(bitmap);
+		
+		if(BitmapPool.isReuseSupported()) {
+			assertSame(bitmap, pool.get(64, 64, Bitmap.Config.ARGB_8888));
+			assertNull(pool.get(64, 64, Bitmap.Config.ARGB_8888));
+			assertEquals(0, pool.sizeInBytes());
+		}
+		else {
+			assertTrue(bitmap.isRecycled());
+		}
+		
+		pool.clear();
+	}
+	
+	public void testPoolTrimsOldest() {
+		BitmapPool pool = new BitmapPool();
+		pool.setMaxBytes(64 * 64 * 4);
+		
+		Bitmap first = Bitmap.createBitmap(64, 64, Bitmap.Config.ARGB_8888);
+		Bitmap second = Bitmap.createBitmap(64, 64, Bitmap.Config.ARGB_8888);
+		
+		pool.put(first);
+		pool.put(second);
+		
+		assertTrue(first.isRecycled());
+		
+		pool.clear();
+		
+		assertTrue(second.isRecycled());
+	}
 }
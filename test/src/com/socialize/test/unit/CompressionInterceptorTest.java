@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.test.unit;
+
+import com.socialize.net.CompressionInterceptor;
+import com.socialize.test.SocializeUnitTest;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class CompressionInterceptorTest extends SocializeUnitTest {
+
+	public void testAcceptEncodingIsAdded() throws Exception {
+		CompressionInterceptor interceptor = new CompressionInterceptor();
+		HttpGet get = new HttpGet("http://localhost/");
+		interceptor.process(get, null);
+		assertEquals("gzip, deflate", get.getFirstHeader(CompressionInterceptor.ACCEPT_ENCODING).getValue());
+		
+		interceptor.setCompressResponses(false);
+		get = new HttpGet("http://localhost/");
+		interceptor.process(get, null);
+		assertNull(get.getFirstHeader(CompressionInterceptor.ACCEPT_ENCODING));
+	}
+	
+	public void testLargeRequestBodyIsCompressed() throws Exception {
+		CompressionInterceptor interceptor = new CompressionInterceptor();
+		interceptor.setMinRequestSize(256);
+		
+		String body = repeat("payload=comment+text&", 50);
+		HttpPost post = new HttpPost("http://localhost/");
+		StringEntity entity = new StringEntity(body);
+		entity.setContentType("application/x-www-form-urlencoded");
+		post.setEntity(entity);
+		
+		interceptor.process(post, null);
+		
+		HttpEntity compressed = post.getEntity();
+		assertEquals("gzip", compressed.getContentEncoding().getValue());
+		assertEquals("application/x-www-form-urlencoded", compressed.getContentType().getValue());
+		assertTrue(compressed.getContentLength() < body.length());
+		assertEquals(body, gunzip(EntityUtils.toByteArray(compressed)));
+		assertTrue(interceptor.getCompressionRatio() < 1.0f);
+	}
+	
+	public void testSmallOrEncodedRequestBodyIsLeftAlone() throws Exception {
+		CompressionInterceptor interceptor = new CompressionInterceptor();
+		interceptor.setMinRequestSize(256);
+		
+		HttpPost post = new HttpPost("http://localhost/");
+		StringEntity small = new StringEntity("a=b");
+		post.setEntity(small);
+		interceptor.process(post, null);
+		assertSame(small, post.getEntity());
+		
+		ByteArrayEntity encoded = new ByteArrayEntity(new byte[1024]);
+		encoded.setContentEncoding("gzip");
+		post.setEntity(encoded);
+		interceptor.process(post, null);
+		assertSame(encoded, post.getEntity());
+		
+		assertEquals(1.0f, interceptor.getCompressionRatio());
+	}
+	
+	public void testGzipResponseIsInflated() throws Exception {
+		String json = "{\"items\":[" + repeat("{\"text\":\"a comment\"},", 100) + "{}]}";
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+		gzip.write(json.getBytes("UTF-8"));
+		gzip.close();
+		
+		String result = roundTrip(bytes.toByteArray(), "gzip");
+		assertEquals(json, result);
+	}
+	
+	public void testDeflateResponseIsInflated() throws Exception {
+		String json = repeat("{\"text\":\"a comment\"}", 20);
+		
+		// zlib wrapped
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DeflaterOutputStream out = new DeflaterOutputStream(bytes);
+		out.write(json.getBytes("UTF-8"));
+		out.close();
+		assertEquals(json, roundTrip(bytes.toByteArray(), "deflate"));
+		
+		// raw
+		bytes = new ByteArrayOutputStream();
+		out = new DeflaterOutputStream(bytes, new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+		out.write(json.getBytes("UTF-8"));
+		out.close();
+		assertEquals(json, roundTrip(bytes.toByteArray(), "deflate"));
+	}
+	
+	public void testPlainResponseIsLeftAlone() throws Exception {
+		CompressionInterceptor interceptor = new CompressionInterceptor();
+		HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+		StringEntity entity = new StringEntity("{}");
+		response.setEntity(entity);
+		interceptor.process(response, null);
+		assertSame(entity, response.getEntity());
+	}
+	
+	protected String roundTrip(byte[] wire, String encoding) throws Exception {
+		CompressionInterceptor interceptor = new CompressionInterceptor();
+		HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+		ByteArrayEntity entity = new ByteArrayEntity(wire);
+		entity.setContentEncoding(encoding);
+		response.setEntity(entity);
+		
+		interceptor.process(response, null);
+		
+		assertNull(response.getEntity().getContentEncoding());
+		String result = EntityUtils.toString(response.getEntity(), "UTF-8");
+		assertEquals(wire.length, interceptor.getEncodedBytes());
+		assertEquals(result.length(), interceptor.getDecodedBytes());
+		return result;
+	}
+	
+	protected String gunzip(byte[] data) throws Exception {
+		InputStream in = new GZIPInputStream(new ByteArrayInputStream(data));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[512];
+		int read;
+		while((read = in.read(buffer)) >= 0) {
+			out.write(buffer, 0, read);
+		}
+		return new String(out.toByteArray(), "UTF-8");
+	}
+	
+	protected String repeat(String s, int times) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < times; i++) {
+			builder.append(s);
+		}
+		return builder.toString();
+	}
+}
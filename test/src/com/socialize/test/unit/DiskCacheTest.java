@@ -0,0 +1,169 @@
+/**
+ * 
+ */
+package com.socialize.test.unit;
+
+import com.socialize.cache.DiskCache;
+import com.socialize.test.SocializeUnitTest;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DiskCacheTest extends SocializeUnitTest {
+	
+	private File dir;
+	private DiskCache cache;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		dir = new File(getContext().getCacheDir(), "disk_cache_test");
+		cache = new DiskCache();
+		cache.setMaxBytes(100);
+		cache.setMaxEntries(4);
+		cache.open(dir);
+		cache.clear();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		cache.clear();
+		cache.close();
+		super.tearDown();
+	}
+	
+	public void testPutGet() {
+		byte[] data = {1, 2, 3, 4};
+		assertTrue(cache.put("http://foo/bar.png", data));
+		assertTrue(Arrays.equals(data, cache.get("http://foo/bar.png")));
+		assertNull(cache.get("http://foo/other.png"));
+		assertEquals(4, cache.sizeInBytes());
+	}
+	
+	public void testReplace() {
+		cache.put("a", new byte[10]);
+		cache.put("a", new byte[20]);
+		assertEquals(1, cache.size());
+		assertEquals(20, cache.sizeInBytes());
+		assertEquals(20, cache.get("a").length);
+	}
+	
+	public void testOldestTrimmedWhenOverBytes() throws Exception {
+		cache.put("a", new byte[40]);
+		Thread.sleep(5);
+		cache.put("b", new byte[40]);
+		Thread.sleep(5);
+		
+		// Touch a so b is the oldest
+		assertNotNull(cache.get("a"));
+		
+		cache.put("c", new byte[40]);
+		
+		assertTrue(cache.exists("a"));
+		assertFalse(cache.exists("b"));
+		assertTrue(cache.exists("c"));
+		assertEquals(80, cache.sizeInBytes());
+	}
+	
+	public void testOldestTrimmedWhenOverEntries() {
+		for (int i = 0; i < 10; i++) {
+			cache.put("url" + i, new byte[1]);
+		}
+		assertEquals(4, cache.size());
+	}
+	
+	public void testOversizeRejected() {
+		assertFalse(cache.put("big", new byte[101]));
+		assertEquals(0, cache.size());
+	}
+	
+	public void testEntriesSurviveReopen() throws Exception {
+		byte[] data = {5, 6, 7};
+		cache.put("a", data);
+		cache.close();
+		
+		cache = new DiskCache();
+		cache.setMaxBytes(100);
+		cache.setMaxEntries(4);
+		cache.open(dir);
+		
+		assertTrue(Arrays.equals(data, cache.get("a")));
+		assertEquals(3, cache.sizeInBytes());
+	}
+	
+	public void testTruncatedEntryAndOrphansDroppedOnReopen() throws Exception {
+		cache.put("a", new byte[10]);
+		cache.put("b", new byte[10]);
+		cache.close();
+		
+		// Simulate a crash mid write
+		File orphan = new File(dir, "0000000000000001.tmp");
+		new FileOutputStream(orphan).close();
+		
+		for (String name : dir.list()) {
+			if(!name.equals("index") && !name.endsWith(".tmp")) {
+				RandomAccessFile file = new RandomAccessFile(new File(dir, name), "rw");
+				file.setLength(5);
+				file.close();
+				break;
+			}
+		}
+		
+		cache = new DiskCache();
+		cache.setMaxBytes(100);
+		cache.setMaxEntries(4);
+		cache.open(dir);
+		
+		assertEquals(1, cache.size());
+		assertEquals(10, cache.sizeInBytes());
+		assertFalse(orphan.exists());
+	}
+	
+	public void testConcurrentWritesOfSameUrl() throws Exception {
+		final AtomicInteger torn = new AtomicInteger(0);
+		Thread[] threads = new Thread[4];
+		
+		for (int i = 0; i < threads.length; i++) {
+			final byte value = (byte) i;
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < 20; j++) {
+						byte[] data = new byte[10 + value];
+						Arrays.fill(data, value);
+						cache.put("a", data);
+						
+						byte[] read = cache.get("a");
+						
+						// Whatever was read must be one complete write
+						if(read != null) {
+							for (byte b : read) {
+								if(b != read.length - 10) {
+									torn.incrementAndGet();
+									break;
+								}
+							}
+						}
+					}
+				}
+			};
+			threads[i].start();
+		}
+		
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		
+		assertEquals(0, torn.get());
+		assertEquals(1, cache.size());
+		assertNotNull(cache.get("a"));
+		assertEquals(cache.get("a").length, cache.sizeInBytes());
+		
+		for (String name : dir.list()) {
+			assertFalse(name, name.endsWith(".tmp"));
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.test.unit;
+
+import android.location.Location;
+import com.socialize.api.SocializeSession;
+import com.socialize.api.action.entity.EntityBootstrap;
+import com.socialize.api.action.entity.SocializeEntityBootstrapSystem;
+import com.socialize.entity.Entity;
+import com.socialize.entity.Like;
+import com.socialize.error.SocializeApiError;
+import com.socialize.error.SocializeException;
+import com.socialize.listener.entity.EntityBootstrapListener;
+import com.socialize.listener.like.LikeListener;
+import com.socialize.listener.view.ViewListener;
+import com.socialize.test.SocializeUnitTest;
+import com.socialize.testapp.mock.MockEntitySystem;
+import com.socialize.testapp.mock.MockLikeSystem;
+import com.socialize.testapp.mock.MockViewSystem;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class EntityBootstrapSystemTest extends SocializeUnitTest {
+	
+	private Entity viewEntity;
+	private Entity likeEntity;
+	private Entity lookupEntity;
+	
+	private MockEntitySystem entitySystem;
+	private MockLikeSystem likeSystem;
+	private MockViewSystem viewSystem;
+	private SocializeEntityBootstrapSystem system;
+	
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		
+		viewEntity = Entity.newInstance("http://entity1.com", "view");
+		likeEntity = Entity.newInstance("http://entity1.com", "like");
+		lookupEntity = Entity.newInstance("http://entity1.com", "lookup");
+		
+		entitySystem = new MockEntitySystem();
+		entitySystem.setEntity(lookupEntity);
+		
+		likeSystem = new MockLikeSystem();
+		likeSystem.setEntity(likeEntity);
+		
+		viewSystem = new MockViewSystem() {
+			@Override
+			public void addView(SocializeSession session, Entity entity, Location location, ViewListener listener) {
+				super.addView(session, viewEntity, location, listener);
+			}
+		};
+		
+		system = new SocializeEntityBootstrapSystem();
+		system.setEntitySystem(entitySystem);
+		system.setLikeSystem(likeSystem);
+		system.setViewSystem(viewSystem);
+	}
+
+	public void testLikedEntityUsesLikeResponse() {
+		EntityBootstrap result = bootstrap(true, true);
+		
+		assertTrue(result.isLiked());
+		assertSame(likeEntity, result.getEntity());
+		assertTrue(result.getLatency() >= 0);
+		assertEquals(result.getLatency(), system.getLastLatency());
+	}
+	
+	public void testNotLikedEntityUsesViewResponse() {
+		likeSystem = new MockLikeSystem() {
+			@Override
+			public void getLike(SocializeSession session, String entityKey, LikeListener listener) {
+				listener.onError(new SocializeApiError(404, "Not found"));
+			}
+		};
+		system.setLikeSystem(likeSystem);
+		
+		EntityBootstrap result = bootstrap(true, true);
+		
+		assertFalse(result.isLiked());
+		assertSame(viewEntity, result.getEntity());
+	}
+	
+	public void testLikeErrorIsReportedWhenViewReturnsEntity() {
+		final SocializeApiError failure = new SocializeApiError(500, "Server error");
+		
+		likeSystem = new MockLikeSystem() {
+			@Override
+			public void getLike(SocializeSession session, String entityKey, LikeListener listener) {
+				listener.onError(failure);
+			}
+		};
+		system.setLikeSystem(likeSystem);
+		
+		final List<SocializeException> errors = new ArrayList<SocializeException>();
+		
+		system.bootstrap(null, Entity.newInstance("http://entity1.com", null), true, true, new EntityBootstrapListener() {
+			@Override
+			public void onError(SocializeException error) {
+				errors.add(error);
+			}
+			
+			@Override
+			public void onBootstrap(EntityBootstrap bootstrap) {
+				fail("Like error was dropped");
+			}
+		});
+		
+		assertEquals(1, errors.size());
+		assertSame(failure, errors.get(0));
+	}
+	
+	public void testReloadWithoutLikeLooksUpEntity() {
+		EntityBootstrap result = bootstrap(false, false);
+		
+		assertFalse(result.isLiked());
+		assertSame(lookupEntity, result.getEntity());
+	}
+	
+	private EntityBootstrap bootstrap(boolean addView, boolean getLike) {
+		final List<EntityBootstrap> results = new ArrayList<EntityBootstrap>();
+		
+		system.bootstrap(null, Entity.newInstance("http://entity1.com", null), addView, getLike, new EntityBootstrapListener() {
+			@Override
+			public void onError(SocializeException error) {
+				fail(error.getMessage());
+			}
+			
+			@Override
+			public void onBootstrap(EntityBootstrap bootstrap) {
+				results.add(bootstrap);
+			}
+		});
+		
+		assertEquals(1, results.size());
+		
+		return results.get(0);
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.test.unit;
+
+import com.socialize.api.action.ActionType;
+import com.socialize.entity.*;
+import com.socialize.google.gson.stream.JsonReader;
+import com.socialize.provider.DefaultSocializeProvider;
+import com.socialize.test.SocializeUnitTest;
+import com.socialize.util.ISODateFormat;
+import com.socialize.util.JSONParser;
+import org.json.JSONObject;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+public class EntityCodecTest extends SocializeUnitTest {
+	
+	// Recorded from GET /comment/
+	static final String COMMENT_PAYLOAD = "{\"id\":1234,\"text\":\"Nice one\",\"subscribe\":true,\"date\":\"2012-09-17 21:08:01+0000\"," +
+			"\"lat\":-33.86,\"lng\":151.2,\"share_location\":false,\"unknown\":{\"nested\":[1,2,{\"x\":null}]}," +
+			"\"application\":{\"id\":7,\"name\":\"Demo\"}," +
+			"\"user\":{\"id\":99,\"first_name\":\"Jane\",\"last_name\":null,\"small_image_uri\":\"http://x/y.png\",\"stats\":{\"comments\":4,\"likes\":2}}," +
+			"\"entity\":{\"id\":55,\"key\":\"http://getsocialize.com\",\"name\":\"Socialize\",\"comments\":10,\"likes\":3,\"total_activity\":13," +
+			"\"user_action_summary\":{\"likes\":1,\"comments\":2,\"shares\":0}}}";
+
+	public void testDateFormatMatchesSimpleDateFormat() throws Exception {
+		SimpleDateFormat simple = new SimpleDateFormat(JSONFactory.DATE_FORMAT_STRING);
+		DateFormat format = new ISODateFormat(JSONFactory.DATE_FORMAT_STRING);
+		
+		String[] dates = {"2012-09-17 21:08:01+0000", "1999-12-31 23:59:59-0800", "2000-02-29 12:00:00+1030", "1969-07-20 20:17:40+0000"};
+		
+		for (String date : dates) {
+			assertEquals(date, simple.parse(date).getTime(), format.parse(date).getTime());
+		}
+		
+		long now = (System.currentTimeMillis() / 1000L) * 1000L;
+		assertEquals(now, simple.parse(format.format(new Date(now))).getTime());
+		assertEquals(now, format.parse(simple.format(new Date(now))).getTime());
+		
+		// Anything outside the fast path goes to SimpleDateFormat
+		assertEquals(simple.parse("2012-09-17 21:08:01 GMT").getTime(), format.parse("2012-09-17 21:08:01 GMT").getTime());
+	}
+	
+	public void testStreamMatchesTree() throws Exception {
+		CommentFactory factory = newCommentFactory();
+		
+		Comment tree = factory.fromJSON(new JSONParser().parseObject(COMMENT_PAYLOAD));
+		Comment streamed = factory.fromJSON(new JsonReader(new StringReader(COMMENT_PAYLOAD)));
+		
+		assertComment(tree, streamed);
+		
+		assertEquals(4, streamed.getUser().getStats().getComments().intValue());
+		assertEquals(13, streamed.getEntity().getEntityStats().getTotalActivityCount().intValue());
+		assertTrue(streamed.getEntity().getUserEntityStats().isLiked());
+		assertEquals("Demo", streamed.getApplication().getName());
+	}
+	
+	public void testRoundTrip() throws Exception {
+		CommentFactory factory = newCommentFactory();
+		
+		Comment comment = factory.fromJSON(new JsonReader(new StringReader(COMMENT_PAYLOAD)));
+		JSONObject json = factory.toJSON(comment);
+		Comment copy = factory.fromJSON(new JsonReader(new StringReader(json.toString())));
+		
+		assertComment(comment, copy);
+	}
+	
+	public void testActivityListStreams() throws Exception {
+		String payload = "{\"items\":[" +
+				"{\"activity_type\":\"comment\",\"id\":1,\"text\":\"First\",\"user\":{\"id\":99},\"entity\":{\"id\":55,\"key\":\"http://getsocialize.com\"}}," +
+				"{\"activity_type\":\"like\",\"id\":2,\"user\":{\"id\":98},\"entity\":{\"id\":55,\"key\":\"http://getsocialize.com\"}}," +
+				"{\"activity_type\":\"share\",\"id\":3,\"text\":\"Look\",\"medium\":{\"id\":1}}," +
+				"{\"activity_type\":\"view\",\"id\":4}" +
+				"],\"total_count\":4}";
+		
+		GenericActionFactory factory = wire(new GenericActionFactory());
+		factory.setCommentFactory(wire(new CommentFactory()));
+		factory.setLikeFactory(wire(new LikeFactory()));
+		factory.setShareFactory(wire(new ShareFactory()));
+		factory.setViewFactory(wire(new ViewFactory()));
+		
+		ActivityProvider provider = new ActivityProvider();
+		provider.setObjectFactory(factory);
+		
+		ListResult<SocializeAction> result = new ListResult<SocializeAction>();
+		provider.read(new StringReader(payload), result);
+		
+		assertEquals(4, result.getTotalCount());
+		assertEquals(4, result.getItems().size());
+		
+		Comment comment = (Comment) result.getItems().get(0);
+		assertEquals(1L, comment.getId().longValue());
+		assertEquals("First", comment.getText());
+		assertEquals(99L, comment.getUser().getId().longValue());
+		assertEquals("http://getsocialize.com", comment.getEntity().getKey());
+		
+		Like like = (Like) result.getItems().get(1);
+		assertEquals(2L, like.getId().longValue());
+		assertEquals(98L, like.getUser().getId().longValue());
+		
+		Share share = (Share) result.getItems().get(2);
+		assertEquals("Look", share.getText());
+		
+		assertTrue(result.getItems().get(3) instanceof View);
+	}
+	
+	private void assertComment(Comment expected, Comment actual) {
+		assertEquals(expected.getId(), actual.getId());
+		assertEquals(expected.getText(), actual.getText());
+		assertEquals(expected.isNotificationsEnabled(), actual.isNotificationsEnabled());
+		assertEquals(expected.getDate(), actual.getDate());
+		assertEquals(expected.getLat(), actual.getLat());
+		assertEquals(expected.getLon(), actual.getLon());
+		assertEquals(expected.isLocationShared(), actual.isLocationShared());
+		assertEquals(expected.getUser().getId(), actual.getUser().getId());
+		assertEquals(expected.getUser().getFirstName(), actual.getUser().getFirstName());
+		assertEquals(expected.getUser().getSmallImageUri(), actual.getUser().getSmallImageUri());
+		assertEquals(expected.getEntity().getKey(), actual.getEntity().getKey());
+		assertEquals(expected.getEntity().getName(), actual.getEntity().getName());
+	}
+	
+	private CommentFactory newCommentFactory() {
+		return wire(new CommentFactory());
+	}
+	
+	private <F extends SocializeActionFactory<?>> F wire(F factory) {
+		UserFactory userFactory = new UserFactory();
+		userFactory.setStatsFactory(new StatsFactory());
+		userFactory.setUserAuthDataFactory(new UserAuthDataFactory());
+		
+		factory.setUserFactory(userFactory);
+		factory.setEntityFactory(new EntityFactory());
+		factory.setApplicationFactory(new ApplicationFactory());
+		return factory;
+	}
+	
+	private static class ActivityProvider extends DefaultSocializeProvider<SocializeAction> {
+		void read(Reader in, ListResult<SocializeAction> result) throws Exception {
+			readListResult(in, result, ActionType.UNKNOWN);
+		}
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.test.unit;
+
+import com.socialize.api.SocializeSession;
+import com.socialize.api.event.EventBatcher;
+import com.socialize.api.event.SocializeEvent;
+import com.socialize.api.queue.WriteQueue;
+import com.socialize.api.queue.WriteSender;
+import com.socialize.error.SocializeApiError;
+import com.socialize.error.SocializeException;
+import com.socialize.test.SocializeUnitTest;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class EventBatcherTest extends SocializeUnitTest {
+	
+	private File file;
+	private WriteQueue queue;
+	private EventBatcher batcher;
+	private RecordingSender sender;
+	private SocializeSession session;
+	
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		file = File.createTempFile("event_batcher", ".journal");
+		file.delete();
+		
+		queue = new WriteQueue() {
+			@Override
+			protected SocializeSession getCurrentSession() {
+				return session;
+			}
+		};
+		queue.setMinBackoff(60000);
+		queue.open(file);
+		
+		batcher = new EventBatcher();
+		batcher.setWriteQueue(queue);
+		batcher.setMaxAge(60000);
+		
+		sender = new RecordingSender();
+		session = Mockito.mock(SocializeSession.class);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		batcher.destroy();
+		queue.destroy();
+		file.delete();
+		super.tearDown();
+	}
+	
+	public void testEventsAreSentAsOneBatch() throws Exception {
+		batcher.add(session, newEvent("a"), sender);
+		batcher.add(session, newEvent("b"), sender);
+		batcher.add(session, newEvent("c"), sender);
+		
+		// Journaled as they are added
+		assertEquals(3, batcher.getPendingCount());
+		assertEquals(3, queue.getPendingCount());
+		assertEquals(0, sender.batches.size());
+		
+		assertEquals(3, batcher.flushNow());
+		
+		assertEquals(1, sender.batches.size());
+		assertEquals(3, sender.batches.get(0).size());
+		assertEquals(3, batcher.getBufferedCount());
+		assertEquals(3, batcher.getFlushedCount());
+		assertEquals(0, batcher.getDroppedCount());
+		assertEquals(0, batcher.getPendingCount());
+		assertEquals(0, queue.getPendingCount());
+	}
+	
+	public void testFlushWhenBatchIsFull() throws Exception {
+		sender.latch = new CountDownLatch(1);
+		batcher.setMaxBatchSize(2);
+		
+		batcher.add(session, newEvent("a"), sender);
+		assertEquals(0, sender.batches.size());
+		batcher.add(session, newEvent("b"), sender);
+		
+		assertTrue(sender.latch.await(5, TimeUnit.SECONDS));
+		assertEquals(2, sender.batches.get(0).size());
+	}
+	
+	public void testFlushOnBackground() throws Exception {
+		sender.latch = new CountDownLatch(1);
+		batcher.add(session, newEvent("a"), sender);
+		batcher.flush();
+		assertTrue(sender.latch.await(5, TimeUnit.SECONDS));
+		
+		// Counters are updated once send returns
+		long deadline = System.currentTimeMillis() + 5000;
+		while(batcher.getFlushedCount() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(1, batcher.getFlushedCount());
+	}
+	
+	public void testFailedBatchIsLeftToTheQueue() throws Exception {
+		batcher.add(session, newEvent("a"), sender);
+		batcher.add(session, newEvent("b"), sender);
+		
+		sender.error = new SocializeException("No network");
+		assertEquals(0, batcher.flushNow());
+		
+		assertEquals(0, batcher.getPendingCount());
+		assertEquals(0, batcher.getDroppedCount());
+		assertEquals(2, queue.getPendingCount());
+		
+		sender.error = null;
+		assertEquals(2, queue.drain());
+		assertEquals(0, queue.getPendingCount());
+	}
+	
+	public void testFailedBatchIsKeptWithoutQueue() throws Exception {
+		batcher.setWriteQueue(null);
+		batcher.add(session, newEvent("a"), sender);
+		
+		sender.error = new SocializeException("No network");
+		assertEquals(0, batcher.flushNow());
+		
+		assertEquals(1, batcher.getPendingCount());
+		assertEquals(0, batcher.getDroppedCount());
+		
+		sender.error = null;
+		assertEquals(1, batcher.flushNow());
+	}
+	
+	public void testRejectedBatchIsDropped() throws Exception {
+		batcher.add(session, newEvent("a"), sender);
+		
+		sender.error = new SocializeApiError(400, "Bad request");
+		assertEquals(0, batcher.flushNow());
+		
+		assertEquals(1, batcher.getDroppedCount());
+		assertEquals(0, queue.getPendingCount());
+	}
+	
+	public void testDropWhenFull() throws Exception {
+		batcher.setMaxBuffered(1);
+		
+		assertTrue(batcher.add(session, newEvent("a"), sender));
+		assertFalse(batcher.add(session, newEvent("b"), sender));
+		
+		assertEquals(1, batcher.getBufferedCount());
+		assertEquals(1, batcher.getDroppedCount());
+	}
+	
+	protected SocializeEvent newEvent(String bucket) {
+		SocializeEvent event = new SocializeEvent();
+		event.setBucket(bucket);
+		return event;
+	}
+	
+	static class RecordingSender implements WriteSender {
+		
+		final List<List<Serializable>> batches = new ArrayList<List<Serializable>>();
+		SocializeException error;
+		CountDownLatch latch;
+		
+		@Override
+		public void send(SocializeSession session, String endpoint, List<Serializable> items) throws SocializeException {
+			if(error != null) {
+				throw error;
+			}
+			batches.add(items);
+			if(latch != null) {
+				latch.countDown();
+			}
+		}
+	}
+}
@@ -0,0 +1,204 @@
+/**
+ * 
+ */
+package com.socialize.test.unit;
+
+import com.socialize.cache.FrequencySketch;
+import com.socialize.cache.ICacheEvictionPolicy;
+import com.socialize.cache.LRUEvictionPolicy;
+import com.socialize.cache.TTLCache;
+import com.socialize.cache.TinyLFUEvictionPolicy;
+import com.socialize.test.SocializeUnitTest;
+
+import java.util.Random;
+
+public class EvictionPolicyTest extends SocializeUnitTest {
+
+	public void testSketchCountsAccesses() {
+		FrequencySketch sketch = new FrequencySketch(100);
+		
+		for (int i = 0; i < 5; i++) {
+			sketch.increment("hot");
+		}
+		
+		sketch.increment("cold");
+		
+		assertTrue(sketch.frequency("hot") >= 5);
+		assertTrue(sketch.frequency("cold") >= 1);
+		assertTrue(sketch.frequency("hot") > sketch.frequency("cold"));
+	}
+	
+	public void testSketchAges() {
+		FrequencySketch sketch = new FrequencySketch(16);
+		
+		for (int i = 0; i < 10; i++) {
+			sketch.increment("hot");
+		}
+		
+		int before = sketch.frequency("hot");
+		
+		// Sample size is 10x the expected entries
+		for (int i = 0; i < 160; i++) {
+			sketch.increment("other" + i);
+		}
+		
+		assertTrue(sketch.frequency("hot") < before);
+	}
+	
+	public void testLargeOneOffDoesNotEvictHotObjects() {
+		TTLCache<String, StringCacheable> cache = new TTLCache<String, StringCacheable>(1, 10);
+		cache.setMaxCapacityBytes(10);
+		cache.setEvictionPolicy(new TinyLFUEvictionPolicy<String, StringCacheable>(10));
+		
+		for (int i = 0; i < 3; i++) {
+			cache.get("a");
+			cache.get("b");
+		}
+		
+		cache.put("a", new StringCacheable("aaaaa"));
+		cache.put("b", new StringCacheable("bbbbb"));
+		
+		cache.get("big");
+		
+		assertFalse(cache.put("big", new StringCacheable("0000000000")));
+		assertTrue(cache.exists("a"));
+		assertTrue(cache.exists("b"));
+		
+		cache.destroy();
+	}
+	
+	public void testReplacedObjectIsWeighedAgain() {
+		TTLCache<String, StringCacheable> cache = new TTLCache<String, StringCacheable>(1, 10);
+		cache.setMaxCapacityBytes(10);
+		cache.setEvictionPolicy(new LRUEvictionPolicy<String, StringCacheable>());
+		
+		cache.put("a", new StringCacheable("aaa"));
+		cache.put("b", new StringCacheable("bbb"));
+		
+		// Growing a value past the limit evicts others rather than growing the cache
+		assertTrue(cache.put("b", new StringCacheable("bbbbbbbb")));
+		assertTrue(cache.sizeInBytes() <= 10);
+		assertFalse(cache.exists("a"));
+		assertTrue(cache.exists("b"));
+		
+		cache.destroy();
+	}
+	
+	public void testReplaceRespectsHardLimit() {
+		TTLCache<String, StringCacheable> cache = new TTLCache<String, StringCacheable>(1, 10);
+		cache.setMaxCapacityBytes(10);
+		cache.setHardByteLimit(true);
+		cache.setEvictionPolicy(new LRUEvictionPolicy<String, StringCacheable>());
+		
+		cache.put("a", new StringCacheable("aaaaa"));
+		cache.put("b", new StringCacheable("bbbbb"));
+		
+		assertFalse(cache.put("b", new StringCacheable("bbbbbbb")));
+		assertEquals(10, cache.sizeInBytes());
+		assertEquals("bbbbb", cache.getRaw("b").getValue());
+		
+		cache.destroy();
+	}
+	
+	public void testNewObjectsEnterThroughWindow() {
+		TTLCache<String, StringCacheable> cache = new TTLCache<String, StringCacheable>(1, 10);
+		cache.setEvictionPolicy(new TinyLFUEvictionPolicy<String, StringCacheable>(10));
+		cache.setReapCycle(0);
+		
+		for (int i = 0; i < 10; i++) {
+			cache.put("hot" + i, new StringCacheable("hot"));
+			for (int j = 0; j < 5; j++) {
+				cache.get("hot" + i);
+			}
+		}
+		
+		// A warm cache still takes new objects, they wait in the window
+		assertTrue(cache.put("new", new StringCacheable("new")));
+		assertTrue(cache.exists("new"));
+		
+		for (int i = 0; i < 6; i++) {
+			cache.get("new");
+		}
+		
+		// Pushed out of the window, it is now more popular than the main queue's victim
+		cache.put("other", new StringCacheable("other"));
+		
+		assertTrue(cache.exists("new"));
+		assertEquals(10, cache.size());
+		
+		cache.destroy();
+	}
+	
+	public void testLRUPolicyEvictsOldest() {
+		TTLCache<String, StringCacheable> cache = new TTLCache<String, StringCacheable>(1, 2);
+		cache.setEvictionPolicy(new LRUEvictionPolicy<String, StringCacheable>());
+		
+		cache.put("a", new StringCacheable("a"));
+		
+		try {
+			Thread.sleep(10);
+		} catch (InterruptedException ignore) {}
+		
+		cache.put("b", new StringCacheable("b"));
+		
+		assertTrue(cache.put("c", new StringCacheable("c")));
+		assertEquals(2, cache.size());
+		assertFalse(cache.exists("a"));
+		
+		cache.destroy();
+	}
+	
+	/**
+	 * Replays an avatar/photo trace (small hot objects mixed with large one-off objects) against both policies.
+	 */
+	public void testTraceReplayHitRatio() {
+		long[] lru = replay(new LRUEvictionPolicy<String, StringCacheable>());
+		long[] tinyLFU = replay(new TinyLFUEvictionPolicy<String, StringCacheable>(100));
+		
+		assertEquals(lru[1], tinyLFU[1]);
+		
+		// Same request count, so comparing hits compares hit ratios
+		assertTrue("TinyLFU hits [" + tinyLFU[0] + "] LRU hits [" + lru[0] + "]", tinyLFU[0] >= lru[0]);
+		assertTrue("TinyLFU bytes [" + tinyLFU[2] + "] LRU bytes [" + lru[2] + "]", tinyLFU[2] >= lru[2]);
+	}
+	
+	private long[] replay(ICacheEvictionPolicy<String, StringCacheable> policy) {
+		TTLCache<String, StringCacheable> cache = new TTLCache<String, StringCacheable>(10, 100);
+		cache.setMaxCapacityBytes(2048);
+		cache.setEvictionPolicy(policy);
+		cache.setReapCycle(0);
+		
+		Random random = new Random(42);
+		long hits = 0;
+		long requests = 0;
+		long bytesSaved = 0;
+		
+		for (int i = 0; i < 5000; i++) {
+			String key;
+			int size;
+			
+			if(random.nextInt(4) == 0) {
+				key = "photo" + i;
+				size = 512;
+			}
+			else {
+				key = "avatar" + random.nextInt(40);
+				size = 16;
+			}
+			
+			requests++;
+			
+			if(cache.get(key) != null) {
+				hits++;
+				bytesSaved += size;
+			}
+			else {
+				cache.put(key, new StringCacheable(new String(new char[size])));
+			}
+		}
+		
+		cache.destroy();
+		
+		return new long[]{hits, requests, bytesSaved};
+	}
+}
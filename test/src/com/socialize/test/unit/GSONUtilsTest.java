@@ -26,6 +26,13 @@ import com.socialize.auth.facebook.FacebookAuthProviderInfo;
 import com.socialize.test.SocializeUnitTest;
 import com.socialize.util.GSONUtils;
 
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
  * @author Jason Polites
  *
@@ -129,6 +136,88 @@ public class GSONUtilsTest extends SocializeUnitTest {
 		
 		assertEquals("foobar_appId", infoAfter.getAppId());
 	}
+	
+	public void testSerializeDeserializeWithStreams() {
+		GSONUtils gsonUtils = new GSONUtils();
+		gsonUtils.init();
+		
+		DefaultUserProviderCredentials data = new DefaultUserProviderCredentials();
+		data.setAccessToken("foobar_token");
+		data.setUserId("foobar_user_id");
+		
+		StringWriter writer = new StringWriter();
+		gsonUtils.toJSON(data, writer);
 		
+		assertEquals(gsonUtils.toJSON(data), writer.toString());
+		
+		UserProviderCredentials userAuthData = gsonUtils.fromJSON(new StringReader(writer.toString()), UserProviderCredentials.class);
+		
+		assertNotNull(userAuthData);
+		assertEquals("foobar_token", userAuthData.getAccessToken());
+		assertEquals("foobar_user_id", userAuthData.getUserId());
+	}
 	
+	public void testNullAndEmpty() {
+		GSONUtils gsonUtils = new GSONUtils();
+		gsonUtils.init();
+		
+		assertEquals("null", gsonUtils.toJSON(null));
+		assertNull(gsonUtils.fromJSON((String) null, UserProviderCredentials.class));
+		assertNull(gsonUtils.fromJSON("", UserProviderCredentials.class));
+	}
+	
+	public void testConcurrentSerialization() throws Exception {
+		final GSONUtils gsonUtils = new GSONUtils();
+		gsonUtils.init();
+		
+		final int threads = 8;
+		final int iterations = 200;
+		
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+		final AtomicInteger completed = new AtomicInteger();
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		
+		for (int t = 0; t < threads; t++) {
+			final int thread = t;
+			new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int i = 0; i < iterations; i++) {
+							DefaultUserProviderCredentialsMap map = new DefaultUserProviderCredentialsMap();
+							DefaultUserProviderCredentials data = new DefaultUserProviderCredentials();
+							data.setAccessToken("token_" + thread + "_" + i);
+							data.setUserId("user_" + thread);
+							data.setAuthProviderInfo(new SocializeAuthProviderInfo());
+							map.put(AuthProviderType.SOCIALIZE, data);
+							
+							String json = gsonUtils.toJSON(map);
+							DefaultUserProviderCredentialsMap after = gsonUtils.fromJSON(json, DefaultUserProviderCredentialsMap.class);
+							
+							assertEquals("token_" + thread + "_" + i, after.get(AuthProviderType.SOCIALIZE).getAccessToken());
+							completed.incrementAndGet();
+						}
+					}
+					catch (Throwable e) {
+						failure.compareAndSet(null, e);
+					}
+					finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		
+		start.countDown();
+		
+		assertTrue(done.await(60, TimeUnit.SECONDS));
+		
+		if(failure.get() != null) {
+			throw new Exception(failure.get());
+		}
+		
+		assertEquals(threads * iterations, completed.get());
+	}
 }
@@ -36,6 +36,8 @@ import org.mockito.Mockito;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
+import java.util.Arrays;
 
 /**
  * @author Jason Polites
@@ -51,6 +53,51 @@ public class IOUtilsTest extends SocializeUnitTest {
 		assertEquals(text, read);
 	}
 
+	public void testIOUtilsReadWithContentLength() throws IOException {
+		String text = "Stra\u00dfe caf\u00e9 r\u00e9sum\u00e9 na\u00efve";
+		byte[] bytes = text.getBytes("UTF-8");
+		IOUtils utils = new IOUtils();
+		
+		// Exact, understated and overstated lengths must all yield the full stream
+		assertEquals(text, utils.read(new ByteArrayInputStream(bytes), bytes.length));
+		assertEquals(text, utils.read(new ByteArrayInputStream(bytes), 5));
+		assertEquals(text, utils.read(new ByteArrayInputStream(bytes), bytes.length + 100));
+		assertEquals(text, utils.read(new ByteArrayInputStream(bytes), -1));
+	}
+	
+	public void testIOUtilsReadBytesReusesPooledBuffer() throws IOException {
+		IOUtils utils = new IOUtils();
+		
+		byte[] large = new byte[20 * 1024];
+		for (int i = 0; i < large.length; i++) {
+			large[i] = (byte) i;
+		}
+		
+		byte[] small = new byte[] {1, 2, 3};
+		
+		byte[] readLarge = utils.readBytes(new ByteArrayInputStream(large));
+		byte[] readSmall = utils.readBytes(new ByteArrayInputStream(small));
+		
+		// A pooled buffer left over from the large read must not leak trailing bytes into the small one
+		assertTrue(Arrays.equals(large, readLarge));
+		assertTrue(Arrays.equals(small, readSmall));
+		assertTrue(Arrays.equals(large, utils.readBytes(new ByteArrayInputStream(large), large.length)));
+	}
+	
+	public void testIOUtilsReader() throws IOException {
+		String text = "{\"text\":\"caf\u00e9\"}";
+		IOUtils utils = new IOUtils();
+		Reader reader = utils.reader(new ByteArrayInputStream(text.getBytes("UTF-8")));
+		
+		StringBuilder builder = new StringBuilder();
+		int c;
+		while((c = reader.read()) >= 0) {
+			builder.append((char) c);
+		}
+		
+		assertEquals(text, builder.toString());
+	}
+
 	public void testIOReadSafe() {
 		InputStream in = Mockito.mock(InputStream.class);
 
@@ -0,0 +1,198 @@
+/**
+ * 
+ */
+package com.socialize.test.unit;
+
+import com.socialize.test.SocializeUnitTest;
+import com.socialize.ui.image.ImageLoadAsyncTask;
+import com.socialize.ui.image.ImageLoadListener;
+import com.socialize.ui.image.ImageLoadPriority;
+import com.socialize.ui.image.ImageLoadRequest;
+import com.socialize.ui.image.ImageUrlLoader;
+import com.socialize.util.CacheableDrawable;
+import com.socialize.util.SafeBitmapDrawable;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ImageLoadAsyncTaskTest extends SocializeUnitTest {
+	
+	private ExposedTask task;
+	private final List<String> loaded = new ArrayList<String>();
+	private final CountDownLatch firstStarted = new CountDownLatch(1);
+	private final CountDownLatch gate = new CountDownLatch(1);
+	
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		
+		final CacheableDrawable drawable = Mockito.mock(CacheableDrawable.class);
+		
+		ImageUrlLoader loader = new ImageUrlLoader() {
+			@Override
+			public byte[] downloadImage(String url) {
+				if(url.equals("first")) {
+					// Hold the only fetch thread so everything else queues up
+					firstStarted.countDown();
+					try {
+						gate.await(10, TimeUnit.SECONDS);
+					}
+					catch (InterruptedException ignore) {}
+				}
+				return new byte[]{1};
+			}
+
+			@Override
+			public CacheableDrawable loadImageFromBytes(String url, byte[] data, int width, int height) {
+				return drawable;
+			}
+		};
+		
+		task = new ExposedTask();
+		task.setFetchThreads(1);
+		task.setDecodeThreads(1);
+		task.setImageUrlLoader(loader);
+		task.start();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		gate.countDown();
+		task.finish();
+		super.tearDown();
+	}
+	
+	public void testVisibleNewestLoadedFirst() throws Exception {
+		CountDownLatch latch = new CountDownLatch(5);
+		
+		task.enqueue(makeRequest("first", ImageLoadPriority.VISIBLE, latch));
+		assertTrue(firstStarted.await(10, TimeUnit.SECONDS));
+		
+		task.enqueue(makeRequest("prefetch", ImageLoadPriority.PREFETCH, latch));
+		task.enqueue(makeRequest("old", ImageLoadPriority.VISIBLE, latch));
+		task.enqueue(makeRequest("new", ImageLoadPriority.VISIBLE, latch));
+		task.enqueue(makeRequest("prefetch2", ImageLoadPriority.PREFETCH, latch));
+		
+		gate.countDown();
+		
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		
+		// Decoding is also newest first so "first" may finish anywhere
+		loaded.remove("first");
+		
+		assertEquals("new", loaded.get(0));
+		assertEquals("old", loaded.get(1));
+		assertEquals("prefetch2", loaded.get(2));
+		assertEquals("prefetch", loaded.get(3));
+		
+		// Stats are recorded after listeners are notified
+		Thread.sleep(100);
+		
+		assertEquals(5, task.getFetchStats().getProcessed());
+		assertEquals(5, task.getDecodeStats().getProcessed());
+	}
+	
+	public void testMergedRequestNotifiesAllListeners() throws Exception {
+		CountDownLatch latch = new CountDownLatch(2);
+		
+		task.enqueue(makeRequest("first", ImageLoadPriority.VISIBLE, latch));
+		assertTrue(firstStarted.await(10, TimeUnit.SECONDS));
+		
+		task.enqueue(makeRequest("first", ImageLoadPriority.VISIBLE, latch));
+		gate.countDown();
+		
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		Thread.sleep(100);
+		
+		assertEquals(2, loaded.size());
+		assertEquals(1, task.getFetchStats().getProcessed());
+	}
+	
+	public void testCancelLastListenerCancelsLoad() throws Exception {
+		CountDownLatch latch = new CountDownLatch(1);
+		
+		task.enqueue(makeRequest("first", ImageLoadPriority.VISIBLE, latch));
+		assertTrue(firstStarted.await(10, TimeUnit.SECONDS));
+		
+		ImageLoadRequest scrolled = makeRequest("scrolled", ImageLoadPriority.VISIBLE, null);
+		task.enqueue(scrolled);
+		task.cancel("scrolled", scrolled.getListeners().peek());
+		
+		gate.countDown();
+		
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		Thread.sleep(100);
+		
+		assertTrue(scrolled.isCanceled());
+		assertFalse(loaded.contains("scrolled"));
+		assertTrue(task.isEmpty());
+	}
+	
+	public void testCancelKeepsPrefetch() throws Exception {
+		task.enqueue(makeRequest("first", ImageLoadPriority.VISIBLE, null));
+		assertTrue(firstStarted.await(10, TimeUnit.SECONDS));
+		
+		ImageLoadRequest prefetch = new ImageLoadRequest();
+		prefetch.setUrl("prefetch");
+		prefetch.setPriority(ImageLoadPriority.PREFETCH);
+		prefetch.setPrefetch(true);
+		task.enqueue(prefetch);
+		
+		// A row shows the same image then scrolls away
+		ImageLoadRequest row = makeRequest("prefetch", ImageLoadPriority.VISIBLE, null);
+		task.enqueue(row);
+		task.cancel("prefetch", row.getListeners().peek());
+		
+		assertFalse(prefetch.isCanceled());
+		assertTrue(task.isLoading("prefetch"));
+	}
+	
+	public void testStaleRequestKeepsNewerMapping() throws Exception {
+		task.enqueue(makeRequest("first", ImageLoadPriority.VISIBLE, null));
+		assertTrue(firstStarted.await(10, TimeUnit.SECONDS));
+		
+		ImageLoadRequest stale = makeRequest("image", ImageLoadPriority.VISIBLE, null);
+		task.enqueue(stale);
+		task.cancel("image", stale.getListeners().peek());
+		assertTrue(stale.isCanceled());
+		
+		ImageLoadRequest fresh = makeRequest("image", ImageLoadPriority.VISIBLE, null);
+		task.enqueue(fresh);
+		
+		// The stale request finishing must not drop the mapping of the fresh one
+		task.canceled(stale);
+		assertTrue(task.isLoading("image"));
+	}
+	
+	private ImageLoadRequest makeRequest(String url, ImageLoadPriority priority, final CountDownLatch latch) {
+		ImageLoadRequest request = new ImageLoadRequest();
+		request.setUrl(url);
+		request.setPriority(priority);
+		request.addListener(new ImageLoadListener() {
+			@Override
+			public void onImageLoad(ImageLoadRequest request, SafeBitmapDrawable drawable) {
+				synchronized (loaded) {
+					loaded.add(request.getUrl());
+				}
+				if(latch != null) {
+					latch.countDown();
+				}
+			}
+			
+			@Override
+			public void onImageLoadFail(ImageLoadRequest request, Exception error) {
+				fail(error.getMessage());
+			}
+		});
+		return request;
+	}
+	
+	static class ExposedTask extends ImageLoadAsyncTask {
+		void canceled(ImageLoadRequest request) {
+			onCanceled(request);
+		}
+	}
+}
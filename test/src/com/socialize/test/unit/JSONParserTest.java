@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.test.unit;
+
+import com.socialize.google.gson.stream.JsonReader;
+import com.socialize.test.SocializeUnitTest;
+import com.socialize.util.JSONParser;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.StringReader;
+
+public class JSONParserTest extends SocializeUnitTest {
+
+	public void testReadObjectMatchesTreeParse() throws Exception {
+		String json = "{\"id\":12,\"big\":9876543210,\"ratio\":0.5,\"flag\":true,\"text\":\"foo\",\"none\":null," +
+				"\"user\":{\"id\":3,\"tags\":[\"a\",\"b\"]}}";
+		
+		JSONParser parser = new JSONParser();
+		JSONObject streamed = parser.readObject(new JsonReader(new StringReader(json)));
+		JSONObject parsed = parser.parseObject(json);
+		
+		assertEquals(parsed.getInt("id"), streamed.getInt("id"));
+		assertEquals(parsed.getLong("big"), streamed.getLong("big"));
+		assertEquals(parsed.getDouble("ratio"), streamed.getDouble("ratio"));
+		assertEquals(parsed.getBoolean("flag"), streamed.getBoolean("flag"));
+		assertEquals(parsed.getString("text"), streamed.getString("text"));
+		assertTrue(streamed.isNull("none"));
+		
+		JSONObject user = streamed.getJSONObject("user");
+		JSONArray tags = user.getJSONArray("tags");
+		
+		assertEquals(3, user.getInt("id"));
+		assertEquals(2, tags.length());
+		assertEquals("b", tags.getString(1));
+	}
+	
+	public void testParseObjectFromReader() throws Exception {
+		String json = "{\"id\":12,\"user\":{\"id\":3}}";
+		String array = "[{\"id\":1},{\"id\":2}]";
+		
+		JSONParser parser = new JSONParser();
+		
+		JSONObject object = parser.parseObject(new StringReader(json));
+		assertEquals(12, object.getInt("id"));
+		assertEquals(3, object.getJSONObject("user").getInt("id"));
+		
+		// Bare arrays are wrapped the same way as parseObject(String)
+		JSONArray data = parser.parseObject(new StringReader(array)).getJSONArray("data");
+		assertEquals(2, data.length());
+		assertEquals(2, data.getJSONObject(1).getInt("id"));
+	}
+	
+	public void testStreamedListMatchesTreeParse() throws Exception {
+		StringBuilder builder = new StringBuilder("{\"total_count\":500,\"items\":[");
+		for (int i = 0; i < 500; i++) {
+			if(i > 0) {
+				builder.append(',');
+			}
+			builder.append("{\"id\":").append(i).append(",\"text\":\"comment ").append(i).append("\",\"date\":\"2012-01-01T00:00:00+0000\"}");
+		}
+		builder.append("]}");
+		String json = builder.toString();
+		
+		JSONParser parser = new JSONParser();
+		JSONArray items = parser.parseObject(json).getJSONArray("items");
+		
+		JsonReader reader = new JsonReader(new StringReader(json));
+		reader.beginObject();
+		
+		int count = 0;
+		
+		while(reader.hasNext()) {
+			String name = reader.nextName();
+			if(name.equals("items")) {
+				reader.beginArray();
+				while(reader.hasNext()) {
+					JSONObject item = parser.readObject(reader);
+					assertEquals(items.getJSONObject(count).getLong("id"), item.getLong("id"));
+					assertEquals(items.getJSONObject(count).getString("text"), item.getString("text"));
+					count++;
+				}
+				reader.endArray();
+			}
+			else {
+				assertEquals(500, reader.nextInt());
+			}
+		}
+		
+		reader.endObject();
+		
+		assertEquals(500, count);
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.test.unit;
+
+import com.socialize.entity.Comment;
+import com.socialize.test.SocializeUnitTest;
+import com.socialize.ui.comment.CommentPager;
+import com.socialize.util.ListMerger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ListMergerTest extends SocializeUnitTest {
+	
+	public void testNewItemsInsertedAbove() {
+		List<Comment> current = newComments(5, 4, 3, 2, 1);
+		Comment five = current.get(0);
+		
+		ListMerger.Result result = ListMerger.merge(current, newComments(7, 6, 5, 4, 3));
+		
+		assertTrue(result.isChanged());
+		assertFalse(result.isReplaced());
+		assertEquals(2, result.getInserted());
+		assertEquals(2, result.getInsertedAbove());
+		assertEquals(0, result.getRemoved());
+		assertIds(current, 7, 6, 5, 4, 3, 2, 1);
+		
+		// Existing instances are kept
+		assertSame(five, current.get(2));
+	}
+	
+	public void testUnchanged() {
+		List<Comment> current = newComments(5, 4, 3, 2, 1);
+		
+		ListMerger.Result result = ListMerger.merge(current, newComments(5, 4, 3));
+		
+		assertFalse(result.isChanged());
+		assertIds(current, 5, 4, 3, 2, 1);
+	}
+	
+	public void testDeletedAndInsertedWithinRange() {
+		List<Comment> current = newComments(9, 6, 5, 3, 1);
+		
+		// 6 was deleted, 4 was missing locally
+		ListMerger.Result result = ListMerger.merge(current, newComments(10, 9, 5, 4, 3));
+		
+		assertEquals(2, result.getInserted());
+		assertEquals(1, result.getInsertedAbove());
+		assertEquals(1, result.getRemoved());
+		assertIds(current, 10, 9, 5, 4, 3, 1);
+	}
+	
+	public void testGapReplaces() {
+		List<Comment> current = newComments(3, 2, 1);
+		
+		ListMerger.Result result = ListMerger.merge(current, newComments(9, 8, 7));
+		
+		assertTrue(result.isReplaced());
+		assertIds(current, 9, 8, 7);
+	}
+	
+	public void testLocalItemsKeptAtTop() {
+		List<Comment> current = newComments(3, 2, 1);
+		Comment queued = new Comment();
+		current.add(0, queued);
+		
+		ListMerger.Result result = ListMerger.merge(current, newComments(5, 4, 3, 2));
+		
+		assertFalse(result.isReplaced());
+		assertEquals(2, result.getInsertedAbove());
+		assertEquals(6, current.size());
+		assertSame(queued, current.get(0));
+		assertIds(current.subList(1, current.size()), 5, 4, 3, 2, 1);
+		
+		// A gap still keeps the local item
+		result = ListMerger.merge(current, newComments(9, 8));
+		
+		assertTrue(result.isReplaced());
+		assertSame(queued, current.get(0));
+		assertIds(current.subList(1, current.size()), 9, 8);
+	}
+	
+	public void testEmptyCurrent() {
+		List<Comment> current = new ArrayList<Comment>();
+		
+		ListMerger.Result result = ListMerger.merge(current, newComments(2, 1));
+		
+		assertTrue(result.isReplaced());
+		assertIds(current, 2, 1);
+		
+		current.clear();
+		assertFalse(ListMerger.merge(current, new ArrayList<Comment>()).isChanged());
+	}
+	
+	public void testMergeIntoPager() {
+		CommentPager pager = new CommentPager();
+		pager.addPage(newComments(5, 4, 3));
+		pager.addPage(newComments(2, 1));
+		
+		ListMerger.Result result = ListMerger.merge(pager, newComments(6, 5, 3));
+		
+		assertEquals(1, result.getInsertedAbove());
+		assertEquals(1, result.getRemoved());
+		assertIds(pager, 6, 5, 3, 2, 1);
+		assertEquals(2, pager.getPageCount());
+	}
+	
+	private void assertIds(List<Comment> comments, long...ids) {
+		assertEquals(ids.length, comments.size());
+		for (int i = 0; i < ids.length; i++) {
+			assertEquals(ids[i], comments.get(i).getId().longValue());
+		}
+	}
+	
+	private List<Comment> newComments(long...ids) {
+		List<Comment> comments = new ArrayList<Comment>(ids.length);
+		for (long id : ids) {
+			Comment comment = new Comment();
+			comment.setId(id);
+			comments.add(comment);
+		}
+		return comments;
+	}
+}
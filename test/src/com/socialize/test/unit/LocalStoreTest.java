@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.test.unit;
+
+import com.socialize.api.action.ActionType;
+import com.socialize.api.action.comment.CommentSystem;
+import com.socialize.api.action.like.LikeSystem;
+import com.socialize.cache.LocalStore;
+import com.socialize.entity.*;
+import com.socialize.test.SocializeUnitTest;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LocalStoreTest extends SocializeUnitTest {
+	
+	static final String DATABASE = "socialize_store_test.db";
+	static final String KEY = "http://getsocialize.com";
+	
+	private LocalStore store;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		
+		UserFactory userFactory = new UserFactory();
+		userFactory.setStatsFactory(new StatsFactory());
+		userFactory.setUserAuthDataFactory(new UserAuthDataFactory());
+		
+		CommentFactory commentFactory = new CommentFactory();
+		commentFactory.setUserFactory(userFactory);
+		commentFactory.setEntityFactory(new EntityFactory());
+		commentFactory.setApplicationFactory(new ApplicationFactory());
+		
+		LikeFactory likeFactory = new LikeFactory();
+		likeFactory.setUserFactory(userFactory);
+		likeFactory.setEntityFactory(new EntityFactory());
+		likeFactory.setApplicationFactory(new ApplicationFactory());
+		
+		store = new LocalStore();
+		store.setDatabaseName(DATABASE);
+		store.setEntityFactory(new EntityFactory());
+		store.setUserFactory(userFactory);
+		store.setCommentFactory(commentFactory);
+		store.setLikeFactory(likeFactory);
+		store.init(getContext());
+		store.clear();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		store.destroy();
+		getContext().deleteDatabase(DATABASE);
+		super.tearDown();
+	}
+	
+	public void testEntityWithStats() throws Exception {
+		assertNull(store.getEntity(KEY));
+		
+		store.put(newEntity(KEY, 10, 3));
+		
+		Entity entity = store.getEntity(KEY);
+		
+		assertNotNull(entity);
+		assertEquals("Socialize", entity.getName());
+		assertEquals(10, entity.getEntityStats().getComments().intValue());
+		assertEquals(3, entity.getEntityStats().getLikes().intValue());
+	}
+	
+	public void testNestedEntityKeepsStats() throws Exception {
+		store.put(newEntity(KEY, 10, 3));
+		
+		// Entities inside actions do not carry stats
+		store.put(newComment(1, 99, KEY));
+		
+		assertEquals(10, store.getEntity(KEY).getEntityStats().getComments().intValue());
+	}
+	
+	public void testActionsByEntityAndUser() throws Exception {
+		List<Comment> comments = new ArrayList<Comment>();
+		comments.add(newComment(1, 99, KEY));
+		comments.add(newComment(3, 98, KEY));
+		comments.add(newComment(2, 99, "other"));
+		
+		store.putAll(comments);
+		
+		assertIds(store.getComments(KEY, 0, 10), 3, 1);
+		assertIds(store.getComments(KEY, 1, 2), 1);
+		assertIds(store.<Comment>getActionsByUser(ActionType.COMMENT, 99, 0, 10), 2, 1);
+		
+		User user = store.getUser(99);
+		assertNotNull(user);
+		assertEquals("User 99", user.getFirstName());
+		
+		Comment comment = store.getComments(KEY, 0, 1).get(0);
+		assertEquals("Comment 3", comment.getText());
+		assertEquals(KEY, comment.getEntityKey());
+		assertEquals(98, comment.getUser().getId().longValue());
+	}
+	
+	public void testLikeForUser() throws Exception {
+		Like like = new Like();
+		like.setId(5L);
+		like.setEntity(Entity.newInstance(KEY, "Socialize"));
+		like.setUser(newUser(99));
+		
+		store.put(like);
+		
+		assertNotNull(store.getLike(KEY, 99));
+		assertNull(store.getLike(KEY, 98));
+		
+		store.remove(LikeSystem.ENDPOINT, "5");
+		
+		assertNull(store.getLike(KEY, 99));
+	}
+	
+	public void testReconcilePartialPage() throws Exception {
+		List<Comment> comments = new ArrayList<Comment>();
+		for (int i = 1; i <= 6; i++) {
+			comments.add(newComment(i, 99, KEY));
+		}
+		store.putAll(comments);
+		
+		// 5 was deleted on the server and 7 was added.  Ids below the page are untouched.
+		List<Comment> page = new ArrayList<Comment>();
+		page.add(newComment(7, 99, KEY));
+		page.add(newComment(6, 99, KEY));
+		page.add(newComment(4, 99, KEY));
+		
+		store.reconcile(CommentSystem.ENDPOINT, KEY, page, false);
+		
+		assertIds(store.getComments(KEY, 0, 10), 7, 6, 4, 3, 2, 1);
+	}
+	
+	public void testReconcileCompletePage() throws Exception {
+		List<Comment> comments = new ArrayList<Comment>();
+		comments.add(newComment(1, 99, KEY));
+		comments.add(newComment(2, 99, KEY));
+		comments.add(newComment(3, 99, "other"));
+		store.putAll(comments);
+		
+		List<Comment> page = new ArrayList<Comment>();
+		page.add(newComment(2, 99, KEY));
+		
+		store.reconcile(CommentSystem.ENDPOINT, KEY, page, true);
+		
+		assertIds(store.getComments(KEY, 0, 10), 2);
+		assertIds(store.getComments("other", 0, 10), 3);
+		
+		store.reconcile(CommentSystem.ENDPOINT, KEY, new ArrayList<Comment>(), true);
+		
+		assertIds(store.getComments(KEY, 0, 10));
+	}
+	
+	public void testWarmedOnInit() {
+		// Without an executor the store is opened inline.
+		assertTrue(store.isWarm());
+		
+		store.destroy();
+		assertFalse(store.isWarm());
+		
+		store.init(getContext());
+		assertTrue(store.isWarm());
+	}
+	
+	public void testRepeatedReadsReturnStoredRows() throws Exception {
+		store.put(newEntity(KEY, 10, 3));
+		
+		List<Comment> comments = new ArrayList<Comment>();
+		for (int i = 1; i <= 200; i++) {
+			comments.add(newComment(i, i % 10, KEY));
+		}
+		store.putAll(comments);
+		
+		// What the action bar and comment list read before the first frame
+		for (int i = 0; i < 20; i++) {
+			assertNotNull(store.getEntity(KEY));
+			assertEquals(20, store.getComments(KEY, 0, 20).size());
+		}
+	}
+	
+	private void assertIds(List<? extends SocializeObject> items, long...ids) {
+		assertNotNull(items);
+		assertEquals(ids.length, items.size());
+		for (int i = 0; i < ids.length; i++) {
+			assertEquals(ids[i], items.get(i).getId().longValue());
+		}
+	}
+	
+	private Entity newEntity(String key, int comments, int likes) throws Exception {
+		JSONObject json = new JSONObject();
+		json.put("key", key);
+		json.put("name", "Socialize");
+		json.put("comments", comments);
+		json.put("likes", likes);
+		json.put("total_activity", comments + likes);
+		return new EntityFactory().fromJSON(json);
+	}
+	
+	private User newUser(long id) {
+		User user = new User();
+		user.setId(id);
+		user.setFirstName("User " + id);
+		return user;
+	}
+	
+	private Comment newComment(long id, long userId, String key) {
+		Comment comment = new Comment();
+		comment.setId(id);
+		comment.setText("Comment " + id);
+		comment.setDate(System.currentTimeMillis());
+		comment.setEntity(Entity.newInstance(key, "Socialize"));
+		comment.setUser(newUser(userId));
+		return comment;
+	}
+}
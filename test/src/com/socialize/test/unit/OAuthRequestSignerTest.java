@@ -70,5 +70,25 @@ public class OAuthRequestSignerTest extends SocializeUnitTest {
         Mockito.verify(consumer).setSigningStrategy(strategy);
         Mockito.verify(consumer).setTokenWithSecret(token, tokensecret);
 	}
+	
+	public void testConsumerIsReusedForSameKey() throws Exception {
+		OAuthConsumerFactory factory = Mockito.mock(OAuthConsumerFactory.class);
+		OAuthConsumer consumer = Mockito.mock(OAuthConsumer.class);
+		SigningStrategy strategy = Mockito.mock(SigningStrategy.class);
+		HttpUriRequest request = Mockito.mock(HttpUriRequest.class);
+		
+		Mockito.when(factory.createConsumer("foo", "bar")).thenReturn(consumer);
+		Mockito.when(consumer.getConsumerKey()).thenReturn("foo");
+		Mockito.when(consumer.getConsumerSecret()).thenReturn("bar");
+		
+		DefaultOauthRequestSigner signer = new DefaultOauthRequestSigner(factory, strategy);
+		
+		signer.sign("foo", "bar", "token0", "secret0", request, null);
+		signer.sign("foo", "bar", "token1", "secret1", request, null);
+		
+		Mockito.verify(factory, Mockito.times(1)).createConsumer("foo", "bar");
+		Mockito.verify(consumer).setTokenWithSecret("token0", "secret0");
+		Mockito.verify(consumer).setTokenWithSecret("token1", "secret1");
+	}
 
 }
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.test.unit;
+
+import com.socialize.google.gdata.util.common.base.PercentEscaper;
+import com.socialize.oauth.signpost.OAuth;
+import com.socialize.oauth.signpost.basic.UrlStringRequestAdapter;
+import com.socialize.oauth.signpost.http.HttpParameters;
+import com.socialize.oauth.signpost.signature.HmacSha1MessageSigner;
+import com.socialize.oauth.signpost.signature.SignatureBaseString;
+import com.socialize.test.SocializeUnitTest;
+
+/**
+ * Checks the signing engine against the OAuth 1.0 spec example (Appendix A.5) and the original string based implementation.
+ */
+public class OAuthSignatureTest extends SocializeUnitTest {
+	
+	static final String SPEC_URL = "http://photos.example.net/photos?file=vacation.jpg&size=original";
+	
+	static final String SPEC_SBS = "GET&http%3A%2F%2Fphotos.example.net%2Fphotos&file%3Dvacation.jpg%26oauth_consumer_key%3Ddpf43f3p2l4k3l03%26oauth_nonce%3Dkllo9940pd9333jh%26oauth_signature_method%3DHMAC-SHA1%26oauth_timestamp%3D1191242096%26oauth_token%3Dnnch734d00sl2jdk%26oauth_version%3D1.0%26size%3Doriginal";
+	
+	static final String SPEC_SIGNATURE = "tR3+Ty81lMeYAr/Fid0kMTYa/WM=";
+	
+	static final String[] STRINGS = {
+		"", 
+		"abcXYZ019-._~", 
+		"hello world", 
+		"a+b=c&d/e?f#g%h*i'j!k(l)m", 
+		"caf\u00e9 \u00fcber", 
+		"\u65e5\u672c\u8a9e", 
+		"\ud83d\ude00 smile",
+		"http://www.example.com/path?x=1&y=2"
+	};
+	
+	public void testPercentEncodeMatchesEscaper() {
+		PercentEscaper escaper = new PercentEscaper("-._~", false);
+		for (String s : STRINGS) {
+			assertEquals(escaper.escape(s), OAuth.percentEncode(s));
+			assertEquals(escaper.escape(s), OAuth.percentEncode(s, new StringBuilder(), 1).toString());
+			assertEquals(escaper.escape(escaper.escape(s)), OAuth.percentEncode(s, new StringBuilder(), 2).toString());
+		}
+	}
+	
+	public void testPercentEncodeUnpairedSurrogate() {
+		try {
+			OAuth.percentEncode("bad\ud83d");
+			fail();
+		}
+		catch (IllegalArgumentException expected) {}
+	}
+	
+	public void testSignatureBaseStringSpecVector() throws Exception {
+		assertEquals(SPEC_SBS, new SignatureBaseString(new UrlStringRequestAdapter(SPEC_URL), newSpecParameters()).generate());
+	}
+	
+	public void testSignatureBaseStringMatchesLegacy() throws Exception {
+		HttpParameters params = newSpecParameters();
+		for (String s : STRINGS) {
+			params.put("p" + s.length(), s, true);
+			params.put("multi", s, true);
+		}
+		params.put("unencoded key", "value", false);
+		params.put("realm", "ignored", true);
+		
+		String url = "HTTP://WWW.Example.com:80/some%20path/?q=1";
+		SignatureBaseString sbs = new SignatureBaseString(new UrlStringRequestAdapter(url), params);
+		
+		PercentEscaper escaper = new PercentEscaper("-._~", false);
+		String legacy = "GET&" + escaper.escape(sbs.normalizeRequestUrl()) + '&' + escaper.escape(sbs.normalizeRequestParameters());
+		
+		assertEquals(legacy, sbs.generate());
+		
+		// Second pass hits the cached normalized URL.
+		assertEquals(legacy, sbs.generate());
+	}
+	
+	public void testHmacSha1SpecVector() throws Exception {
+		assertEquals(SPEC_SIGNATURE, sign("kd94hf93k423kf44", "pfkkdhi9sl3r4s00"));
+		
+		// Switching keys and back must not leak the cached Mac of another key.
+		String other = sign("other", "secret");
+		assertFalse(SPEC_SIGNATURE.equals(other));
+		assertEquals(SPEC_SIGNATURE, sign("kd94hf93k423kf44", "pfkkdhi9sl3r4s00"));
+		assertEquals(other, sign("other", "secret"));
+	}
+	
+	public void testHmacSha1AcrossThreads() throws Exception {
+		final String[] result = new String[1];
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					result[0] = sign("kd94hf93k423kf44", "pfkkdhi9sl3r4s00");
+				}
+				catch (Exception e) {
+					result[0] = e.getMessage();
+				}
+			}
+		};
+		thread.start();
+		thread.join();
+		assertEquals(SPEC_SIGNATURE, result[0]);
+	}
+	
+	protected String sign(String consumerSecret, String tokenSecret) throws Exception {
+		HmacSha1MessageSigner signer = new HmacSha1MessageSigner();
+		signer.setConsumerSecret(consumerSecret);
+		signer.setTokenSecret(tokenSecret);
+		return signer.sign(new UrlStringRequestAdapter(SPEC_URL), newSpecParameters());
+	}
+	
+	protected HttpParameters newSpecParameters() {
+		HttpParameters params = new HttpParameters();
+		params.put("file", "vacation.jpg", true);
+		params.put("size", "original", true);
+		params.put(OAuth.OAUTH_CONSUMER_KEY, "dpf43f3p2l4k3l03", true);
+		params.put(OAuth.OAUTH_TOKEN, "nnch734d00sl2jdk", true);
+		params.put(OAuth.OAUTH_SIGNATURE_METHOD, "HMAC-SHA1", true);
+		params.put(OAuth.OAUTH_TIMESTAMP, "1191242096", true);
+		params.put(OAuth.OAUTH_NONCE, "kllo9940pd9333jh", true);
+		params.put(OAuth.OAUTH_VERSION, "1.0", true);
+		return params;
+	}
+}
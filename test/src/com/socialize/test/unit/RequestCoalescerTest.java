@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.test.unit;
+
+import com.socialize.api.SocializeApi.RequestType;
+import com.socialize.api.SocializeGetRequest;
+import com.socialize.concurrent.RequestCoalescer;
+import com.socialize.test.SocializeUnitTest;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class RequestCoalescerTest extends SocializeUnitTest {
+
+	public void testFollowersJoinLeader() {
+		RequestCoalescer<String, String> coalescer = new RequestCoalescer<String, String>();
+		
+		assertTrue(coalescer.join("a", "leader"));
+		assertFalse(coalescer.join("a", "follower0"));
+		assertFalse(coalescer.join("a", "follower1"));
+		assertTrue(coalescer.join("b", "other"));
+		
+		assertEquals(2, coalescer.size());
+		
+		List<String> followers = coalescer.land("a");
+		
+		assertEquals(2, followers.size());
+		assertEquals("follower0", followers.get(0));
+		assertEquals("follower1", followers.get(1));
+		
+		assertFalse(coalescer.isInFlight("a"));
+		assertTrue(coalescer.isInFlight("b"));
+		
+		// A request after landing starts a new flight.
+		assertTrue(coalescer.join("a", "next"));
+	}
+	
+	public void testLandWithoutFlight() {
+		RequestCoalescer<String, String> coalescer = new RequestCoalescer<String, String>();
+		List<String> followers = coalescer.land("a");
+		assertNotNull(followers);
+		assertTrue(followers.isEmpty());
+	}
+	
+	public void testGetRequestIdentity() {
+		SocializeGetRequest a = newRequest("foo");
+		SocializeGetRequest b = newRequest("foo");
+		SocializeGetRequest c = newRequest("bar");
+		
+		assertEquals(a, b);
+		assertEquals(a.hashCode(), b.hashCode());
+		assertFalse(a.equals(c));
+		
+		b.setStartIndex(10);
+		assertFalse(a.equals(b));
+	}
+	
+	protected SocializeGetRequest newRequest(String param) {
+		Map<String, String> params = new HashMap<String, String>();
+		params.put("sort", param);
+		
+		SocializeGetRequest request = new SocializeGetRequest();
+		request.setRequestType(RequestType.LIST);
+		request.setEndpoint("/comment/");
+		request.setKey("http://www.example.com");
+		request.setIds("1", "2");
+		request.setExtraParams(params);
+		return request;
+	}
+}
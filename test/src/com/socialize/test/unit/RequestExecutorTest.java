@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.test.unit;
+
+import com.socialize.api.SocializeApi.RequestType;
+import com.socialize.concurrent.RequestExecutor;
+import com.socialize.concurrent.RequestExecutor.Lane;
+import com.socialize.test.SocializeUnitTest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RequestExecutorTest extends SocializeUnitTest {
+	
+	private RequestExecutor executor;
+	
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		executor = new RequestExecutor();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		executor.destroy();
+		super.tearDown();
+	}
+
+	public void testWritesRunAheadOfReadsAndBackground() throws Exception {
+		executor.setThreads(1);
+		
+		CountDownLatch gate = block("/gate/");
+		
+		final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+		final CountDownLatch done = new CountDownLatch(3);
+		
+		executor.execute(record("background", order, done), RequestType.POST, "/event/", Lane.BACKGROUND, null);
+		executor.execute(record("read", order, done), RequestType.LIST, "/comment/", Lane.READ, null);
+		executor.execute(record("write", order, done), RequestType.POST, "/like/", Lane.WRITE, null);
+		
+		gate.countDown();
+		
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertEquals("write", order.get(0));
+		assertEquals("read", order.get(1));
+		assertEquals("background", order.get(2));
+		
+		// Includes the gate
+		assertEquals(3, executor.getExecutedCount(RequestType.POST));
+		assertTrue(executor.getMaxQueueWait(RequestType.LIST) >= executor.getAverageQueueWait(RequestType.LIST));
+	}
+	
+	public void testEndpointConcurrencyLimit() throws Exception {
+		executor.setThreads(3);
+		executor.setMaxPerEndpoint(1);
+		
+		final AtomicInteger running = new AtomicInteger(0);
+		final AtomicInteger maxRunning = new AtomicInteger(0);
+		final CountDownLatch done = new CountDownLatch(4);
+		
+		Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				int now = running.incrementAndGet();
+				if(now > maxRunning.get()) {
+					maxRunning.set(now);
+				}
+				sleep(50);
+				running.decrementAndGet();
+				done.countDown();
+			}
+		};
+		
+		for (int i = 0; i < 4; i++) {
+			executor.execute(task, RequestType.GET, "/entity/", Lane.READ, null);
+		}
+		
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertEquals(1, maxRunning.get());
+	}
+	
+	public void testFullQueueEvictsLowerLane() throws Exception {
+		executor.setThreads(1);
+		executor.setMaxQueueSize(1);
+		
+		CountDownLatch gate = block("/gate/");
+		
+		final AtomicBoolean backgroundRejected = new AtomicBoolean(false);
+		final AtomicBoolean readRejected = new AtomicBoolean(false);
+		
+		FutureTask<Void> background = new FutureTask<Void>(new Runnable() {
+			@Override
+			public void run() {}
+		}, null);
+		
+		FutureTask<Void> read = new FutureTask<Void>(new Runnable() {
+			@Override
+			public void run() {}
+		}, null);
+		
+		final CountDownLatch done = new CountDownLatch(1);
+		
+		executor.execute(background, RequestType.POST, "/event/", Lane.BACKGROUND, cancel(background, backgroundRejected));
+		
+		// Queue is full, the write displaces the background request
+		executor.execute(record("write", new ArrayList<String>(), done), RequestType.POST, "/comment/", Lane.WRITE, null);
+		
+		assertTrue(backgroundRejected.get());
+		assertTrue(background.isCancelled());
+		
+		// Nothing below a read is queued so the read itself is turned away
+		executor.execute(read, RequestType.LIST, "/comment/", Lane.READ, cancel(read, readRejected));
+		
+		assertTrue(readRejected.get());
+		assertTrue(read.isCancelled());
+		assertEquals(2, executor.getRejectedCount());
+		
+		gate.countDown();
+		
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+	}
+	
+	public void testRejectedWithoutHook() throws Exception {
+		executor.setThreads(1);
+		executor.setMaxQueueSize(1);
+		
+		CountDownLatch gate = block("/gate/");
+		
+		FutureTask<Void> future = new FutureTask<Void>(new Runnable() {
+			@Override
+			public void run() {}
+		}, null);
+		
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {}
+		}, RequestType.POST, "/event/", Lane.WRITE, null);
+		
+		// Without a hook the executor cancels the future itself
+		executor.execute(future, RequestType.LIST, "/comment/", Lane.READ, null);
+		assertTrue(future.isCancelled());
+		
+		// A plain runnable cannot be cancelled, so the caller is told
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {}
+			}, RequestType.LIST, "/comment/", Lane.READ, null);
+			fail("Expected RejectedExecutionException");
+		}
+		catch (RejectedExecutionException expected) {}
+		
+		gate.countDown();
+	}
+	
+	public void testHookOwnsCancellation() throws Exception {
+		executor.setThreads(1);
+		executor.setMaxQueueSize(1);
+		
+		CountDownLatch gate = block("/gate/");
+		
+		final AtomicBoolean rejected = new AtomicBoolean(false);
+		
+		FutureTask<Void> future = new FutureTask<Void>(new Runnable() {
+			@Override
+			public void run() {}
+		}, null);
+		
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {}
+		}, RequestType.POST, "/event/", Lane.WRITE, null);
+		
+		// The hook decides how to cancel, as an AsyncTask must be cancelled through the task and not its future.
+		executor.execute(future, RequestType.LIST, "/comment/", Lane.READ, flag(rejected));
+		
+		assertTrue(rejected.get());
+		assertFalse(future.isCancelled());
+		
+		gate.countDown();
+	}
+	
+	private CountDownLatch block(String endpoint) throws InterruptedException {
+		final CountDownLatch gate = new CountDownLatch(1);
+		final CountDownLatch started = new CountDownLatch(1);
+		
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				started.countDown();
+				try {
+					gate.await();
+				}
+				catch (InterruptedException ignore) {}
+			}
+		}, RequestType.POST, endpoint, Lane.WRITE, null);
+		
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		
+		return gate;
+	}
+	
+	private Runnable record(final String name, final List<String> order, final CountDownLatch done) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				order.add(name);
+				done.countDown();
+			}
+		};
+	}
+	
+	private Runnable flag(final AtomicBoolean flag) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				flag.set(true);
+			}
+		};
+	}
+	
+	private Runnable cancel(final Future<?> future, final AtomicBoolean flag) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				flag.set(true);
+				future.cancel(false);
+			}
+		};
+	}
+	
+	private void sleep(long time) {
+		try {
+			Thread.sleep(time);
+		}
+		catch (InterruptedException ignore) {}
+	}
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.test.unit;
+
+import android.content.Context;
+import com.socialize.cache.DiskCache;
+import com.socialize.cache.ResponseCache;
+import com.socialize.test.SocializeUnitTest;
+import com.socialize.util.IOUtils;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+
+import java.io.File;
+import java.io.InputStream;
+
+public class ResponseCacheTest extends SocializeUnitTest {
+	
+	static final String COMMENTS = "http://api.getsocialize.com/v1/comment/?entity_key=foo&first=0&last=10";
+	static final String USER_COMMENTS = "http://api.getsocialize.com/v1/user/1/comment/?first=0&last=10";
+	static final String ENTITY = "http://api.getsocialize.com/v1/entity/?entity_key=foo";
+	
+	private File dir;
+	private DiskCache diskCache;
+	private TestResponseCache cache;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		dir = new File(getContext().getCacheDir(), "response_cache_test");
+		diskCache = new DiskCache();
+		diskCache.open(dir);
+		diskCache.clear();
+		cache = newCache(diskCache);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		diskCache.clear();
+		diskCache.close();
+		super.tearDown();
+	}
+	
+	public void testKeyIgnoresOAuthAndParameterOrder() {
+		String a = cache.getKey(null, new HttpGet("http://api.getsocialize.com/v1/comment/?first=0&entity_key=foo&oauth_nonce=1"));
+		String b = cache.getKey(null, new HttpGet("http://api.getsocialize.com/v1/comment/?entity_key=foo&oauth_nonce=2&first=0"));
+		String c = cache.getKey(null, new HttpGet("http://api.getsocialize.com/v1/comment/?entity_key=bar&first=0"));
+		
+		assertEquals(a, b);
+		assertFalse(a.equals(c));
+		
+		assertTrue(cache.isCacheable(new HttpGet(COMMENTS)));
+		assertFalse(cache.isCacheable(new HttpPost(COMMENTS)));
+	}
+	
+	public void testFreshResponseServedWithoutFetch() throws Exception {
+		CountingFetcher fetcher = new CountingFetcher("one");
+		
+		assertEquals("one", body(cache.get("k", COMMENTS, fetcher)));
+		
+		cache.time += 1000;
+		fetcher.body = "two";
+		
+		assertEquals("one", body(cache.get("k", COMMENTS, fetcher)));
+		assertEquals(1, fetcher.count);
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+	
+	public void testStaleResponseServedWhileRefreshing() throws Exception {
+		CountingFetcher fetcher = new CountingFetcher("one");
+		cache.get("k", COMMENTS, fetcher);
+		
+		cache.time += 5000;
+		fetcher.body = "two";
+		
+		// Stale copy is returned, the refresh is queued
+		assertEquals("one", body(cache.get("k", COMMENTS, fetcher)));
+		assertEquals(1, fetcher.count);
+		assertEquals(1, cache.getStaleHitCount());
+		
+		// A second stale read does not queue another refresh for the same key
+		cache.get("k", COMMENTS, fetcher);
+		assertEquals(1, cache.queued);
+		
+		cache.runQueued();
+		
+		assertEquals(2, fetcher.count);
+		assertEquals("two", body(cache.get("k", COMMENTS, fetcher)));
+		assertEquals(1, cache.getHitCount());
+	}
+	
+	public void testExpiredResponseFetched() throws Exception {
+		CountingFetcher fetcher = new CountingFetcher("one");
+		cache.get("k", COMMENTS, fetcher);
+		
+		cache.time += 20000;
+		fetcher.body = "two";
+		
+		assertEquals("two", body(cache.get("k", COMMENTS, fetcher)));
+		assertEquals(2, fetcher.count);
+		assertEquals(0, cache.queued);
+	}
+	
+	public void testWriteInvalidatesResource() throws Exception {
+		CountingFetcher fetcher = new CountingFetcher("one");
+		cache.get("comments", COMMENTS, fetcher);
+		cache.get("user_comments", USER_COMMENTS, fetcher);
+		cache.get("entity", ENTITY, fetcher);
+		
+		cache.time += 10;
+		cache.invalidate("http://api.getsocialize.com/v1/comment/");
+		cache.time += 10;
+		
+		fetcher.count = 0;
+		
+		cache.get("comments", COMMENTS, fetcher);
+		cache.get("user_comments", USER_COMMENTS, fetcher);
+		assertEquals(2, fetcher.count);
+		
+		// Other resources are untouched
+		cache.get("entity", ENTITY, fetcher);
+		assertEquals(2, fetcher.count);
+	}
+	
+	public void testInvalidationSurvivesRestart() throws Exception {
+		CountingFetcher fetcher = new CountingFetcher("one");
+		cache.get("comments", COMMENTS, fetcher);
+		
+		cache.time += 10;
+		cache.invalidate("http://api.getsocialize.com/v1/comment/");
+		cache.time += 10;
+		
+		diskCache.close();
+		diskCache.open(dir);
+		
+		TestResponseCache restarted = newCache(diskCache);
+		restarted.time = cache.time;
+		restarted.reload();
+		
+		restarted.get("comments", COMMENTS, fetcher);
+		assertEquals(2, fetcher.count);
+	}
+	
+	public void testNullResponseNotCached() throws Exception {
+		CountingFetcher fetcher = new CountingFetcher(null);
+		assertNull(cache.get("k", COMMENTS, fetcher));
+		assertNull(cache.get("k", COMMENTS, fetcher));
+		assertEquals(2, fetcher.count);
+	}
+	
+	public void testDiskCacheOpenedOnFirstUse() throws Exception {
+		final int[] opened = {0};
+		
+		DiskCache lazy = new DiskCache() {
+			@Override
+			public void init(Context context) {
+				opened[0]++;
+				super.init(context);
+			}
+		};
+		lazy.setDirectoryName("response_cache_lazy_test");
+		
+		TestResponseCache cache = newCache(lazy);
+		cache.init(getContext());
+		
+		// Nothing touches the disk at startup
+		assertEquals(0, opened[0]);
+		assertTrue(cache.isCacheable(new HttpGet(COMMENTS)));
+		assertEquals(0, opened[0]);
+		
+		CountingFetcher fetcher = new CountingFetcher("one");
+		assertEquals("one", body(cache.get("k", COMMENTS, fetcher)));
+		assertEquals("one", body(cache.get("k", COMMENTS, fetcher)));
+		assertEquals(1, opened[0]);
+		assertEquals(1, fetcher.count);
+		
+		lazy.clear();
+		lazy.close();
+	}
+	
+	private String body(InputStream in) throws Exception {
+		if(in == null) {
+			return null;
+		}
+		return new IOUtils().read(in);
+	}
+	
+	private TestResponseCache newCache(DiskCache diskCache) {
+		TestResponseCache cache = new TestResponseCache();
+		cache.setDiskCache(diskCache);
+		cache.setDefaultTtl(2000);
+		cache.setStaleTtl(10000);
+		return cache;
+	}
+	
+	static class CountingFetcher implements ResponseCache.Fetcher {
+		String body;
+		int count = 0;
+		
+		CountingFetcher(String body) {
+			this.body = body;
+		}
+		
+		@Override
+		public byte[] fetch() throws Exception {
+			count++;
+			return (body == null) ? null : body.getBytes("UTF-8");
+		}
+	}
+	
+	static class TestResponseCache extends ResponseCache {
+		long time = 100000;
+		int queued = 0;
+		Runnable task;
+		
+		@Override
+		protected long now() {
+			return time;
+		}
+		
+		@Override
+		protected void execute(Runnable task, String path, Runnable onReject) {
+			this.task = task;
+			queued++;
+		}
+		
+		void runQueued() {
+			task.run();
+		}
+		
+		void reload() {
+			loadInvalidations();
+		}
+	}
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.test.unit;
+
+import com.socialize.log.RingBufferExternalLogger;
+import com.socialize.log.SocializeLogger.LogLevel;
+import com.socialize.test.SocializeUnitTest;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+public class RingBufferExternalLoggerTest extends SocializeUnitTest {
+	
+	private File dir;
+	
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		dir = File.createTempFile("ringlog", "");
+		dir.delete();
+		dir.mkdirs();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		File[] files = dir.listFiles();
+		if(files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		dir.delete();
+		super.tearDown();
+	}
+	
+	public void testMessagesAreWrittenInOrder() throws Exception {
+		RingBufferExternalLogger logger = new RingBufferExternalLogger();
+		logger.open(dir);
+		
+		for (int i = 0; i < 100; i++) {
+			logger.log(LogLevel.INFO, 1000L + i, "tag", "message " + i);
+		}
+		
+		logger.destroy();
+		
+		List<String> lines = readLines(new FileReader(logger.getFile()));
+		
+		assertEquals(100, lines.size());
+		assertEquals(100, logger.getWrittenCount());
+		assertEquals(0, logger.getDroppedCount());
+		
+		String first = lines.get(0);
+		assertTrue(first, first.startsWith("1000 INFO tag "));
+		assertTrue(first, first.endsWith(" - message 0"));
+		assertTrue(first, first.contains(Thread.currentThread().getName()));
+		assertTrue(lines.get(99).endsWith(" - message 99"));
+	}
+	
+	public void testErrorIncludesStackTrace() throws Exception {
+		RingBufferExternalLogger logger = new RingBufferExternalLogger();
+		logger.open(dir);
+		logger.log(LogLevel.ERROR, 1L, "tag", "failed", new IllegalStateException("boom"));
+		logger.destroy();
+		
+		List<String> lines = readLines(new FileReader(logger.getFile()));
+		assertTrue(lines.get(0).endsWith("failed: java.lang.IllegalStateException: boom"));
+		assertTrue(lines.size() > 1);
+	}
+	
+	public void testMessagesAreDroppedWhenFull() throws Exception {
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		
+		RingBufferExternalLogger logger = new RingBufferExternalLogger() {
+			@Override
+			protected void write(CharSequence text) {
+				blocked.countDown();
+				try {
+					release.await(10, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException ignore) {}
+				super.write(text);
+			}
+		};
+		
+		logger.setCapacity(8);
+		logger.open(dir);
+		
+		// Stall the consumer inside its first write
+		logger.log(LogLevel.INFO, 0L, "tag", "first");
+		assertTrue(blocked.await(10, TimeUnit.SECONDS));
+		
+		for (int i = 0; i < 20; i++) {
+			logger.log(LogLevel.INFO, 0L, "tag", "message " + i);
+		}
+		
+		assertEquals(12, logger.getDroppedCount());
+		
+		release.countDown();
+		logger.destroy();
+		
+		assertEquals(9, logger.getWrittenCount());
+		assertEquals(9, readLines(new FileReader(logger.getFile())).size());
+	}
+	
+	public void testRotation() throws Exception {
+		RingBufferExternalLogger logger = new RingBufferExternalLogger();
+		logger.setMaxFileSize(256);
+		logger.setMaxRolledFiles(2);
+		logger.open(dir);
+		
+		for (int i = 0; i < 50; i++) {
+			logger.log(LogLevel.INFO, 0L, "tag", "a message that is long enough to fill the file quickly " + i);
+			if(i % 5 == 4) {
+				// Let the consumer write in several batches
+				Thread.sleep(20);
+			}
+		}
+		
+		logger.destroy();
+		
+		assertTrue(logger.getRotationCount() >= 2);
+		
+		File rolled = new File(dir, "socialize.1.log.gz");
+		assertTrue(rolled.exists());
+		assertTrue(new File(dir, "socialize.2.log.gz").exists());
+		assertFalse(new File(dir, "socialize.3.log.gz").exists());
+		
+		List<String> lines = readLines(new InputStreamReader(new GZIPInputStream(new FileInputStream(rolled)), "UTF-8"));
+		assertTrue(lines.size() > 0);
+		assertTrue(lines.get(0).contains("a message that is long enough"));
+	}
+	
+	public void testConcurrentMessagesAreAccountedFor() throws Exception {
+		final RingBufferExternalLogger logger = new RingBufferExternalLogger();
+		logger.setCapacity(4096);
+		logger.open(dir);
+		
+		final int threads = 4;
+		final int messages = 5000;
+		final CountDownLatch done = new CountDownLatch(threads);
+		
+		for (int t = 0; t < threads; t++) {
+			new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < messages; i++) {
+						logger.log(LogLevel.DEBUG, i, "tag", "request body " + i);
+					}
+					done.countDown();
+				}
+			}.start();
+		}
+		
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+		
+		logger.destroy();
+		
+		long total = threads * messages;
+		
+		// Every message is either written or counted as dropped, never lost
+		assertTrue(logger.getWrittenCount() > 0);
+		assertEquals(total, logger.getWrittenCount() + logger.getDroppedCount());
+		assertEquals(logger.getWrittenCount(), readLines(new FileReader(logger.getFile())).size());
+	}
+	
+	protected List<String> readLines(Reader reader) throws Exception {
+		List<String> lines = new ArrayList<String>();
+		BufferedReader in = new BufferedReader(reader);
+		try {
+			String line;
+			while((line = in.readLine()) != null) {
+				lines.add(line);
+			}
+		}
+		finally {
+			in.close();
+		}
+		return lines;
+	}
+}
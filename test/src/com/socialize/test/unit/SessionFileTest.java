@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.test.unit;
+
+import com.socialize.api.SessionFile;
+import com.socialize.test.SocializeUnitTest;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class SessionFileTest extends SocializeUnitTest {
+	
+	private File file;
+	
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		file = File.createTempFile("session", ".dat");
+		file.delete();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		file.delete();
+		new File(file.getPath() + ".tmp").delete();
+		super.tearDown();
+	}
+	
+	public void testWriteRead() throws Exception {
+		SessionFile sessionFile = new SessionFile(file);
+		
+		assertFalse(sessionFile.exists());
+		assertNull(sessionFile.read());
+		
+		Map<Integer, String> sections = newSections();
+		sessionFile.write(sections);
+		
+		assertTrue(sessionFile.exists());
+		assertFalse(new File(file.getPath() + ".tmp").exists());
+		
+		Map<Integer, String> read = new SessionFile(file).read();
+		
+		assertEquals(sections, read);
+	}
+	
+	public void testNullSectionsAreSkipped() throws Exception {
+		Map<Integer, String> sections = newSections();
+		sections.put(SessionFile.USER, null);
+		
+		Map<Integer, String> read = SessionFile.decode(SessionFile.encode(sections));
+		
+		assertFalse(read.containsKey(SessionFile.USER));
+		assertEquals("token", read.get(SessionFile.CONSUMER_TOKEN));
+	}
+	
+	public void testOverwrite() throws Exception {
+		SessionFile sessionFile = new SessionFile(file);
+		sessionFile.write(newSections());
+		
+		Map<Integer, String> sections = newSections();
+		sections.put(SessionFile.USER_SETTINGS, "{\"first_name\":\"changed\"}");
+		sessionFile.write(sections);
+		
+		assertEquals("{\"first_name\":\"changed\"}", sessionFile.read().get(SessionFile.USER_SETTINGS));
+	}
+	
+	public void testCorruptFileIsRejected() throws Exception {
+		SessionFile sessionFile = new SessionFile(file);
+		sessionFile.write(newSections());
+		
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.seek(20);
+			int b = raf.read();
+			raf.seek(20);
+			raf.write(b ^ 0xFF);
+		}
+		finally {
+			raf.close();
+		}
+		
+		assertNull(sessionFile.read());
+	}
+	
+	public void testTruncatedFileIsRejected() throws Exception {
+		byte[] data = SessionFile.encode(newSections());
+		byte[] truncated = new byte[data.length / 2];
+		System.arraycopy(data, 0, truncated, 0, truncated.length);
+		assertNull(SessionFile.decode(truncated));
+	}
+	
+	public void testNewerVersionIsRejected() throws Exception {
+		byte[] data = SessionFile.encode(newSections());
+		data[5] = (byte) (SessionFile.VERSION + 1);
+		assertNull(SessionFile.decode(data));
+	}
+	
+	public void testDelete() throws Exception {
+		SessionFile sessionFile = new SessionFile(file);
+		sessionFile.write(newSections());
+		assertTrue(sessionFile.delete());
+		assertFalse(sessionFile.exists());
+		assertTrue(sessionFile.delete());
+	}
+	
+	public void testRepeatedWritesReadBackLatest() throws Exception {
+		SessionFile sessionFile = new SessionFile(file);
+		Map<Integer, String> sections = newSections();
+		
+		for (int i = 0; i < 20; i++) {
+			sections.put(SessionFile.CONSUMER_TOKEN, "token_" + i);
+			sessionFile.write(sections);
+			assertEquals(sections, sessionFile.read());
+		}
+	}
+	
+	protected Map<Integer, String> newSections() {
+		Map<Integer, String> sections = new TreeMap<Integer, String>();
+		sections.put(SessionFile.CONSUMER_KEY, "key");
+		sections.put(SessionFile.CONSUMER_SECRET, "secret");
+		sections.put(SessionFile.CONSUMER_TOKEN, "token");
+		sections.put(SessionFile.CONSUMER_TOKEN_SECRET, "token_secret");
+		sections.put(SessionFile.SOCIALIZE_VERSION, "3.1");
+		sections.put(SessionFile.CREDENTIALS, "{\"map\":{\"SOCIALIZE\":{\"userId\":\"1\"}}}");
+		sections.put(SessionFile.USER, "{\"id\":1,\"first_name\":\"J\u00f6rg\"}");
+		sections.put(SessionFile.USER_SETTINGS, "{\"first_name\":\"J\u00f6rg\"}");
+		return sections;
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.test.unit;
+
+import android.app.Activity;
+import android.location.Location;
+import com.socialize.api.SocializeSession;
+import com.socialize.api.action.ShareType;
+import com.socialize.api.action.share.ShareFanout;
+import com.socialize.api.action.share.ShareResult;
+import com.socialize.api.action.share.ShareResult.Status;
+import com.socialize.api.action.share.SocialNetworkShareListener;
+import com.socialize.api.action.share.SocializeShareSystem;
+import com.socialize.entity.Share;
+import com.socialize.entity.SocializeAction;
+import com.socialize.networks.SocialNetwork;
+import com.socialize.networks.SocialNetworkListener;
+import com.socialize.test.SocializeUnitTest;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+public class ShareFanoutTest extends SocializeUnitTest {
+	
+	private CapturingShareSystem shareSystem;
+	private TestShareFanout fanout;
+	private RecordingListener listener;
+	private Share share;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		shareSystem = new CapturingShareSystem();
+		fanout = new TestShareFanout();
+		fanout.setShareSystem(shareSystem);
+		listener = new RecordingListener();
+		share = new Share();
+	}
+	
+	public void testAllNetworksDispatchedBeforeAnyCompletes() {
+		ShareResult result = fanout.share(null, null, share, "foo", null, listener, SocialNetwork.FACEBOOK, SocialNetwork.TWITTER);
+		
+		assertEquals(2, shareSystem.listeners.size());
+		assertTrue(shareSystem.listeners.containsKey(ShareType.FACEBOOK));
+		assertTrue(shareSystem.listeners.containsKey(ShareType.TWITTER));
+		assertFalse(result.isComplete());
+		assertEquals(-1, result.getElapsed());
+	}
+	
+	public void testOutcomesAggregated() throws Exception {
+		ShareResult result = fanout.share(null, null, share, "foo", null, listener, SocialNetwork.FACEBOOK, SocialNetwork.TWITTER);
+		
+		JSONObject response = new JSONObject();
+		
+		fanout.time += 120;
+		shareSystem.listeners.get(ShareType.TWITTER).onAfterPost(null, SocialNetwork.TWITTER, response);
+		
+		assertFalse(result.isComplete());
+		assertTrue(listener.results.isEmpty());
+		
+		fanout.time += 300;
+		Exception error = new Exception("fail");
+		shareSystem.listeners.get(ShareType.FACEBOOK).onNetworkError(null, SocialNetwork.FACEBOOK, error);
+		
+		assertTrue(result.isComplete());
+		assertFalse(result.isSuccess());
+		assertEquals(420, result.getElapsed());
+		
+		assertEquals(Status.SUCCESS, result.getStatus(SocialNetwork.TWITTER));
+		assertEquals(120, result.getLatency(SocialNetwork.TWITTER));
+		assertSame(response, result.getResponse(SocialNetwork.TWITTER));
+		
+		assertEquals(Status.FAILED, result.getStatus(SocialNetwork.FACEBOOK));
+		assertEquals(420, result.getLatency(SocialNetwork.FACEBOOK));
+		assertSame(error, result.getError(SocialNetwork.FACEBOOK));
+		
+		// Per network callbacks still reach the caller, followed by a single completion.
+		assertEquals(1, listener.posts);
+		assertEquals(1, listener.errors);
+		assertEquals(1, listener.results.size());
+		assertSame(result, listener.results.get(0));
+	}
+	
+	public void testLateCallbacksIgnored() {
+		ShareResult result = fanout.share(null, null, share, "foo", null, listener, SocialNetwork.TWITTER);
+		
+		SocialNetworkListener twitter = shareSystem.listeners.get(ShareType.TWITTER);
+		
+		twitter.onCancel();
+		twitter.onNetworkError(null, SocialNetwork.TWITTER, new Exception("late"));
+		
+		assertEquals(Status.CANCELLED, result.getStatus(SocialNetwork.TWITTER));
+		assertNull(result.getError(SocialNetwork.TWITTER));
+		assertEquals(1, listener.results.size());
+		assertEquals(1, fanout.getPostCount(SocialNetwork.TWITTER));
+		assertEquals(0, fanout.getFailureCount(SocialNetwork.TWITTER));
+	}
+	
+	public void testDispatchErrorReportedAsFailure() {
+		shareSystem.fail = true;
+		
+		ShareResult result = fanout.share(null, null, share, "foo", null, listener, SocialNetwork.FACEBOOK);
+		
+		assertTrue(result.isComplete());
+		assertEquals(Status.FAILED, result.getStatus(SocialNetwork.FACEBOOK));
+		assertEquals(1, listener.errors);
+		assertEquals(1, listener.results.size());
+	}
+	
+	public void testNoNetworksCompletesImmediately() {
+		ShareResult result = fanout.share(null, null, share, "foo", null, listener);
+		
+		assertTrue(result.isComplete());
+		assertEquals(0, result.getElapsed());
+		assertEquals(1, listener.results.size());
+		assertTrue(shareSystem.listeners.isEmpty());
+	}
+	
+	public void testLatencyAndFailureCounters() {
+		for (int i = 0; i < 3; i++) {
+			fanout.share(null, null, share, "foo", null, listener, SocialNetwork.FACEBOOK, SocialNetwork.TWITTER);
+			fanout.time += 100 * (i + 1);
+			shareSystem.listeners.get(ShareType.FACEBOOK).onAfterPost(null, SocialNetwork.FACEBOOK, null);
+			
+			if(i == 0) {
+				shareSystem.listeners.get(ShareType.TWITTER).onNetworkError(null, SocialNetwork.TWITTER, new Exception());
+			}
+			else {
+				shareSystem.listeners.get(ShareType.TWITTER).onAfterPost(null, SocialNetwork.TWITTER, null);
+			}
+		}
+		
+		assertEquals(3, fanout.getPostCount(SocialNetwork.FACEBOOK));
+		assertEquals(0, fanout.getFailureCount(SocialNetwork.FACEBOOK));
+		assertEquals(200, fanout.getAverageLatency(SocialNetwork.FACEBOOK));
+		assertEquals(300, fanout.getMaxLatency(SocialNetwork.FACEBOOK));
+		
+		assertEquals(3, fanout.getPostCount(SocialNetwork.TWITTER));
+		assertEquals(1, fanout.getFailureCount(SocialNetwork.TWITTER));
+		assertEquals(3, listener.results.size());
+	}
+	
+	class TestShareFanout extends ShareFanout {
+		long time = 1000;
+		
+		@Override
+		protected long now() {
+			return time;
+		}
+	}
+	
+	class CapturingShareSystem extends SocializeShareSystem {
+		
+		final Map<ShareType, SocialNetworkListener> listeners = new EnumMap<ShareType, SocialNetworkListener>(ShareType.class);
+		boolean fail = false;
+		
+		public CapturingShareSystem() {
+			super(null);
+		}
+
+		@Override
+		public void share(Activity context, SocializeSession session, SocializeAction action, String comment, Location location, ShareType destination, SocialNetworkListener listener) {
+			if(fail) {
+				throw new RuntimeException("fail");
+			}
+			listeners.put(destination, listener);
+		}
+	}
+	
+	class RecordingListener extends SocialNetworkShareListener {
+		
+		int posts = 0;
+		int errors = 0;
+		final List<ShareResult> results = new ArrayList<ShareResult>();
+
+		@Override
+		public void onNetworkError(Activity context, SocialNetwork network, Exception error) {
+			errors++;
+		}
+
+		@Override
+		public void onAfterPost(Activity parent, SocialNetwork socialNetwork, JSONObject responseObject) {
+			posts++;
+		}
+
+		@Override
+		public void onCancel() {}
+
+		@Override
+		public void onShareComplete(ShareResult result) {
+			results.add(result);
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.test.unit;
+
+import com.socialize.android.ioc.IOCContainer;
+import com.socialize.ioc.StartupTrace;
+import com.socialize.test.SocializeUnitTest;
+import org.mockito.Mockito;
+
+public class StartupTraceTest extends SocializeUnitTest {
+
+	public void testMarksRecordElapsedTime() {
+		final long[] clock = {1000L};
+		
+		StartupTrace trace = new StartupTrace() {
+			@Override
+			protected long now() {
+				return clock[0];
+			}
+		};
+		
+		clock[0] = 1010L;
+		assertEquals(10L, trace.mark("prepare"));
+		
+		clock[0] = 1250L;
+		assertEquals(240L, trace.mark("container"));
+		
+		assertEquals(2, trace.size());
+		assertEquals("prepare", trace.getName(0));
+		assertEquals(10L, trace.getTime(0));
+		assertEquals("container", trace.getName(1));
+		assertEquals(240L, trace.getTime(1));
+		assertEquals(250L, trace.getTotalTime());
+		assertEquals("container", trace.getSlowest());
+		
+		String summary = trace.toString();
+		assertTrue(summary.startsWith("Socialize init took 250ms"));
+		assertTrue(summary.contains("container: 240ms"));
+	}
+	
+	public void testGetBeanIsTimed() {
+		final long[] clock = {0L};
+		
+		StartupTrace trace = new StartupTrace() {
+			@Override
+			protected long now() {
+				return clock[0];
+			}
+		};
+		
+		final Object bean = new Object();
+		IOCContainer container = Mockito.mock(IOCContainer.class);
+		Mockito.when(container.getBean("logger")).thenReturn(bean);
+		
+		// Time between steps is not charged to the next bean, but it is not lost either.
+		clock[0] = 100L;
+		Object result = trace.getBean(container, "logger");
+		
+		assertSame(bean, result);
+		assertEquals(2, trace.size());
+		assertEquals(StartupTrace.UNTRACED, trace.getName(0));
+		assertEquals(100L, trace.getTime(0));
+		assertEquals("logger", trace.getName(1));
+		assertEquals(0L, trace.getTime(1));
+		assertEquals(100L, trace.getTotalTime());
+		
+		// Back to back beans record no gap
+		trace.getBean(container, "logger");
+		assertEquals(3, trace.size());
+		
+		long sum = 0;
+		for (int i = 0; i < trace.size(); i++) {
+			sum += trace.getTime(i);
+		}
+		assertEquals(trace.getTotalTime(), sum);
+	}
+	
+	public void testEmptyTrace() {
+		StartupTrace trace = new StartupTrace();
+		assertEquals(0, trace.size());
+		assertNull(trace.getSlowest());
+	}
+}
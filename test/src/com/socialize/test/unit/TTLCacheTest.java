@@ -13,6 +13,8 @@ import org.mockito.Mockito;
 
 import java.util.Collection;
 import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Jason
@@ -480,6 +482,56 @@ public class TTLCacheTest extends SocializeUnitTest {
         assertTrue(cache.isExpired(obj));
 	}
 	
+	public void testConcurrentAccessKeepsSizeConsistent() throws Exception {
+		
+		final TTLCache<String, StringCacheable> cache = new TTLCache<String, StringCacheable>(10, 50);
+		final int threads = 4;
+		final CountDownLatch latch = new CountDownLatch(threads);
+		
+		for (int i = 0; i < threads; i++) {
+			final int offset = i;
+			new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int j = 0; j < 1000; j++) {
+							String key = String.valueOf((j + offset) % 100);
+							if(j % 3 == 0) {
+								cache.put(key, new StringCacheable(key));
+							}
+							else if(j % 7 == 0) {
+								cache.remove(key);
+							}
+							else {
+								cache.get(key);
+							}
+							
+							if(j % 100 == 0) {
+								cache.doReap();
+							}
+						}
+					}
+					finally {
+						latch.countDown();
+					}
+				}
+			}.start();
+		}
+		
+		assertTrue(latch.await(30, TimeUnit.SECONDS));
+		assertTrue(cache.doReap());
+		
+		long bytes = 0;
+		for (StringCacheable value : cache.values()) {
+			bytes += value.getSizeInBytes();
+		}
+		
+		assertTrue(cache.size() <= 50);
+		assertEquals(bytes, cache.sizeInBytes());
+		
+		cache.destroy();
+	}
+	
 	public void testKey() {
 		
 		Key<String> key1 = new Key<String>("foobar1", 0);
@@ -0,0 +1,436 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.test.unit;
+
+import com.socialize.api.SocializeSession;
+import com.socialize.api.queue.WriteJournal;
+import com.socialize.api.queue.WriteQueue;
+import com.socialize.api.queue.WriteSender;
+import com.socialize.error.SocializeApiError;
+import com.socialize.error.SocializeException;
+import com.socialize.test.SocializeUnitTest;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class WriteQueueTest extends SocializeUnitTest {
+	
+	private File file;
+	private SocializeSession session;
+	
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		file = File.createTempFile("write_queue", ".journal");
+		file.delete();
+		session = Mockito.mock(SocializeSession.class);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		file.delete();
+		super.tearDown();
+	}
+	
+	public void testJournalSurvivesReopen() throws Exception {
+		WriteJournal journal = new WriteJournal(file);
+		journal.open();
+		
+		List<WriteJournal.Entry> entries = journal.append("/like/", bytes("a", "b", "c"));
+		journal.ack(Arrays.asList(entries.get(1).getId()));
+		journal.close();
+		
+		journal = new WriteJournal(file);
+		journal.open();
+		
+		List<WriteJournal.Entry> pending = journal.getPending();
+		assertEquals(2, pending.size());
+		assertEquals(entries.get(0).getId(), pending.get(0).getId());
+		assertEquals(entries.get(2).getId(), pending.get(1).getId());
+		assertEquals("/like/", pending.get(0).getEndpoint());
+		assertEquals("c", new String(pending.get(1).getData(), "UTF-8"));
+		
+		// Ids are never re-used so an acked operation can't be confused with a new one.
+		List<WriteJournal.Entry> more = journal.append("/like/", bytes("d"));
+		assertTrue(more.get(0).getId() > entries.get(2).getId());
+		journal.close();
+	}
+	
+	public void testJournalDiscardsTornRecord() throws Exception {
+		WriteJournal journal = new WriteJournal(file);
+		journal.open();
+		journal.append("/view/", bytes("a", "b"));
+		journal.close();
+		
+		FileOutputStream out = new FileOutputStream(file, true);
+		out.write(new byte[]{'A', 0, 0, 0});
+		out.close();
+		
+		journal = new WriteJournal(file);
+		journal.open();
+		assertEquals(2, journal.size());
+		journal.append("/view/", bytes("c"));
+		journal.close();
+		
+		journal = new WriteJournal(file);
+		journal.open();
+		assertEquals(3, journal.size());
+		journal.close();
+	}
+	
+	public void testOpenOnlyCompactsWhenNeeded() throws Exception {
+		CountingJournal journal = new CountingJournal(file);
+		journal.open();
+		List<WriteJournal.Entry> entries = journal.append("/like/", bytes("a", "b"));
+		journal.close();
+		
+		// Nothing but pending adds, the log is used as is.
+		journal = new CountingJournal(file);
+		journal.open();
+		assertEquals(0, journal.compactions);
+		journal.ack(Arrays.asList(entries.get(0).getId()));
+		journal.close();
+		
+		journal = new CountingJournal(file);
+		journal.open();
+		assertEquals(1, journal.compactions);
+		assertEquals(1, journal.size());
+		journal.close();
+		
+		journal = new CountingJournal(file);
+		journal.open();
+		assertEquals(0, journal.compactions);
+		journal.close();
+	}
+	
+	public void testAckBeforeFlushSkipsDisk() throws Exception {
+		WriteJournal journal = new WriteJournal(file);
+		journal.open();
+		
+		List<WriteJournal.Entry> entries = journal.append("/view/", bytes("a"));
+		assertTrue(journal.isDirty());
+		journal.ack(Arrays.asList(entries.get(0).getId()));
+		assertFalse(journal.isDirty());
+		journal.flush();
+		
+		assertEquals(0, file.length());
+		journal.close();
+	}
+	
+	public void testJournalIsWrittenOnWriterThread() throws Exception {
+		final DeferredExecutor executor = new DeferredExecutor();
+		
+		WriteQueue queue = new WriteQueue() {
+			@Override
+			protected ExecutorService makeWriter() {
+				return executor;
+			}
+			
+			@Override
+			protected void start() {}
+		};
+		queue.setMinBackoff(60000);
+		queue.open(file);
+		
+		List<Long> ids = queue.add("/like/", Arrays.asList("a"), new RecordingSender());
+		assertNotNull(ids);
+		assertEquals(0, file.length());
+		assertEquals(1, executor.tasks.size());
+		
+		// Flushes are coalesced
+		queue.release(queue.add("/like/", Arrays.asList("b"), new RecordingSender()));
+		assertEquals(1, executor.tasks.size());
+		
+		executor.runAll();
+		assertTrue(file.length() > 0);
+		
+		queue.complete(ids);
+		assertEquals(1, executor.tasks.size());
+		executor.runAll();
+		
+		queue.destroy();
+		executor.runAll();
+		
+		WriteJournal journal = new WriteJournal(file);
+		journal.open();
+		assertEquals(1, journal.size());
+		journal.close();
+	}
+	
+	public void testRegisteredSenderReplaysOnOpen() throws Exception {
+		WriteQueue queue = newQueue();
+		queue.release(queue.add("/like/", Arrays.asList("a", "b"), new RecordingSender()));
+		queue.flush();
+		queue.destroy();
+		
+		// New process, nothing has been liked yet but the like system registered its sender when it was wired.
+		queue = new WriteQueue() {
+			@Override
+			protected SocializeSession getCurrentSession() {
+				return session;
+			}
+		};
+		
+		RecordingSender sender = new RecordingSender();
+		queue.register("/like/", sender);
+		queue.open(file);
+		
+		long end = System.currentTimeMillis() + 5000;
+		while(queue.getPendingCount() > 0 && System.currentTimeMillis() < end) {
+			Thread.sleep(10);
+		}
+		
+		assertEquals(0, queue.getPendingCount());
+		assertEquals(1, sender.batches.size());
+		assertEquals(Arrays.asList("a", "b"), sender.batches.get(0));
+		
+		queue.destroy();
+	}
+	
+	public void testLeasedWritesAreNotReplayed() throws Exception {
+		WriteQueue queue = newQueue();
+		RecordingSender sender = new RecordingSender();
+		
+		List<Long> ids = queue.add("/like/", Arrays.asList("a", "b"), sender);
+		
+		assertNotNull(ids);
+		assertEquals(2, queue.getPendingCount());
+		
+		// In flight with the caller
+		assertEquals(0, queue.drain());
+		assertEquals(0, sender.batches.size());
+		
+		queue.complete(ids);
+		assertEquals(0, queue.getPendingCount());
+		assertEquals(0, queue.drain());
+		
+		queue.destroy();
+	}
+	
+	public void testReleasedWritesAreBatched() throws Exception {
+		WriteQueue queue = newQueue();
+		RecordingSender sender = new RecordingSender();
+		
+		queue.release(queue.add("/comment/", Arrays.asList("a"), sender));
+		queue.release(queue.add("/comment/", Arrays.asList("b", "c"), sender));
+		
+		assertTrue(queue.getNextAttempt() > System.currentTimeMillis());
+		
+		assertEquals(3, queue.drain());
+		assertEquals(1, sender.batches.size());
+		assertEquals(Arrays.asList("a", "b", "c"), sender.batches.get(0));
+		assertEquals(0, queue.getPendingCount());
+		assertEquals(0, queue.getNextAttempt());
+		
+		queue.destroy();
+	}
+	
+	public void testReplayUsesCurrentSession() throws Exception {
+		WriteQueue queue = newQueue();
+		RecordingSender sender = new RecordingSender();
+		
+		queue.release(queue.add("/like/", Arrays.asList("a"), sender));
+		
+		// The user re-authenticated after the write was queued
+		session = Mockito.mock(SocializeSession.class);
+		
+		assertEquals(1, queue.drain());
+		assertSame(session, sender.sessions.get(0));
+		
+		queue.destroy();
+	}
+	
+	public void testTransientFailureIsRetried() throws Exception {
+		WriteQueue queue = newQueue();
+		RecordingSender sender = new RecordingSender();
+		
+		queue.release(queue.add("/view/", Arrays.asList("a"), sender));
+		long firstAttempt = queue.getNextAttempt();
+		
+		sender.error = new SocializeException("No network");
+		assertEquals(0, queue.drain());
+		assertEquals(1, queue.getPendingCount());
+		assertTrue(queue.getNextAttempt() > firstAttempt);
+		
+		sender.error = null;
+		assertEquals(1, queue.drain());
+		assertEquals(0, queue.getPendingCount());
+		
+		queue.destroy();
+	}
+	
+	public void testRejectedWriteIsDiscarded() throws Exception {
+		WriteQueue queue = newQueue();
+		RecordingSender sender = new RecordingSender();
+		
+		queue.release(queue.add("/share/", Arrays.asList("a"), sender));
+		
+		sender.error = new SocializeApiError(400, "Bad request");
+		assertEquals(0, queue.drain());
+		assertEquals(0, queue.getPendingCount());
+		
+		assertTrue(WriteQueue.isTransient(new SocializeApiError(503, "Unavailable")));
+		assertTrue(WriteQueue.isTransient(new SocializeException("No network")));
+		assertFalse(WriteQueue.isTransient(new SocializeApiError(404, "Not found")));
+		
+		queue.destroy();
+	}
+	
+	public void testWritesSurviveRestart() throws Exception {
+		WriteQueue queue = newQueue();
+		RecordingSender sender = new RecordingSender();
+		queue.release(queue.add("/like/", Arrays.asList("a", "b"), sender));
+		queue.flush();
+		queue.destroy();
+		
+		// New process, the writes are replayed once the like system sends again.
+		queue = newQueue();
+		assertEquals(2, queue.getPendingCount());
+		
+		sender = new RecordingSender();
+		queue.release(queue.add("/like/", Arrays.asList("c"), sender));
+		
+		assertEquals(3, queue.drain());
+		assertEquals(Arrays.asList("a", "b", "c"), sender.batches.get(0));
+		
+		queue.destroy();
+	}
+	
+	public void testMaxPending() throws Exception {
+		WriteQueue queue = new WriteQueue();
+		queue.setMaxPending(2);
+		queue.open(file);
+		
+		assertNotNull(queue.add("/view/", Arrays.asList("a", "b"), new RecordingSender()));
+		assertNull(queue.add("/view/", Arrays.asList("c"), new RecordingSender()));
+		
+		queue.destroy();
+	}
+	
+	protected WriteQueue newQueue() {
+		WriteQueue queue = new WriteQueue() {
+			// Replay is driven by the test
+			@Override
+			protected void start() {}
+			
+			@Override
+			protected SocializeSession getCurrentSession() {
+				return session;
+			}
+		};
+		queue.setMinBackoff(60000);
+		queue.open(file);
+		return queue;
+	}
+	
+	protected List<byte[]> bytes(String...values) throws Exception {
+		List<byte[]> list = new ArrayList<byte[]>(values.length);
+		for (String value : values) {
+			list.add(value.getBytes("UTF-8"));
+		}
+		return list;
+	}
+	
+	static class CountingJournal extends WriteJournal {
+		
+		int compactions = 0;
+		
+		CountingJournal(File file) {
+			super(file);
+		}
+		
+		@Override
+		protected void compact() throws IOException {
+			compactions++;
+			super.compact();
+		}
+	}
+	
+	static class DeferredExecutor extends AbstractExecutorService {
+		
+		final List<Runnable> tasks = new ArrayList<Runnable>();
+		
+		@Override
+		public synchronized void execute(Runnable command) {
+			tasks.add(command);
+		}
+		
+		void runAll() {
+			List<Runnable> run;
+			synchronized (this) {
+				run = new ArrayList<Runnable>(tasks);
+				tasks.clear();
+			}
+			for (Runnable task : run) {
+				task.run();
+			}
+		}
+		
+		@Override
+		public void shutdown() {}
+		
+		@Override
+		public List<Runnable> shutdownNow() {
+			return new ArrayList<Runnable>();
+		}
+		
+		@Override
+		public boolean isShutdown() {
+			return false;
+		}
+		
+		@Override
+		public boolean isTerminated() {
+			return false;
+		}
+		
+		@Override
+		public boolean awaitTermination(long timeout, TimeUnit unit) {
+			return true;
+		}
+	}
+	
+	static class RecordingSender implements WriteSender {
+		
+		final List<List<Serializable>> batches = new ArrayList<List<Serializable>>();
+		final List<SocializeSession> sessions = new ArrayList<SocializeSession>();
+		SocializeException error;
+		
+		@Override
+		public void send(SocializeSession session, String endpoint, List<Serializable> items) throws SocializeException {
+			if(error != null) {
+				throw error;
+			}
+			batches.add(items);
+			sessions.add(session);
+		}
+	}
+}
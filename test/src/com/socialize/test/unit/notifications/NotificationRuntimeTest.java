@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2012 Socialize Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.socialize.test.unit.notifications;
+
+import android.content.Context;
+import android.os.Bundle;
+import com.socialize.api.BinarySessionPersister;
+import com.socialize.api.SocializeSession;
+import com.socialize.api.SocializeSessionPersister;
+import com.socialize.api.WritableSession;
+import com.socialize.entity.User;
+import com.socialize.ioc.StartupTrace;
+import com.socialize.notifications.NotificationRuntime;
+import com.socialize.test.SocializeUnitTest;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+public class NotificationRuntimeTest extends SocializeUnitTest {
+	
+	public void testWiredOnceAcrossMessages() {
+		TestNotificationRuntime runtime = new TestNotificationRuntime(newSession());
+		
+		assertTrue(runtime.onMessage(getContext(), new Bundle()));
+		assertTrue(runtime.onMessage(getContext(), new Bundle()));
+		assertTrue(runtime.onMessage(getContext(), new Bundle()));
+		
+		assertEquals(1, runtime.wired);
+		assertEquals(3, runtime.notified);
+		assertEquals(3, runtime.getHandledCount());
+		assertNotNull(runtime.getStartupTrace());
+	}
+	
+	public void testDeclinedWithoutSession() {
+		TestNotificationRuntime runtime = new TestNotificationRuntime(null);
+		
+		assertFalse(runtime.onMessage(getContext(), new Bundle()));
+		assertEquals(0, runtime.notified);
+		assertEquals(0, runtime.getHandledCount());
+	}
+	
+	public void testDeclinedWithoutUser() {
+		TestNotificationRuntime runtime = new TestNotificationRuntime(Mockito.mock(SocializeSession.class));
+		
+		assertFalse(runtime.onMessage(getContext(), new Bundle()));
+		assertEquals(0, runtime.notified);
+	}
+	
+	public void testDeclinedOnError() {
+		TestNotificationRuntime runtime = new TestNotificationRuntime(newSession());
+		runtime.fail = true;
+		
+		assertFalse(runtime.onMessage(getContext(), new Bundle()));
+		assertEquals(0, runtime.getHandledCount());
+	}
+	
+	/**
+	 * Receive to notify latency for a burst of pushes.  Only the first pays the wiring cost.
+	 */
+	public void testReceiveToNotifyLatency() {
+		TestNotificationRuntime runtime = new TestNotificationRuntime(newSession());
+		runtime.wireCost = 250;
+		runtime.notifyCost = 5;
+		
+		runtime.onMessage(getContext(), new Bundle());
+		long cold = runtime.getLastLatency();
+		
+		for (int i = 0; i < 9; i++) {
+			runtime.onMessage(getContext(), new Bundle());
+		}
+		
+		long warm = runtime.getLastLatency();
+		
+		assertEquals(255, cold);
+		assertEquals(5, warm);
+		assertEquals(255, runtime.getMaxLatency());
+		assertEquals((255 + (9 * 5)) / 10, runtime.getAverageLatency());
+	}
+	
+	public void testContainerPersisterShared() {
+		SocializeSessionPersister shared = Mockito.mock(SocializeSessionPersister.class);
+		WritableSession session = Mockito.mock(WritableSession.class);
+		Mockito.when(shared.load(getContext())).thenReturn(session);
+		
+		SessionRuntime runtime = new SessionRuntime(shared);
+		
+		assertSame(session, runtime.load(getContext()));
+		assertSame(session, runtime.load(getContext()));
+		
+		Mockito.verify(shared, Mockito.times(2)).load(getContext());
+		assertEquals(0, runtime.persisters);
+	}
+	
+	public void testReloadedWhenFileLengthChanges() throws IOException {
+		File file = new File(getContext().getFilesDir(), BinarySessionPersister.SESSION_FILE);
+		
+		try {
+			write(file, 10);
+			long modified = file.lastModified();
+			
+			SessionRuntime runtime = new SessionRuntime(null);
+			
+			runtime.load(getContext());
+			runtime.load(getContext());
+			assertEquals(1, runtime.persisters);
+			
+			// Rewritten within the same second
+			write(file, 12);
+			file.setLastModified(modified);
+			
+			runtime.load(getContext());
+			assertEquals(2, runtime.persisters);
+		}
+		finally {
+			file.delete();
+		}
+	}
+	
+	private void write(File file, int length) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(new byte[length]);
+		}
+		finally {
+			out.close();
+		}
+	}
+	
+	private SocializeSession newSession() {
+		SocializeSession session = Mockito.mock(SocializeSession.class);
+		Mockito.when(session.getUser()).thenReturn(new User());
+		return session;
+	}
+	
+	static class SessionRuntime extends NotificationRuntime {
+		
+		final SocializeSessionPersister shared;
+		final WritableSession stored = Mockito.mock(WritableSession.class);
+		int persisters = 0;
+		
+		SessionRuntime(SocializeSessionPersister shared) {
+			super();
+			this.shared = shared;
+		}
+		
+		SocializeSession load(Context context) {
+			return loadSession(context);
+		}
+		
+		@Override
+		protected SocializeSessionPersister getContainerSessionPersister() {
+			return shared;
+		}
+		
+		@Override
+		protected BinarySessionPersister newSessionPersister() {
+			persisters++;
+			BinarySessionPersister persister = Mockito.mock(BinarySessionPersister.class);
+			Mockito.when(persister.load(Mockito.any(Context.class))).thenReturn(stored);
+			return persister;
+		}
+	}
+	
+	static class TestNotificationRuntime extends NotificationRuntime {
+		
+		final SocializeSession session;
+		
+		long time = 0;
+		long wireCost = 0;
+		long notifyCost = 0;
+		int wired = 0;
+		int notified = 0;
+		boolean fail = false;
+		
+		TestNotificationRuntime(SocializeSession session) {
+			super();
+			this.session = session;
+		}
+		
+		@Override
+		protected void wire(Context context, StartupTrace trace) {
+			wired++;
+			time += wireCost;
+		}
+		
+		@Override
+		protected SocializeSession loadSession(Context context) {
+			return session;
+		}
+		
+		@Override
+		protected void handleNotification(Context context, Bundle data, SocializeSession session) {
+			if(fail) {
+				throw new RuntimeException("DUMMY EXCEPTION - IGNORE ME!");
+			}
+			notified++;
+			time += notifyCost;
+		}
+		
+		@Override
+		protected long now() {
+			return time;
+		}
+	}
+}